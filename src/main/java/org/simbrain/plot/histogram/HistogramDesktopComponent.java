@@ -18,7 +18,9 @@
  */
 package org.simbrain.plot.histogram;
 
+import kotlin.Unit;
 import org.simbrain.plot.actions.PlotActionManager;
+import org.simbrain.util.SwingUtilsKt;
 import org.simbrain.util.genericframe.GenericFrame;
 import org.simbrain.util.widgets.ShowHelpAction;
 import org.simbrain.workspace.gui.DesktopComponent;
@@ -79,9 +81,15 @@ public class HistogramDesktopComponent extends DesktopComponent<HistogramCompone
         fileMenu.addSeparator();
         fileMenu.add(SimbrainDesktop.INSTANCE.getActionManager().createCloseAction(this));
 
-        // Not currently used
         JMenu editMenu = new JMenu("Edit");
         JMenuItem preferences = new JMenuItem("Preferences...");
+        preferences.addActionListener(e -> {
+            var dialog = SwingUtilsKt.createEditorDialog(getModel(), (m) -> {
+                m.applyCurrentData();
+                return Unit.INSTANCE;
+            });
+            SwingUtilsKt.display(dialog);
+        });
         editMenu.add(preferences);
 
         JMenu helpMenu = new JMenu("Help");
@@ -90,7 +98,7 @@ public class HistogramDesktopComponent extends DesktopComponent<HistogramCompone
         helpMenu.add(helpItem);
 
         bar.add(fileMenu);
-        // bar.add(editMenu);
+        bar.add(editMenu);
         bar.add(helpMenu);
 
         getParentFrame().setJMenuBar(bar);
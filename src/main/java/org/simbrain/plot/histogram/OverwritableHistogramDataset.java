@@ -228,6 +228,39 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
         dataMap.keySet().retainAll(names);
     }
 
+    /**
+     * Replace the data with bins that have already been counted, for example
+     * by a {@link StreamingHistogram}. Unlike {@link #resetData(List, List, int)}
+     * no raw values are needed, so this only costs as much as the number of
+     * bins. Series with no bins are left out, and series colors are kept.
+     *
+     * @param names List of data series names
+     * @param bins  The bins for each series
+     */
+    public void resetBins(List<String> names, List<HistogramBin[]> bins) {
+        if (names.size() != bins.size()) {
+            throw new IllegalStateException("Number of names for series (" +
+                names.size() + ") does not equal the number of data series (" +
+                bins.size() + ")");
+        }
+        Iterator<HistogramBin[]> binIterator = bins.iterator();
+        for (String str : names) {
+            HistogramBin[] seriesBins = binIterator.next();
+            if (seriesBins.length == 0) {
+                dataMap.remove(str);
+                continue;
+            }
+            ColoredDataSeries packet = new ColoredDataSeries(seriesBins);
+            ColoredDataSeries old = dataMap.get(str);
+            if (old != null) {
+                packet.color = old.color;
+            }
+            dataMap.put(str, packet);
+        }
+        dataMap.keySet().retainAll(names);
+        this.fireDatasetChanged();
+    }
+
     @Override
     public Comparable<String> getSeriesKey(int arg0) {
         int i = 0;
@@ -27,6 +27,8 @@ import org.simbrain.util.SwingUtilsKt;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 
 /**
  * Display a TimeSeriesPlot. This component can be used independently of the
@@ -112,6 +114,15 @@ public class TimeSeriesPlotPanel extends JPanel {
         chartPanel.setChart(chart);
         chart.setBackgroundPaint(null);
 
+        // Series are decimated to the width of the chart, so update it when the panel is resized
+        chartPanel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                model.getDataset().setPixelWidth(chartPanel.getWidth());
+            }
+        });
+        model.getDataset().refresh();
+
     }
 
     public void updateChartSettings() {
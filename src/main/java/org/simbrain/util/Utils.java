@@ -24,6 +24,7 @@ import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.pmw.tinylog.Logger;
 import org.simbrain.util.math.SimbrainMath;
+import org.simbrain.util.table.NumericTableKt;
 
 import javax.swing.*;
 import java.awt.*;
@@ -63,24 +64,23 @@ public class Utils {
     }
 
     /**
-     * Read a csv (comma-separated-values) files.
+     * Read a csv (comma-separated-values) file of numbers. Parsing is done in parallel by
+     * {@link org.simbrain.util.table.NumericTableKt#readNumericCsv(File)}.
      *
      * @param theFile the file to read in
      * @return an two-dimensional array of comma-separated values
      */
     public static double[][] getDoubleMatrix(final File theFile) {
-        String[][] stringMatrix = getStringMatrix(theFile);
-
-        // Convert strings to doubles
-        double[][] ret = new double[stringMatrix.length][stringMatrix[0].length];
-
-        for (int i = 0; i < stringMatrix.length; i++) {
-            for (int j = 0; j < stringMatrix[i].length; j++) {
-                ret[i][j] = Double.parseDouble(stringMatrix[i][j]);
-            }
+        try {
+            return NumericTableKt.readNumericCsv(theFile).toRowArray();
+        } catch (java.nio.file.NoSuchFileException e) {
+            JOptionPane.showMessageDialog(null, "Could not find the file \n" + theFile, "Warning", JOptionPane.ERROR_MESSAGE);
+            return null;
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "There was a problem opening the file \n" + theFile, "Warning", JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+            return null;
         }
-
-        return ret;
     }
 
     /**
@@ -0,0 +1,275 @@
+package org.simbrain.world.imageworld
+
+import kotlinx.coroutines.*
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import javax.imageio.ImageIO
+import kotlin.math.max
+
+/**
+ * An image source that streams frames from disk rather than holding them all in memory like [ImageAlbum], so that long
+ * sequences such as video can be stepped through in constant memory.
+ *
+ * Recently used frames are kept in an LRU cache of [cacheSize] frames, so going back and forth or jumping to a frame
+ * with [setFrame] does not decode it again. After each frame change the next [prefetchCount] frames are decoded on a
+ * background thread, so that advancing through the sequence does not wait on the disk.
+ *
+ * Frames are shared with the cache, so the current image should not be drawn on.
+ *
+ * @param frameReader where frames are read from, e.g. [DirectoryFrames] or [RawVideoFrames]
+ */
+class ImageSequence @JvmOverloads constructor(
+    val frameReader: FrameReader,
+    prefetchCount: Int = 8,
+    cacheSize: Int = 32
+) : ImageSource() {
+
+    /**
+     * Number of frames ahead of the current frame to decode in the background.
+     */
+    val prefetchCount = max(0, prefetchCount)
+
+    /**
+     * Maximum number of decoded frames to keep. Always large enough to hold the current frame and the prefetched ones.
+     */
+    val cacheSize = max(this.prefetchCount + 1, cacheSize)
+
+    /**
+     * Current frame being shown.
+     */
+    var frameIndex: Int = 0
+        private set
+
+    val numFrames: Int
+        get() = frameReader.numFrames
+
+    /**
+     * Decoded frames by index, in least recently used order.
+     */
+    @Transient
+    private var cache: LinkedHashMap<Int, BufferedImage>? = null
+
+    /**
+     * Frames being decoded in the background, by index.
+     */
+    @Transient
+    private var pending: MutableMap<Int, Deferred<BufferedImage>>? = null
+
+    @Transient
+    private var decoder: ExecutorCoroutineDispatcher? = null
+
+    @Transient
+    private var decodeScope: CoroutineScope? = null
+
+    init {
+        if (numFrames > 0) {
+            setFrame(0)
+        }
+    }
+
+    private fun cache() = cache ?: object : LinkedHashMap<Int, BufferedImage>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Int, BufferedImage>) = size > cacheSize
+    }.also { cache = it }
+
+    private fun pending() = pending ?: HashMap<Int, Deferred<BufferedImage>>().also { pending = it }
+
+    /**
+     * Frames are decoded one at a time on a daemon thread that exits after it has been idle for a few seconds, so a
+     * sequence that is dropped without being closed does not keep a thread alive.
+     */
+    private fun decodeScope() = decodeScope ?: run {
+        val dispatcher = ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS, LinkedBlockingQueue()) { runnable ->
+            Thread(runnable, "Image sequence decoder").apply { isDaemon = true }
+        }.asCoroutineDispatcher()
+        decoder = dispatcher
+        CoroutineScope(SupervisorJob() + dispatcher).also { decodeScope = it }
+    }
+
+    /**
+     * Show the frame at the provided index.
+     */
+    fun setFrame(frameIndex: Int) {
+        if (frameIndex < 0 || frameIndex >= numFrames) {
+            return
+        }
+        this.frameIndex = frameIndex
+        val image = getFrame(frameIndex)
+        prefetchAfter(frameIndex)
+        setCurrentImage(image, true)
+    }
+
+    /**
+     * Show the next frame, wrapping around to the first frame at the end.
+     */
+    fun nextFrame() {
+        if (numFrames > 0) {
+            setFrame((frameIndex + 1) % numFrames)
+        }
+    }
+
+    /**
+     * Show the previous frame, wrapping around to the last frame at the start.
+     */
+    fun previousFrame() {
+        if (numFrames > 0) {
+            setFrame((frameIndex + numFrames - 1) % numFrames)
+        }
+    }
+
+    /**
+     * Returns the frame at the provided index, from the cache if possible, otherwise waiting for it to be decoded in
+     * the background if it is being prefetched, otherwise decoding it on the calling thread.
+     */
+    fun getFrame(index: Int): BufferedImage {
+        val inProgress = synchronized(this) {
+            cache()[index]?.let { return it }
+            pending()[index]
+        }
+        val image = inProgress
+            ?.let { runCatching { runBlocking { it.await() } }.getOrNull() }
+            ?: frameReader.read(index)
+        synchronized(this) {
+            cache()[index] = image
+        }
+        return image
+    }
+
+    /**
+     * Start decoding the frames after the provided index that are not already cached or being decoded, and cancel
+     * decoding of frames that are no longer coming up.
+     */
+    private fun prefetchAfter(index: Int) {
+        if (prefetchCount == 0 || numFrames <= 1) {
+            return
+        }
+        val upcoming = (1..minOf(prefetchCount, numFrames - 1)).map { (index + it) % numFrames }
+        synchronized(this) {
+            val pending = pending()
+            pending.keys.filter { it !in upcoming }.forEach { pending.remove(it)?.cancel() }
+            for (next in upcoming) {
+                if (next in pending || cache().containsKey(next)) {
+                    continue
+                }
+                pending[next] = decodeScope().async {
+                    val image = frameReader.read(next)
+                    synchronized(this@ImageSequence) {
+                        cache()[next] = image
+                        pending.remove(next)
+                    }
+                    image
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop background decoding and release the decoding thread. Frames can still be read after this, but will be
+     * decoded on the calling thread until the next frame change restarts prefetching. Called by [ImageWorld] when it
+     * switches to another source or is closed.
+     */
+    fun close() {
+        synchronized(this) {
+            pending().values.forEach { it.cancel() }
+            pending().clear()
+            decodeScope?.cancel()
+            decoder?.close()
+            decodeScope = null
+            decoder = null
+        }
+    }
+}
+
+/**
+ * Provides random access to the frames of an image sequence.
+ */
+interface FrameReader {
+
+    val numFrames: Int
+
+    /**
+     * Decode the frame at the provided index. May be called from a background thread.
+     */
+    fun read(index: Int): BufferedImage
+}
+
+/**
+ * Frames stored as image files in a directory, in order of file name. Frame numbers in file names should be zero
+ * padded so that they sort correctly.
+ */
+class DirectoryFrames(val directory: File) : FrameReader {
+
+    private val files: List<File> = run {
+        val suffixes = ImageIO.getReaderFileSuffixes().map { it.lowercase() }.toSet()
+        directory.listFiles { file -> file.isFile && file.extension.lowercase() in suffixes }
+            .orEmpty()
+            .sortedBy { it.name }
+    }
+
+    override val numFrames: Int
+        get() = files.size
+
+    override fun read(index: Int): BufferedImage {
+        return ImageIO.read(files[index]) ?: throw IOException("Could not parse ${files[index].name}")
+    }
+}
+
+/**
+ * Frames stored back to back in an uncompressed file with no header, for example the output of
+ * `ffmpeg -i video.mp4 -f rawvideo -pix_fmt rgb24 video.raw`. Each frame is read with a single seek and read.
+ */
+class RawVideoFrames @JvmOverloads constructor(
+    val file: File,
+    val width: Int,
+    val height: Int,
+    val pixelFormat: PixelFormat = PixelFormat.RGB24
+) : FrameReader {
+
+    enum class PixelFormat(val bytesPerPixel: Int) {
+        /**
+         * One byte each for red, green and blue.
+         */
+        RGB24(3),
+
+        /**
+         * One byte of brightness.
+         */
+        GRAY8(1)
+    }
+
+    init {
+        require(width > 0 && height > 0) { "Frame size must be positive but was $width x $height" }
+    }
+
+    private val frameSize = width * height * pixelFormat.bytesPerPixel
+
+    override val numFrames: Int = (file.length() / frameSize).toInt()
+
+    override fun read(index: Int): BufferedImage {
+        val bytes = ByteArray(frameSize)
+        RandomAccessFile(file, "r").use {
+            it.seek(index.toLong() * frameSize)
+            it.readFully(bytes)
+        }
+        val image = BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+        val pixels = (image.raster.dataBuffer as DataBufferInt).data
+        when (pixelFormat) {
+            PixelFormat.RGB24 -> for (i in pixels.indices) {
+                val red = bytes[3 * i].toInt() and 0xFF
+                val green = bytes[3 * i + 1].toInt() and 0xFF
+                val blue = bytes[3 * i + 2].toInt() and 0xFF
+                pixels[i] = (red shl 16) or (green shl 8) or blue
+            }
+            PixelFormat.GRAY8 -> for (i in pixels.indices) {
+                val gray = bytes[i].toInt() and 0xFF
+                pixels[i] = (gray shl 16) or (gray shl 8) or gray
+            }
+        }
+        return image
+    }
+}
@@ -9,7 +9,8 @@ import java.io.IOException;
 
 /**
  *
- * At each update, apply all the filters in a {@link FilterCollection} to the current image in an {@link ImageAlbum}
+ * At each update, apply all the filters in a {@link FilterCollection} to the current image in an {@link ImageAlbum},
+ * or in an {@link ImageSequence} when one is being shown.
  *
  * Display the result of the current filter applied to the current image  to the screen.
  */
@@ -20,6 +21,11 @@ public class ImageWorld {
      */
     private ImageAlbum imageAlbum;
 
+    /**
+     * Sequence of frames streamed from disk that is shown instead of the album, or null if the album is shown.
+     */
+    private ImageSequence imageSequence;
+
     /**
      * List of filters.
      */
@@ -44,6 +50,7 @@ public class ImageWorld {
      * Clear the image album and set the current image with a blank canvas of the indicated size.
      */
     public void resetImageAlbum(int width, int height) {
+        showImageAlbum();
         imageAlbum.reset(width, height);
     }
 
@@ -54,34 +61,100 @@ public class ImageWorld {
      * @throws IOException thrown if the requested file is not available
      */
     public void loadImages(File[] files) {
+        showImageAlbum();
         imageAlbum.loadImages(files);
     }
 
+    /**
+     * Show the frames of an image sequence instead of the album. Any sequence shown before is closed.
+     */
+    public void showImageSequence(ImageSequence sequence) {
+        if (imageSequence == sequence) {
+            return;
+        }
+        closeImageSequence();
+        imageSequence = sequence;
+        filterCollection.setImageSource(sequence);
+    }
+
+    /**
+     * Go back to showing the album, closing the image sequence if one is shown.
+     */
+    public void showImageAlbum() {
+        closeImageSequence();
+        filterCollection.setImageSource(imageAlbum);
+    }
+
+    private void closeImageSequence() {
+        if (imageSequence != null) {
+            imageSequence.close();
+            imageSequence = null;
+        }
+    }
+
+    /**
+     * Release resources held by the current source. Called when the world's component is closed.
+     */
+    public void close() {
+        if (imageSequence != null) {
+            imageSequence.close();
+        }
+    }
+
     /**
      * Returns number of frames in the "album" associated with this component.
      */
     public int getNumImages() {
-        return imageAlbum.getNumFrames();
+        return imageSequence != null ? imageSequence.getNumFrames() : imageAlbum.getNumFrames();
+    }
+
+    /**
+     * Returns the index of the frame being shown.
+     */
+    public int getFrameIndex() {
+        return imageSequence != null ? imageSequence.getFrameIndex() : imageAlbum.getFrameIndex();
     }
 
     /**
      * Update the image source to the next image.
      */
     public void nextFrame() {
-        imageAlbum.nextFrame();
+        if (imageSequence != null) {
+            imageSequence.nextFrame();
+        } else {
+            imageAlbum.nextFrame();
+        }
     }
 
     /**
      * Update the image source to the previous image.
      */
     public void previousFrame() {
-        imageAlbum.previousFrame();
+        if (imageSequence != null) {
+            imageSequence.previousFrame();
+        } else {
+            imageAlbum.previousFrame();
+        }
     }
 
     public ImageAlbum getImageAlbum() {
         return imageAlbum;
     }
 
+    /**
+     * The image sequence being shown, or null if the album is shown.
+     */
+    public ImageSequence getImageSequence() {
+        return imageSequence;
+    }
+
+    /**
+     * The source whose images are currently filtered and shown.
+     */
+    public ImageSource getImageSource() {
+        return filterCollection.getImageSource();
+    }
+
     public FilterCollection getFilterCollection() {
         return filterCollection;
     }
@@ -106,7 +179,7 @@ public class ImageWorld {
      * Convenience method to get current image.
      */
     public BufferedImage getCurrentImage() {
-        return imageAlbum.getCurrentImage();
+        return getImageSource().getCurrentImage();
     }
 
 }
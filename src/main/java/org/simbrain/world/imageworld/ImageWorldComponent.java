@@ -85,6 +85,12 @@ public class ImageWorldComponent extends WorkspaceComponent {
         this.world = world;
     }
 
+    @Override
+    public void close() {
+        world.close();
+        super.close();
+    }
+
     public ImageWorld getWorld() {
         return world;
     }
@@ -10,6 +10,9 @@ import org.simbrain.world.imageworld.ImageSource;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 /**
  * Wraps an {@link ImageOperation} in a structure that allows for coupling, event handling etc.
@@ -76,6 +79,32 @@ public class Filter implements AttributeContainer, EditableObject {
      */
     private transient double[][] channels;
 
+    /**
+     * Whether each channel has been computed since the last update. Channels are only computed when they are read,
+     * so channels that are not coupled to anything are never computed.
+     */
+    private transient boolean[] channelsCurrent;
+
+    /**
+     * Reused destination for the source image scaled to the size of this filter.
+     */
+    private transient BufferedImage scaledImage;
+
+    /**
+     * Reused destination for image operations that are not applied pixel by pixel.
+     */
+    private transient BufferedImage opImage;
+
+    /**
+     * Type of the image {@link #opImage} was created for. The destination is created again when the type changes.
+     */
+    private transient int opImageSourceType;
+
+    /**
+     * Reused image showing the output of pixelwise image operations.
+     */
+    private transient BufferedImage pixelwiseImage;
+
     /**
      * Array of ints representing rgb colors. See
      * {@link BufferedImage#getRGB(int, int)}
@@ -126,27 +155,30 @@ public class Filter implements AttributeContainer, EditableObject {
 
     @Producible()
     public double[] getBrightness() {
-        return channels[0];
+        return getChannel(0);
     }
 
     @Producible()
     public double[] getFlattenedRGB() {
+        for (int i = 0; i < channels.length; i++) {
+            getChannel(i);
+        }
         return CollectionUtilsKt.flattenArray(channels);
     }
 
     @Producible( defaultVisibility = false)
     public double[] getRed() {
-        return channels[1];
+        return getChannel(1);
     }
 
     @Producible( defaultVisibility = false)
     public double[] getGreen() {
-        return channels[2];
+        return getChannel(2);
     }
 
     @Producible( defaultVisibility = false)
     public double[] getBlue() {
-        return channels[3];
+        return getChannel(3);
     }
 
     @Producible()
@@ -154,6 +186,32 @@ public class Filter implements AttributeContainer, EditableObject {
         return rgbColors;
     }
 
+    /**
+     * Returns the values for a channel, first computing them from the rgb colors if they are out of date.
+     */
+    private synchronized double[] getChannel(int channel) {
+        if (channelsCurrent[channel]) {
+            return channels[channel];
+        }
+        double[] values = channels[channel];
+        for (int i = 0; i < rgbColors.length; i++) {
+            int color = rgbColors[i];
+            // Cf https://stackoverflow.com/questions/2534116/how-to-convert-get-rgbx-y-integer-pixel-to-colorr-g-b-a-in-java
+            double red = ((color >>> 16) & 0xFF) / 255.0;
+            double green = ((color >>> 8) & 0xFF) / 255.0;
+            double blue = (color & 0xFF) / 255.0;
+            values[i] = switch (channel) {
+                // Cf. https://en.wikipedia.org/wiki/Luma_(video)
+                case 0 -> red * 0.2126 + green * 0.7152 + blue * 0.0722;
+                case 1 -> red;
+                case 2 -> green;
+                default -> blue;
+            };
+        }
+        channelsCurrent[channel] = true;
+        return values;
+    }
+
     @Override
     public String toString() {
         return this.name;
@@ -161,14 +219,39 @@ public class Filter implements AttributeContainer, EditableObject {
 
     void initChannels() {
         channels = new double[4][width * height];
+        channelsCurrent = new boolean[4];
         rgbColors = new int[width * height];
+        scaledImage = null;
+        opImage = null;
+        pixelwiseImage = null;
     }
 
-    BufferedImage applyFilter() {
+    /**
+     * Returns the source image scaled to the size of this filter, drawn into the same image on every update. If the
+     * source is already the right size it is returned as is.
+     */
+    BufferedImage applyScaling() {
         BufferedImage image = source.getCurrentImage();
-        image = scaleOp.filter(image, null);
-        image = imageOp.getOp().filter(image, null);
-        return image;
+        if (image.getWidth() == width && image.getHeight() == height) {
+            return image;
+        }
+        int type = scaledImageType(image);
+        if (scaledImage == null || scaledImage.getType() != type) {
+            scaledImage = new BufferedImage(width, height, type);
+        }
+        return scaleOp.filter(image, scaledImage);
+    }
+
+    /**
+     * Type of image the source is scaled into: the source's own type, so that alpha and gray scale are kept, unless
+     * it is a type that scaling cannot draw into without losing colors, such as an indexed color image.
+     */
+    private static int scaledImageType(BufferedImage image) {
+        return switch (image.getType()) {
+            case BufferedImage.TYPE_CUSTOM, BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_BYTE_INDEXED ->
+                    image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            default -> image.getType();
+        };
     }
 
     private float computeScalingFactor(int source, int target) {
@@ -181,40 +264,75 @@ public class Filter implements AttributeContainer, EditableObject {
         float scaleX = computeScalingFactor(source.getWidth(), width);
         float scaleY = computeScalingFactor(source.getHeight(), height);
         scaleOp = FilterUtils.createScaleOp(scaleX, scaleY, true);
+        // The source changed size, so the images drawn into are created again on the next update
+        scaledImage = null;
+        opImage = null;
     }
 
     /**
-     * Update the filter.
+     * Update the filter. Pixelwise operations are applied while the scaled pixels are copied into the rgb colors, so
+     * no intermediate image is created. Other operations draw into an image that is reused between updates.
      */
-    public void updateFilter() {
+    public synchronized void updateFilter() {
 
-        filteredImage = applyFilter();
+        BufferedImage image = applyScaling();
 
-        if (filteredImage.getHeight() != height || filteredImage.getWidth() != width) {
-            throw new AssertionError(String.format("Filtered image size not equal to filter size" +
-                    " (filtered image size: %d x %d, filter size: %d x %d)", filteredImage.getWidth(),
-                    filteredImage.getHeight(), width, height));
+        if (imageOp.isPixelwise()) {
+            readRGB(image, rgbColors);
+            // Operations only change colors, so the alpha of each pixel is kept
+            for (int i = 0; i < rgbColors.length; i++) {
+                int rgb = rgbColors[i];
+                rgbColors[i] = (rgb & 0xFF000000) | (imageOp.filterRGB(rgb) & 0x00FFFFFF);
+            }
+            int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            if (pixelwiseImage == null || pixelwiseImage.getType() != type) {
+                pixelwiseImage = new BufferedImage(width, height, type);
+            }
+            int[] pixels = ((DataBufferInt) pixelwiseImage.getRaster().getDataBuffer()).getData();
+            System.arraycopy(rgbColors, 0, pixels, 0, rgbColors.length);
+            filteredImage = pixelwiseImage;
+        } else {
+            BufferedImageOp op = imageOp.getOp();
+            if (opImage == null || opImageSourceType != image.getType()) {
+                opImage = op.createCompatibleDestImage(image, null);
+                opImageSourceType = image.getType();
+            }
+            filteredImage = op.filter(image, opImage);
+            if (filteredImage.getHeight() != height || filteredImage.getWidth() != width) {
+                throw new AssertionError(String.format("Filtered image size not equal to filter size" +
+                        " (filtered image size: %d x %d, filter size: %d x %d)", filteredImage.getWidth(),
+                        filteredImage.getHeight(), width, height));
+            }
+            readRGB(filteredImage, rgbColors);
         }
 
-        // Set values of channels
-        for (int y = 0; y < filteredImage.getHeight(); ++y) {
-            for (int x = 0; x < filteredImage.getWidth(); ++x) {
-
-                // Update rgb colors
-                int color = filteredImage.getRGB(x, y);
-                rgbColors[y * width + x] = color;
+        Arrays.fill(channelsCurrent, false);
+    }
 
-                // Update other color channels
-                // Cf https://stackoverflow.com/questions/2534116/how-to-convert-get-rgbx-y-integer-pixel-to-colorr-g-b-a-in-java
-                double red = ((color >>> 16) & 0xFF) / 255.0;
-                double green = ((color >>> 8) & 0xFF) / 255.0;
-                double blue = (color & 0xFF) / 255.0;
-                // Cf. https://en.wikipedia.org/wiki/Luma_(video)
-                channels[0][y * width + x] = (red * 0.2126 + green * 0.7152 + blue * 0.0722);
-                channels[1][y * width + x] = red;
-                channels[2][y * width + x] = green;
-                channels[3][y * width + x] = blue;
+    /**
+     * Copy the colors of an image into an array in the format of {@link BufferedImage#getRGB(int, int)}. Images that
+     * store one int per pixel are read straight from their data buffer.
+     */
+    private static void readRGB(BufferedImage image, int[] rgb) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int type = image.getType();
+        WritableRaster raster = image.getRaster();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && raster.getParent() == null
+                && raster.getDataBuffer() instanceof DataBufferInt buffer
+                && buffer.getNumBanks() == 1 && buffer.getOffset() == 0
+                && buffer.getSize() == width * height) {
+            int[] pixels = buffer.getData();
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                for (int i = 0; i < rgb.length; i++) {
+                    rgb[i] = 0xFF000000 | pixels[i];
+                }
+            } else {
+                System.arraycopy(pixels, 0, rgb, 0, rgb.length);
             }
+        } else {
+            image.getRGB(0, 0, width, height, rgb, 0, width);
         }
     }
 
@@ -1,5 +1,6 @@
 package org.simbrain.world.imageworld.filters;
 
+import kotlin.jvm.functions.Function0;
 import org.simbrain.world.imageworld.ImageSource;
 import org.simbrain.world.imageworld.events.FilterCollectionEvents;
 
@@ -21,10 +22,20 @@ public class FilterCollection {
      */
     private Filter currentFilter;
 
+    /**
+     * The filter that shows the source at its own size. Always in {@link #filters} and cannot be removed.
+     */
+    private Filter unfiltered;
+
     /**
      * Provides the image that is filtered.
      */
-    private final ImageSource imageSource;
+    private ImageSource imageSource;
+
+    /**
+     * Unregister the handlers this collection registered on the events of {@link #imageSource}.
+     */
+    private transient List<Function0<Boolean>> sourceHandlers = new ArrayList<>();
 
     /**
      * Handle FilterSelector Events.
@@ -34,12 +45,7 @@ public class FilterCollection {
     public FilterCollection(ImageSource imageSource) {
         this.imageSource = imageSource;
         initializeDefaultFilters();
-        imageSource.getEvents().getResize().on(null, true, () -> {
-            filters.forEach(Filter::initScaleOp);
-        });
-        imageSource.getEvents().getImageUpdate().on(null, true, () -> {
-            filters.forEach(Filter::updateFilter);
-        });
+        listenToSource();
     }
 
     /**
@@ -47,15 +53,55 @@ public class FilterCollection {
      */
     public Object readResolve() {
         events = new FilterCollectionEvents();
-        imageSource.getEvents().getResize().on(() -> {
-            filters.forEach(Filter::initScaleOp);
-        });
-        imageSource.getEvents().getImageUpdate().on(() -> {
-            filters.forEach(Filter::updateFilter);
-        });
+        sourceHandlers = new ArrayList<>();
+        if (unfiltered == null) {
+            // Saved before the unfiltered filter was kept as a field
+            unfiltered = filters.stream()
+                    .filter(filter -> filter.getName().equalsIgnoreCase("Unfiltered"))
+                    .findFirst().orElse(null);
+        }
+        listenToSource();
         return this;
     }
 
+    /**
+     * Update the filters whenever the image source changes.
+     */
+    private void listenToSource() {
+        sourceHandlers.add(imageSource.getEvents().getResize().on(null, true, () -> sourceResized()));
+        sourceHandlers.add(imageSource.getEvents().getImageUpdate().on(null, true, () -> updateFilters()));
+    }
+
+    /**
+     * Keep the unfiltered filter the size of the source, and rescale the others.
+     */
+    private void sourceResized() {
+        for (Filter filter : filters) {
+            if (filter == unfiltered) {
+                filter.setWidth(imageSource.getWidth());
+                filter.setHeight(imageSource.getHeight());
+                filter.initChannels();
+            }
+            filter.initScaleOp();
+        }
+    }
+
+    /**
+     * Filter images from another source, e.g. when an image world switches from its album to an image sequence.
+     */
+    public void setImageSource(ImageSource imageSource) {
+        if (this.imageSource == imageSource) {
+            return;
+        }
+        sourceHandlers.forEach(Function0::invoke);
+        sourceHandlers.clear();
+        this.imageSource = imageSource;
+        filters.forEach(filter -> filter.setSource(imageSource));
+        listenToSource();
+        sourceResized();
+        updateFilters();
+    }
+
     /**
      * Initialize some default filters on world creation. This should be called
      * on the instantiation of a child of this class after the image source is
@@ -64,15 +110,10 @@ public class FilterCollection {
     void initializeDefaultFilters() {
 
         // Load default sensor matrices
-        Filter unfiltered = new Filter(
+        unfiltered = new Filter(
                 "Unfiltered",
                 imageSource, new IdentityOp(), imageSource.getWidth(), imageSource.getHeight()
         );
-        imageSource.getEvents().getResize().on(null, true, () -> {
-            unfiltered.setHeight(imageSource.getCurrentImage().getHeight());
-            unfiltered.setWidth(imageSource.getCurrentImage().getWidth());
-            unfiltered.initChannels();
-        });
         filters.add(unfiltered);
 
         Filter gray100x100 = new Filter(
@@ -96,6 +137,13 @@ public class FilterCollection {
         currentFilter = filters.get(0);
     }
 
+    /**
+     * Update all the filters. Filters do not depend on each other, so they are updated in parallel.
+     */
+    public void updateFilters() {
+        filters.parallelStream().forEach(Filter::updateFilter);
+    }
+
     /**
      * Add a new filterContainer to the list.
      *
@@ -113,7 +161,7 @@ public class FilterCollection {
      */
     public void removeFilter(Filter filter) {
         // Can't remove the "Unfiltered" option
-        if (filter.getName().equalsIgnoreCase("Unfiltered")) {
+        if (filter == unfiltered) {
             return;
         }
         filters.remove(filter);
@@ -128,6 +176,10 @@ public class FilterCollection {
         return filters;
     }
 
+    public Filter getUnfiltered() {
+        return unfiltered;
+    }
+
     public Filter getCurrentFilter() {
         return currentFilter;
     }
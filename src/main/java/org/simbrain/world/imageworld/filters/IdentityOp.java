@@ -14,6 +14,11 @@ public class IdentityOp extends ImageOperation<AffineTransformOp> {
         return op;
     }
 
+    @Override
+    boolean isPixelwise() {
+        return true;
+    }
+
     @Override
     public IdentityOp copy() {
         return new IdentityOp();
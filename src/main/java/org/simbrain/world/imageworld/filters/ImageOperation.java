@@ -31,4 +31,23 @@ public abstract class ImageOperation<O extends BufferedImageOp> implements Copya
     }
 
     abstract O getOp();
+
+    /**
+     * Whether this operation maps each pixel's color independently of the other pixels. If so, {@link Filter} applies
+     * it with {@link #filterRGB(int)} in the same pass that reads the pixels, rather than creating an intermediate
+     * image with {@link #getOp()}.
+     */
+    boolean isPixelwise() {
+        return false;
+    }
+
+    /**
+     * Apply the operation to one rgb color. Only used when {@link #isPixelwise()} is true.
+     *
+     * @param rgb a color in the format of {@link java.awt.image.BufferedImage#getRGB(int, int)}
+     * @return the filtered color
+     */
+    int filterRGB(int rgb) {
+        return rgb;
+    }
 }
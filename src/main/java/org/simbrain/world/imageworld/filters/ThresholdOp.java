@@ -58,15 +58,26 @@ public class ThresholdOp extends ImageOperation<ThresholdOp> implements Buffered
         if (destination == null) {
             destination = createCompatibleDestImage(source, null);
         }
-        for (int y = 0; y < source.getHeight(); ++y) {
-            for (int x = 0; x < source.getWidth(); ++x) {
-                double luminance = getLuminance(source.getRGB(x, y));
-                destination.setRGB(x, y, luminance >= threshold ? white : black);
-            }
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] colors = source.getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = filterRGB(colors[i]);
         }
+        destination.setRGB(0, 0, width, height, colors, 0, width);
         return destination;
     }
 
+    @Override
+    boolean isPixelwise() {
+        return true;
+    }
+
+    @Override
+    int filterRGB(int color) {
+        return getLuminance(color) >= threshold ? white : black;
+    }
+
     /**
      * @param color a 3-byte RGB color to convert
      * @return the luminance of the color
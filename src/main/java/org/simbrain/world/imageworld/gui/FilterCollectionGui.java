@@ -98,7 +98,7 @@ public class FilterCollectionGui {
             deleteFilter.setToolTipText("Delete Filter");
             deleteFilter.setAlignmentX(Component.CENTER_ALIGNMENT);
             deleteFilter.addActionListener(e -> {
-                if (filter.getName().equalsIgnoreCase("Unfiltered")) {
+                if (filter == filterCollection.getUnfiltered()) {
                     JOptionPane.showMessageDialog(filterEditorDialog, "Can't remove unfiltered option");
                     return;
                 }
@@ -84,9 +84,9 @@ val srnXORSim = newSim {
                 sumWindow[counter % 12] += error
                 if (counter % 12 == 0) {
                     // println(sumWindow.map { it / max(1.0, floor(counter / 12.0)) }.map { it.format(3) })
-                    timeSeries.model.timeSeriesList[0].series.clear()
+                    timeSeries.model.clearData()
                 }
-                timeSeries.model.timeSeriesList[0].series.add(counter % 12, sumWindow[counter % 12] / max(1.0, floor(counter / 12.0)))
+                timeSeries.model.addData(0, (counter % 12).toDouble(), sumWindow[counter % 12] / max(1.0, floor(counter / 12.0)))
             }
 
             addButton("Test") {
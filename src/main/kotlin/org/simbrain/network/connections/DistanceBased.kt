@@ -21,10 +21,10 @@ import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.util.SimnetUtils.getEuclideanDist
 import org.simbrain.util.UserParameter
-import org.simbrain.util.cartesianProduct
 import org.simbrain.util.decayfunctions.DecayFunction
 import org.simbrain.util.decayfunctions.GaussianDecayFunction
 import org.simbrain.util.propertyeditor.EditableObject
+import kotlin.random.Random
 
 class DistanceBased (
 
@@ -62,19 +62,19 @@ class DistanceBased (
 
 }
 
+/**
+ * Connect each source to each target with probability given by [decay] applied to the distance between them. Only
+ * targets within the decay function's [DecayFunction.cutoffDistance] are considered. The same [seed] always gives
+ * the same connections.
+ */
 fun createRadialSynapses (
     source: List<Neuron>,
     target: List<Neuron>,
-    decay: DecayFunction
+    decay: DecayFunction,
+    seed: Long = Random.nextLong()
 ): List<Synapse> {
-    val syns = ArrayList<Synapse>()
-    (source cartesianProduct target).forEach{ (src, tar) ->
-        if (src != tar) {
-            val p = decay.getScalingFactor(getEuclideanDist(src, tar))
-            if (Math.random() < p) {
-                syns.add(Synapse(src, tar))
-            }
-        }
+    val targetsPerSource = sampleLocalConnections(source, target, decay.cutoffDistance, seed) { src, tar ->
+        if (src != tar) decay.getScalingFactor(getEuclideanDist(src, tar)) else 0.0
     }
-    return syns
+    return targetsPerSource.flatMapIndexed { i, targets -> targets.map { Synapse(source[i], target[it]) } }
 }
@@ -0,0 +1,120 @@
+package org.simbrain.network.connections
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.simbrain.network.core.Neuron
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.random.Random
+
+/**
+ * Buckets neurons by their x and y location in a grid of square cells, so that the neurons near a point can be found
+ * without checking every neuron. Locations are read when the grid is created.
+ *
+ * @param cellSize width of a cell. Searches are cheapest when this is about the search radius.
+ */
+class NeuronGrid(val neurons: List<Neuron>, cellSize: Double) {
+
+    @PublishedApi
+    internal val cellSize = if (cellSize > 0 && cellSize.isFinite()) cellSize else 1.0
+
+    @PublishedApi
+    internal val xs = DoubleArray(neurons.size) { neurons[it].x }
+
+    @PublishedApi
+    internal val ys = DoubleArray(neurons.size) { neurons[it].y }
+
+    /**
+     * Indices of the neurons in each non-empty cell.
+     */
+    @PublishedApi
+    internal val cells: Map<Long, IntArray> = neurons.indices
+        .groupBy { cellKey(cellOf(xs[it]), cellOf(ys[it])) }
+        .mapValues { (_, indices) -> indices.toIntArray() }
+
+    /**
+     * Call [action] with the index of every neuron whose x, y location is within [radius] of ([x], [y]).
+     */
+    inline fun forEachWithin(x: Double, y: Double, radius: Double, action: (Int) -> Unit) {
+        forEachCandidate(x, y, radius) { i ->
+            val dx = xs[i] - x
+            val dy = ys[i] - y
+            if (dx * dx + dy * dy <= radius * radius) {
+                action(i)
+            }
+        }
+    }
+
+    /**
+     * Call [action] with the index of every neuron in a cell that overlaps the square of half width [radius] around
+     * ([x], [y]). If the square covers more cells than there are neurons, every neuron is visited.
+     */
+    @PublishedApi
+    internal inline fun forEachCandidate(x: Double, y: Double, radius: Double, action: (Int) -> Unit) {
+        val cellsAcross = 2 * radius / cellSize + 2
+        if (!(cellsAcross * cellsAcross <= cells.size)) {
+            cells.values.forEach { cell -> cell.forEach(action) }
+            return
+        }
+        for (cx in cellOf(x - radius)..cellOf(x + radius)) {
+            for (cy in cellOf(y - radius)..cellOf(y + radius)) {
+                cells[cellKey(cx, cy)]?.forEach(action)
+            }
+        }
+    }
+
+    @PublishedApi
+    internal fun cellOf(coordinate: Double): Long = floor(coordinate / cellSize).toLong()
+
+    @PublishedApi
+    internal fun cellKey(cx: Long, cy: Long) = (cx shl 32) xor (cy and 0xFFFFFFFFL)
+}
+
+/**
+ * Below this many source neurons, connections are sampled on the calling thread.
+ */
+private const val PARALLEL_SOURCE_THRESHOLD = 1000
+
+/**
+ * Decide which source-target pairs within [radius] of each other (in x and y) to connect. Each candidate pair is
+ * connected with the probability returned by [probability]. Pairs further apart than [radius] are never connected, so
+ * the cost depends on how many neurons are near each source rather than on sources times targets.
+ *
+ * Sources are processed in parallel for large networks. Each source uses its own random numbers derived from [seed],
+ * so the same seed always gives the same connections. Returns, for each source, the indices of its chosen targets.
+ */
+fun sampleLocalConnections(
+    source: List<Neuron>,
+    target: List<Neuron>,
+    radius: Double,
+    seed: Long,
+    probability: (src: Neuron, tar: Neuron) -> Double
+): List<IntArray> {
+    if (source.isEmpty() || target.isEmpty() || !(radius > 0)) {
+        return List(source.size) { IntArray(0) }
+    }
+    val grid = NeuronGrid(target, radius)
+    val seeds = Random(seed).let { random -> LongArray(source.size) { random.nextLong() } }
+    val connect = { i: Int ->
+        val src = source[i]
+        val random = Random(seeds[i])
+        val chosen = ArrayList<Int>()
+        grid.forEachWithin(src.x, src.y, radius) { j ->
+            if (random.nextDouble() < probability(src, target[j])) {
+                chosen.add(j)
+            }
+        }
+        chosen.toIntArray().apply { sort() }
+    }
+    if (source.size < PARALLEL_SOURCE_THRESHOLD) {
+        return List(source.size, connect)
+    }
+    return runBlocking {
+        val chunkSize = max(1, source.size / (4 * Runtime.getRuntime().availableProcessors()))
+        source.indices.chunked(chunkSize).map { chunk ->
+            async(Dispatchers.Default) { chunk.map(connect) }
+        }.awaitAll().flatten()
+    }
+}
@@ -22,6 +22,9 @@ import org.simbrain.network.core.Synapse
 import org.simbrain.util.SimbrainConstants.Polarity
 import org.simbrain.util.UserParameter
 import org.simbrain.util.propertyeditor.EditableObject
+import kotlin.math.ln
+import kotlin.math.sqrt
+import kotlin.random.Random
 
 const val DEFAULT_DIST_CONST: Double = 0.25
 
@@ -247,6 +250,11 @@ class RadialGaussian(
 
 }
 
+/**
+ * Connect neurons with probabilities that fall off with distance according to polarity, as described in
+ * [RadialGaussian]. Only targets within [radialCutoffDistance] of each source are considered. The same [seed]
+ * always gives the same connections.
+ */
 fun createRadialPolarizedSynapses(
     source: List<Neuron>,
     target: List<Neuron>,
@@ -255,44 +263,40 @@ fun createRadialPolarizedSynapses(
     ieDistConst: Double = DEFAULT_IE_CONST,
     iiDistConst: Double = DEFAULT_II_CONST,
     distConst: Double = DEFAULT_DIST_CONST,
-    lambda: Double = DEFAULT_LAMBDA
+    lambda: Double = DEFAULT_LAMBDA,
+    seed: Long = Random.nextLong()
 ): List<Synapse> {
-    // Pre-allocating assuming that if one is using this as a connector
-    // then they are probably not going to have greater than 25%
-    // connectivity
-    val synapses: MutableList<Synapse> = ArrayList(source!!.size * target!!.size / 4)
-    for (src: Neuron in source) {
-        for (tar: Neuron in target) {
-            val randVal: Double = Math.random()
-            var probability: Double
-            if (src.polarity === Polarity.EXCITATORY) {
-                if (tar.polarity === Polarity.EXCITATORY) {
-                    probability = calcConnectProb(src, tar, eeDistConst, lambda)
-                } else if (tar.polarity === Polarity.INHIBITORY) {
-                    probability = calcConnectProb(src, tar, eiDistConst, lambda)
-                } else {
-                    probability = calcConnectProb(src, tar, distConst, lambda)
-                }
-            } else if (src.polarity === Polarity.INHIBITORY) {
-                if (tar.polarity === Polarity.EXCITATORY) {
-                    probability = calcConnectProb(src, tar, ieDistConst, lambda)
-                } else if (tar.polarity === Polarity.INHIBITORY) {
-                    probability = calcConnectProb(src, tar, iiDistConst, lambda)
-                } else {
-                    probability = calcConnectProb(src, tar, distConst, lambda)
-                }
-            } else {
-                probability = calcConnectProb(src, tar, distConst, lambda)
+    val maxDistConst = maxOf(eeDistConst, eiDistConst, ieDistConst, iiDistConst, distConst)
+    val radius = radialCutoffDistance(maxDistConst, lambda)
+    val targetsPerSource = sampleLocalConnections(source, target, radius, seed) { src, tar ->
+        val constant = if (src.polarity === Polarity.EXCITATORY) {
+            when {
+                tar.polarity === Polarity.EXCITATORY -> eeDistConst
+                tar.polarity === Polarity.INHIBITORY -> eiDistConst
+                else -> distConst
             }
-            if (randVal < probability) {
-                val s = Synapse(src, tar)
-                if (src.polarity === Polarity.INHIBITORY) {
-                    s.forceSetStrength(-1.0)
-                } else {
-                    s.forceSetStrength(1.0)
-                }
-                synapses.add(s)
+        } else if (src.polarity === Polarity.INHIBITORY) {
+            when {
+                tar.polarity === Polarity.EXCITATORY -> ieDistConst
+                tar.polarity === Polarity.INHIBITORY -> iiDistConst
+                else -> distConst
             }
+        } else {
+            distConst
+        }
+        calcConnectProb(src, tar, constant, lambda)
+    }
+    val synapses = ArrayList<Synapse>(targetsPerSource.sumOf { it.size })
+    targetsPerSource.forEachIndexed { i, targets ->
+        val src = source[i]
+        targets.forEach {
+            val s = Synapse(src, target[it])
+            if (src.polarity === Polarity.INHIBITORY) {
+                s.forceSetStrength(-1.0)
+            } else {
+                s.forceSetStrength(1.0)
+            }
+            synapses.add(s)
         }
     }
     return synapses
@@ -302,28 +306,35 @@ fun createRadialPolarizedSynapses(
  * @param distConst the connection constant for general connections. Used in cases where neurons have no explicit
  * polarity.
  * @param lambda average connection distance.
+ * @param seed seed for the random numbers used to choose connections
  */
 fun createRadialNoPolaritySynapses(
     source: List<Neuron>,
     target: List<Neuron>,
     distConst: Double,
-    lambda: Double
+    lambda: Double,
+    seed: Long = Random.nextLong()
 ): List<Synapse> {
-    // Pre-allocating assuming that if one is using this as a connector
-    // then they are probably not going to have greater than 25%
-    // connectivity
-    val synapses: MutableList<Synapse> = ArrayList(source.size * target.size / 4)
-    for (src: Neuron in source) {
-        for (tar: Neuron in target) {
-            val randVal: Double = Math.random()
-            val probability: Double = calcConnectProb(src, tar, distConst, lambda)
-            if (randVal < probability) {
-                val s = Synapse(src, tar)
-                synapses.add(s)
-            }
-        }
+    val radius = radialCutoffDistance(distConst, lambda)
+    val targetsPerSource = sampleLocalConnections(source, target, radius, seed) { src, tar ->
+        calcConnectProb(src, tar, distConst, lambda)
     }
-    return synapses
+    return targetsPerSource.flatMapIndexed { i, targets -> targets.map { Synapse(source[i], target[it]) } }
+}
+
+/**
+ * Connection probabilities below this are treated as zero, so that targets far from a source need not be checked.
+ */
+const val RADIAL_CUTOFF_PROBABILITY = 1e-9
+
+/**
+ * The distance beyond which distConst * exp(-(d / lambda)^2) is below [RADIAL_CUTOFF_PROBABILITY].
+ */
+fun radialCutoffDistance(distConst: Double, lambda: Double): Double {
+    if (distConst <= RADIAL_CUTOFF_PROBABILITY) {
+        return 0.0
+    }
+    return lambda * sqrt(ln(distConst / RADIAL_CUTOFF_PROBABILITY))
 }
 
 /**
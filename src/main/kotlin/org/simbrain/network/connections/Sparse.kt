@@ -17,14 +17,23 @@
  */
 package org.simbrain.network.connections
 
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.gui.dialogs.NetworkPreferences
 import org.simbrain.util.UserParameter
-import org.simbrain.util.cartesianProduct
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.sampleWithoutReplacement
+import kotlin.math.floor
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.min
 import kotlin.math.roundToInt
+import kotlin.math.roundToLong
+import kotlin.random.Random
 
 /**
  * Connect some percent of possible source-target links. Sparsity or density is between 0 (no connections) and 1 (all
@@ -144,6 +153,14 @@ fun createEqualizedSynapses(
     return ConnectionsResult.Reset(connections.map { (source, target) -> Synapse(source, target) }.toList())
 }
 
+/**
+ * Add or remove synapses so that the given fraction of possible source-target connections exist.
+ *
+ * New connections are drawn without enumerating the possible pairs, so time and memory scale with the number of
+ * synapses and neurons rather than with sources times targets. Each source first gets a binomial number of new
+ * connections, these counts are adjusted so that the total is exact, and then each source samples that many of its
+ * available targets (in parallel for large networks).
+ */
 fun createSparseSynapses(
     sourceNeurons: List<Neuron>,
     targetNeurons: List<Neuron>,
@@ -153,33 +170,148 @@ fun createSparseSynapses(
     if (sourceNeurons.isEmpty() || targetNeurons.isEmpty()) {
         return ConnectionsResult.Add(listOf())
     }
-    val existingSynapses = sourceNeurons.flatMap { it.fanOut.values.filter{ it.target in targetNeurons } }
-    val possibleConnections = (sourceNeurons.asSequence() cartesianProduct targetNeurons.asSequence()).toSet().let {
+    val targetIndices = HashMap<Neuron, Int>(targetNeurons.size * 2)
+    targetNeurons.forEachIndexed { i, neuron -> targetIndices.putIfAbsent(neuron, i) }
+
+    // For each source, the sorted indices of targets it cannot be newly connected to
+    val existingSynapses = ArrayList<Synapse>()
+    var selfPairs = 0
+    val excludedTargets = Array(sourceNeurons.size) { i ->
+        val source = sourceNeurons[i]
+        val excluded = HashSet<Int>()
+        source.fanOut.values.forEach { synapse ->
+            targetIndices[synapse.target]?.let {
+                existingSynapses.add(synapse)
+                excluded.add(it)
+            }
+        }
         if (!selfConnectionAllowed) {
-            it.filter { (source, target) -> source != target }
-        } else {
-            it
+            targetIndices[source]?.let {
+                selfPairs++
+                excluded.add(it)
+            }
         }
+        excluded.toIntArray().apply { sort() }
     }
-    val connectionDensity = existingSynapses.size.toDouble() / possibleConnections.size
+
+    val possibleConnections = sourceNeurons.size.toLong() * targetNeurons.size - selfPairs
+    if (possibleConnections <= 0) {
+        return ConnectionsResult.Add(listOf())
+    }
+    val connectionDensity = existingSynapses.size.toDouble() / possibleConnections
     val sparsityDelta = sparsity - connectionDensity
 
+    val random = Random(Random.nextLong())
     if (sparsityDelta >= 0) {
-        val existingConnections = existingSynapses.map { it.source to it.target }.toSet()
-        val newConnectionCount = (sparsityDelta * possibleConnections.size).roundToInt()
-        val availableConnections = possibleConnections - existingConnections
-        val connectionsToAdd = availableConnections
-            .shuffled()
-            .take(newConnectionCount)
-            .map { (source, target) -> Synapse(source, target) }
+        val available = IntArray(sourceNeurons.size) { targetNeurons.size - excludedTargets[it].size }
+        val newConnectionCount = min((sparsityDelta * possibleConnections).roundToLong(), available.sumOf { it.toLong() })
+        val counts = sampleConnectionCounts(available, newConnectionCount, random)
+        val seeds = LongArray(sourceNeurons.size) { random.nextLong() }
+        val sampleTargets = { i: Int -> sampleTargetIndices(available[i], counts[i], excludedTargets[i], Random(seeds[i])) }
+        val targetsPerSource = if (newConnectionCount < PARALLEL_CONNECTION_THRESHOLD) {
+            List(sourceNeurons.size, sampleTargets)
+        } else {
+            runBlocking {
+                val chunkSize = max(1, sourceNeurons.size / (4 * Runtime.getRuntime().availableProcessors()))
+                sourceNeurons.indices.chunked(chunkSize).map { chunk ->
+                    async(Dispatchers.Default) { chunk.map(sampleTargets) }
+                }.awaitAll().flatten()
+            }
+        }
+        // Synapses are created on this thread since creating one registers it with its source and target neurons
+        val connectionsToAdd = ArrayList<Synapse>(newConnectionCount.toInt())
+        targetsPerSource.forEachIndexed { i, targets ->
+            targets.forEach { connectionsToAdd.add(Synapse(sourceNeurons[i], targetNeurons[it])) }
+        }
+        connectionsToAdd.shuffle(random)
         return ConnectionsResult.Add(connectionsToAdd)
     } else {
-        val numbersOfConnectionToRemove = -(sparsityDelta * possibleConnections.size).roundToInt()
-        val connectionsToRemove = existingSynapses.shuffled().take(numbersOfConnectionToRemove)
+        val numbersOfConnectionToRemove = -(sparsityDelta * possibleConnections).roundToInt()
+        val connectionsToRemove = existingSynapses.shuffled(random).take(numbersOfConnectionToRemove)
         return ConnectionsResult.Remove(connectionsToRemove)
     }
 }
 
+/**
+ * Below this many new connections, targets are sampled on the calling thread.
+ */
+private const val PARALLEL_CONNECTION_THRESHOLD = 100_000
+
+/**
+ * Decide how many of [total] new connections each source gets, given the number of targets available to each, so
+ * that every set of [total] available connections is equally likely.
+ *
+ * Each source gets a binomial count with probability total / sum(available). Since this gives a uniformly random set
+ * of connections of a random size, removing or adding uniformly chosen connections one at a time until the size is
+ * exactly [total] keeps it uniform. The number of corrections needed is on the order of the square root of [total].
+ */
+private fun sampleConnectionCounts(available: IntArray, total: Long, random: Random): IntArray {
+    val totalAvailable = available.sumOf { it.toLong() }
+    if (totalAvailable == 0L) {
+        return IntArray(available.size)
+    }
+    val p = total.toDouble() / totalAvailable
+    val counts = IntArray(available.size) { sampleBinomial(available[it], p, random) }
+    var sampled = counts.sumOf { it.toLong() }
+    while (sampled > total) {
+        // Remove a chosen connection, picking each with equal probability
+        var r = random.nextLong(sampled)
+        val i = counts.indices.first { r -= counts[it]; r < 0 }
+        counts[i]--
+        sampled--
+    }
+    while (sampled < total) {
+        // Add an unchosen connection, picking each with equal probability
+        var r = random.nextLong(totalAvailable - sampled)
+        val i = counts.indices.first { r -= available[it] - counts[it]; r < 0 }
+        counts[i]++
+        sampled++
+    }
+    return counts
+}
+
+/**
+ * Number of successes in [n] trials with probability [p], found by skipping ahead by geometrically distributed gaps,
+ * so it takes time proportional to the result rather than to [n].
+ */
+private fun sampleBinomial(n: Int, p: Double, random: Random): Int {
+    if (n == 0 || p <= 0) return 0
+    if (p >= 1) return n
+    val logQ = ln(1 - p)
+    var count = 0
+    var position = -1L
+    while (true) {
+        position += 1 + floor(ln(1 - random.nextDouble()) / logQ).toLong()
+        if (position >= n) return count
+        count++
+    }
+}
+
+/**
+ * Choose [count] distinct target indices among the [available] targets not in [excluded], using Floyd's algorithm so
+ * that only the chosen indices are stored. Returns target indices in increasing order.
+ */
+private fun sampleTargetIndices(available: Int, count: Int, excluded: IntArray, random: Random): IntArray {
+    if (count == 0) return IntArray(0)
+    val chosen = HashSet<Int>(count * 2)
+    for (j in available - count until available) {
+        val t = random.nextInt(j + 1)
+        chosen.add(if (t in chosen) j else t)
+    }
+    // Map the k'th available target to its index by skipping over excluded indices
+    val result = chosen.toIntArray().apply { sort() }
+    var skipped = 0
+    for (k in result.indices) {
+        var index = result[k] + skipped
+        while (skipped < excluded.size && excluded[skipped] <= index) {
+            skipped++
+            index++
+        }
+        result[k] = index
+    }
+    return result
+}
+
 fun createSparseSynapses(
     sourceNeurons: List<Neuron>,
     targetNeurons: List<Neuron>,
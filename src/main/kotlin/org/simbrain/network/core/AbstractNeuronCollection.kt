@@ -43,9 +43,7 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
 
     @get:Producible(arrayDescriptionMethod = "getLabelArray")
     override var activationArray: DoubleArray
-        get() = neuronList
-            .map { it.activation }
-            .toDoubleArray()
+        get() = DoubleArray(neuronList.size) { neuronList[it].activation }
         set(activations) {
             val size = min(activations.size, neuronList.size)
             for (i in 0 until size) {
@@ -59,17 +57,28 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
      */
     @get:Producible
     override val spikes: DoubleArray
-        get() = neuronList.map {
-            if ((it.dataHolder as? SpikingScalarData)?.spiked == true) 1.0 else 0.0
-        }.toDoubleArray()
+        get() = DoubleArray(neuronList.size) {
+            if ((neuronList[it].dataHolder as? SpikingScalarData)?.spiked == true) 1.0 else 0.0
+        }
 
-    override val inputs: Matrix get() = Matrix.column(inputArray)
+    /**
+     * The neurons' inputs as a new column vector.
+     */
+    override val inputs: Matrix
+        get() = Matrix.column(inputArray)
 
     /**
      * References to neurons in this collection
      */
     val neuronList: MutableList<Neuron> = ArrayList()
 
+    /**
+     * Structure version as of the last neuron added to or removed from [neuronList]. See [nextStructureVersion].
+     */
+    @Transient
+    var neuronListVersion = 0L
+        protected set
+
     /**
      * Space between neurons within a layer.
      */
@@ -86,9 +95,12 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
      */
     var layout: Layout = GridLayout()
 
+    /**
+     * The neurons' activations as a new column vector, so callers may keep it, e.g. as the activations of another
+     * layer.
+     */
     override val activations: Matrix
-        get() = // TODO: Performance drain? Consider caching this.
-            Matrix.column(this.activationArray)
+        get() = Matrix.column(activationArray)
 
     override fun addInputs(inputs: Matrix) {
         addInputs(inputs.col(0))
@@ -112,27 +124,16 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
         for (i in 0 until size) {
             neuronList[i].addInputValue(inputs[i])
         }
-        invalidateCachedInputs()
     }
 
-    private var cachedInputsDirty = true
-    private var _cachedInputs = DoubleArray(0)
-
     /**
-     * Return inputs as a double array. Either create the array or return a cache of it.
+     * Return inputs as a double array.
      */
     @get:Producible
     val inputArray: DoubleArray
-        get() {
-            if (cachedInputsDirty) {
-                _cachedInputs = neuronList
-                    .map { it.input }
-                    .toDoubleArray()
-            }
-            return _cachedInputs
-        }
+        get() = DoubleArray(neuronList.size) { neuronList[it].input }
 
-    override val size: Int get() = activationArray.size
+    override val size: Int get() = neuronList.size
 
     /**
      * Get the central x coordinate of this group, based on the positions of the neurons that comprise it.
@@ -197,6 +198,7 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
      */
     protected open fun addNeuron(neuron: Neuron) {
         neuronList.add(neuron)
+        neuronListVersion = nextStructureVersion()
         addListener(neuron)
     }
 
@@ -213,9 +215,13 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
     protected fun addListener(n: Neuron) {
         n.events.locationChanged.on { events.locationChanged.fire() }
         // n.getEvents().onLocationChange(fireLocationChange); // TODO Reimplement when debounce is working
-        n.events.deleted.on { neuronList.remove(it) }
+        n.events.deleted.on {
+            neuronList.remove(it)
+            neuronListVersion = nextStructureVersion()
+        }
         n.events.deleted.on { neuron ->
             neuronList.remove(neuron)
+            neuronListVersion = nextStructureVersion()
             if (isEmpty) {
                 delete()
             }
@@ -224,10 +230,12 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
 
     fun removeNeuron(neuron: Neuron?) {
         neuronList.remove(neuron)
+        neuronListVersion = nextStructureVersion()
     }
 
     fun removeAllNeurons() {
         neuronList.clear()
+        neuronListVersion = nextStructureVersion()
     }
 
     /**
@@ -332,11 +340,13 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
         // }
         // inputManager.applyCurrentRow(); // TODO
         super.accumulateInputs()
-        val wtdInputs = DoubleArray(size)
         for (c in incomingConnectors) {
-            wtdInputs.addi(c.getSummedPSRs())
+            c.forEachSummedPSR { i, sum ->
+                if (i < neuronList.size) {
+                    neuronList[i].addInputValue(sum)
+                }
+            }
         }
-        addInputs(wtdInputs)
     }
 
     var isAllClamped: Boolean
@@ -426,10 +436,6 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
      */
     fun getNeuronByLabel(label: String?) = neuronList.firstOrNull { it.label.equals(label, ignoreCase = true) }
 
-    protected fun invalidateCachedInputs() {
-        cachedInputsDirty = true
-    }
-
     /**
      * Returns an array of labels, one for each neuron this group.
      * Called by reflection for some coupling related events.
@@ -469,6 +475,7 @@ abstract class AbstractNeuronCollection : Layer(), CopyableObject {
 
     override fun clear() {
         neuronList.forEach { it.clear() }
+        history?.clear()
     }
 
     override fun increment() {
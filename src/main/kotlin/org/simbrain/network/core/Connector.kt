@@ -44,6 +44,21 @@ abstract class Connector(var source: Layer, var target: Layer) : NetworkModel(),
         return psrMatrix.rowSums()
     }
 
+    /**
+     * Calls [action] with the index and sum of each row of the psr matrix. Same values as [getSummedPSRs], without
+     * allocating an array, for layers that add them straight to their inputs.
+     */
+    inline fun forEachSummedPSR(action: (row: Int, sum: Double) -> Unit) {
+        val psrs = psrMatrix
+        for (i in 0 until psrs.nrow()) {
+            var sum = 0.0
+            for (j in 0 until psrs.ncol()) {
+                sum += psrs[i, j]
+            }
+            action(i, sum)
+        }
+    }
+
     context(Network)
     abstract fun updatePSR()
 
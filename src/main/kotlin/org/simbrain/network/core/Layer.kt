@@ -1,12 +1,15 @@
 package org.simbrain.network.core
 
 import org.simbrain.network.events.LocationEvents
+import org.simbrain.util.RandomStreams
+import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toDoubleArray
 import org.simbrain.workspace.AttributeContainer
 import org.simbrain.workspace.Producible
 import smile.math.matrix.Matrix
 import java.awt.geom.Point2D
 import java.awt.geom.Rectangle2D
+import kotlin.random.Random
 
 /**
  * Superclass for network models involved in, roughly speaking, array based computations. Simbrain layers are connected
@@ -128,6 +131,70 @@ abstract class Layer : LocatableModel(), AttributeContainer {
      */
     abstract val bound: Rectangle2D
 
+    /**
+     * Buffer [sampleNoise] fills, reused from update to update.
+     */
+    @Transient
+    private var noiseBuffer: DoubleArray? = null
+
+    @Transient
+    private var noiseRandom: Random? = null
+
+    /**
+     * The streams [noiseRandom] was taken from, so that a new stream is taken when the network's seed changes.
+     */
+    @Transient
+    private var noiseRandomSource: RandomStreams? = null
+
+    /**
+     * This layer's random stream for noise, derived from the network's seed. See [Network.randomStreamsFor].
+     */
+    context(Network)
+    val noiseStream: Random
+        get() {
+            if (noiseRandomSource !== randomStreams) {
+                noiseRandomSource = randomStreams
+                noiseRandom = randomStreamsFor(this@Layer).stream(NOISE_STREAM_KEY)
+            }
+            return noiseRandom!!
+        }
+
+    /**
+     * One sample of noise per neuron from [distribution], drawn in bulk from [noiseStream] into a buffer owned by this
+     * layer. The buffer is overwritten on the next call, so use the values before updating again.
+     */
+    context(Network)
+    fun sampleNoise(distribution: ProbabilityDistribution): DoubleArray {
+        val buffer = noiseBuffer?.takeIf { it.size == size } ?: DoubleArray(size).also { noiseBuffer = it }
+        distribution.sampleDouble(noiseStream, buffer)
+        return buffer
+    }
+
+    /**
+     * Recent activations and spikes of this layer, shared by all outgoing connectors with delays. Created by the first
+     * of them to read it.
+     */
+    @Transient
+    protected var history: SignalHistory? = null
+
+    /**
+     * This layer's history, holding at least [maxDelay] steps and recorded up to the current time.
+     */
+    context(Network)
+    fun history(maxDelay: Int): SignalHistory {
+        val history = this.history?.takeIf { it.width == size } ?: SignalHistory(size) { activations, spikes, offset ->
+            val current = this.activations
+            val spiked = this.spikes
+            for (i in 0 until size) {
+                activations[offset + i] = current[i, 0]
+                spikes[offset + i] = spiked[i] > 0
+            }
+        }.also { this.history = it }
+        history.ensureDelay(maxDelay)
+        history.update()
+        return history
+    }
+
     fun addIncomingConnector(connector: Connector) {
         incomingConnectors.add(connector)
     }
@@ -161,3 +228,8 @@ abstract class Layer : LocatableModel(), AttributeContainer {
             events.locationChanged.fire()
         }
 }
+
+/**
+ * Key of a layer's noise stream within its streams.
+ */
+private const val NOISE_STREAM_KEY = 1L
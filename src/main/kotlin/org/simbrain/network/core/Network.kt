@@ -8,6 +8,7 @@ import org.simbrain.network.gui.PlacementManager
 import org.simbrain.network.gui.dialogs.NetworkPreferences
 import org.simbrain.network.neurongroups.NeuronGroup
 import org.simbrain.network.subnetworks.Subnetwork
+import org.simbrain.util.RandomStreams
 import org.simbrain.util.SimpleIdManager
 import org.simbrain.util.UserParameter
 import org.simbrain.util.math.SimbrainMath
@@ -15,12 +16,14 @@ import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.NormalDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
+import org.simbrain.util.streamKey
 import org.simbrain.workspace.updater.PerformanceMonitor
 import org.simbrain.workspace.updater.UpdateAction
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.math.abs
 import kotlin.math.ceil
 import kotlin.math.ln
+import kotlin.math.max
 import kotlin.random.Random
 
 /**
@@ -126,6 +129,105 @@ class Network: CoroutineScope, EditableObject {
     @Transient
     var placementManager = PlacementManager()
 
+    /**
+     * Cached views of [networkModels]. See [Indexes].
+     */
+    @Transient
+    private var indexes = Indexes()
+
+    /**
+     * The highest structure version among this network's models, its subnetworks' models, and the members of its
+     * neuron and synapse groups. It goes up when any of them gains or loses a member and stays the same otherwise.
+     * See [nextStructureVersion].
+     */
+    private val structureVersion: Long
+        get() {
+            var version = networkModels.version
+            networkModels.get<NeuronGroup>().forEach { version = max(version, it.neuronListVersion) }
+            networkModels.get<SynapseGroup>().forEach { version = max(version, it.synapseListVersion) }
+            for (subnetwork in networkModels.get<Subnetwork>()) {
+                version = max(version, subnetwork.modelList.version)
+                subnetwork.modelList.get<NeuronGroup>().forEach { version = max(version, it.neuronListVersion) }
+                subnetwork.modelList.get<SynapseGroup>().forEach { version = max(version, it.synapseListVersion) }
+            }
+            return version
+        }
+
+    /**
+     * Lists and lookup tables derived from [networkModels]. Each is rebuilt the first time it is read after the
+     * models it is drawn from have changed, so reading it again in between costs only a version check. The lists are
+     * never modified once built, so a list that was read stays valid to iterate while models are added or removed.
+     */
+    private inner class Indexes {
+
+        val flatNeurons = VersionedCache({ structureVersion }) {
+            sequence {
+                yieldAll(networkModels.get<Neuron>())
+                for (neuronGroup in networkModels.get<NeuronGroup>()) {
+                    yieldAll(neuronGroup.neuronList)
+                }
+                for (subnetwork in networkModels.get<Subnetwork>()) {
+                    yieldAll(subnetwork.modelList.get<NeuronGroup>().flatMap { it.neuronList })
+                }
+            }.toList()
+        }
+
+        val flatSynapses = VersionedCache({ structureVersion }) {
+            sequence {
+                yieldAll(networkModels.get<Synapse>())
+                yieldAll(networkModels.get<SynapseGroup>().flatMap { sg -> sg.synapses })
+                yieldAll(networkModels.get<Subnetwork>().flatMap { subnetwork ->
+                    subnetwork.modelList.get<SynapseGroup>().flatMap { it.synapses }
+                })
+            }.toList()
+        }
+
+        val flatNeuronGroups = VersionedCache({ structureVersion }) {
+            sequence {
+                yieldAll(networkModels.get<NeuronGroup>())
+                yieldAll(networkModels.get<Subnetwork>().flatMap { it.modelList.get<NeuronGroup>() })
+            }.toList()
+        }
+
+        val flatSynapseGroups = VersionedCache({ structureVersion }) {
+            sequence {
+                yieldAll(networkModels.get<SynapseGroup>())
+                yieldAll(networkModels.get<Subnetwork>().flatMap { it.modelList.get<SynapseGroup>() })
+            }.toList()
+        }
+
+        val flatWeightMatrices = VersionedCache({ structureVersion }) {
+            sequence {
+                yieldAll(networkModels.get<WeightMatrix>())
+                yieldAll(networkModels.get<Subnetwork>().flatMap { it.modelList.get<WeightMatrix>() })
+            }.toList()
+        }
+
+        /**
+         * Top-level models by lower-cased id. Where ids clash the first model keeps the entry.
+         */
+        val modelsById = VersionedCache({ networkModels.version }) {
+            HashMap<String, NetworkModel>().also { map ->
+                networkModels.all.forEach { model -> model.id?.let { map.putIfAbsent(it.lowercase(), model) } }
+            }
+        }
+
+        /**
+         * See [updateAllButNeurons].
+         */
+        val allButNeurons = VersionedCache({ networkModels.version }) {
+            listOf(
+                NeuronGroup::class.java,
+                NeuronCollection::class.java,
+                NeuronArray::class.java,
+                Connector::class.java,
+                SynapseGroup::class.java,
+                Subnetwork::class.java,
+                Synapse::class.java
+            ).flatMap { networkModels[it] }
+        }
+    }
+
     /**
      * Returns a linked hash set of models of the specified type.
      */
@@ -136,6 +238,13 @@ class Network: CoroutineScope, EditableObject {
      */
     inline fun <reified T : NetworkModel> getModels() = getModels(T::class.java)
 
+    /**
+     * Returns the top-level model whose id matches [id], ignoring case, or null if there is none. Uses an index that
+     * is rebuilt when models are added or removed.
+     */
+    fun findModelById(id: String): NetworkModel? =
+        indexes.modelsById.value[id.lowercase()]?.takeIf { it.id.equals(id, ignoreCase = true) }
+
     /**
      * Returns a flattened list of all network models.
      */
@@ -151,12 +260,31 @@ class Network: CoroutineScope, EditableObject {
         set(value) {
             field = value
             random = Random(value)
+            randomStreams = RandomStreams(value)
         }
 
     @Transient
     var random = Random(randomSeed)
         private set
 
+    /**
+     * Independent random streams rooted at [randomSeed], for work that is split across models, chunks or threads.
+     * Unlike [random], a stream gives the same numbers however the work is scheduled. See [randomStreamsFor].
+     *
+     * Currently used for layer noise, the chunks of batched backprop and truncated BPTT, and RBM sampling.
+     * Randomizers (e.g. [ProbabilityDistribution.sampleDouble] with no arguments) still use
+     * the generator of their distribution, which can be seeded separately.
+     */
+    @Transient
+    var randomStreams = RandomStreams(randomSeed)
+        private set
+
+    /**
+     * Random streams for one model, keyed by its id so that the model gets the same numbers in a copy of this network
+     * or after it is saved and reopened. See [streamKey].
+     */
+    fun randomStreamsFor(model: NetworkModel) = randomStreams.split(streamKey(model.id ?: ""))
+
     private var shouldUpdateTimeType = true
 
     private fun updateInternal(name: String) {
@@ -219,20 +347,10 @@ class Network: CoroutineScope, EditableObject {
      */
     fun updateAllButNeurons() {
         // TODO: Temporary function until we create a generalized priority based update
-        listOf(
-            NeuronGroup::class.java,
-            NeuronCollection::class.java,
-            NeuronArray::class.java,
-            Connector::class.java,
-            SynapseGroup::class.java,
-            Subnetwork::class.java,
-            Synapse::class.java
-        )
-            .flatMap { networkModels[it] }
-            .forEach {nm ->
-                nm.accumulateInputs()
-                nm.update()
-            }
+        indexes.allButNeurons.value.forEach { nm ->
+            nm.accumulateInputs()
+            nm.update()
+        }
     }
 
     /**
@@ -255,61 +373,40 @@ class Network: CoroutineScope, EditableObject {
     val freeSynapses get() = networkModels.get<Synapse>()
 
     /**
-     * Create "flat" list of neurons, which includes the top-level neurons plus all group neurons.
+     * Create "flat" list of neurons, which includes the top-level neurons plus all group neurons. Cached until neurons
+     * are added or removed.
      *
      * @return the flat list
      */
     val flatNeuronList: List<Neuron>
-        get() = sequence {
-            yieldAll(networkModels.get<Neuron>())
-            for (neuronGroup in networkModels.get<NeuronGroup>()) {
-                yieldAll(neuronGroup.neuronList)
-            }
-            for (subnetwork in networkModels.get<Subnetwork>()) {
-                yieldAll(subnetwork.modelList.get<NeuronGroup>().flatMap { it.neuronList })
-            }
-        }.toList()
+        get() = indexes.flatNeurons.value
 
     /**
-     * Create "flat" list of synapses, which includes the top-level synapses plus all subnet synapses.
+     * Create "flat" list of synapses, which includes the top-level synapses plus all subnet synapses. Cached until
+     * synapses are added or removed.
      *
      * @return the flat list
      */
     val flatSynapseList: List<Synapse>
-        get() = sequence {
-            yieldAll(networkModels.get<Synapse>())
-            yieldAll(networkModels.get<SynapseGroup>().flatMap { sg -> sg.synapses })
-            yieldAll(networkModels.get<Subnetwork>().flatMap { subnetwork ->
-                subnetwork.modelList.get<SynapseGroup>().flatMap { it.synapses }
-            })
-        }.toList()
+        get() = indexes.flatSynapses.value
 
     /**
      * Returns a list of all neuron groups including those in subnetworks.
      */
     val flatNeuronGroupList: List<NeuronGroup>
-        get() = sequence {
-            yieldAll(networkModels.get<NeuronGroup>())
-            yieldAll(networkModels.get<Subnetwork>().flatMap { it.modelList.get() })
-        }.toList()
+        get() = indexes.flatNeuronGroups.value
 
     /**
      * Returns a list of all synapse groups including those in subnetworks.
      */
     val flatSynapseGroupList: List<SynapseGroup>
-        get() = sequence {
-            yieldAll(networkModels.get<SynapseGroup>())
-            yieldAll(networkModels.get<Subnetwork>().flatMap { it.modelList.get() })
-        }.toList()
+        get() = indexes.flatSynapseGroups.value
 
     /**
      * Returns a list of all weight matrices including those in subnetworks.
      */
     val flatWeightMatrixList: List<WeightMatrix>
-        get() = sequence {
-            yieldAll(networkModels.get<WeightMatrix>())
-            yieldAll(networkModels.get<Subnetwork>().flatMap { it.modelList.get() })
-        }.toList()
+        get() = indexes.flatWeightMatrices.value
 
     private fun assignId(model: NetworkModel) {
         model.id = idManager.getAndIncrementId(model.javaClass)
@@ -325,7 +422,18 @@ class Network: CoroutineScope, EditableObject {
      * For best results call with `?.await()` when possible.
      */
     @JvmOverloads
-    fun addNetworkModel(model: NetworkModel, usePlacementManager: Boolean = true): Deferred<Boolean>? {
+    fun addNetworkModel(model: NetworkModel, usePlacementManager: Boolean = true): Deferred<Boolean>? =
+        addNetworkModel(model, usePlacementManager, updatePriorities = true)
+
+    /**
+     * Add a model, optionally without re-sorting the priority list, which is worth skipping when many neurons are
+     * added at once.
+     */
+    private fun addNetworkModel(
+        model: NetworkModel,
+        usePlacementManager: Boolean,
+        updatePriorities: Boolean
+    ): Deferred<Boolean>? {
         if (model.shouldAdd()) {
             assignId(model)
             networkModels.add(model)
@@ -343,7 +451,9 @@ class Network: CoroutineScope, EditableObject {
                     updatePriorityList()
                 }
                 model.events.updateRuleChanged.on { _, _ -> shouldUpdateTimeType = true }
-                updatePriorityList()
+                if (updatePriorities) {
+                    updatePriorityList()
+                }
             }
             return deferred
         }
@@ -364,11 +474,35 @@ class Network: CoroutineScope, EditableObject {
     }
 
     /**
-     * Returns a copy of this network based on its xml rep.
+     * Returns a deep copy of this network. Models are copied in memory by [NetworkCopier]. If the network contains
+     * models or update actions it cannot copy, the copy is made from the network's xml representation instead.
      *
      * @return the copied network.
      */
     fun copy(): Network {
+        val context = NetworkCopyContext()
+        val models = NetworkCopier.copyModels(modelsInReconstructionOrder, context) ?: return copyFromXml()
+        val copy = Network()
+        val actions = updateManager.actionList.map {
+            NetworkCopier.copyUpdateAction(it, copy, context) ?: return copyFromXml()
+        }
+        copy.time = time
+        copy.timeStep = timeStep
+        copy.timeType = timeType
+        copy.randomSeed = randomSeed
+        copy.shouldUpdateTimeType = shouldUpdateTimeType
+        models.forEach { copy.addNetworkModel(it, usePlacementManager = false, updatePriorities = false) }
+        context.copyIds()
+        copy.updatePriorityList()
+        copy.updateManager.clear()
+        actions.forEach { copy.updateManager.addAction(it) }
+        return copy
+    }
+
+    /**
+     * Returns a copy of this network based on its xml rep.
+     */
+    private fun copyFromXml(): Network {
         val xmlRepresentation = getNetworkXStream().toXML(this)
         return getNetworkXStream().fromXML(xmlRepresentation) as Network
     }
@@ -383,6 +517,10 @@ class Network: CoroutineScope, EditableObject {
         coroutineContext = Dispatchers.Default + job
 
         placementManager = PlacementManager()
+        indexes = Indexes()
+
+        random = Random(randomSeed)
+        randomStreams = RandomStreams(randomSeed)
 
         events = NetworkEvents()
         updateCompleted = AtomicBoolean(false)
@@ -546,4 +684,28 @@ class Network: CoroutineScope, EditableObject {
         var biasesRandomizer: ProbabilityDistribution = NormalDistribution(0.0, 0.01)
     }
 
-}
\ No newline at end of file
+}
+
+/**
+ * A value built from a network's models, rebuilt by [build] only when [version] has changed since it was last built.
+ *
+ * The value and the version it was built at are published together, so a thread never sees a value paired with the
+ * wrong version. Threads that find it out of date at the same time may each build it; the last one built is kept.
+ */
+private class VersionedCache<T>(private val version: () -> Long, private val build: () -> T) {
+
+    private class Entry<T>(val builtAt: Long, val value: T)
+
+    @Volatile
+    private var entry: Entry<T>? = null
+
+    val value: T
+        get() {
+            val current = version()
+            val entry = entry
+            if (entry != null && entry.builtAt == current) {
+                return entry.value
+            }
+            return Entry(current, build()).also { this.entry = it }.value
+        }
+}
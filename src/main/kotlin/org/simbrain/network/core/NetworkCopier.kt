@@ -0,0 +1,201 @@
+package org.simbrain.network.core
+
+import com.thoughtworks.xstream.XStream
+import org.simbrain.network.neurongroups.*
+import org.simbrain.network.subnetworks.Subnetwork
+import org.simbrain.network.update_actions.BufferedUpdate
+import org.simbrain.network.update_actions.PriorityUpdate
+import org.simbrain.network.update_actions.UpdateNetworkModel
+import org.simbrain.util.copyFrom
+import org.simbrain.workspace.updater.UpdateAction
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Copies one type of [NetworkModel] when a network is copied. The copy must not refer to any model of the original
+ * network. Models the original refers to (e.g. the source and target of a synapse) have already been copied when
+ * the copier is called, and their copies are found using [NetworkCopyContext.get].
+ *
+ * Register copiers for custom model types with [NetworkCopier.register].
+ */
+fun interface NetworkModelCopier<T : NetworkModel> {
+    fun copy(model: T, context: NetworkCopyContext): T
+}
+
+/**
+ * Identity map from the models of a network being copied to their copies.
+ */
+class NetworkCopyContext internal constructor() {
+
+    private val copies = IdentityHashMap<NetworkModel, NetworkModel>()
+
+    /**
+     * Xstream used for models that have no registered copier. Created once per copy since it is expensive to set up.
+     */
+    internal val xstream: XStream by lazy { getNetworkXStream() }
+
+    /**
+     * Returns the copy of a model that has already been copied.
+     */
+    @Suppress("UNCHECKED_CAST")
+    operator fun <T : NetworkModel> get(original: T): T = copies[original] as T?
+        ?: throw IllegalStateException("${original.displayName} has not been copied yet")
+
+    /**
+     * Record the copy of a model, along with the copies of the neurons, synapses and models it contains.
+     */
+    fun put(original: NetworkModel, copy: NetworkModel) {
+        copies[original] = copy
+        when (original) {
+            is AbstractNeuronCollection -> original.neuronList.zip((copy as AbstractNeuronCollection).neuronList)
+                .forEach { (o, c) -> copies[o] = c }
+            is SynapseGroup -> original.synapses.zip((copy as SynapseGroup).synapses)
+                .forEach { (o, c) -> copies[o] = c }
+            is Subnetwork -> {
+                // Subnetworks are copied through xstream, which keeps ids, so contents are matched by id. Lists keep
+                // their order through xstream, so models without an id are matched by position.
+                val contentCopies = (copy as Subnetwork).modelList.all
+                val copiesById = contentCopies.filter { it.id != null }.associateBy { it.id }
+                original.modelList.all.forEachIndexed { i, o ->
+                    val c = o.id?.let { copiesById[it] } ?: contentCopies.getOrNull(i)
+                    if (c != null && c.javaClass == o.javaClass) {
+                        put(o, c)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Give every copy the id of its original, as when a network is deserialized.
+     */
+    internal fun copyIds() {
+        copies.forEach { (original, copy) -> copy.id = original.id }
+    }
+}
+
+/**
+ * Structural copying of networks, used by [Network.copy]. Models are copied in memory using the copier registered
+ * for their class, with references between them remapped through a [NetworkCopyContext], which is much faster than
+ * going through xml.
+ *
+ * Subnetworks, neuron groups, neuron arrays and text objects with no registered copier are self-contained, so they
+ * are copied individually through xstream. For any other model without a copier [copyModels] gives up and the
+ * whole network is copied through xstream.
+ */
+object NetworkCopier {
+
+    private val copiers: MutableMap<Class<*>, NetworkModelCopier<*>> = ConcurrentHashMap()
+
+    /**
+     * Register a copier for models of exactly the class [cls]. Replaces any copier registered for that class.
+     */
+    fun <T : NetworkModel> register(cls: Class<T>, copier: NetworkModelCopier<T>) {
+        copiers[cls] = copier
+    }
+
+    inline fun <reified T : NetworkModel> register(copier: NetworkModelCopier<T>) = register(T::class.java, copier)
+
+    init {
+        register<Neuron> { neuron, _ -> Neuron(neuron) }
+        register<Synapse> { synapse, context -> copySynapse(synapse, context[synapse.source], context[synapse.target]) }
+        register<NeuronCollection> { collection, context ->
+            NeuronCollection(collection.neuronList.map { context[it] }).also { it.label = collection.label }
+        }
+        register<NeuronArray> { array, _ ->
+            array.copy().also {
+                it.label = array.label
+                it.increment = array.increment
+                it.isClamped = array.isClamped
+                it.isShowBias = array.isShowBias
+                it.isRenderActivations = array.isRenderActivations
+            }
+        }
+        register<WeightMatrix> { wm, context ->
+            WeightMatrix(context[wm.source], context[wm.target]).also {
+                it.label = wm.label
+                it.increment = wm.increment
+                it.isShowWeights = wm.isShowWeights
+                it.learningRule = wm.learningRule.copy()
+                it.learningRuleData = wm.learningRuleData.copy()
+                it.spikeResponder = wm.spikeResponder.copy()
+                it.spikeResponseData = wm.spikeResponseData.copy()
+                it.weightMatrix.copyFrom(wm.weightMatrix)
+                it.psrMatrix.copyFrom(wm.psrMatrix)
+                wm.delays?.forEachIndexed { index, delay ->
+                    it.setDelay(index / wm.weightMatrix.ncol(), index % wm.weightMatrix.ncol(), delay)
+                }
+            }
+        }
+        register<SynapseGroup> { sg, context ->
+            val synapses = sg.synapses.map { copySynapse(it, context[it.source], context[it.target]) }
+            SynapseGroup(context[sg.source], context[sg.target], sg.connectionStrategy.copy(), synapses.toMutableList())
+                .also {
+                    it.label = sg.label
+                    it.displaySynapses = sg.displaySynapses
+                }
+        }
+        register<NetworkTextObject> { text, _ -> NetworkTextObject(text) }
+
+        // Neuron group subclasses copy their own parameters
+        listOf(
+            NeuronGroup::class.java,
+            CompetitiveGroup::class.java,
+            EventDrivenLIFGroup::class.java,
+            KWTA::class.java,
+            SOMGroup::class.java,
+            SoftmaxGroup::class.java,
+            WinnerTakeAll::class.java
+        ).forEach { cls ->
+            copiers[cls] = NetworkModelCopier<NeuronGroup> { group, _ ->
+                (group.copy() as NeuronGroup).also { it.label = group.label }
+            }
+        }
+    }
+
+    private fun copySynapse(synapse: Synapse, source: Neuron, target: Neuron) = Synapse(source, target, synapse).also {
+        it.label = synapse.label
+        it.learningRuleData = synapse.learningRuleData.copy()
+    }
+
+    /**
+     * Models that do not refer to models outside themselves and so can be copied on their own.
+     */
+    private fun isSelfContained(model: NetworkModel) =
+        model is Subnetwork || model is NeuronGroup || model is ArrayLayer || model is NetworkTextObject
+
+    /**
+     * Returns copies of [models], which should be all the models of one network, with references between them
+     * remapped to the copies. Returns null if a model has no registered copier and cannot be copied on its own.
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun copyModels(models: List<NetworkModel>, context: NetworkCopyContext): List<NetworkModel>? {
+        if (models.any { it.javaClass !in copiers && !isSelfContained(it) }) {
+            return null
+        }
+        // Models containing neurons and layers come first, since connections to them can be made from anywhere,
+        // including from a subnetwork's layers to a top level one
+        val (nodes, connections) = models.partition {
+            it !is Synapse && it !is SynapseGroup && it !is Connector && it !is NeuronCollection
+        }
+        return (nodes + connections).map { model ->
+            val copier = copiers[model.javaClass] as NetworkModelCopier<NetworkModel>?
+            val copy = copier?.copy(model, context)
+                ?: context.xstream.fromXML(context.xstream.toXML(model)) as NetworkModel
+            context.put(model, copy)
+            copy
+        }
+    }
+
+    /**
+     * Returns a copy of one of the default update actions for the copied network, or null if the action is
+     * of another type.
+     */
+    fun copyUpdateAction(action: UpdateAction, network: Network, context: NetworkCopyContext): UpdateAction? =
+        when (action) {
+            is BufferedUpdate -> BufferedUpdate(network)
+            is PriorityUpdate -> PriorityUpdate(network)
+            is UpdateNetworkModel -> UpdateNetworkModel(context[action.networkModel], network)
+            else -> null
+        }
+}
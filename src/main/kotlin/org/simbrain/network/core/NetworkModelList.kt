@@ -9,6 +9,7 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter
 import org.simbrain.network.subnetworks.Subnetwork
 import org.simbrain.util.CachedObject
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * The main data structure for [NetworkModel]s. Wraps a map from classes to ordered sets of those objects.
@@ -24,9 +25,16 @@ class NetworkModelList {
     @XStreamImplicit
     private val networkModels: MutableMap<Class<out NetworkModel>, LinkedHashSet<NetworkModel>?> = ConcurrentHashMap()
 
+    /**
+     * Structure version as of the last model added or removed. See [nextStructureVersion].
+     */
+    var version = 0L
+        private set
+
     @Suppress("UNCHECKED_CAST")
     fun <T : NetworkModel> put(modelClass: Class<T>, model: T) {
         allInUpdatingOrderCache.invalidate()
+        version = nextStructureVersion()
         if (modelClass in networkModels) {
             networkModels[modelClass]!!.add(model)
         } else {
@@ -42,6 +50,7 @@ class NetworkModelList {
      */
     fun putUnsafe(modelClass: Class<out NetworkModel>, model: NetworkModel) {
         allInUpdatingOrderCache.invalidate()
+        version = nextStructureVersion()
         if (modelClass in networkModels) {
             networkModels[modelClass]!!.add(model)
         } else {
@@ -110,6 +119,7 @@ class NetworkModelList {
 
     fun remove(model: NetworkModel) {
         allInUpdatingOrderCache.invalidate()
+        version = nextStructureVersion()
         if (model is Subnetwork) {
             // Forces all subclasses of subnetwork to be grouped with the subnetwork class
             networkModels[Subnetwork::class.java]?.remove(model)
@@ -126,6 +136,18 @@ class NetworkModelList {
     val size get() = networkModels.values.sumBy { it?.size ?: 0 }
 }
 
+/**
+ * Counter behind [nextStructureVersion].
+ */
+private val structureVersions = AtomicLong()
+
+/**
+ * A new structure version, higher than every version handed out before. Model lists, neuron collections and synapse
+ * groups take one whenever their members change, so the highest version among the parts of a network only ever goes
+ * up as its structure changes. [Network] compares it to tell when its flattened lists need rebuilding.
+ */
+fun nextStructureVersion() = structureVersions.incrementAndGet()
+
 /**
  * Custom serializer that stores [Network.networkModels], which is a map, as a flat list of [NetworkModel]s.
  */
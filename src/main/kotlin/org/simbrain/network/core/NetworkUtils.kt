@@ -81,15 +81,19 @@ fun Network.getNeuronByLabel(label: String): Neuron = flatNeuronList.first {
  * Returns a network model with a matching id.  If more than one
  * model has a matching id, the first found is returned.
  */
-inline fun <reified T: NetworkModel> Network.getModelById(id: String): T = getModels<T>().first {
-    it.id.equals(id, ignoreCase = true)
-}
+inline fun <reified T: NetworkModel> Network.getModelById(id: String): T = getModelById(T::class.java, id)
 
 /**
- * Version of getModelById that works in Java.
+ * Version of getModelById that works in Java. Looks the id up in the network's index (see [Network.findModelById]),
+ * falling back to a search of the models of the given type.
  */
-fun <T: NetworkModel> Network.getModelById(clazz: Class<T>, id: String): T = getModels(clazz).first {
-    it.id.equals(id, ignoreCase = true)
+fun <T: NetworkModel> Network.getModelById(clazz: Class<T>, id: String): T {
+    val models = getModels(clazz)
+    val indexed = findModelById(id)
+    if (clazz.isInstance(indexed) && clazz.cast(indexed) in models) {
+        return clazz.cast(indexed)
+    }
+    return models.first { it.id.equals(id, ignoreCase = true) }
 }
 
 /**
@@ -66,8 +66,13 @@ class Neuron : LocatableModel, EditableObject, AttributeContainer {
         clamped = n.clamped
         increment = n.increment
         activation = n.activation
+        input = n.input
+        _isSpike = n._isSpike
         x = n.x
         y = n.y
+        z = n.z
+        polarity = n.polarity
+        auxValue = n.auxValue
         label = n.label
     }
 
@@ -160,6 +165,27 @@ class Neuron : LocatableModel, EditableObject, AttributeContainer {
     var fanIn: ArrayList<Synapse> = ArrayList()
         private set
 
+    /**
+     * Recent activations and spikes of this neuron, shared by all outgoing synapses with a delay. Created by the
+     * first of them to read it.
+     */
+    @Transient
+    private var history: SignalHistory? = null
+
+    /**
+     * This neuron's history, holding at least [maxDelay] steps and recorded up to the current time.
+     */
+    context(Network)
+    fun history(maxDelay: Int): SignalHistory {
+        val history = this.history ?: SignalHistory(1) { activations, spikes, offset ->
+            activations[offset] = activation
+            spikes[offset] = _isSpike
+        }.also { this.history = it }
+        history.ensureDelay(maxDelay)
+        history.update()
+        return history
+    }
+
     /**
      * Central x-coordinate of this neuron in 2-space.
      */
@@ -508,6 +534,7 @@ class Neuron : LocatableModel, EditableObject, AttributeContainer {
         input = 0.0
         activation = 0.0
         updateRule.clear(this)
+        history?.clear()
     }
 
     fun clearInput() {
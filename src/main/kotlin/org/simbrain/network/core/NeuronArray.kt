@@ -8,7 +8,6 @@ import org.simbrain.network.util.MatrixDataHolder
 import org.simbrain.network.util.ScalarDataHolder
 import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.util.*
-import org.simbrain.util.math.SimbrainMath
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.propertyeditor.GuiEditable
 import org.simbrain.util.stats.ProbabilityDistribution
@@ -117,12 +116,14 @@ class NeuronArray(inputSize: Int) : ArrayLayer(inputSize), EditableObject, Attri
      * @param newParent the new parent network
      * @return the deep copy
      */
+    @Suppress("UNCHECKED_CAST")
     fun copy(): NeuronArray {
         val copy = NeuronArray(size)
         copy.location = location
         copy.gridMode = gridMode
         copy.activations.copyFrom(activations)
-        copy.updateRule = updateRule
+        copy.inputs.copyFrom(inputs)
+        copy.updateRule = updateRule.copy() as NeuronUpdateRule<ScalarDataHolder, MatrixDataHolder>
         copy.dataHolder = dataHolder.copy()
         return copy
     }
@@ -231,6 +232,7 @@ class NeuronArray(inputSize: Int) : ArrayLayer(inputSize), EditableObject, Attri
 
     override fun clear() {
         activations.mul(0.0)
+        history?.clear()
         events.updated.fire()
     }
 
@@ -254,26 +256,32 @@ class NeuronArray(inputSize: Int) : ArrayLayer(inputSize), EditableObject, Attri
     }
 
     /**
-     * For each incoming psr matrix, filter out entries that correspond to excitatory synapses and return the sum of those for
-     * each row (i.e. a vector of excitatory inputs; summed PSRs for each “dendrite”).
+     * For each incoming weight matrix, sum the entries of its psr matrix that correspond to excitatory synapses for
+     * each row (i.e. a vector of excitatory inputs; summed PSRs for each “dendrite”). The split is computed by
+     * [WeightMatrix.updatePSR], so this just adds up the per-matrix sums.
      */
     val excitatoryInputs: DoubleArray
-        get() = incomingConnectors
-            .filterIsInstance<WeightMatrix>()
-            .map { it.psrMatrix.clone().mul(it.excitatoryMask).rowSums() }
-            .reduceOrNull { base, add -> SimbrainMath.addVector(base, add) }
-            ?: DoubleArray(size)
+        get() = sumIncomingPSRs { it.excitatoryPSRs }
 
     /**
-     * For each incoming psr matrix, filter out entries that correspond to inhibitory synapses and return the sum of those for
+     * For each incoming weight matrix, sum the entries of its psr matrix that correspond to inhibitory synapses for
      * each row (i.e. a vector of inhibitory inputs; summed PSRs for each “dendrite”).
      */
     val inhibitoryInputs: DoubleArray
-        get() = incomingConnectors
-            .filterIsInstance<WeightMatrix>()
-            .map { it.psrMatrix.clone().mul(it.inhibitoryMask).rowSums() }
-            .reduceOrNull { base, add -> SimbrainMath.addVector(base, add) }
-            ?: DoubleArray(size)
+        get() = sumIncomingPSRs { it.inhibitoryPSRs }
+
+    private inline fun sumIncomingPSRs(psrs: (WeightMatrix) -> DoubleArray): DoubleArray {
+        val sums = DoubleArray(size)
+        for (connector in incomingConnectors) {
+            if (connector is WeightMatrix) {
+                val toAdd = psrs(connector)
+                for (i in sums.indices) {
+                    sums[i] += toAdd[i]
+                }
+            }
+        }
+        return sums
+    }
 
     fun getLabelArray() = (0 until size).map { it.toString() }.toTypedArray()
 }
\ No newline at end of file
@@ -124,6 +124,7 @@ class NeuronCollection : AbstractNeuronCollection {
     public override fun addNeuron(neuron: Neuron) {
         // These neurons already have ids and listeners
         neuronList.add(neuron)
+        neuronListVersion = nextStructureVersion()
         addListener(neuron)
     }
 
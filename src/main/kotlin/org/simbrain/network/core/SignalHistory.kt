@@ -0,0 +1,121 @@
+package org.simbrain.network.core
+
+import kotlin.math.roundToInt
+
+/**
+ * The recent output of a neuron or layer: its activation and whether it spiked over the last few time steps. Used for
+ * synaptic delays. The source keeps one history that all of its delayed connections read by index, rather than each
+ * connection queueing its own copy, so memory grows with the number of sources times the longest delay.
+ *
+ * Records are taken lazily, the first time the history is read at a given network time, so sources without delayed
+ * connections pay nothing. Records are kept in a circular buffer, one row of [width] values per time step.
+ *
+ * @param width number of values recorded per step: 1 for a neuron, the layer size for a layer
+ * @param read writes the source's current activations and spikes into the given arrays starting at the given offset
+ */
+class SignalHistory(
+    val width: Int,
+    private val read: (activations: DoubleArray, spikes: BooleanArray, offset: Int) -> Unit
+) {
+
+    /**
+     * Number of steps held, including the current one. A delay of up to `capacity - 1` steps can be read.
+     */
+    var capacity = 0
+        private set
+
+    private var activations = DoubleArray(0)
+
+    private var spikes = BooleanArray(0)
+
+    /**
+     * Row holding the most recent record.
+     */
+    private var newest = 0
+
+    /**
+     * Network time of the most recent record, or NaN if nothing has been recorded.
+     */
+    private var recordedAt = Double.NaN
+
+    /**
+     * Grow the history if needed so that a delay of [maxDelay] steps can be read. Existing records keep their lag;
+     * the new, older rows start out as zero, as if the source had been silent.
+     */
+    fun ensureDelay(maxDelay: Int) {
+        val needed = maxDelay + 1
+        if (needed <= capacity) {
+            return
+        }
+        val newActivations = DoubleArray(needed * width)
+        val newSpikes = BooleanArray(needed * width)
+        for (lag in 0 until capacity) {
+            val from = row(lag) * width
+            val to = (capacity - 1 - lag) * width
+            activations.copyInto(newActivations, to, from, from + width)
+            spikes.copyInto(newSpikes, to, from, from + width)
+        }
+        newest = maxOf(capacity - 1, 0)
+        capacity = needed
+        activations = newActivations
+        spikes = newSpikes
+    }
+
+    /**
+     * Record the source's current output if it has not been recorded at this network time yet. When steps were
+     * skipped since the last record, the current output stands in for them.
+     */
+    context(Network)
+    fun update() {
+        if (recordedAt == time || capacity == 0) {
+            return
+        }
+        val steps = if (recordedAt.isNaN()) 1 else ((time - recordedAt) / timeStep).roundToInt().coerceIn(1, capacity)
+        recordedAt = time
+        repeat(steps) {
+            newest = (newest + 1) % capacity
+            read(activations, spikes, newest * width)
+        }
+    }
+
+    /**
+     * Activation of element [index] of the source [lag] steps ago.
+     */
+    fun activation(index: Int, lag: Int) = activations[row(lag) * width + index]
+
+    /**
+     * Whether element [index] of the source spiked [lag] steps ago.
+     */
+    fun spike(index: Int, lag: Int) = spikes[row(lag) * width + index]
+
+    /**
+     * The time at which the most recent spike of element [index] that has already travelled [delay] steps arrived,
+     * given the time the source last spiked. Spikes older than this history can only be recovered from
+     * [lastSpikeTime]; a spike not yet [delay] steps old is found in the history instead.
+     */
+    context(Network)
+    fun lastArrivalTime(index: Int, delay: Int, lastSpikeTime: Double): Double {
+        val arrival = lastSpikeTime + delay * timeStep
+        if (arrival <= time) {
+            return arrival
+        }
+        for (lag in delay until capacity) {
+            if (spike(index, lag)) {
+                // A spike is recorded the step after the source's update that produced it
+                return time - (lag - delay + 1) * timeStep
+            }
+        }
+        return Double.NEGATIVE_INFINITY
+    }
+
+    /**
+     * Forget all records, as if the source had been silent.
+     */
+    fun clear() {
+        activations.fill(0.0)
+        spikes.fill(false)
+        recordedAt = Double.NaN
+    }
+
+    private fun row(lag: Int) = (newest - lag).mod(capacity)
+}
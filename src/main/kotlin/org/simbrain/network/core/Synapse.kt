@@ -37,7 +37,6 @@ import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.workspace.AttributeContainer
 import org.simbrain.workspace.Consumable
 import org.simbrain.workspace.Producible
-import java.util.*
 
 /**
  * Model synapses or weights.
@@ -155,7 +154,8 @@ class Synapse : NetworkModel, EditableObject, AttributeContainer {
         }
 
     /**
-     * Time to delay sending activation to target neuron.
+     * Time to delay sending activation to target neuron, in time steps. Delayed synapses read the source neuron's
+     * output from its [SignalHistory], which it shares with its other delayed synapses.
      */
     @UserParameter(label = "Delay", description = "delay", minimumValue = 0.0, order = 5)
     var delay = 0
@@ -164,19 +164,6 @@ class Synapse : NetworkModel, EditableObject, AttributeContainer {
                 return
             }
             field = dly
-
-            if (delay <= 0) {
-                delayManager = null
-
-                return
-            }
-
-            delayManager = DoubleArray(delay)
-
-            for (i in 0 until delay) {
-                delayManager!![i] = 0.0
-            }
-            dlyPtr = 0
         }
 
     /**
@@ -200,21 +187,6 @@ class Synapse : NetworkModel, EditableObject, AttributeContainer {
             events.clampChanged.fire()
         }
 
-    /**
-     * Manages synaptic delay
-     */
-    private var delayManager: DoubleArray? = null
-
-    /**
-     * Points to the location in the delay manager that corresponds to the current time.
-     */
-    private var dlyPtr = 0
-
-    /**
-     * The value [.dlyPtr] points to in the delay manager.
-     */
-    private var dlyVal = 0.0
-
     /**
      * Data holder for learning rule
      */
@@ -337,19 +309,37 @@ class Synapse : NetworkModel, EditableObject, AttributeContainer {
         // Update the output of this synapse
         if (spikeResponder is NonResponder) {
             // For "connectionist" case
-            psr = source.activation * _strength
+            psr = presynapticActivation * _strength
         } else {
             // Updates psr for spiking source neurons
             spikeResponder.apply(this, spikeResponderData)
         }
+    }
 
-        // Handle delays
-        if (delay != 0) {
-            dlyVal = dequeue()
-            enqueue(psr)
-            psr = dlyVal
+    /**
+     * The source neuron's activation as seen by this synapse, that is, [delay] steps ago.
+     */
+    context(Network)
+    val presynapticActivation: Double
+        get() = if (delay > 0) source.history(delay).activation(0, delay) else source.activation
+
+    /**
+     * Whether the source neuron spiked as seen by this synapse, that is, [delay] steps ago. For spike responders.
+     */
+    context(Network)
+    val presynapticSpike: Boolean
+        get() = if (delay > 0) source.history(delay).spike(0, delay) else source.isSpike
+
+    /**
+     * The time the source neuron's last spike reached this synapse, after [delay] steps. For spike responders.
+     */
+    context(Network)
+    val presynapticLastSpikeTime: Double
+        get() = if (delay > 0) {
+            source.history(delay).lastArrivalTime(0, delay, source.lastSpikeTime)
+        } else {
+            source.lastSpikeTime
         }
-    }
 
     val type: String
         /**
@@ -466,29 +456,6 @@ class Synapse : NetworkModel, EditableObject, AttributeContainer {
         return `val`
     }
 
-    /**
-     * @return the deque.
-     */
-    private fun dequeue(): Double {
-        if (dlyPtr == delay) {
-            dlyPtr = 0
-        }
-        return delayManager!![dlyPtr++]
-    }
-
-    /**
-     * Enqueeu.
-     *
-     * @param val Value to enqueu
-     */
-    private fun enqueue(`val`: Double) {
-        if (dlyPtr == 0) {
-            delayManager!![delay - 1] = `val`
-        } else {
-            delayManager!![dlyPtr - 1] = `val`
-        }
-    }
-
     override fun toString(): String {
         return ("$id: Strength = ${SimbrainMath.roundDouble(strength, 3)} Connects ${source.id} to ${target.id}")
     }
@@ -505,15 +472,12 @@ class Synapse : NetworkModel, EditableObject, AttributeContainer {
 
     //  TODO: Without any indication in the GUI this might be unclear to users.
     /**
-     * "Clear" the synapse in the sense of setting post synaptic result to 0 and removing all queued activations from
-     * the delay manager. Do NOT set strength to 0, which his a more radical move, that should not be achieved with
-     * the same GUI actions as the high level "clear".
+     * "Clear" the synapse in the sense of setting post synaptic result to 0. Activations still in transit are held by
+     * the source neuron's history and are cleared with the source. Do NOT set strength to 0, which his a more radical
+     * move, that should not be achieved with the same GUI actions as the high level "clear".
      */
     override fun clear() {
         psr = 0.0
-        if (delayManager != null) {
-            Arrays.fill(delayManager, 0.0)
-        }
         events.strengthUpdated.fire()
     }
 
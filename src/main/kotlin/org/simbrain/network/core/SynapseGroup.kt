@@ -20,9 +20,22 @@ class SynapseGroup @JvmOverloads constructor(
     val source: AbstractNeuronCollection,
     val target: AbstractNeuronCollection,
     var connectionStrategy: ConnectionStrategy = AllToAll(),
-    var synapses: MutableList<Synapse> = connectionStrategy.connectNeurons(source.neuronList, target.neuronList).toMutableList()
+    synapses: MutableList<Synapse> = connectionStrategy.connectNeurons(source.neuronList, target.neuronList).toMutableList()
 ) : NetworkModel(), AttributeContainer {
 
+    var synapses: MutableList<Synapse> = synapses
+        set(value) {
+            field = value
+            synapseListVersion = nextStructureVersion()
+        }
+
+    /**
+     * Structure version as of the last synapse added to or removed from [synapses]. See [nextStructureVersion].
+     */
+    @Transient
+    var synapseListVersion = 0L
+        private set
+
     // TODO: When passing in synapses check all source are in source and all target are in target
     // reuse this in addsynapse
 
@@ -77,11 +90,13 @@ class SynapseGroup @JvmOverloads constructor(
     fun addSynapse(syn: Synapse) {
         syn.isVisible = displaySynapses
         this.synapses.add(syn)
+        synapseListVersion = nextStructureVersion()
         events.synapseAdded.fire(syn)
     }
 
     fun removeSynapse(syn: Synapse) {
         this.synapses.remove(syn)
+        synapseListVersion = nextStructureVersion()
         events.synapseRemoved.fire(syn)
     }
 
@@ -8,7 +8,6 @@ import org.simbrain.network.spikeresponders.SpikeResponder
 import org.simbrain.network.util.EmptyMatrixData
 import org.simbrain.network.util.MatrixDataHolder
 import org.simbrain.util.UserParameter
-import org.simbrain.util.broadcastMultiply
 import org.simbrain.util.copyFrom
 import org.simbrain.util.flatten
 import org.simbrain.util.propertyeditor.GuiEditable
@@ -85,18 +84,32 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
     override var psrMatrix: Matrix
 
     /**
-     * A binary matrix with 1s corresponding to entries of the weight matrix that are greater than 1 and thus
-     * excitatory, and 0s otherwise. Used by [.getExcitatoryOutputs]
+     * Row sums of the psr matrix restricted to entries whose weight is positive and thus excitatory. Computed in the
+     * same pass that populates the psr matrix (see [updatePSR]), so no excitatory mask needs to be maintained when
+     * weights change. Lazily allocated since it is transient.
      */
     @Transient
-    val excitatoryMask: Matrix
+    private var _excitatoryPSRs: DoubleArray? = null
 
     /**
-     * A binary matrix with 1s corresponding to entries of the weight matrix that are less than 1 and thus
-     * inhibitory, and 0s otherwise. Used by [.getInhibitoryOutputs] }
+     * Row sums of the psr matrix restricted to entries whose weight is negative and thus inhibitory. See
+     * [_excitatoryPSRs].
      */
     @Transient
-    val inhibitoryMask: Matrix
+    private var _inhibitoryPSRs: DoubleArray? = null
+
+    /**
+     * Delay in time steps of each entry, stored row by row in the same target by source layout as [weightMatrix]. An
+     * entry with a delay reads the source's output from that many steps ago out of the source's [SignalHistory]. Null
+     * while no entry is delayed.
+     */
+    var delays: IntArray? = null
+        private set
+
+    /**
+     * The longest of the [delays], which is how much history the source must keep.
+     */
+    private var maxDelay = 0
 
     /**
      * Construct the matrix.
@@ -110,16 +123,26 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
 
         weightMatrix = Matrix(target.size, source.size)
 
-        excitatoryMask = Matrix(target.size, source.size)
-        inhibitoryMask = Matrix(target.size, source.size)
-
         diagonalize()
-        updateMasks()
 
         psrMatrix = Matrix(target.size, source.size)
 
     }
 
+    /**
+     * Summed excitatory PSRs for each row (i.e. each target "dendrite"), as of the last call to [updatePSR].
+     * Used by [NeuronArray.excitatoryInputs].
+     */
+    val excitatoryPSRs: DoubleArray
+        get() = _excitatoryPSRs ?: DoubleArray(weightMatrix.nrow()).also { _excitatoryPSRs = it }
+
+    /**
+     * Summed inhibitory PSRs for each row, as of the last call to [updatePSR]. Used by
+     * [NeuronArray.inhibitoryInputs].
+     */
+    val inhibitoryPSRs: DoubleArray
+        get() = _inhibitoryPSRs ?: DoubleArray(weightMatrix.nrow()).also { _inhibitoryPSRs = it }
+
     @get:Producible
     val weights: DoubleArray
         get() = weightMatrix.flatten()
@@ -141,17 +164,81 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
         for (i in 0 until len) {
             weightMatrix[i / weightMatrix.ncol(), i % weightMatrix.ncol()] = newWeights[i]
         }
-        updateMasks()
         events.updated.fire()
     }
 
     @Consumable
     fun setMatrixValues(otherWeightMatrix: Matrix?) {
         weightMatrix.copyFrom(otherWeightMatrix!!)
-        updateMasks()
         events.updated.fire()
     }
 
+    /**
+     * Delay in time steps of the entry connecting source neuron [source] to target neuron [target].
+     */
+    fun getDelay(target: Int, source: Int): Int {
+        val delays = delays ?: return 0
+        return delays[target * weightMatrix.ncol() + source]
+    }
+
+    /**
+     * Set the delay in time steps of the entry connecting source neuron [source] to target neuron [target].
+     */
+    fun setDelay(target: Int, source: Int, delay: Int) {
+        if (delay < 0) {
+            throw IllegalArgumentException("Delays must be non-negative but got $delay")
+        }
+        val delays = delays ?: IntArray(weightMatrix.nrow() * weightMatrix.ncol()).also { this.delays = it }
+        val index = target * weightMatrix.ncol() + source
+        val previous = delays[index]
+        delays[index] = delay
+        if (delay >= maxDelay) {
+            maxDelay = delay
+        } else if (previous == maxDelay) {
+            maxDelay = delays.max()
+        }
+    }
+
+    /**
+     * Set the delays using a target by source array, or remove all delays if null.
+     */
+    fun setDelays(newDelays: Array<IntArray>?) {
+        if (newDelays == null) {
+            delays = null
+            maxDelay = 0
+            return
+        }
+        for (i in newDelays.indices) {
+            for (j in newDelays[i].indices) {
+                setDelay(i, j, newDelays[i][j])
+            }
+        }
+    }
+
+    /**
+     * Whether source neuron [source] spiked as seen by target neuron [target], that is, [getDelay] steps ago. [spikes]
+     * are the source's current spikes, used for undelayed entries. For spike responders.
+     */
+    context(Network)
+    fun presynapticSpike(target: Int, source: Int, spikes: BooleanArray): Boolean {
+        val delay = getDelay(target, source)
+        return if (delay > 0) this.source.history(maxDelay).spike(source, delay) else spikes[source]
+    }
+
+    /**
+     * The time the last spike of source neuron [source] reached target neuron [target]. [lastSpikeTimes] are the
+     * source's own last spike times. For spike responders.
+     */
+    context(Network)
+    fun presynapticLastSpikeTime(target: Int, source: Int, lastSpikeTimes: DoubleArray): Double {
+        val delay = getDelay(target, source)
+        return if (delay > 0) {
+            this.source.history(maxDelay).lastArrivalTime(source, delay, lastSpikeTimes[source])
+        } else {
+            lastSpikeTimes[source]
+        }
+    }
+
     /**
      * Diagonalize the matrix.
      */
@@ -159,7 +246,6 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
         clear()
         val diag = Matrix.eye(target.size, source.size)
         weightMatrix.copyFrom(diag)
-        updateMasks()
         events.updated.fire()
     }
 
@@ -168,13 +254,14 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
         // TODO: Check for clamping and enabling
         if (learningRule !is StaticSynapseRule) {
             learningRule.apply(this, learningRuleData)
-            updateMasks()
             events.updated.fire()
         }
     }
 
     /**
-     * Update the psr matrix in the connectionist case.
+     * Update the psr matrix. In the connectionist case each entry is the weight times the source activation, read from
+     * the source's history for delayed entries. While the matrix is populated the excitatory and inhibitory row sums
+     * are accumulated in the same pass.
      */
     context(Network)
     override fun updatePSR() {
@@ -183,27 +270,60 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
             // responder, for example.
             // Populate each row of the psrMatrix with the element-wise product of the pre-synaptic output vector and
             // that row of the matrix
-            psrMatrix.copyFrom(weightMatrix.broadcastMultiply(source.activations))
+            val sourceActivations = source.activations
+            if (sourceActivations.nrow() != weightMatrix.ncol()) {
+                throw IllegalArgumentException("Size mismatched. Source has ${sourceActivations.nrow()} activations " +
+                        "but the weight matrix has ${weightMatrix.ncol()} columns.")
+            }
+            val excitatory = excitatoryPSRs
+            val inhibitory = inhibitoryPSRs
+            val delays = delays
+            val history = if (delays != null && maxDelay > 0) source.history(maxDelay) else null
+            val ncol = weightMatrix.ncol()
+            for (i in 0 until weightMatrix.nrow()) {
+                var excitatorySum = 0.0
+                var inhibitorySum = 0.0
+                for (j in 0 until ncol) {
+                    val weight = weightMatrix[i, j]
+                    val delay = if (history == null) 0 else delays!![i * ncol + j]
+                    val presynaptic = if (delay > 0) history!!.activation(j, delay) else sourceActivations[j, 0]
+                    val psr = weight * presynaptic
+                    psrMatrix[i, j] = psr
+                    if (weight > 0) {
+                        excitatorySum += psr
+                    } else if (weight < 0) {
+                        inhibitorySum += psr
+                    }
+                }
+                excitatory[i] = excitatorySum
+                inhibitory[i] = inhibitorySum
+            }
         } else {
             spikeResponder.apply(this, spikeResponseData)
+            splitPSRs()
         }
     }
 
-    private fun updateExcitatoryMask() {
-        for (i in 0 until weightMatrix.nrow()) {
-            for (j in 0 until weightMatrix.ncol()) {
-                val newVal = if ((weightMatrix[i, j] > 0)) 1 else 0
-                excitatoryMask[i, j] = newVal.toDouble()
-            }
-        }
-    }
-
-    private fun updateInhibitoryMask() {
+    /**
+     * Sum the psr matrix row by row into [excitatoryPSRs] and [inhibitoryPSRs], according to the sign of the
+     * corresponding weight.
+     */
+    private fun splitPSRs() {
+        val excitatory = excitatoryPSRs
+        val inhibitory = inhibitoryPSRs
         for (i in 0 until weightMatrix.nrow()) {
+            var excitatorySum = 0.0
+            var inhibitorySum = 0.0
             for (j in 0 until weightMatrix.ncol()) {
-                val newVal = if ((weightMatrix[i, j] < 0)) 1 else 0
-                inhibitoryMask[i, j] = newVal.toDouble()
+                val weight = weightMatrix[i, j]
+                if (weight > 0) {
+                    excitatorySum += psrMatrix[i, j]
+                } else if (weight < 0) {
+                    inhibitorySum += psrMatrix[i, j]
+                }
             }
+            excitatory[i] = excitatorySum
+            inhibitory[i] = inhibitorySum
         }
     }
 
@@ -213,19 +333,16 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
                 weightMatrix[i, j] = (randomizer ?: weightRandomizer).sampleDouble()
             }
         }
-        updateMasks()
         events.updated.fire()
     }
 
     override fun increment() {
         weightMatrix.add(increment)
-        updateMasks()
         events.updated.fire()
     }
 
     override fun decrement() {
         weightMatrix.sub(increment)
-        updateMasks()
         events.updated.fire()
     }
 
@@ -242,9 +359,4 @@ class WeightMatrix(source: Layer, target: Layer) : Connector(source, target) {
                 + " (" + weightMatrix.nrow() + "x" + weightMatrix.ncol() + ") "
                 + "connecting " + source.id + " to " + target.id)
     }
-
-    fun updateMasks() {
-        updateExcitatoryMask()
-        updateInhibitoryMask()
-    }
 }
@@ -1,7 +1,9 @@
 package org.simbrain.network.gui.dialogs
 
+import kotlinx.coroutines.CancellationException
 import net.miginfocom.swing.MigLayout
 import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
 import org.simbrain.network.gui.NetworkPanel
 import org.simbrain.network.gui.nodes.SmileClassifierNode
 import org.simbrain.network.smile.SmileClassifier
@@ -11,6 +13,7 @@ import org.simbrain.util.StandardDialog
 import org.simbrain.util.display
 import org.simbrain.util.propertyeditor.AnnotatedPropertyEditor
 import org.simbrain.util.showWarningDialog
+import org.simbrain.util.swingInvokeLater
 import org.simbrain.util.table.*
 import java.awt.Dimension
 import javax.swing.JButton
@@ -21,6 +24,7 @@ import javax.swing.JSeparator
 /**
  * Classifier training dialog.
  */
+context(Network)
 fun SmileClassifier.getTrainingDialog(): StandardDialog {
     return StandardDialog().apply {
 
@@ -44,7 +48,7 @@ fun SmileClassifier.getTrainingDialog(): StandardDialog {
 
         // Data Panels
         val inputs = SimbrainTablePanel(
-            createFromDoubleArray(classifier.trainingData.featureVectors), false
+            createColumnarFromDoubleArray(classifier.trainingData.featureVectors), false
         ).apply {
             addAction(table.importCsv)
             addAction(table.exportCsv())
@@ -90,9 +94,18 @@ fun SmileClassifier.getTrainingDialog(): StandardDialog {
                 classfierProps.commitChanges()
                 classifier.trainingData.featureVectors = inputs.model.get2DDoubleArray()
                 classifier.trainingData.targetLabels = targets.model.getStringColumn(0)
-                train()
             } catch(e: Exception) {
                 showWarningDialog(e.message.toString())
+                return
+            }
+            statsLabel.text = "Training..."
+            trainInBackground().invokeOnCompletion { e ->
+                if (e != null && e !is CancellationException) {
+                    swingInvokeLater {
+                        updateStatsLabel()
+                        showWarningDialog(e.message.toString())
+                    }
+                }
             }
         }
 
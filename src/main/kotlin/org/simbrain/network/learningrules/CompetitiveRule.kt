@@ -0,0 +1,106 @@
+package org.simbrain.network.learningrules
+
+import org.simbrain.network.core.Connector
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Synapse
+import org.simbrain.network.core.WeightMatrix
+import org.simbrain.network.util.EmptyMatrixData
+import org.simbrain.network.util.EmptyScalarData
+import org.simbrain.util.UserParameter
+import org.simbrain.util.propertyeditor.GuiEditable
+
+/**
+ * Competitive learning (Rummelhart-Zipser, PDP 1, p. 179) as a learning rule, so that the learning in
+ * [org.simbrain.network.neurongroups.CompetitiveGroup] can be used with weight matrices. The weights into each target
+ * node move towards the (optionally normalized) input in proportion to that node's activation. Paired with a
+ * winner-take-all or k winners take all target layer, only the winners learn. With leaky learning, inactive nodes
+ * also move towards the input, at the leaky learning rate.
+ *
+ * For a weight matrix with rates r (one per target node) and normalized input x the update is W += r x^T - diag(r) W.
+ * This is applied row by row in place, and rows with a rate of 0 are skipped.
+ */
+class CompetitiveRule : SynapseUpdateRule<EmptyScalarData, EmptyMatrixData>() {
+
+    @UserParameter(label = "Learning rate", increment = .1, minimumValue = 0.0, order = 10)
+    var learningRate = .1
+
+    @UserParameter(label = "Normalize inputs", description = "Divide inputs by their sum before learning", order = 20)
+    var normalizeInputs = true
+
+    @UserParameter(label = "Use Leaky learning", order = 30)
+    var useLeakyLearning = false
+
+    var leakyLearningRate by GuiEditable(
+        initValue = .1 / 4,
+        conditionallyEnabledBy = CompetitiveRule::useLeakyLearning,
+        order = 40
+    )
+
+    override fun init(synapse: Synapse) {}
+
+    override val name: String
+        get() = "Competitive"
+
+    override fun copy(): CompetitiveRule {
+        return CompetitiveRule().also {
+            it.learningRate = learningRate
+            it.normalizeInputs = normalizeInputs
+            it.useLeakyLearning = useLeakyLearning
+            it.leakyLearningRate = leakyLearningRate
+        }
+    }
+
+    /**
+     * Rate at which the weights into a node with the given activation move towards the input.
+     */
+    private fun rate(activation: Double) = when {
+        activation > 0 -> learningRate * activation
+        useLeakyLearning -> leakyLearningRate
+        else -> 0.0
+    }
+
+    context(Network)
+    override fun apply(synapse: Synapse, data: EmptyScalarData) {
+        val rate = rate(synapse.target.activation)
+        if (rate == 0.0) {
+            return
+        }
+        var input = synapse.source.activation
+        if (normalizeInputs) {
+            val sumOfInputs = synapse.target.fanIn.sumOf { it.source.activation }
+            if (sumOfInputs != 0.0) {
+                input /= sumOfInputs
+            }
+        }
+        synapse.strength = synapse.clip(synapse.strength + rate * (input - synapse.strength))
+    }
+
+    context(Network)
+    override fun apply(connector: Connector, dataHolder: EmptyMatrixData) {
+        if (connector !is WeightMatrix) {
+            return
+        }
+        val wm = connector.weightMatrix
+        val input = connector.source.activations
+        val output = connector.target.activations
+        var inputScale = 1.0
+        if (normalizeInputs) {
+            var sumOfInputs = 0.0
+            for (j in 0 until wm.ncol()) {
+                sumOfInputs += input[j, 0]
+            }
+            if (sumOfInputs != 0.0) {
+                inputScale = 1 / sumOfInputs
+            }
+        }
+        for (i in 0 until wm.nrow()) {
+            val rate = rate(output[i, 0])
+            if (rate == 0.0) {
+                continue
+            }
+            for (j in 0 until wm.ncol()) {
+                wm[i, j] += rate * (input[j, 0] * inputScale - wm[i, j])
+            }
+        }
+    }
+}
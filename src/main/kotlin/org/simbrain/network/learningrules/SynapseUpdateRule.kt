@@ -116,7 +116,7 @@ abstract class SynapseUpdateRule<out DS : ScalarDataHolder, out DM : MatrixDataH
          * to set the learning rule on a synapse.
          */
         var RULE_LIST: List<Class<out CopyableObject?>> = Arrays.asList<Class<out CopyableObject?>>(
-            StaticSynapseRule::class.java,
+            StaticSynapseRule::class.java, CompetitiveRule::class.java,
             HebbianRule::class.java, HebbianCPCARule::class.java, HebbianThresholdRule::class.java,
             OjaRule::class.java, PfisterGerstner2006Rule::class.java, ShortTermPlasticityRule::class.java,
             STDPRule::class.java, SubtractiveNormalizationRule::class.java
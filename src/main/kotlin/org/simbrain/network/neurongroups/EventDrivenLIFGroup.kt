@@ -0,0 +1,245 @@
+package org.simbrain.network.neurongroups
+
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.XStreamConstructor
+import org.simbrain.network.updaterules.IntegrateAndFireRule
+import org.simbrain.network.util.SpikingScalarData
+import org.simbrain.util.propertyeditor.CopyableObject
+import org.simbrain.util.propertyeditor.CustomTypeName
+import java.util.*
+import kotlin.math.exp
+import kotlin.math.ln
+import kotlin.math.min
+
+/**
+ * A group of [IntegrateAndFireRule] neurons that are simulated event by event rather than with fixed Euler steps.
+ *
+ * Between events the membrane potential of a leaky integrate and fire neuron has a closed form, so each neuron is
+ * advanced analytically from one event to the next. Events are spikes arriving through synapses within the group and
+ * threshold crossings, which are also solved for exactly. They are processed in time order from a priority queue, so
+ * spike times are exact rather than rounded to the network time step, and the time step only determines how often
+ * the group exchanges input and output with the rest of the network. Sparse firing networks can therefore be run
+ * with a much larger time step than the Euler rule needs.
+ *
+ * Synapses between neurons in the group are treated as instantaneous: a spike arriving through a synapse changes the
+ * target's membrane potential by the synapse strength in mV, after the synapse's delay (in time steps). Input from
+ * outside the group (other synapses, couplings, connectors) is held constant over each time step and adds to the
+ * background current, as does noise if it is enabled. As in [IntegrateAndFireRule], input is ignored during the
+ * refractory period.
+ *
+ * Neurons that are clamped or use a different update rule are updated normally.
+ */
+class EventDrivenLIFGroup(neurons: List<Neuron>) : NeuronGroup() {
+
+    constructor(numNeurons: Int) : this(List(numNeurons) { Neuron(IntegrateAndFireRule()) })
+
+    @XStreamConstructor
+    private constructor() : this(listOf())
+
+    init {
+        label = "Event-driven LIF"
+        addNeurons(neurons)
+    }
+
+    /**
+     * Spikes that have been sent within the group but not yet received, ordered by arrival time.
+     */
+    @Transient
+    private var pending: PriorityQueue<Event>? = null
+
+    @Transient
+    private var nextOrder = 0L
+
+    /**
+     * Total number of events processed, for comparison with the number of neuron updates a fixed step simulation
+     * would need.
+     */
+    var processedEvents = 0L
+        private set
+
+    private fun pending() = pending ?: PriorityQueue<Event>().also { pending = it }
+
+    context(Network)
+    override fun update() {
+        val members = neuronList.filter { it.updateRule is IntegrateAndFireRule && !it.clamped }
+        val index = IdentityHashMap<Neuron, Int>().apply { members.forEachIndexed { i, neuron -> put(neuron, i) } }
+        val others = neuronList.filter { it !in index }
+
+        // Inputs are gathered for all neurons before any are updated, as in a buffered update
+        others.forEach { it.accumulateInputs() }
+        val drive = DoubleArray(members.size) { i ->
+            val neuron = members[i]
+            val rule = neuron.updateRule as IntegrateAndFireRule
+            var current = neuron.input + rule.backgroundCurrent
+            for (synapse in neuron.fanIn) {
+                if (synapse.isEnabled && synapse.source !in index) {
+                    synapse.updatePSR()
+                    current += synapse.psr
+                }
+            }
+            if (rule.addNoise) {
+                current += rule.noiseGenerator.sampleDouble(noiseStream)
+            }
+            rule.restingPotential + rule.resistance * current
+        }
+        others.forEach { it.update() }
+        simulate(members, index, drive, time, time + timeStep)
+        neuronList.forEach { it.clearInput() }
+    }
+
+    /**
+     * Process all events between [start] and [end] and leave each neuron in its state at [end].
+     *
+     * @param drive for each neuron, the potential it relaxes towards outside its refractory period
+     */
+    context(Network)
+    private fun simulate(
+        members: List<Neuron>,
+        index: Map<Neuron, Int>,
+        drive: DoubleArray,
+        start: Double,
+        end: Double
+    ) {
+        val rules = Array(members.size) { members[it].updateRule as IntegrateAndFireRule }
+        val potential = DoubleArray(members.size) { members[it].activation }
+        val stateTime = DoubleArray(members.size) { start }
+        val lastSpike = DoubleArray(members.size) { members[it].lastSpikeTime }
+        val version = IntArray(members.size)
+        val spiked = BooleanArray(members.size)
+        val queue = pending()
+
+        fun advance(i: Int, to: Double) {
+            val rule = rules[i]
+            val refractoryEnd = lastSpike[i] + rule.refractoryPeriod
+            if (stateTime[i] < refractoryEnd) {
+                val until = min(to, refractoryEnd)
+                potential[i] = relax(potential[i], rule.restingPotential, until - stateTime[i], rule.timeConstant)
+                stateTime[i] = until
+            }
+            if (stateTime[i] < to) {
+                potential[i] = relax(potential[i], drive[i], to - stateTime[i], rule.timeConstant)
+                stateTime[i] = to
+            }
+        }
+
+        // Queue the next threshold crossing of a neuron if it falls in this step. Crossings queued earlier for the
+        // neuron are made stale by bumping its version.
+        fun predict(i: Int) {
+            version[i]++
+            val rule = rules[i]
+            var from = stateTime[i]
+            var v = potential[i]
+            val refractoryEnd = lastSpike[i] + rule.refractoryPeriod
+            if (from < refractoryEnd) {
+                v = relax(v, rule.restingPotential, refractoryEnd - from, rule.timeConstant)
+                from = refractoryEnd
+            }
+            val crossing = when {
+                v >= rule.threshold -> from
+                drive[i] <= rule.threshold -> return
+                else -> from + rule.timeConstant * ln((drive[i] - v) / (drive[i] - rule.threshold))
+            }
+            if (crossing < end && crossing > lastSpike[i]) {
+                queue.add(Event(crossing, nextOrder++, members[i], 0.0, version[i]))
+            }
+        }
+
+        fun spike(i: Int, at: Double) {
+            potential[i] = rules[i].resetPotential
+            stateTime[i] = at
+            lastSpike[i] = at
+            spiked[i] = true
+            for (synapse in members[i].fanOut.values) {
+                if (synapse.isEnabled && synapse.target in index) {
+                    queue.add(Event(at + synapse.delay * timeStep, nextOrder++, synapse.target, synapse.strength))
+                }
+            }
+            predict(i)
+        }
+
+        members.indices.forEach { predict(it) }
+        while (true) {
+            val event = queue.peek() ?: break
+            if (event.time >= end) {
+                break
+            }
+            queue.poll()
+            processedEvents++
+            val i = index[event.target] ?: continue
+            if (event.isCrossing) {
+                if (event.version == version[i]) {
+                    advance(i, event.time)
+                    spike(i, event.time)
+                }
+            } else {
+                advance(i, event.time)
+                if (event.time < lastSpike[i] + rules[i].refractoryPeriod) {
+                    continue
+                }
+                potential[i] += event.weight
+                if (potential[i] >= rules[i].threshold && event.time > lastSpike[i]) {
+                    spike(i, event.time)
+                } else {
+                    predict(i)
+                }
+            }
+        }
+
+        // Discard predicted crossings beyond this step; they are predicted again with the next step's input
+        queue.removeIf { it.isCrossing }
+
+        members.forEachIndexed { i, neuron ->
+            advance(i, end)
+            neuron.activation = potential[i]
+            neuron.isSpike = spiked[i]
+            if (spiked[i]) {
+                (neuron.dataHolder as SpikingScalarData).lastSpikeTime = lastSpike[i]
+            }
+        }
+    }
+
+    override fun clear() {
+        super.clear()
+        pending?.clear()
+    }
+
+    override fun copy() = EventDrivenLIFGroup(neuronList.map { it.copy() })
+
+    /**
+     * A spike arriving at [target] through a synapse of strength [weight], or if [version] is set, a predicted
+     * threshold crossing that only holds if the target has not received input since it was predicted.
+     */
+    private class Event(
+        val time: Double,
+        val order: Long,
+        val target: Neuron,
+        val weight: Double,
+        val version: Int = -1
+    ) : Comparable<Event> {
+
+        val isCrossing get() = version >= 0
+
+        override fun compareTo(other: Event) = compareValuesBy(this, other, { it.time }, { it.order })
+    }
+}
+
+/**
+ * Exact solution of tau dV/dt = vInf - V after [duration].
+ */
+private fun relax(v: Double, vInf: Double, duration: Double, timeConstant: Double) =
+    vInf + (v - vInf) * exp(-duration / timeConstant)
+
+@CustomTypeName("Event-driven Integrate and Fire")
+class EventDrivenLIFParams : NeuronGroupParams() {
+
+    override fun create(): EventDrivenLIFGroup {
+        return EventDrivenLIFGroup(numNeurons)
+    }
+
+    override fun copy(): EventDrivenLIFParams {
+        return EventDrivenLIFParams().also {
+            commonCopy(it)
+        }
+    }
+}
@@ -21,6 +21,7 @@ sealed class NeuronGroupParams: CopyableObject {
         listOf(
             BasicNeuronGroupParams::class.java,
             CompetitiveGroupParams::class.java,
+            EventDrivenLIFParams::class.java,
             KWTAParams::class.java,
             SoftmaxParams::class.java,
             SOMParams::class.java,
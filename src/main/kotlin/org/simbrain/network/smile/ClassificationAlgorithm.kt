@@ -8,6 +8,8 @@ import org.simbrain.util.Utils
 import org.simbrain.util.getOneHotArray
 import org.simbrain.util.propertyeditor.CopyableObject
 import smile.classification.Classifier
+import smile.math.matrix.Matrix
+import java.util.stream.IntStream
 
 /**
  * Superclass for wrappers of Smile classifier objects.
@@ -42,6 +44,36 @@ abstract class ClassificationAlgorithm(
      */
     abstract fun predict(input: DoubleArray): Int
 
+    /**
+     * Predict a label for each row of [inputs], with rows spread across cores. Useful for evaluating a trained model
+     * on a large dataset.
+     */
+    fun predict(inputs: Matrix): IntArray {
+        val model = model ?: throw IllegalStateException("$name has not been trained")
+        return IntArray(inputs.nrow()).also { labels ->
+            IntStream.range(0, labels.size).parallel().forEach { labels[it] = model.predict(inputs.row(it)) }
+        }
+    }
+
+    /**
+     * Predict a label for each of the provided input vectors, with inputs spread across cores.
+     */
+    fun predict(inputs: Array<DoubleArray>): IntArray {
+        val model = model ?: throw IllegalStateException("$name has not been trained")
+        return IntArray(inputs.size).also { labels ->
+            IntStream.range(0, labels.size).parallel().forEach { labels[it] = model.predict(inputs[it]) }
+        }
+    }
+
+    /**
+     * Use the model and statistics of another instance of this algorithm, e.g. a copy that was trained in the
+     * background.
+     */
+    open fun adoptModel(trained: ClassificationAlgorithm) {
+        model = trained.model
+        stats = trained.stats
+    }
+
     fun assertValidWinnerIndex(winner: Int) {
         if (winner > outputSize) {
             throw IllegalArgumentException("Prediction of ${winner} > output size of ${outputSize}")
@@ -1,5 +1,8 @@
 package org.simbrain.network.smile
 
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.ensureActive
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.activations
 import org.simbrain.network.neurongroups.NeuronGroup
@@ -14,6 +17,7 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.propertyeditor.GuiEditable
 import org.simbrain.workspace.Producible
+import smile.math.matrix.Matrix
 import kotlin.reflect.full.primaryConstructor
 
 /**
@@ -80,6 +84,52 @@ class SmileClassifier(
         events.updated.fire()
     }
 
+    /**
+     * Training job started by [trainInBackground], if any.
+     */
+    @Transient
+    private var trainingJob: Deferred<Unit>? = null
+
+    val isTraining get() = trainingJob?.isActive == true
+
+    /**
+     * Train the classifier on a background thread, so that the simulation keeps running while large datasets are fit.
+     * A copy of the classifier is fit to the current training data and its model is swapped in when it is done. Until
+     * then [update] keeps using the old model. Starting a new run cancels any run in progress, whose model is then
+     * discarded.
+     *
+     * Training runs in the network's coroutine scope and is cancelled when the classifier is deleted. Errors during
+     * training are thrown by the returned job's await.
+     */
+    context(Network)
+    fun trainInBackground(): Deferred<Unit> = synchronized(this) {
+        trainingJob?.cancel()
+        val inputs = classifier.trainingData.featureVectors
+        val targets = classifier.trainingData.getIntegerTargets()
+        val trainee = classifier.copy().also { it.trainingData = classifier.trainingData }
+        this@Network.async {
+            trainee.fit(inputs, targets)
+            synchronized(this@SmileClassifier) {
+                ensureActive()
+                classifier.adoptModel(trainee)
+            }
+            events.updated.fire()
+        }.also { trainingJob = it }
+    }
+
+    override fun delete() {
+        synchronized(this) {
+            trainingJob?.cancel()
+            trainingJob = null
+        }
+        super.delete()
+    }
+
+    /**
+     * Predict a label for each row of [inputs] in one call, spread across cores. Does not change the network.
+     */
+    fun predict(inputs: Matrix) = classifier.predict(inputs)
+
     context(Network)
     override fun accumulateInputs() {
         inputNeuronGroup.accumulateInputs()
@@ -22,11 +22,10 @@ class LogisticRegClassifier @JvmOverloads constructor(inputSize: Int = 4, output
     /**
      * Output probabilities
      */
-    lateinit var outputProbabilities: DoubleArray
+    var outputProbabilities = DoubleArray(outputSize)
 
     override fun fit(inputs: Array<DoubleArray>, targets: IntArray) {
         model = LogisticRegression.fit(inputs, targets)
-        outputProbabilities = DoubleArray(outputSize)
         val pred = model?.predict(inputs)
         setAccuracyLabel(Accuracy.of(targets, pred))
     }
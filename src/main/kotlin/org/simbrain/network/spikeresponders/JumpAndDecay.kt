@@ -73,7 +73,7 @@ class JumpAndDecay : SpikeResponder() {
             for (i in 0 until wm.weightMatrix.nrow()) {
                 for (j in 0 until wm.weightMatrix.ncol()) {
                     val psr = jumpAndDecay(
-                            spikeData.spikes[j],
+                            wm.presynapticSpike(i, j, spikeData.spikes),
                             wm.psrMatrix[i, j],
                             wm.weightMatrix[i, j],
                             timeStep
@@ -87,7 +87,7 @@ class JumpAndDecay : SpikeResponder() {
     context(Network)
     override fun apply(synapse: Synapse, responderData: ScalarDataHolder) {
         synapse.psr = jumpAndDecay(
-            synapse.source.isSpike, synapse.psr, synapse.strength, timeStep
+            synapse.presynapticSpike, synapse.psr, synapse.strength, timeStep
         )
     }
 
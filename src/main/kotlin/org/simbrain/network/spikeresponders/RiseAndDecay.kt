@@ -58,7 +58,7 @@ class RiseAndDecay : SpikeResponder() {
             for (i in 0 until wm.weightMatrix.nrow()) {
                 for (j in 0 until wm.weightMatrix.ncol()) {
                     val (psr, recovery) = riseAndDecay(
-                        spikeData.spikes[j],
+                        wm.presynapticSpike(i, j, spikeData.spikes),
                         wm.psrMatrix[i, j],
                         responseData.recoveryMatrix[i,j],
                         wm.weightMatrix[i, j],
@@ -79,7 +79,7 @@ class RiseAndDecay : SpikeResponder() {
     override fun apply(synapse: Synapse, responderData: ScalarDataHolder) {
         val data = responderData as RiseAndDecayData
         val (psr, recovery) = riseAndDecay(
-            synapse.source.isSpike,
+            synapse.presynapticSpike,
             synapse.psr,
             data.recovery,
             synapse.strength,
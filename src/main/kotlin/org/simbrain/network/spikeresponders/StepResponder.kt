@@ -43,7 +43,8 @@ class StepResponder(
         val lastSpikeTimes = ((weightMatrix.source as NeuronArray).dataHolder as SpikingMatrixData).lastSpikeTimes
         for (i in 0 until connector.psrMatrix.ncol()) {
             for (j in 0 until connector.psrMatrix.nrow()) {
-                if (lastSpikeTimes[i] + responseDuration * timeStep >= time && probabilisticSpikeCheck()) {
+                val arrival = weightMatrix.presynapticLastSpikeTime(j, i, lastSpikeTimes)
+                if (arrival + responseDuration * timeStep >= time && probabilisticSpikeCheck()) {
                     connector.psrMatrix[j, i] = connector.weightMatrix[j, i]
                 } else {
                     connector.psrMatrix[j, i] = 0.0
@@ -54,7 +55,7 @@ class StepResponder(
 
     context(Network)
     override fun apply(synapse: Synapse, responderData: ScalarDataHolder) {
-        if (synapse.source.lastSpikeTime + responseDuration * timeStep >= time && probabilisticSpikeCheck()) {
+        if (synapse.presynapticLastSpikeTime + responseDuration * timeStep >= time && probabilisticSpikeCheck()) {
             synapse.psr = synapse.strength
         } else {
             synapse.psr = 0.0
@@ -0,0 +1,518 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.subnetworks
+
+import org.simbrain.network.core.*
+import org.simbrain.network.core.Network.Randomizers.weightRandomizer
+import org.simbrain.network.trainers.UnsupervisedNetwork
+import org.simbrain.network.trainers.UnsupervisedTrainer
+import org.simbrain.network.util.Alignment
+import org.simbrain.network.util.Direction
+import org.simbrain.network.util.alignNetworkModels
+import org.simbrain.network.util.offsetNetworkModel
+import org.simbrain.util.UserParameter
+import org.simbrain.util.format
+import org.simbrain.util.propertyeditor.EditableObject
+import org.simbrain.util.stats.ProbabilityDistribution
+import smile.math.matrix.Matrix
+
+/**
+ * A discrete Hopfield network whose units are a [NeuronArray] and whose weights are a recurrent [WeightMatrix], so
+ * that associative memories with thousands of units can be trained and run interactively. Compare [Hopfield], which
+ * uses individual neurons and synapses.
+ *
+ * Unit states are bipolar (1 or -1). Patterns are stored all at once from the rows of the input data, or one at a
+ * time from the current state, using one of the [LearningRule]s. Entries of a pattern that are greater than 0 are
+ * treated as 1 and the rest as -1, so binary patterns can be used too.
+ *
+ * The network keeps the local field (weighted input) of every unit along with the energy of the current state. In
+ * the asynchronous update modes a unit that changes state updates the local fields with one column of the weight
+ * matrix and the energy with a constant time correction, so a sweep costs time proportional to the number of units
+ * that change rather than to the number of weights. A synchronous update is one matrix-vector product. The local
+ * fields are recomputed from scratch only when the weights change or activations are set from outside.
+ */
+class HopfieldArrayNetwork : Subnetwork, UnsupervisedNetwork {
+
+    lateinit var neurons: NeuronArray
+
+    /**
+     * Recurrent weights from [neurons] to themselves. Symmetric.
+     */
+    lateinit var weights: WeightMatrix
+
+    override val inputLayer: NeuronArray
+        get() = neurons
+
+    override lateinit var inputData: Matrix
+
+    override val trainer = UnsupervisedTrainer()
+
+    override lateinit var customInfo: InfoText
+
+    @UserParameter(label = "Update function", order = 10)
+    var updateFunction = UpdateFunction.SYNC
+
+    @UserParameter(label = "Learning rule", order = 20)
+    var learningRule = LearningRule.HEBBIAN
+
+    /**
+     * Bipolar states the local fields were computed for.
+     */
+    @Transient
+    private var states: DoubleArray? = null
+
+    /**
+     * Weighted input to each unit, including the unit's own state times its self connection.
+     */
+    @Transient
+    private var fields: DoubleArray? = null
+
+    /**
+     * Order in which units are updated in [UpdateFunction.RAND]. Shuffled in place on each update.
+     */
+    @Transient
+    private var randomOrder: IntArray? = null
+
+    @Transient
+    private var fieldsValid = false
+
+    @Transient
+    private var listeningToWeights = false
+
+    /**
+     * Energy of [states], kept up to date as units change.
+     */
+    @Transient
+    private var trackedEnergy = 0.0
+
+    /**
+     * Energy of the current state, -1/2 s^T W s.
+     */
+    val energy: Double
+        get() {
+            ensureFields()
+            return trackedEnergy
+        }
+
+    constructor(numNeurons: Int) : super() {
+        label = "Hopfield network (array)"
+        // Random patterns, since entries are stored by their sign
+        inputData = Matrix.rand(DEFAULT_ROWS_INPUT_DATA, numNeurons).sub(0.5)
+
+        neurons = NeuronArray(numNeurons).apply {
+            label = "Neurons"
+            gridMode = true
+            fillActivations(-1.0)
+        }
+        addModel(neurons)
+
+        weights = WeightMatrix(neurons, neurons).apply {
+            label = "Weights"
+            weightMatrix.fill(0.0)
+        }
+        addModel(weights)
+
+        customInfo = InfoText(stateInfoText)
+        alignNetworkModels(neurons, customInfo, Alignment.HORIZONTAL)
+        offsetNetworkModel(neurons, customInfo, Direction.NORTH, 40.0)
+    }
+
+    @XStreamConstructor
+    constructor() : super()
+
+    val stateInfoText: String
+        get() = "Energy: " + energy.format(4)
+
+    fun updateStateInfoText() {
+        customInfo.text = stateInfoText
+        events.customInfoUpdated.fire()
+    }
+
+    /**
+     * Update the units once using [updateFunction]. Inputs from outside the network are ignored, but activations set
+     * from outside (e.g. by couplings or in the GUI) are used as the starting state.
+     */
+    context(Network)
+    override fun update() {
+        if (neurons.isClamped) {
+            return
+        }
+        step()
+        updateStateInfoText()
+    }
+
+    /**
+     * Update the units repeatedly, starting from [pattern], until no unit changes state or [maxSteps] updates have
+     * been made. The final state is left in [neurons].
+     *
+     * @return the final state
+     */
+    context(Network)
+    fun recall(pattern: DoubleArray, maxSteps: Int = 100): DoubleArray {
+        neurons.setActivations(DoubleArray(pattern.size) { bipolar(pattern[it]) })
+        for (i in 0 until maxSteps) {
+            if (step() == 0) {
+                break
+            }
+        }
+        updateStateInfoText()
+        return states!!.copyOf()
+    }
+
+    /**
+     * Store the rows of the input data as the only patterns in the network.
+     */
+    context(Network)
+    override fun trainOnInputData() {
+        storePatterns(inputData)
+    }
+
+    /**
+     * Add the current state to the patterns stored in the network.
+     */
+    context(Network)
+    override fun trainOnCurrentPattern() {
+        addPattern(neurons.activations.col(0))
+    }
+
+    /**
+     * Replace the weights with ones that store the rows of [patterns], using [learningRule].
+     */
+    fun storePatterns(patterns: Matrix) {
+        if (patterns.ncol() != neurons.size) {
+            throw IllegalArgumentException("Patterns have ${patterns.ncol()} columns but the network has " +
+                    "${neurons.size} units")
+        }
+        val bipolarPatterns = Matrix(patterns.nrow(), patterns.ncol())
+        for (j in 0 until patterns.ncol()) {
+            for (i in 0 until patterns.nrow()) {
+                bipolarPatterns[i, j] = bipolar(patterns[i, j])
+            }
+        }
+        val newWeights = learningRule.store(bipolarPatterns)
+        weights.setMatrixValues(newWeights)
+        fieldsValid = false
+        updateStateInfoText()
+    }
+
+    /**
+     * Add one pattern to those already stored, using [learningRule].
+     */
+    fun addPattern(pattern: DoubleArray) {
+        learningRule.add(weights.weightMatrix, DoubleArray(pattern.size) { bipolar(pattern[it]) })
+        weights.events.updated.fire()
+        fieldsValid = false
+        updateStateInfoText()
+    }
+
+    /**
+     * Update each unit once and return the number of units that changed state.
+     */
+    context(Network)
+    private fun step(): Int {
+        ensureFields()
+        val s = states!!
+        val n = s.size
+        val changed = when (updateFunction) {
+            UpdateFunction.SYNC -> updateSynchronously()
+            UpdateFunction.SEQ -> {
+                var changed = 0
+                for (i in 0 until n) {
+                    if (updateUnit(i)) changed++
+                }
+                changed
+            }
+            UpdateFunction.RAND -> {
+                val order = randomOrder?.takeIf { it.size == n } ?: IntArray(n) { it }.also { randomOrder = it }
+                for (i in n - 1 downTo 1) {
+                    val j = random.nextInt(i + 1)
+                    val temp = order[i]
+                    order[i] = order[j]
+                    order[j] = temp
+                }
+                var changed = 0
+                for (i in order) {
+                    if (updateUnit(i)) changed++
+                }
+                changed
+            }
+        }
+        val activations = neurons.activations
+        for (i in 0 until n) {
+            activations[i, 0] = s[i]
+        }
+        neurons.events.updated.fire()
+        return changed
+    }
+
+    /**
+     * Set a unit to the sign of its input from the other units, leaving it unchanged if the input is 0. If it changes,
+     * update the local fields and energy.
+     *
+     * @return true if the unit changed state
+     */
+    private fun updateUnit(i: Int): Boolean {
+        val s = states!!
+        val h = fields!!
+        val w = weights.weightMatrix
+        val selfWeight = w[i, i]
+        val newState = sign(h[i] - selfWeight * s[i], s[i])
+        if (newState == s[i]) {
+            return false
+        }
+        // With d the change in state, E changes by -d h_i - 1/2 w_ii d^2, where d = -2 s_i
+        trackedEnergy += 2 * s[i] * h[i] - 2 * selfWeight
+        val delta = newState - s[i]
+        for (j in h.indices) {
+            h[j] += delta * w[j, i]
+        }
+        s[i] = newState
+        return true
+    }
+
+    private fun updateSynchronously(): Int {
+        val s = states!!
+        val h = fields!!
+        val w = weights.weightMatrix
+        var changed = 0
+        for (i in s.indices) {
+            val newState = sign(h[i] - w[i, i] * s[i], s[i])
+            if (newState != s[i]) {
+                s[i] = newState
+                changed++
+            }
+        }
+        if (changed > 0) {
+            recomputeFields()
+        }
+        return changed
+    }
+
+    /**
+     * Recompute the local fields and energy if the weights have changed or the activations were changed from outside.
+     */
+    private fun ensureFields() {
+        if (!listeningToWeights) {
+            weights.events.updated.on { fieldsValid = false }
+            listeningToWeights = true
+        }
+        val activations = neurons.activations
+        val s = states?.takeIf { it.size == neurons.size } ?: DoubleArray(neurons.size).also {
+            states = it
+            fieldsValid = false
+        }
+        for (i in s.indices) {
+            val state = bipolar(activations[i, 0])
+            if (state != s[i]) {
+                s[i] = state
+                fieldsValid = false
+            }
+        }
+        if (!fieldsValid) {
+            recomputeFields()
+        }
+    }
+
+    private fun recomputeFields() {
+        val s = states!!
+        val h = weights.weightMatrix.mv(s)
+        fields = h
+        trackedEnergy = -0.5 * s.indices.sumOf { s[it] * h[it] }
+        fieldsValid = true
+    }
+
+    override fun randomize(randomizer: ProbabilityDistribution?) {
+        weights.randomize(randomizer ?: weightRandomizer)
+        val w = weights.weightMatrix
+        for (i in 0 until w.nrow()) {
+            w[i, i] = 0.0
+            for (j in 0 until i) {
+                w[i, j] = w[j, i]
+            }
+        }
+        weights.events.updated.fire()
+        fieldsValid = false
+    }
+
+    /**
+     * Order in which units are updated.
+     */
+    enum class UpdateFunction {
+        /**
+         * Update units one at a time in a new random order each time.
+         */
+        RAND {
+            override fun toString() = "Random"
+        },
+
+        /**
+         * Update units one at a time in index order.
+         */
+        SEQ {
+            override fun toString() = "Sequential"
+        },
+
+        /**
+         * Update all units at once based on the previous state.
+         */
+        SYNC {
+            override fun toString() = "Synchronous"
+        }
+    }
+
+    /**
+     * Ways of computing weights from bipolar patterns. Approximate capacities are for random patterns in a network
+     * with n units.
+     */
+    enum class LearningRule {
+
+        /**
+         * Sum of the outer products of the patterns, divided by n, with no self connections. Capacity about 0.14 n.
+         */
+        HEBBIAN {
+            override fun store(patterns: Matrix) = patterns.tm(patterns).mul(1.0 / patterns.ncol()).zeroDiagonal()
+
+            override fun add(weights: Matrix, pattern: DoubleArray) {
+                val n = pattern.size
+                for (j in 0 until n) {
+                    for (i in 0 until n) {
+                        if (i != j) {
+                            weights[i, j] += pattern[i] * pattern[j] / n
+                        }
+                    }
+                }
+            }
+
+            override fun toString() = "Hebbian"
+        },
+
+        /**
+         * Storkey's rule, which subtracts the part of each new pattern's outer product that is predicted by the local
+         * fields of the patterns already stored. Incremental like the Hebbian rule but with a capacity of about
+         * 0.25 n.
+         */
+        STORKEY {
+            override fun store(patterns: Matrix) = Matrix(patterns.ncol(), patterns.ncol()).also { weights ->
+                for (p in 0 until patterns.nrow()) {
+                    add(weights, patterns.row(p))
+                }
+            }
+
+            override fun add(weights: Matrix, pattern: DoubleArray) {
+                val n = pattern.size
+                // With no self connections, the field at i from units other than i and j is h_i - w_ij x_j, which
+                // reduces the rule to x_i x_j - x_i h_j - h_i x_j + 2 w_ij
+                val h = weights.mv(pattern)
+                for (j in 0 until n) {
+                    for (i in 0 until n) {
+                        if (i != j) {
+                            val x = pattern[i] * pattern[j] - pattern[i] * h[j] - h[i] * pattern[j]
+                            weights[i, j] += (x + 2 * weights[i, j]) / n
+                        }
+                    }
+                }
+            }
+
+            override fun toString() = "Storkey"
+        },
+
+        /**
+         * Projection onto the space spanned by the patterns, computed with a pseudo-inverse, so that every stored
+         * pattern is a fixed point as long as the patterns are linearly independent. Capacity up to n - 1
+         * patterns. Self connections are kept but do not count towards a unit's input when it is updated.
+         */
+        PSEUDO_INVERSE {
+            override fun store(patterns: Matrix): Matrix {
+                val overlaps = patterns.mt(patterns)
+                for (i in 0 until overlaps.nrow()) {
+                    overlaps[i, i] += 1e-10
+                }
+                return patterns.tm(overlaps.inverse().mm(patterns))
+            }
+
+            override fun add(weights: Matrix, pattern: DoubleArray) {
+                // Greville's update of the projection: add the outer product of the part of the pattern that is
+                // orthogonal to those already stored
+                val projection = weights.mv(pattern)
+                val residual = DoubleArray(pattern.size) { pattern[it] - projection[it] }
+                val norm = residual.sumOf { it * it }
+                if (norm < 1e-9) {
+                    return
+                }
+                for (j in residual.indices) {
+                    for (i in residual.indices) {
+                        weights[i, j] += residual[i] * residual[j] / norm
+                    }
+                }
+            }
+
+            override fun toString() = "Pseudo-inverse"
+        };
+
+        /**
+         * Returns weights storing the bipolar patterns in the rows of [patterns].
+         */
+        abstract fun store(patterns: Matrix): Matrix
+
+        /**
+         * Change [weights] in place to also store a bipolar pattern.
+         */
+        abstract fun add(weights: Matrix, pattern: DoubleArray)
+    }
+
+    /**
+     * Helper class for creating new array based Hopfield nets using
+     * [org.simbrain.util.propertyeditor.AnnotatedPropertyEditor].
+     */
+    class HopfieldArrayCreator : EditableObject {
+
+        @UserParameter(label = "Number of neurons", order = 10)
+        var numNeurons: Int = 100
+
+        @UserParameter(label = "Learning rule", order = 20)
+        var learningRule = LearningRule.HEBBIAN
+
+        fun create(): HopfieldArrayNetwork {
+            return HopfieldArrayNetwork(numNeurons).also { it.learningRule = learningRule }
+        }
+    }
+
+    companion object {
+
+        const val DEFAULT_ROWS_INPUT_DATA = 5
+
+        /**
+         * Values greater than 0 are 1 and the rest -1.
+         */
+        fun bipolar(value: Double) = if (value > 0) 1.0 else -1.0
+    }
+}
+
+private fun sign(value: Double, ifZero: Double) = when {
+    value > 0 -> 1.0
+    value < 0 -> -1.0
+    else -> ifZero
+}
+
+private fun Matrix.zeroDiagonal(): Matrix {
+    for (i in 0 until minOf(nrow(), ncol())) {
+        this[i, i] = 0.0
+    }
+    return this
+}
@@ -32,6 +32,8 @@ import org.simbrain.util.math.SigmoidFunctions
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.stats.ProbabilityDistribution
 import smile.math.matrix.Matrix
+import java.util.stream.IntStream
+import kotlin.random.Random
 
 /**
  * RestrictedBoltzmannMachine implements restricted a Boltzman Machine
@@ -60,6 +62,43 @@ class RestrictedBoltzmannMachine : Subnetwork, UnsupervisedNetwork {
 
     override val trainer = UnsupervisedTrainer()
 
+    @UserParameter(label = "Gibbs steps", description = "Number of steps of Gibbs sampling (k in CD-k) used to get " +
+            "the negative statistics", minimumValue = 1.0, order = 10)
+    var gibbsSteps = 1
+
+    @UserParameter(label = "Batch size", description = "Number of input patterns per weight update when training on " +
+            "the input data", minimumValue = 1.0, order = 20)
+    var batchSize = 10
+
+    @UserParameter(label = "Persistent", description = "If true, Gibbs chains continue from one batch to the next " +
+            "(persistent contrastive divergence) rather than starting from each batch", order = 30)
+    var persistent = false
+
+    /**
+     * Hidden states of the Gibbs chains used in persistent contrastive divergence, one per column. There are
+     * [batchSize] chains; a shorter batch advances only the first of them.
+     */
+    @Transient
+    internal var persistentChains: Matrix? = null
+        private set
+
+    /**
+     * Streams used to sample binary states in training, so that results do not depend on whether columns are sampled
+     * in parallel. Rooted at the network's seed once the machine is trained in a network.
+     */
+    @Transient
+    private var samplingStreams: RandomStreams? = null
+
+    @Transient
+    private var samplingCount = 0L
+
+    /**
+     * Mean summed squared error between input patterns and their reconstructions over the last epoch of training, or
+     * for the last pattern if trained on the current pattern.
+     */
+    var reconstructionError: Double? = null
+        private set
+
     constructor(numVisibleNodes: Int, numHiddenNodes: Int): super() {
         this.label = "Restricted Boltzmann Machine"
         this.inputData = Matrix.rand(defaultRowsInputData, numVisibleNodes)
@@ -99,7 +138,8 @@ class RestrictedBoltzmannMachine : Subnetwork, UnsupervisedNetwork {
             val visE = (visibleLayer.activations * visibleLayer.biases).sum()
             val hidE = (hiddenLayer.activations * hiddenLayer.biases).sum()
             val wtsE = hiddenLayer.activations.mm(visibleLayer.activations.transpose()).mul(visibleToHidden.weightMatrix).sum()
-            return "Energy: ${(-visE - hidE - wtsE).roundToString(2)}"
+            val energy = "Energy: ${(-visE - hidE - wtsE).roundToString(2)}"
+            return reconstructionError?.let { "$energy  Reconstruction error: ${it.roundToString(3)}" } ?: energy
         }
 
     fun updateStateInfoText() {
@@ -117,61 +157,147 @@ class RestrictedBoltzmannMachine : Subnetwork, UnsupervisedNetwork {
         // "Positive phase": visible -> hidden
         hiddenLayer.accumulateInputs()
         hiddenLayer.update()
-        updateWithSampling(hiddenLayer)
+        updateWithSampling(hiddenLayer, random)
         
         // Negative phase: hidden -> visible "backwards" through weights
         // Note this is a "reconstructed visible" state, but for Simbrain we are setting the gui visible layer to the reconstructed values
         // Make the hidden layer a row vector and left multiply with the matrix, the make the result back into a column vector
         visibleLayer.addInputs(hiddenLayer.activations.transpose().mm(visibleToHidden.weightMatrix).transpose())
         visibleLayer.update()
-        updateWithSampling(visibleLayer)
+        updateWithSampling(visibleLayer, random)
 
         updateStateInfoText()
     }
 
     context(Network)
     override fun trainOnInputData() {
-        inputData.toArray().forEach { row ->
-            visibleLayer.activations = row.toMatrix()
-            trainOnCurrentPattern()
+        useNetworkStreams()
+        val rows = (0 until inputData.nrow()).shuffled(random)
+        var error = 0.0
+        rows.chunked(batchSize.coerceAtLeast(1)).forEach { batch ->
+            error += trainOnBatch(inputData.rowsAsColumns(batch.toIntArray()))
         }
+        reconstructionError = error / rows.size
+        updateStateInfoText()
     }
 
     context(Network)
     override fun trainOnCurrentPattern() {
+        useNetworkStreams()
 
-        val learningRate = trainer.learningRate
-
-        // "Positive phase"
+        // "Positive phase", so that the hidden layer shows its response to the pattern
         hiddenLayer.accumulateInputs()
         hiddenLayer.update()
-        updateWithSampling(hiddenLayer)
+        updateWithSampling(hiddenLayer, random)
+
+        reconstructionError = trainOnBatch(visibleLayer.activations.clone())
+        updateStateInfoText()
+    }
+
+    /**
+     * Apply one step of contrastive divergence to a mini-batch of visible patterns stacked as columns, using [gibbsSteps]
+     * steps of Gibbs sampling to get the negative statistics. If [persistent] is set the Gibbs chains continue from
+     * where the last batch left them, as in persistent contrastive divergence, rather than starting from the batch.
+     *
+     * The whole batch is propagated with a single matrix product per phase, and weights and biases are changed in
+     * place once per batch.
+     *
+     * @return the summed squared error between the batch and its reconstruction, before the weights were changed
+     */
+    fun trainOnBatch(visible: Matrix): Double {
+        val weights = visibleToHidden.weightMatrix
+        val visibleBiases = visibleLayer.biases
+        val hiddenBiases = hiddenLayer.biases
+        val numPatterns = visible.ncol()
+
+        // Positive phase
+        val hiddenProbabilities = weights.mm(visible).logistic(hiddenBiases)
+        val hiddenSamples = updateWithSampling(hiddenProbabilities, nextSamplingStreams())
+
+        // Reconstruction of the batch, which is also the first step of the chain unless chains are persistent
+        val reconstruction = weights.tm(hiddenSamples).logistic(visibleBiases)
+        var error = 0.0
+        for (j in 0 until numPatterns) {
+            for (i in 0 until visible.nrow()) {
+                val diff = visible[i, j] - reconstruction[i, j]
+                error += diff * diff
+            }
+        }
 
-        // Get "reconstructed" activations
-        var reconstructedVisible = hiddenLayer.activations.transpose().mm(visibleToHidden.weightMatrix).transpose()
-        reconstructedVisible += visibleLayer.biases
-        updateWithSampling(reconstructedVisible)
-        var reconstructedHidden = visibleToHidden.weightMatrix.mm(reconstructedVisible)
-        reconstructedHidden += hiddenLayer.biases
-        updateWithSampling(reconstructedHidden)
+        // Negative phase
+        val chains = if (persistent) chainsFor(hiddenSamples) else null
+        var chainHidden = when {
+            chains == null || chains === hiddenSamples -> hiddenSamples
+            else -> chains.columns(numPatterns)
+        }
+        var chainVisible = reconstruction
+        var chainHiddenProbabilities = hiddenProbabilities
+        repeat(gibbsSteps.coerceAtLeast(1)) { step ->
+            if (step > 0 || chainHidden !== hiddenSamples) {
+                chainVisible = weights.tm(chainHidden).logistic(visibleBiases)
+            }
+            chainVisible = updateWithSampling(chainVisible, nextSamplingStreams())
+            chainHiddenProbabilities = weights.mm(chainVisible).logistic(hiddenBiases)
+            chainHidden = updateWithSampling(chainHiddenProbabilities, nextSamplingStreams())
+        }
+        if (chains != null) {
+            for (j in 0 until numPatterns) {
+                for (i in 0 until chainHidden.nrow()) {
+                    chains[i, j] = chainHidden[i, j]
+                }
+            }
+        }
+        val numChains = chainVisible.ncol()
 
-        // Positive gradient: hidden layer outer product visible layer
-        val positiveGradient = hiddenLayer.activations.mm(visibleLayer.activations.transpose())
-        // Negative gradient: same as positive but use reconstructions
-        val negativeGradient = reconstructedHidden.mm(reconstructedVisible.transpose())
+        // Positive gradient: hidden probabilities outer product visible patterns, averaged over the batch
+        val weightDeltas = hiddenProbabilities.mt(visible).mul(1.0 / numPatterns)
+        // Negative gradient: same but using the chains
+        weightDeltas.sub(chainHiddenProbabilities.mt(chainVisible).mul(1.0 / numChains))
+        weights.add(weightDeltas.mul(trainer.learningRate))
+        visibleToHidden.events.updated.fire()
 
-        //  Weight updates
-        visibleToHidden.setMatrixValues(visibleToHidden.weightMatrix + (positiveGradient - negativeGradient) * learningRate)
+        visibleLayer.updateBiases(meanDifference(visible, chainVisible), trainer.learningRate)
+        hiddenLayer.updateBiases(meanDifference(hiddenProbabilities, chainHiddenProbabilities), trainer.learningRate)
 
-        //  Bias updates.
-        visibleLayer.updateBiases(visibleLayer.activations - reconstructedVisible, learningRate)
-        hiddenLayer.updateBiases(hiddenLayer.activations - reconstructedHidden, learningRate)
+        return error
+    }
 
-        updateStateInfoText()
+    /**
+     * The persistent chains, one per pattern of a full batch. They are started from the hidden samples of the first
+     * batch, repeated if that batch is short, and kept at that size for later short batches.
+     */
+    private fun chainsFor(hiddenSamples: Matrix): Matrix {
+        val numChains = maxOf(batchSize, hiddenSamples.ncol())
+        persistentChains?.takeIf { it.nrow() == hiddenLayer.size && it.ncol() == numChains }?.let { return it }
+        val chains = if (hiddenSamples.ncol() == numChains) {
+            hiddenSamples
+        } else {
+            Matrix(hiddenSamples.nrow(), numChains).also {
+                for (j in 0 until numChains) {
+                    for (i in 0 until hiddenSamples.nrow()) {
+                        it[i, j] = hiddenSamples[i, j % hiddenSamples.ncol()]
+                    }
+                }
+            }
+        }
+        persistentChains = chains
+        return chains
+    }
+
+    context(Network)
+    private fun useNetworkStreams() {
+        if (samplingStreams == null) {
+            samplingStreams = randomStreamsFor(this@RestrictedBoltzmannMachine)
+        }
+    }
 
+    private fun nextSamplingStreams(): RandomStreams {
+        val streams = samplingStreams ?: RandomStreams(Random.nextLong()).also { samplingStreams = it }
+        return streams.split(samplingCount++)
     }
 
     override fun randomize(randomizer: ProbabilityDistribution?) {
+        persistentChains = null
         visibleToHidden.randomize(Network.weightRandomizer)
         visibleLayer.randomizeBiases(Network.biasesRandomizer)
         hiddenLayer.randomizeBiases(Network.biasesRandomizer)
@@ -194,24 +320,71 @@ class RestrictedBoltzmannMachine : Subnetwork, UnsupervisedNetwork {
 }
 
 /**
- * Apply logistic sigmoid to components, then treat the resulting values as probabilities and use those
- * probabilities to replace with 0 or 1.
+ * Add the column vector of biases to each column and apply the logistic sigmoid to each entry, in place.
+ */
+private fun Matrix.logistic(biases: Matrix): Matrix {
+    for (j in 0 until ncol()) {
+        for (i in 0 until nrow()) {
+            this[i, j] = SigmoidFunctions.logistic(this[i, j] + biases[i, 0])
+        }
+    }
+    return this
+}
+
+/**
+ * A copy of the first [n] columns, or this matrix if it has no more than that.
+ */
+private fun Matrix.columns(n: Int): Matrix {
+    if (ncol() <= n) {
+        return this
+    }
+    val result = Matrix(nrow(), n)
+    for (j in 0 until n) {
+        for (i in 0 until nrow()) {
+            result[i, j] = this[i, j]
+        }
+    }
+    return result
+}
+
+/**
+ * Treat the entries of a matrix as probabilities and return a matrix of the same shape with each replaced by 0 or 1
+ * using those probabilities. Columns are sampled in parallel for large matrices, each with its own stream.
  */
-private fun updateWithSampling(array: Matrix) {
-    array.validateColumnVector()
-    (0 until array.nrow()).forEach { i ->
-        array.set(i, 0, SigmoidFunctions.logistic(array.get(i, 0)))
-        array.set(i, 0, if (Math.random() < array.get(i, 0)) 1.0 else 0.0)
+private fun updateWithSampling(probabilities: Matrix, streams: RandomStreams): Matrix {
+    val samples = Matrix(probabilities.nrow(), probabilities.ncol())
+    val columns = IntStream.range(0, probabilities.ncol())
+    val parallel = probabilities.size() >= PARALLEL_SAMPLING_THRESHOLD
+    (if (parallel) columns.parallel() else columns).forEach { j ->
+        val random = streams.stream(j.toLong())
+        for (i in 0 until probabilities.nrow()) {
+            samples[i, j] = if (random.nextDouble() < probabilities[i, j]) 1.0 else 0.0
+        }
     }
+    return samples
+}
+
+/**
+ * Number of entries above which sampling is done in parallel.
+ */
+private const val PARALLEL_SAMPLING_THRESHOLD = 10_000
+
+/**
+ * Difference between the row means of two matrices, as a column vector.
+ */
+private fun meanDifference(a: Matrix, b: Matrix): Matrix {
+    val aSums = a.rowSums()
+    val bSums = b.rowSums()
+    return Matrix.column(DoubleArray(a.nrow()) { aSums[it] / a.ncol() - bSums[it] / b.ncol() })
 }
 
 /**
  * Same as above but the NeuronArray is assumed to have been updated and sigmoidal which would apply the sigmoid.
  */
-private fun updateWithSampling(na: NeuronArray) {
+private fun updateWithSampling(na: NeuronArray, random: Random) {
     na.activations.validateColumnVector()
     (0 until na.activations.nrow()).forEach{ i ->
-        na.activations.set(i, 0, if (Math.random() < na.activations.get(i,0)) 1.0 else 0.0)
+        na.activations.set(i, 0, if (random.nextDouble() < na.activations.get(i,0)) 1.0 else 0.0)
     }
 }
 
@@ -0,0 +1,429 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.subnetworks
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.simbrain.network.core.*
+import org.simbrain.network.trainers.UnsupervisedNetwork
+import org.simbrain.network.trainers.UnsupervisedTrainer
+import org.simbrain.network.util.Alignment
+import org.simbrain.network.util.Direction
+import org.simbrain.network.util.alignNetworkModels
+import org.simbrain.network.util.offsetNetworkModel
+import org.simbrain.util.UserParameter
+import org.simbrain.util.propertyeditor.EditableObject
+import org.simbrain.util.rowsAsColumns
+import org.simbrain.util.stats.ProbabilityDistribution
+import smile.math.matrix.Matrix
+import kotlin.math.ceil
+import kotlin.math.exp
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sqrt
+
+/**
+ * A self-organizing map whose units are a [NeuronArray] and whose weights are a [WeightMatrix], so that it can be
+ * trained efficiently on maps with thousands of units. Compare [SOMNetwork], which uses individual neurons and
+ * synapses.
+ *
+ * Units are arranged in a square lattice, row by row, matching how the map layer is drawn in grid mode. The best
+ * matching unit for an input x is found with one matrix-vector product, using |w - x|^2 = |w|^2 - 2 w·x + |x|^2.
+ * The neighborhood function is a Gaussian of lattice distance with standard deviation [neighborhoodSize], computed
+ * from a table indexed by lattice offset rather than from neuron locations.
+ *
+ * Training on the input data either presents each row in turn (the classic online rule) or, in [batchMode], runs one
+ * epoch of the batch SOM algorithm: every row is assigned to its best matching unit, in parallel, and then each unit's
+ * weights are set to the neighborhood-weighted mean of the rows.
+ */
+class SOMArrayNetwork : Subnetwork, UnsupervisedNetwork {
+
+    override lateinit var inputLayer: NeuronArray
+
+    lateinit var mapLayer: NeuronArray
+
+    /**
+     * Weights from the input layer to the map layer. Row i holds the weight vector of map unit i.
+     */
+    lateinit var weights: WeightMatrix
+
+    override lateinit var inputData: Matrix
+
+    override val trainer = UnsupervisedTrainer()
+
+    val defaultRowsInputData = 10
+
+    /**
+     * Number of columns of the lattice. The number of rows is whatever is needed to hold all the units.
+     */
+    var latticeColumns = 1
+        private set
+
+    val latticeRows get() = (mapLayer.size + latticeColumns - 1) / latticeColumns
+
+    @UserParameter(
+        label = "Initial neighborhood size",
+        description = "Initial standard deviation, in lattice units, of the neighborhood function",
+        minimumValue = 0.0,
+        order = 10
+    )
+    var initialNeighborhoodSize = 3.0
+
+    @UserParameter(
+        label = "Neighborhood decay amount",
+        description = "Amount the neighborhood size is reduced after each training pattern, or each epoch in batch " +
+                "mode",
+        minimumValue = 0.0,
+        order = 20
+    )
+    var neighborhoodDecayAmount = 0.01
+
+    @UserParameter(
+        label = "Learning decay rate",
+        description = "Fraction by which the learning rate is reduced after each training pattern",
+        minimumValue = 0.0,
+        maximumValue = 1.0,
+        order = 30
+    )
+    var learningDecayRate = 0.002
+
+    @UserParameter(
+        label = "Batch mode",
+        description = "If true, each pass through the input data is one epoch of the batch SOM algorithm",
+        order = 40
+    )
+    var batchMode = false
+
+    /**
+     * Current standard deviation of the neighborhood function, in lattice units.
+     */
+    var neighborhoodSize = initialNeighborhoodSize
+
+    /**
+     * Current learning rate. Starts at the trainer's learning rate and decays with each training pattern.
+     */
+    var learningRate = trainer.learningRate
+
+    /**
+     * Index of the best matching unit for the last input, or -1 if there has been none.
+     */
+    var winner = -1
+        private set
+
+    /**
+     * Squared lattice distance between two units, indexed by their row and column offsets. See [offsetIndex].
+     */
+    @Transient
+    private var latticeDistanceTable: DoubleArray? = null
+
+    /**
+     * Neighborhood function values indexed like [latticeDistanceTable], for [kernelSize].
+     */
+    @Transient
+    private var kernel: DoubleArray? = null
+
+    @Transient
+    private var kernelSize = Double.NaN
+
+    constructor(numInputs: Int, numMapUnits: Int) : super() {
+        label = "SOM Network"
+        inputData = Matrix.rand(defaultRowsInputData, numInputs)
+
+        inputLayer = NeuronArray(numInputs).apply {
+            label = "Input layer"
+            isClamped = true
+        }
+        addModel(inputLayer)
+
+        mapLayer = NeuronArray(numMapUnits).apply {
+            label = "SOM map"
+            gridMode = true
+        }
+        addModel(mapLayer)
+        latticeColumns = ceil(sqrt(numMapUnits.toDouble())).toInt()
+
+        weights = WeightMatrix(inputLayer, mapLayer)
+        addModel(weights)
+        randomize()
+
+        alignNetworkModels(inputLayer, mapLayer, Alignment.VERTICAL)
+        offsetNetworkModel(inputLayer, mapLayer, Direction.NORTH, 300.0)
+    }
+
+    @XStreamConstructor
+    constructor() : super()
+
+    context(Network)
+    override fun accumulateInputs() {
+        inputLayer.accumulateInputs()
+    }
+
+    /**
+     * Find the best matching unit for the current input and make it the only active map unit. Does not learn.
+     */
+    context(Network)
+    override fun update() {
+        inputLayer.update()
+        val input = inputLayer.activations.col(0)
+        showWinner(findWinner(input, rowSquaredNorms(weights.weightMatrix)))
+    }
+
+    context(Network)
+    override fun trainOnInputData() {
+        if (batchMode) {
+            trainBatchEpoch(inputData)
+        } else {
+            inputData.toArray().forEach { row ->
+                inputLayer.setActivations(row)
+                trainOnCurrentPattern()
+            }
+        }
+    }
+
+    /**
+     * One step of the online SOM rule: move the best matching unit and its lattice neighbors towards the current
+     * input, then decay the learning rate and neighborhood size.
+     */
+    context(Network)
+    override fun trainOnCurrentPattern() {
+        val w = weights.weightMatrix
+        val input = inputLayer.activations.col(0)
+        val bmu = findWinner(input, rowSquaredNorms(w))
+        val h = neighborhoodKernel()
+        forEachNeighbor(bmu) { unit, offset ->
+            val rate = learningRate * h[offset]
+            if (rate > 0) {
+                for (k in input.indices) {
+                    w[unit, k] += rate * (input[k] - w[unit, k])
+                }
+            }
+        }
+        learningRate -= learningRate * learningDecayRate
+        neighborhoodSize = max(neighborhoodSize - neighborhoodDecayAmount, 0.0)
+        weights.events.updated.fire()
+        showWinner(bmu)
+    }
+
+    /**
+     * One epoch of the batch SOM algorithm over the rows of [data]. Each unit's weights become the average of the
+     * rows, each weighted by the neighborhood function between the unit and the row's best matching unit. Units with
+     * no rows in their neighborhood keep their weights. The neighborhood size is decayed once per epoch.
+     */
+    fun trainBatchEpoch(data: Matrix) {
+        val w = weights.weightMatrix
+        val numUnits = w.nrow()
+        val numInputs = w.ncol()
+        if (data.ncol() != numInputs) {
+            throw IllegalArgumentException("Data has ${data.ncol()} columns but the SOM has $numInputs inputs")
+        }
+        if (data.nrow() == 0) return
+
+        // Assign rows to best matching units and sum the rows assigned to each unit, in parallel over chunks of rows
+        val norms = rowSquaredNorms(w)
+        val partials = inParallel(data.nrow()) { start, end ->
+            val sums = Matrix(numUnits, numInputs)
+            val counts = DoubleArray(numUnits)
+            val products = w.mm(data.rowsAsColumns(IntArray(end - start) { start + it }))
+            for (j in 0 until end - start) {
+                val bmu = argMinDistance(norms) { products[it, j] }
+                counts[bmu]++
+                for (k in 0 until numInputs) {
+                    sums[bmu, k] += data[start + j, k]
+                }
+            }
+            sums to counts
+        }
+        val sums = partials.first().first
+        val counts = partials.first().second
+        partials.drop(1).forEach { (partialSums, partialCounts) ->
+            sums.add(partialSums)
+            partialCounts.forEachIndexed { unit, count -> counts[unit] += count }
+        }
+
+        // Smooth the sums over the lattice, in parallel over chunks of units
+        val h = neighborhoodKernel()
+        val newWeights = w.clone()
+        inParallel(numUnits) { start, end ->
+            val numerator = DoubleArray(numInputs)
+            for (unit in start until end) {
+                numerator.fill(0.0)
+                var denominator = 0.0
+                forEachNeighbor(unit) { other, offset ->
+                    if (counts[other] > 0 && h[offset] > 0) {
+                        denominator += h[offset] * counts[other]
+                        for (k in 0 until numInputs) {
+                            numerator[k] += h[offset] * sums[other, k]
+                        }
+                    }
+                }
+                if (denominator > 0) {
+                    for (k in 0 until numInputs) {
+                        newWeights[unit, k] = numerator[k] / denominator
+                    }
+                }
+            }
+        }
+        neighborhoodSize = max(neighborhoodSize - neighborhoodDecayAmount, 0.0)
+        weights.setMatrixValues(newWeights)
+    }
+
+    /**
+     * Index of the best matching unit for each row of [data], computed in parallel.
+     */
+    fun findWinners(data: Matrix): IntArray {
+        val w = weights.weightMatrix
+        val norms = rowSquaredNorms(w)
+        return inParallel(data.nrow()) { start, end ->
+            val products = w.mm(data.rowsAsColumns(IntArray(end - start) { start + it }))
+            IntArray(end - start) { j -> argMinDistance(norms) { products[it, j] } }
+        }.fold(IntArray(0)) { winners, chunk -> winners + chunk }
+    }
+
+    /**
+     * Restore the initial learning rate and neighborhood size.
+     */
+    fun reset() {
+        learningRate = trainer.learningRate
+        neighborhoodSize = initialNeighborhoodSize
+    }
+
+    override fun randomize(randomizer: ProbabilityDistribution?) {
+        weights.randomize(randomizer ?: Network.weightRandomizer)
+    }
+
+    private fun findWinner(input: DoubleArray, norms: DoubleArray): Int {
+        val products = weights.weightMatrix.mv(input)
+        return argMinDistance(norms) { products[it] }
+    }
+
+    private fun showWinner(bmu: Int) {
+        winner = bmu
+        mapLayer.setActivations(DoubleArray(mapLayer.size).also { if (bmu >= 0) it[bmu] = 1.0 })
+    }
+
+    /**
+     * Call [action] with each unit within three neighborhood sizes of [unit] on the lattice (including [unit] itself)
+     * and the index of their offset in the [neighborhoodKernel] table.
+     */
+    private inline fun forEachNeighbor(unit: Int, action: (other: Int, offset: Int) -> Unit) {
+        val rows = latticeRows
+        val radius = min(ceil(3 * neighborhoodSize).toInt(), max(rows, latticeColumns))
+        val row = unit / latticeColumns
+        val column = unit % latticeColumns
+        for (otherRow in max(row - radius, 0)..min(row + radius, rows - 1)) {
+            for (otherColumn in max(column - radius, 0)..min(column + radius, latticeColumns - 1)) {
+                val other = otherRow * latticeColumns + otherColumn
+                if (other < mapLayer.size) {
+                    action(other, offsetIndex(otherRow - row, otherColumn - column))
+                }
+            }
+        }
+    }
+
+    private fun offsetIndex(rowOffset: Int, columnOffset: Int) =
+        (rowOffset + latticeRows - 1) * (2 * latticeColumns - 1) + columnOffset + latticeColumns - 1
+
+    /**
+     * Gaussian neighborhood function for the current [neighborhoodSize], indexed by lattice offset. Recomputed only
+     * when the neighborhood size changes.
+     */
+    private fun neighborhoodKernel(): DoubleArray {
+        val distances = latticeDistanceTable ?: DoubleArray((2 * latticeRows - 1) * (2 * latticeColumns - 1)).also {
+            for (dr in -(latticeRows - 1) until latticeRows) {
+                for (dc in -(latticeColumns - 1) until latticeColumns) {
+                    it[offsetIndex(dr, dc)] = (dr * dr + dc * dc).toDouble()
+                }
+            }
+            latticeDistanceTable = it
+        }
+        kernel?.let { if (kernelSize == neighborhoodSize) return it }
+        val twoVariance = 2 * neighborhoodSize * neighborhoodSize
+        return DoubleArray(distances.size) { i ->
+            when {
+                distances[i] == 0.0 -> 1.0
+                twoVariance == 0.0 -> 0.0
+                else -> exp(-distances[i] / twoVariance)
+            }
+        }.also {
+            kernel = it
+            kernelSize = neighborhoodSize
+        }
+    }
+
+    /**
+     * Helper class for creating new array based SOMs using [org.simbrain.util.propertyeditor.AnnotatedPropertyEditor].
+     */
+    class SOMArrayCreator : EditableObject {
+
+        @UserParameter(label = "Number of map units", order = 10)
+        var numMapUnits: Int = 100
+
+        @UserParameter(label = "Number of inputs", order = 20)
+        var numInputs: Int = 16
+
+        fun create(): SOMArrayNetwork {
+            return SOMArrayNetwork(numInputs, numMapUnits)
+        }
+    }
+}
+
+/**
+ * Squared length of each row of a matrix.
+ */
+private fun rowSquaredNorms(matrix: Matrix): DoubleArray {
+    val norms = DoubleArray(matrix.nrow())
+    for (j in 0 until matrix.ncol()) {
+        for (i in 0 until matrix.nrow()) {
+            val value = matrix[i, j]
+            norms[i] += value * value
+        }
+    }
+    return norms
+}
+
+/**
+ * Index of the unit with the smallest |w|^2 - 2 w·x, which is the unit closest to x.
+ */
+private inline fun argMinDistance(norms: DoubleArray, product: (Int) -> Double): Int {
+    var best = -1
+    var bestDistance = Double.POSITIVE_INFINITY
+    for (unit in norms.indices) {
+        val distance = norms[unit] - 2 * product(unit)
+        if (distance < bestDistance) {
+            bestDistance = distance
+            best = unit
+        }
+    }
+    return best
+}
+
+/**
+ * Split 0 until [size] into chunks, run [block] on each chunk on [Dispatchers.Default], and return the results in
+ * order.
+ */
+private fun <T> inParallel(size: Int, block: (start: Int, end: Int) -> T): List<T> {
+    val chunkSize = max(1, ceil(size.toDouble() / Runtime.getRuntime().availableProcessors()).toInt())
+    return runBlocking {
+        (0 until size step chunkSize).map { start ->
+            async(Dispatchers.Default) { block(start, min(start + chunkSize, size)) }
+        }.awaitAll()
+    }
+}
@@ -0,0 +1,210 @@
+package org.simbrain.network.trainers
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import org.simbrain.network.core.biases
+import org.simbrain.network.subnetworks.SRNNetwork
+import org.simbrain.network.updaterules.interfaces.DifferentiableUpdateRule
+import org.simbrain.util.addi
+import org.simbrain.util.shapeString
+import smile.math.matrix.Matrix
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.random.Random
+
+/**
+ * Train an SRN for one pass through a dataset whose rows are a sequence, ordered in time, using truncated
+ * backpropagation through time.
+ *
+ * The sequence is split into [numStreams] contiguous parts that are run side by side, one per column of each weight
+ * product, so the network learns from several places in the sequence at once. Each stream is unrolled over windows of
+ * [windowSize] steps. Errors are backpropagated through the context weights to the start of the window, and the
+ * weights are updated once per window. The hidden state of each stream is carried from one window to the next, so
+ * the network still sees the whole sequence in order, but gradients do not flow across windows. Streams start from the
+ * current activations of the context layer. The hidden and output rules must support batched activation; see
+ * [DifferentiableUpdateRule.supportsBatchActivation].
+ *
+ * Streams are divided into chunks whose gradients are computed in parallel, as in [trainBatch]. Each chunk draws
+ * noise from its own generator, seeded from [random]. The activations of the network's layers are not changed.
+ *
+ * @return the sum squared error for each row, computed before the weights were changed by the window containing it
+ */
+suspend fun SRNNetwork.trainTruncatedBPTT(
+    dataset: MatrixDataset = trainingSet,
+    windowSize: Int = 10,
+    numStreams: Int = 1,
+    epsilon: Double = .1,
+    minStreamsPerChunk: Int = 16,
+    random: Random = Random.Default
+): DoubleArray {
+    val inputs = dataset.inputs
+    val targets = dataset.targets
+    if (inputs.ncol() != inputLayer.size || targets.ncol() != outputLayer.size || inputs.nrow() != targets.nrow()) {
+        throw IllegalArgumentException("Inputs ${inputs.shapeString} and targets ${targets.shapeString} do not " +
+                "match layers of size ${inputLayer.size} and ${outputLayer.size}")
+    }
+    if (windowSize < 1) {
+        throw IllegalArgumentException("Window size must be at least 1")
+    }
+    if (!wmList.supportsBatchTraining) {
+        throw IllegalArgumentException("Update rules of the hidden and output layers must support batch activation")
+    }
+    val numRows = inputs.nrow()
+    val rowErrors = DoubleArray(numRows)
+    if (numRows == 0) {
+        return rowErrors
+    }
+
+    val streams = numStreams.coerceIn(1, numRows)
+    val streamLength = (numRows + streams - 1) / streams
+    val chunkSize = max(minStreamsPerChunk, ceil(streams.toDouble() / Runtime.getRuntime().availableProcessors()).toInt())
+    val chunks = (0 until streams step chunkSize).map { start ->
+        val chunkRandom = Random(random.nextLong())
+        StreamChunk(this, dataset, start, min(start + chunkSize, streams), streamLength, windowSize, chunkRandom)
+    }
+
+    val inputToHidden = wmList[0]
+    val hiddenToOutput = wmList[1]
+    for (windowStart in 0 until streamLength step windowSize) {
+        val steps = min(windowSize, streamLength - windowStart)
+        val gradients = if (chunks.size == 1) {
+            chunks[0].windowGradients(windowStart, steps, rowErrors)
+        } else {
+            coroutineScope {
+                chunks.map { async(Dispatchers.Default) { it.windowGradients(windowStart, steps, rowErrors) } }
+                    .awaitAll()
+                    .reduce { acc, g -> acc.accumulate(g) }
+            }
+        }
+        listOf(inputToHidden, hiddenToOutput, contextToHidden).forEachIndexed { i, wm ->
+            wm.weightMatrix.add(gradients.weightDeltas[i].mul(epsilon))
+            wm.events.updated.fire()
+        }
+        hiddenLayer.updateBiases(gradients.biasDeltas[0], epsilon)
+        outputLayer.updateBiases(gradients.biasDeltas[1], epsilon)
+    }
+    return rowErrors
+}
+
+/**
+ * A range of streams trained together by [trainTruncatedBPTT], with their hidden state and the buffers the network is
+ * unrolled into. Column j of every matrix belongs to stream [firstStream] + j.
+ */
+private class StreamChunk(
+    val srn: SRNNetwork,
+    val dataset: MatrixDataset,
+    val firstStream: Int,
+    endStream: Int,
+    val streamLength: Int,
+    windowSize: Int,
+    val random: Random
+) {
+
+    val numStreams = endStream - firstStream
+
+    /**
+     * Hidden activations of each stream after the last step, which become the context for the next step.
+     */
+    var state: Matrix = Matrix(srn.hiddenLayer.size, numStreams).also { state ->
+        val context = srn.contextLayer.activations
+        for (j in 0 until numStreams) {
+            for (i in 0 until state.nrow()) {
+                state[i, j] = context[i, 0]
+            }
+        }
+    }
+
+    // Per step buffers, reused for every window. Inputs and targets are gathered from the dataset into preallocated
+    // matrices; the others hold the results of the forward pass for the backward pass.
+    val inputs = Array(windowSize) { Matrix(srn.inputLayer.size, numStreams) }
+    val targets = Array(windowSize) { Matrix(srn.outputLayer.size, numStreams) }
+    val contexts = arrayOfNulls<Matrix>(windowSize)
+    val hidden = arrayOfNulls<Matrix>(windowSize)
+    val hiddenDerivatives = arrayOfNulls<Matrix>(windowSize)
+    val outputs = arrayOfNulls<Matrix>(windowSize)
+    val outputDerivatives = arrayOfNulls<Matrix>(windowSize)
+
+    /**
+     * Row of the dataset seen by a stream at a step, or -1 if the stream has run past the end of the dataset.
+     */
+    fun rowAt(stream: Int, step: Int) = ((firstStream + stream) * streamLength + step).takeIf {
+        step < streamLength && it < dataset.inputs.nrow()
+    } ?: -1
+
+    /**
+     * Run the streams forward through a window, advancing [state], and return the gradients of the window. Errors
+     * are written to [rowErrors] at the rows of this chunk.
+     */
+    fun windowGradients(windowStart: Int, steps: Int, rowErrors: DoubleArray): BatchGradients {
+        val wInputToHidden = srn.wmList[0].weightMatrix
+        val wHiddenToOutput = srn.wmList[1].weightMatrix
+        val wContextToHidden = srn.contextToHidden.weightMatrix
+        val hiddenRule = srn.hiddenLayer.updateRule as DifferentiableUpdateRule
+        val outputRule = srn.outputLayer.updateRule as DifferentiableUpdateRule
+        val hiddenBiases = srn.hiddenLayer.biases
+        val outputBiases = srn.outputLayer.biases
+
+        // Forward pass
+        for (t in 0 until steps) {
+            val x = inputs[t]
+            val y = targets[t]
+            for (j in 0 until numStreams) {
+                val row = rowAt(j, windowStart + t)
+                for (i in 0 until x.nrow()) {
+                    x[i, j] = if (row >= 0) dataset.inputs[row, i] else 0.0
+                }
+                for (i in 0 until y.nrow()) {
+                    y[i, j] = if (row >= 0) dataset.targets[row, i] else 0.0
+                }
+            }
+            contexts[t] = state
+            val hiddenInputs = wInputToHidden.mm(x).add(wContextToHidden.mm(state))
+            hiddenDerivatives[t] = hiddenRule.getDerivative(hiddenInputs.plusColumn(hiddenBiases))
+            state = hiddenRule.getActivation(hiddenInputs, hiddenBiases, random)
+            hidden[t] = state
+            val outputInputs = wHiddenToOutput.mm(state)
+            outputDerivatives[t] = outputRule.getDerivative(outputInputs.plusColumn(outputBiases))
+            outputs[t] = outputRule.getActivation(outputInputs, outputBiases, random)
+        }
+
+        // Backward pass through the window. Steps past the end of the dataset have no error.
+        val inputToHiddenDeltas = Matrix(wInputToHidden.nrow(), wInputToHidden.ncol())
+        val hiddenToOutputDeltas = Matrix(wHiddenToOutput.nrow(), wHiddenToOutput.ncol())
+        val contextToHiddenDeltas = Matrix(wContextToHidden.nrow(), wContextToHidden.ncol())
+        val hiddenBiasDeltas = Matrix(hiddenBiases.nrow(), 1)
+        val outputBiasDeltas = Matrix(outputBiases.nrow(), 1)
+        var errorFromNextStep: Matrix? = null
+        for (t in steps - 1 downTo 0) {
+            val errors = targets[t].clone().sub(outputs[t]!!)
+            for (j in 0 until numStreams) {
+                val row = rowAt(j, windowStart + t)
+                if (row >= 0) {
+                    rowErrors[row] = (0 until errors.nrow()).sumOf { errors[it, j] * errors[it, j] }
+                } else {
+                    for (i in 0 until errors.nrow()) {
+                        errors[i, j] = 0.0
+                    }
+                }
+            }
+            errors.mul(outputDerivatives[t]!!)
+            hiddenToOutputDeltas.add(errors.mt(hidden[t]!!))
+            outputBiasDeltas.addi(errors.rowSums())
+
+            val hiddenErrors = wHiddenToOutput.tm(errors)
+            errorFromNextStep?.let { hiddenErrors.add(it) }
+            hiddenErrors.mul(hiddenDerivatives[t]!!)
+            inputToHiddenDeltas.add(hiddenErrors.mt(inputs[t]))
+            contextToHiddenDeltas.add(hiddenErrors.mt(contexts[t]!!))
+            hiddenBiasDeltas.addi(hiddenErrors.rowSums())
+            errorFromNextStep = wContextToHidden.tm(hiddenErrors)
+        }
+        return BatchGradients(
+            listOf(inputToHiddenDeltas, hiddenToOutputDeltas, contextToHiddenDeltas),
+            listOf(hiddenBiasDeltas, outputBiasDeltas),
+            DoubleArray(0)
+        )
+    }
+}
@@ -0,0 +1,263 @@
+package org.simbrain.network.trainers
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ReceiveChannel
+import kotlinx.coroutines.channels.consume
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import smile.math.matrix.Matrix
+import java.io.*
+import kotlin.math.min
+import kotlin.random.Random
+
+/**
+ * A batch of samples with input and target vectors stacked as columns, which is the layout expected by
+ * [batchGradients] and [trainBatch].
+ */
+class DataBatch(val inputs: Matrix, val targets: Matrix) {
+    val size get() = inputs.ncol()
+}
+
+/**
+ * A dataset for supervised trainers that is streamed from a file on disk rather than held in memory like
+ * [MatrixDataset], so that datasets larger than the heap can be trained on.
+ *
+ * Each epoch reads the file from start to end once. Rows pass through a bounded shuffle buffer, so the order
+ * differs from epoch to epoch while reads stay sequential. Rows are parsed and batched on a background IO thread,
+ * and up to [prefetchSize] batches are kept ready so that training does not wait on the disk.
+ *
+ * Each row of the file holds the input values followed by the target values.
+ *
+ * @param file the file to read rows from
+ * @param numInputs the number of leading columns that are inputs. The remaining columns are targets.
+ * @param shuffleBufferSize the number of rows shuffled together. 0 or less reads rows in file order.
+ */
+class StreamingDataset @JvmOverloads constructor(
+    val file: DatasetFile,
+    val numInputs: Int,
+    var batchSize: Int = 32,
+    var shuffleBufferSize: Int = 10_000,
+    var prefetchSize: Int = 4,
+    val seed: Long = Random.nextLong()
+) {
+
+    /**
+     * Number of epochs started so far. Each epoch is shuffled with a different seed derived from [seed].
+     */
+    var epoch = 0
+        private set
+
+    init {
+        if (numInputs !in 1 until file.numColumns) {
+            throw IllegalArgumentException("File has ${file.numColumns} columns, so $numInputs inputs leaves no " +
+                    "targets")
+        }
+    }
+
+    val numTargets get() = file.numColumns - numInputs
+
+    /**
+     * Call [block] on each batch of one epoch, in shuffled order. Returns when the whole file has been read.
+     */
+    suspend fun forEachBatch(block: suspend (DataBatch) -> Unit) = coroutineScope {
+        produceBatches().consume {
+            for (batch in this) {
+                block(batch)
+            }
+        }
+    }
+
+    private fun CoroutineScope.produceBatches(): ReceiveChannel<DataBatch> {
+        val random = Random(seed + epoch++)
+        val batches = Channel<DataBatch>(prefetchSize)
+        launch(Dispatchers.IO) {
+            try {
+                file.openRows().use { rows ->
+                    rows.shuffled(shuffleBufferSize, random).chunked(batchSize).forEach {
+                        batches.send(toBatch(it))
+                    }
+                }
+            } finally {
+                batches.close()
+            }
+        }
+        return batches
+    }
+
+    private fun toBatch(rows: List<DoubleArray>): DataBatch {
+        val inputs = Matrix(numInputs, rows.size)
+        val targets = Matrix(numTargets, rows.size)
+        rows.forEachIndexed { j, row ->
+            for (i in 0 until numInputs) {
+                inputs[i, j] = row[i]
+            }
+            for (i in 0 until numTargets) {
+                targets[i, j] = row[numInputs + i]
+            }
+        }
+        return DataBatch(inputs, targets)
+    }
+
+}
+
+/**
+ * Shuffle rows using a buffer of at most [bufferSize] rows. Once the buffer is full each new row replaces a randomly
+ * chosen buffered row, which is emitted. Larger buffers give more thorough shuffling, and a buffer size of 0 or less
+ * leaves the rows in order.
+ */
+private fun Iterator<DoubleArray>.shuffled(bufferSize: Int, random: Random): Sequence<DoubleArray> = sequence {
+    if (bufferSize <= 0) {
+        yieldAll(this@shuffled)
+        return@sequence
+    }
+    val buffer = ArrayList<DoubleArray>(min(bufferSize, 1024))
+    for (row in this@shuffled) {
+        if (buffer.size < bufferSize) {
+            buffer.add(row)
+        } else {
+            val index = random.nextInt(bufferSize)
+            yield(buffer[index])
+            buffer[index] = row
+        }
+    }
+    buffer.shuffle(random)
+    yieldAll(buffer)
+}
+
+/**
+ * Reads rows of doubles from a file one at a time. Must be closed when done.
+ */
+abstract class RowReader : Iterator<DoubleArray>, Closeable
+
+/**
+ * A file of numeric rows that can be read by a [StreamingDataset].
+ */
+sealed class DatasetFile(val file: File) {
+
+    /**
+     * Number of values in each row.
+     */
+    abstract val numColumns: Int
+
+    /**
+     * Open the file and return a reader positioned at the first row.
+     */
+    abstract fun openRows(): RowReader
+
+    /**
+     * Comma separated values. Blank lines and lines starting with # are skipped, as with
+     * [org.simbrain.util.Utils.getDoubleMatrix].
+     */
+    class Csv @JvmOverloads constructor(file: File, val delimiter: Char = ',', val hasHeader: Boolean = false) :
+        DatasetFile(file) {
+
+        override val numColumns: Int by lazy {
+            openRows().use { rows ->
+                if (!rows.hasNext()) throw IllegalArgumentException("$file has no rows")
+                rows.next().size
+            }
+        }
+
+        override fun openRows(): RowReader = object : RowReader() {
+            val reader = file.bufferedReader()
+            var nextLine: String? = null
+
+            init {
+                if (hasHeader) {
+                    reader.readLine()
+                }
+                advance()
+            }
+
+            private fun advance() {
+                do {
+                    nextLine = reader.readLine()?.trim()
+                } while (nextLine != null && (nextLine!!.isEmpty() || nextLine!!.startsWith("#")))
+            }
+
+            override fun hasNext() = nextLine != null
+
+            override fun next(): DoubleArray {
+                val line = nextLine ?: throw NoSuchElementException()
+                advance()
+                return line.split(delimiter).map { it.trim().toDouble() }.toDoubleArray()
+            }
+
+            override fun close() = reader.close()
+        }
+    }
+
+    /**
+     * A compact binary format: a header with a magic number, the number of columns and the number of rows, followed by
+     * the values row by row as 8 byte doubles. Much faster to read than csv. Use [writeBinaryRows] to create one.
+     * Files written by [org.simbrain.util.table.NumericTable.writeBinary] can also be read; the column names they end
+     * with are ignored.
+     */
+    class Binary(file: File) : DatasetFile(file) {
+
+        private val header: Pair<Int, Long> by lazy {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { readHeader(it) }
+        }
+
+        override val numColumns get() = header.first
+
+        val numRows get() = header.second
+
+        override fun openRows(): RowReader = object : RowReader() {
+            val input = DataInputStream(BufferedInputStream(FileInputStream(file), 1 shl 16))
+            val columns: Int
+            var remaining: Long
+
+            init {
+                val (numColumns, numRows) = readHeader(input)
+                columns = numColumns
+                remaining = numRows
+            }
+
+            override fun hasNext() = remaining > 0
+
+            override fun next(): DoubleArray {
+                if (remaining <= 0) throw NoSuchElementException()
+                remaining--
+                return DoubleArray(columns) { input.readDouble() }
+            }
+
+            override fun close() = input.close()
+        }
+
+        private fun readHeader(input: DataInputStream): Pair<Int, Long> {
+            if (input.readInt() != BINARY_MAGIC) {
+                throw IOException("$file is not a binary dataset file")
+            }
+            return input.readInt() to input.readLong()
+        }
+    }
+
+}
+
+internal const val BINARY_MAGIC = 0x53424454 // "SBDT"
+
+/**
+ * Write rows to a file in the [DatasetFile.Binary] format. All rows must have the same length.
+ */
+fun writeBinaryRows(file: File, numColumns: Int, rows: Sequence<DoubleArray>) {
+    var numRows = 0L
+    DataOutputStream(BufferedOutputStream(FileOutputStream(file), 1 shl 16)).use { output ->
+        output.writeInt(BINARY_MAGIC)
+        output.writeInt(numColumns)
+        output.writeLong(0L) // Row count is filled in below
+        rows.forEach { row ->
+            if (row.size != numColumns) {
+                throw IllegalArgumentException("Row $numRows has ${row.size} values but $numColumns were expected")
+            }
+            row.forEach { output.writeDouble(it) }
+            numRows++
+        }
+    }
+    RandomAccessFile(file, "rw").use {
+        it.seek(8)
+        it.writeLong(numRows)
+    }
+}
@@ -25,6 +25,8 @@ import org.simbrain.util.propertyeditor.CopyableObject
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.propertyeditor.GuiEditable
 import org.simbrain.util.rowVectorTransposed
+import smile.math.matrix.Matrix
+import kotlin.math.min
 import kotlin.math.sqrt
 import kotlin.random.Random
 
@@ -106,13 +108,12 @@ abstract class SupervisedTrainer<SN: SupervisedNetwork> : EditableObject {
                     }
                 }
                 is UpdateMethod.Batch -> {
-                    var totalError = 0.0
-                    val startIndex = Random.nextInt(0, trainingSet.size - batchSize)
-                    val endIndex = startIndex + batchSize
-                    for (i in (startIndex..endIndex)) {
-                        val error = trainRow(i)
-                        lossFunction.accumulateError(error)
-                    }
+                    val size = min(batchSize, trainingSet.size)
+                    val startIndex = Random.nextInt(0, trainingSet.size - size + 1)
+                    trainBatch(IntArray(size) { startIndex + it }).forEach { lossFunction.accumulateError(it) }
+                }
+                is UpdateMethod.Sequence -> {
+                    trainSequence(windowSize, numStreams).forEach { lossFunction.accumulateError(it) }
                 }
             }
         }
@@ -123,6 +124,24 @@ abstract class SupervisedTrainer<SN: SupervisedNetwork> : EditableObject {
     context(Network)
     abstract fun SN.trainRow(rowNum: Int): Double
 
+    /**
+     * Train on a batch of rows and return the error for each row. By default rows are trained one at a time. Trainers
+     * that support true mini-batch training override this.
+     */
+    context(Network)
+    open suspend fun SN.trainBatch(rowNums: IntArray): DoubleArray {
+        return DoubleArray(rowNums.size) { trainRow(rowNums[it]) }
+    }
+
+    /**
+     * Train on the whole training set as one sequence ordered by row and return the error for each row. By default
+     * rows are trained one at a time, in order, as in an epoch. Trainers of recurrent networks override this.
+     */
+    context(Network)
+    open suspend fun SN.trainSequence(windowSize: Int, numStreams: Int): DoubleArray {
+        return DoubleArray(trainingSet.size) { trainRow(it) }
+    }
+
     sealed class UpdateMethod: CopyableObject {
         class Stochastic : UpdateMethod() {
             override fun copy() = this
@@ -136,6 +155,29 @@ abstract class SupervisedTrainer<SN: SupervisedNetwork> : EditableObject {
             override fun copy() = Batch(batchSize)
         }
 
+        /**
+         * Train on the rows in order as one sequence, split into windows and optionally into streams trained side by
+         * side. See [trainSequence].
+         */
+        class Sequence(
+            @UserParameter(
+                label = "Window size",
+                description = "Number of time steps errors are propagated back through",
+                minimumValue = 1.0,
+                order = 1
+            )
+            var windowSize: Int = 10,
+            @UserParameter(
+                label = "Parallel streams",
+                description = "Number of parts the sequence is split into and trained on at the same time",
+                minimumValue = 1.0,
+                order = 2
+            )
+            var numStreams: Int = 1
+        ) : UpdateMethod() {
+            override fun copy() = Sequence(windowSize, numStreams)
+        }
+
         override fun getTypeList(): List<Class<out CopyableObject>>? {
             return listOf(
                 Stochastic::class.java,
@@ -145,9 +187,9 @@ abstract class SupervisedTrainer<SN: SupervisedNetwork> : EditableObject {
         }
 
         /**
-         * Given the temporal nature of the rule, only Epoch should be used with SRN
+         * Given the temporal nature of the rule, rows must be presented in order to an SRN
          */
-        fun srnTypeList() = listOf(Epoch::class.java)
+        fun srnTypeList() = listOf(Epoch::class.java, Sequence::class.java)
     }
 
     sealed class LossFunction: CopyableObject {
@@ -275,6 +317,50 @@ class BackpropTrainer : SupervisedTrainer<BackpropNetwork>() {
         return wmList.backpropError(targetVec)
     }
 
+    /**
+     * Forward and backpropagate the whole batch at once using matrix products. See [trainBatch]. Networks with rules
+     * that cannot be batched are trained one row at a time.
+     */
+    context(Network)
+    override suspend fun BackpropNetwork.trainBatch(rowNums: IntArray): DoubleArray {
+        if (!wmList.supportsBatchTraining) {
+            return DoubleArray(rowNums.size) { trainRow(rowNums[it]) }
+        }
+        return wmList.trainBatch(trainingSet, rowNums, learningRate, random = outputLayer.noiseStream)
+    }
+
+    /**
+     * Train on input / target pairs stacked as columns, as [trainBatch] does, when the batch does not come from the
+     * training set.
+     */
+    context(Network)
+    private suspend fun BackpropNetwork.trainColumns(inputs: Matrix, targets: Matrix): DoubleArray {
+        if (!wmList.supportsBatchTraining) {
+            return DoubleArray(inputs.ncol()) { j ->
+                inputLayer.setActivations(inputs.col(j))
+                wmList.forwardPass(inputLayer.activations)
+                wmList.backpropError(Matrix.column(targets.col(j)), learningRate)
+            }
+        }
+        return wmList.trainBatch(inputs, targets, learningRate, random = outputLayer.noiseStream)
+    }
+
+    /**
+     * Train for one pass through a dataset that is streamed from disk rather than held in [trainingSet]. Each batch
+     * of the dataset is trained as one mini-batch. Returns the loss over the epoch.
+     */
+    context(Network)
+    suspend fun BackpropNetwork.trainEpoch(dataset: StreamingDataset): Double {
+        iteration++
+        lossFunction.reset()
+        dataset.forEachBatch { batch ->
+            trainColumns(batch.inputs, batch.targets).forEach { lossFunction.accumulateError(it) }
+        }
+        lastError = lossFunction.loss
+        events.errorUpdated.fire(lossFunction).await()
+        return lastError
+    }
+
 }
 
 class SRNTrainer : SupervisedTrainer<SRNNetwork>() {
@@ -294,4 +380,16 @@ class SRNTrainer : SupervisedTrainer<SRNNetwork>() {
         return weightMatrixTree.backpropError(targetVec, epsilon = learningRate)
     }
 
+    /**
+     * Truncated backpropagation through time. See [trainTruncatedBPTT]. Networks with rules that cannot be batched
+     * are trained one row at a time, in order, as in an epoch.
+     */
+    context(Network)
+    override suspend fun SRNNetwork.trainSequence(windowSize: Int, numStreams: Int): DoubleArray {
+        if (!wmList.supportsBatchTraining) {
+            return DoubleArray(trainingSet.size) { trainRow(it) }
+        }
+        return trainTruncatedBPTT(trainingSet, windowSize, numStreams, learningRate, random = outputLayer.noiseStream)
+    }
+
 }
\ No newline at end of file
@@ -13,14 +13,26 @@
  */
 package org.simbrain.network.trainers
 
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
 import org.simbrain.network.core.*
 import org.simbrain.network.updaterules.interfaces.DifferentiableUpdateRule
 import org.simbrain.network.util.BiasedMatrixData
+import org.simbrain.util.columnRange
+import org.simbrain.util.minus
 import org.simbrain.util.plus
+import org.simbrain.util.rowsAsColumns
+import org.simbrain.util.shapeString
 import org.simbrain.util.sse
 import org.simbrain.util.validateSameShape
 import smile.math.matrix.Matrix
 import java.util.*
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.random.Random
 
 // TODO: Need a way to generalize across NeuronArrays and NeuronCollections
 val WeightMatrix.src get() = source as NeuronArray
@@ -152,6 +164,161 @@ fun List<WeightMatrix>.backpropError(targetValues: Matrix, epsilon: Double = .1)
     return error
 }
 
+/**
+ * Whether every target layer in this chain has a rule whose batched activation matches its layer update, so that
+ * [batchGradients] computes the same gradients as backpropagating one row at a time. See
+ * [DifferentiableUpdateRule.supportsBatchActivation].
+ */
+val List<WeightMatrix>.supportsBatchTraining: Boolean
+    get() = all { (it.tar.updateRule as DifferentiableUpdateRule).supportsBatchActivation }
+
+/**
+ * Weight and bias changes computed by [batchGradients] for a chain of weight matrices, along with the sum squared
+ * error for each sample in the batch. Deltas are summed over the batch and not yet scaled by a learning rate.
+ */
+class BatchGradients(val weightDeltas: List<Matrix>, val biasDeltas: List<Matrix>, val sampleErrors: DoubleArray) {
+
+    /**
+     * Add another set of gradients (computed on a different part of a batch) to this one.
+     */
+    fun accumulate(other: BatchGradients): BatchGradients {
+        weightDeltas.zip(other.weightDeltas).forEach { (a, b) -> a.add(b) }
+        biasDeltas.zip(other.biasDeltas).forEach { (a, b) -> a.add(b) }
+        return BatchGradients(weightDeltas, biasDeltas, sampleErrors + other.sampleErrors)
+    }
+}
+
+/**
+ * Compute backprop gradients for a batch of input / target pairs without changing the network. Inputs and targets are
+ * stacked as columns so that each weight layer is propagated forwards and backwards with a single matrix product.
+ * Since only weights and biases are read, this can be called from several threads at once on different parts of a
+ * batch. Assumes weight matrices are stored in a sequence from input to output layers.
+ *
+ * @param inputs input vectors as columns, with as many rows as the first source layer
+ * @param targets target vectors as columns, with as many rows as the last target layer
+ * @param random source of any noise added by the update rules. Not shared between threads.
+ */
+fun List<WeightMatrix>.batchGradients(
+    inputs: Matrix,
+    targets: Matrix,
+    random: Random = Random(Random.nextLong())
+): BatchGradients {
+    if (inputs.nrow() != first().src.size || targets.nrow() != last().tar.size || inputs.ncol() != targets.ncol()) {
+        throw IllegalArgumentException("Batch of inputs ${inputs.shapeString} and targets ${targets.shapeString} " +
+                "does not match layers of size ${first().src.size} and ${last().tar.size}")
+    }
+
+    // Forward pass. Keep the activations feeding each weight matrix and the derivatives at each target layer.
+    val layerInputs = ArrayList<Matrix>(size)
+    val derivatives = ArrayList<Matrix>(size)
+    var activations = inputs
+    for (wm in this) {
+        layerInputs.add(activations)
+        val rule = wm.tar.updateRule as DifferentiableUpdateRule
+        val biases = wm.tar.biases
+        val weightedInputs = wm.weightMatrix.mm(activations)
+        derivatives.add(rule.getDerivative(weightedInputs.plusColumn(biases)))
+        activations = rule.getActivation(weightedInputs, biases, random)
+    }
+
+    var errors = targets - activations
+    val sampleErrors = DoubleArray(errors.ncol()) { j -> (0 until errors.nrow()).sumOf { errors[it, j] * errors[it, j] } }
+
+    // Backward pass, from output to input layers
+    val weightDeltas = arrayOfNulls<Matrix>(size)
+    val biasDeltas = arrayOfNulls<Matrix>(size)
+    for (l in indices.reversed()) {
+        errors.mul(derivatives[l])
+        weightDeltas[l] = errors.mt(layerInputs[l])
+        biasDeltas[l] = Matrix.column(errors.rowSums())
+        if (l > 0) {
+            errors = this[l].weightMatrix.tm(errors)
+        }
+    }
+    return BatchGradients(weightDeltas.map { it!! }, biasDeltas.map { it!! }, sampleErrors)
+}
+
+/**
+ * Train a chain of weight matrices on the indicated rows of a dataset as one mini-batch. See the matrix version of
+ * [trainBatch].
+ *
+ * @return the sum squared error for each row in the batch, computed before the weights were changed
+ */
+suspend fun List<WeightMatrix>.trainBatch(
+    dataset: MatrixDataset,
+    rowIndices: IntArray,
+    epsilon: Double = .1,
+    minRowsPerChunk: Int = 64,
+    random: Random = Random.Default
+): DoubleArray {
+    return trainBatch(
+        dataset.inputs.rowsAsColumns(rowIndices),
+        dataset.targets.rowsAsColumns(rowIndices),
+        epsilon,
+        minRowsPerChunk,
+        random
+    )
+}
+
+/**
+ * Train a chain of weight matrices on a mini-batch of input / target pairs stacked as columns. Gradients are
+ * accumulated over the whole batch and applied once, so that update events are fired once per batch rather than once
+ * per sample. Large batches are split into chunks of columns whose gradients are computed in parallel. Each chunk
+ * draws noise from its own generator, seeded from [random] before the chunks start, so results do not depend on how
+ * the chunks are scheduled.
+ *
+ * @return the sum squared error for each sample in the batch, computed before the weights were changed
+ */
+suspend fun List<WeightMatrix>.trainBatch(
+    inputs: Matrix,
+    targets: Matrix,
+    epsilon: Double = .1,
+    minRowsPerChunk: Int = 64,
+    random: Random = Random.Default
+): DoubleArray {
+    val batchSize = inputs.ncol()
+    val chunkSize = max(minRowsPerChunk, ceil(batchSize.toDouble() / Runtime.getRuntime().availableProcessors()).toInt())
+    val gradients = if (chunkSize >= batchSize) {
+        batchGradients(inputs, targets, Random(random.nextLong()))
+    } else {
+        coroutineScope {
+            (0 until batchSize step chunkSize).map { start ->
+                val end = min(start + chunkSize, batchSize)
+                val chunkRandom = Random(random.nextLong())
+                async(Dispatchers.Default) {
+                    batchGradients(inputs.columnRange(start, end), targets.columnRange(start, end), chunkRandom)
+                }
+            }.awaitAll().reduce { acc, g -> acc.accumulate(g) }
+        }
+    }
+    forEachIndexed { l, wm ->
+        wm.weightMatrix.add(gradients.weightDeltas[l].mul(epsilon))
+        wm.events.updated.fire()
+        wm.tar.updateBiases(gradients.biasDeltas[l], epsilon)
+    }
+    return gradients.sampleErrors
+}
+
+/**
+ * Biases of a neuron array whose update rule is biased.
+ */
+private val NeuronArray.biases: Matrix
+    get() = (dataHolder as? BiasedMatrixData)?.biases
+        ?: throw IllegalStateException("Neuron array ${id} has no biases")
+
+/**
+ * Returns a copy of this matrix with the provided column vector added to each column.
+ */
+internal fun Matrix.plusColumn(column: Matrix): Matrix {
+    val ret = clone()
+    for (j in 0 until ncol()) {
+        for (i in 0 until nrow()) {
+            ret[i, j] += column[i, 0]
+        }
+    }
+    return ret
+}
+
 context(Network)
 fun WeightMatrixTree.forwardPass(inputVectors: List<Matrix>) {
     if (inputVectors.size != inputWeightLayers.size) throw IllegalArgumentException("Must provide same number of input vectors as input layers")
@@ -9,7 +9,7 @@ import org.simbrain.workspace.updater.UpdateAction
  *
  * @author jyoshimi
  */
-class UpdateNetworkModel(private val networkModel: NetworkModel, val network: Network) : UpdateAction(
+class UpdateNetworkModel(val networkModel: NetworkModel, val network: Network) : UpdateAction(
     networkModel.label,
     "Update ${networkModel.label}"
 ) {
@@ -19,6 +19,7 @@
 package org.simbrain.network.updaterules
 
 import org.simbrain.network.core.*
+import org.simbrain.network.updaterules.interfaces.IntegratedUpdateRule
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule
 import org.simbrain.network.util.*
 import org.simbrain.util.UserParameter
@@ -27,6 +28,8 @@ import org.simbrain.util.propertyeditor.CustomTypeName
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
 import org.simbrain.workspace.Producible
+import kotlin.math.exp
+import kotlin.math.min
 
 /**
  * An implementation of adaptive exponential integrate and fire. This version
@@ -41,7 +44,7 @@ import org.simbrain.workspace.Producible
  * @author Zoë Tosi
  */
 @CustomTypeName("AdEx Rule")
-open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), NoisyUpdateRule {
+open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), NoisyUpdateRule, IntegratedUpdateRule {
 
     /**
      * Reset voltage (mV). Defaults to 3-spike bursting behavior at .8 nA
@@ -260,6 +263,11 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
      */
     override var noiseGenerator: ProbabilityDistribution = UniformRealDistribution()
 
+    /**
+     * Integrator for membrane potential and adaptation current.
+     */
+    override var integrator: OdeIntegrator = OdeIntegrator.Euler()
+
     /**
      * An absolute refractory period. Not normally a part of AdEx, but can
      * optionally be used to promote network stability.
@@ -269,20 +277,16 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
     context(Network)
     override fun apply(layer: Layer, dataHolder: AdexMatrixData) {
         if (layer is NeuronArray) {
-            for (i in 0 until layer.size) {
-                val excitInputs = layer.excitatoryInputs
-                val inhibInputs = layer.inhibitoryInputs
-                val (spiked, v, w) = adExRule(
-                    layer.activations.get(i, 0),
-                    dataHolder.w[i],
-                    excitInputs[i],
-                    inhibInputs[i],
-                    dataHolder.lastSpikeTimes[i],
-                    time,
-                    timeStep
-                )
+            val n = layer.size
+            val activations = layer.activations
+            val noise = if (addNoise) layer.sampleNoise(noiseGenerator) else null
+            val backgroundCurrents = DoubleArray(n) { i_bg + (noise?.get(it) ?: 0.0) }
+            val state = DoubleArray(2 * n) { if (it < n) activations[it, 0] else dataHolder.w[it - n] }
+            integrate(state, layer.excitatoryInputs, layer.inhibitoryInputs, backgroundCurrents, time, timeStep)
+            for (i in 0 until n) {
+                val (spiked, v, w) = resetIfPeaked(state[i], state[n + i], dataHolder.lastSpikeTimes[i], time)
                 dataHolder.setHasSpiked(i, spiked, time)
-                layer.activations.set(i, 0, v)
+                activations.set(i, 0, v)
                 dataHolder.w.set(i, w)
             }
         }
@@ -294,75 +298,77 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
 
     context(Network)
     override fun apply(neuron: Neuron, data: AdexData) {
-        val (spiked, v, w) = adExRule(
-            neuron.activation, data.w, neuron.excitatoryInputs, neuron.inhibitoryInputs,
-            neuron.lastSpikeTime, time, timeStep
+        val noise = if (addNoise) noiseGenerator.sampleDouble() else 0.0
+        val state = doubleArrayOf(neuron.activation, data.w)
+        integrate(
+            state,
+            doubleArrayOf(neuron.excitatoryInputs),
+            doubleArrayOf(neuron.inhibitoryInputs),
+            doubleArrayOf(i_bg + noise),
+            time,
+            timeStep
         )
+        val (spiked, v, w) = resetIfPeaked(state[0], state[1], neuron.lastSpikeTime, time)
         neuron.isSpike = spiked
         neuron.activation = v
         data.w = w
-
     }
 
-    private fun adExRule(
-        initV: Double,
-        initW: Double,
-        excIn: Double,
-        inhIn: Double,
-        lastSpikeTime: Double,
+    /**
+     * Advance a population of neurons from [t] to [t] + [dt]. The first half of [state] holds their membrane
+     * potentials and the second half their adaptation currents. [backgroundCurrents] includes any noise.
+     */
+    private fun integrate(
+        state: DoubleArray,
+        excIn: DoubleArray,
+        inhIn: DoubleArray,
+        backgroundCurrents: DoubleArray,
         t: Double,
         dt: Double
-    ): Triple<Boolean, Double, Double> {
-
-        var v_mem = initV
-        var w = initW
+    ) {
+        val n = excIn.size
+        integrator.integrate({ _, y, dydt, decay ->
+            for (i in 0 until n) {
+                val v_mem = y[i]
+                val w = y[n + i]
+
+                // Calculate incoming excitatory and inhibitory voltage changes
+                val iSyn_ex = g_e_bar * excIn[i] * (exReversal - v_mem)
+                val iSyn_in = -g_i_bar * inhIn[i] * (inReversal - v_mem)
+
+                // Calculate voltage changes due to leak
+                val i_leak = g_L * (leakReversal - v_mem)
+
+                // The exponential term is held at its value at the peak, where the neuron spikes, so that
+                // intermediate stages of higher order integrators cannot overflow it
+                val spikeCurrent = g_L * slopeFactor * exp((min(v_mem, v_Peak) - v_Th) / slopeFactor)
+
+                // Calc dV/dt for membrane potential, factoring in membrane capacitance
+                dydt[i] = (spikeCurrent + i_leak + iSyn_ex + iSyn_in + backgroundCurrents[i] - w) / memCapacitance
+
+                // Calculate adaptation change
+                dydt[n + i] = (a * (v_mem - leakReversal) - w) / tauW
+
+                if (decay != null) {
+                    val slope = (if (v_mem < v_Peak) spikeCurrent / slopeFactor else 0.0) - g_L -
+                            g_e_bar * excIn[i] + g_i_bar * inhIn[i]
+                    decay[i] = -slope / memCapacitance
+                    decay[n + i] = 1 / tauW
+                }
+            }
+        }, state, t, dt)
+    }
 
+    /**
+     * Reset a neuron whose membrane potential reached the peak during a step, and return whether it spiked and its
+     * new membrane potential and adaptation current. A neuron in its refractory period is reset without spiking.
+     */
+    private fun resetIfPeaked(v: Double, w: Double, lastSpikeTime: Double, t: Double): Triple<Boolean, Double, Double> {
         val refractory = lastSpikeTime + refractoryPeriod >= t
-
-        // Calculate incoming excitatory and inhibitory voltage changes
-        val iSyn_ex = g_e_bar * excIn * (exReversal - v_mem)
-        val iSyn_in = -g_i_bar * inhIn * (inReversal - v_mem)
-
-        // Calculate voltage changes due to leak
-        val i_leak = g_L * (leakReversal - v_mem)
-        var ibg = i_bg
-
-        // Add noise if there is any to be added
-        if (addNoise) {
-            ibg += noiseGenerator.sampleDouble()
+        if (v >= v_Peak) {
+            return Triple(!refractory, clip(v_Reset, -1000.0, 1000.0), w + b * CURRENT_CONVERTER)
         }
-
-        // Calc dV/dt for membrane potential
-        var dVdt =
-            g_L * slopeFactor * Math.exp((v_mem - v_Th) / slopeFactor) + i_leak + iSyn_ex + iSyn_in + ibg - w
-
-        // Factor in membrane capacitance...
-        dVdt /= memCapacitance
-
-        // Calculate adaptation change
-        val dwdt = (a * (v_mem - leakReversal) - w) / tauW
-
-        // Integrate membrane potential and adaptation parameter using
-        // Euler integration
-        v_mem += dVdt * dt
-        w += dwdt * dt
-
-        var isSpike: Boolean
-        if (v_mem >= v_Peak) {
-            v_mem = v_Reset
-            w += b * CURRENT_CONVERTER
-            if (!refractory) {
-                isSpike = true
-            } else {
-                isSpike = false
-            }
-        } else {
-            isSpike = false
-        }
-        v_mem = clip(v_mem, -1000.0, 1000.0)
-
-        return Triple(isSpike, v_mem, w)
-
+        return Triple(false, clip(v, -1000.0, 1000.0), w)
     }
 
     override fun createScalarData(): AdexData {
@@ -378,6 +384,7 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
         cpy.leakReversal = leakReversal
         cpy.memCapacitance = memCapacitance
         cpy.noiseGenerator = noiseGenerator.copy()
+        cpy.integrator = integrator.copy()
         cpy.slopeFactor = slopeFactor
         cpy.tauW = tauW
         cpy.v_mem = v_mem
@@ -5,6 +5,7 @@ import org.simbrain.network.core.Neuron
 import org.simbrain.network.util.BiasedScalarData
 import org.simbrain.util.UserParameter
 import org.simbrain.util.math.SigmoidFunctionEnum
+import kotlin.random.Random
 
 /**
  * **Continuous Sigmoidal Rule** provides various squashing function
@@ -140,6 +141,24 @@ class ContinuousSigmoidalRule : AbstractSigmoidalRule {
     override val timeType: Network.TimeType
         get() = Network.TimeType.CONTINUOUS
 
+    /**
+     * The net activation is integrated over time, so one pass cannot give the activation of a layer.
+     */
+    override val supportsBatchActivation: Boolean
+        get() = false
+
+    /**
+     * The activation this rule settles to when the weighted input and bias are held constant, i.e. where
+     * **x_i = (w_ij * r_j) / a**.
+     */
+    override fun getActivation(input: Double, bias: Double, random: Random): Double {
+        var weightedInput = input + bias
+        if (addNoise) {
+            weightedInput += noiseGenerator.sampleDouble(random)
+        }
+        return type.valueOf(weightedInput / leakConstant, upperBound, lowerBound, this.slope)
+    }
+
     override fun getDerivative(`val`: Double): Double {
         val up = upperBound
         val lw = lowerBound
@@ -19,6 +19,7 @@
 package org.simbrain.network.updaterules
 
 import org.simbrain.network.core.*
+import org.simbrain.network.updaterules.interfaces.IntegratedUpdateRule
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule
 import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.network.util.SpikingScalarData
@@ -34,7 +35,8 @@ import org.simbrain.workspace.Producible
  *
  * @see http://www.scholarpedia.org/article/FitzHugh-Nagumo_model
  */
-class FitzhughNagumo : SpikingNeuronUpdateRule<FitzHughData, FitzHughMatrixData>(), NoisyUpdateRule {
+class FitzhughNagumo : SpikingNeuronUpdateRule<FitzHughData, FitzHughMatrixData>(), NoisyUpdateRule,
+    IntegratedUpdateRule {
 
     /**
      * Constant background current. KEEP
@@ -68,6 +70,11 @@ class FitzhughNagumo : SpikingNeuronUpdateRule<FitzHughData, FitzHughMatrixData>
      */
     override var addNoise = false
 
+    /**
+     * Semi-implicit by default: the recovery variable is advanced first and the voltage then uses its new value.
+     */
+    override var integrator: OdeIntegrator = OdeIntegrator.SemiImplicitEuler()
+
     /**
      * Recovery rate
      */
@@ -108,57 +115,57 @@ class FitzhughNagumo : SpikingNeuronUpdateRule<FitzHughData, FitzHughMatrixData>
         copy.threshold = threshold
         copy.addNoise = addNoise
         copy.noiseGenerator = noiseGenerator.copy()
+        copy.integrator = integrator.copy()
         return copy
     }
 
     context(Network)
     override fun apply(neuron: Neuron, data: FitzHughData) {
-        val (spiked, v, w) = fitzhughNagumoRule(neuron.activation, data.w, neuron.input, timeStep)
-        neuron.isSpike = spiked
+        val noise = if (addNoise) noiseGenerator.sampleDouble() else 0.0
+        val state = doubleArrayOf(neuron.activation, data.w)
+        integrate(state, doubleArrayOf(neuron.input + noise + iBg), time, timeStep)
+        val v = clip(state[0], -1000.0, 1000.0)
+        neuron.isSpike = v >= threshold
         neuron.activation = v
-        data.w = w
+        data.w = state[1]
     }
 
     context(Network)
     override fun apply(layer: Layer, dataHolder: FitzHughMatrixData) {
         if (layer is NeuronArray) {
-            for (i in 0 until layer.size) {
-                val (spiked, v, w) = fitzhughNagumoRule(
-                    layer.activations.get(i, 0),
-                    dataHolder.w[i],
-                    layer.inputs.get(i, 0),
-                    timeStep
-                )
-                dataHolder.setHasSpiked(i, spiked, time)
-                layer.activations.set(i, 0, v)
-                dataHolder.w[i] = w
+            val n = layer.size
+            val activations = layer.activations
+            val noise = if (addNoise) layer.sampleNoise(noiseGenerator) else null
+            val inputs = DoubleArray(n) { layer.inputs[it, 0] + (noise?.get(it) ?: 0.0) + iBg }
+            val state = DoubleArray(2 * n) { if (it < n) activations[it, 0] else dataHolder.w[it - n] }
+            integrate(state, inputs, time, timeStep)
+            for (i in 0 until n) {
+                val v = clip(state[i], -1000.0, 1000.0)
+                dataHolder.setHasSpiked(i, v >= threshold, time)
+                activations.set(i, 0, v)
+                dataHolder.w[i] = state[n + i]
             }
         }
     }
 
-    private fun fitzhughNagumoRule(
-        initV: Double,
-        initW: Double,
-        externalInput: Double,
-        timeStep: Double
-    ): Triple<Boolean, Double, Double> {
-        var inputs = externalInput
-        var v = initV
-        var w = initW
-        if (addNoise) {
-            inputs += noiseGenerator.sampleDouble()
-        }
-        inputs += iBg
-        w += timeStep * (a * (b * v + 0.7 - c * w))
-        v += timeStep * (v - v * v * v / 3 - w + inputs)
-
-        v = clip(v, -1000.0, 1000.0)
-
-        if (v >= threshold) {
-            return Triple(true, v, w)
-        } else {
-            return Triple(false, v, w)
-        }
+    /**
+     * Advance a population of neurons driven by [inputs] from [t] to [t] + [dt]. The first half of [state] holds their
+     * voltages and the second half their recovery variables.
+     */
+    private fun integrate(state: DoubleArray, inputs: DoubleArray, t: Double, dt: Double) {
+        val n = inputs.size
+        integrator.integrate({ _, y, dydt, decay ->
+            for (i in 0 until n) {
+                val v = y[i]
+                val w = y[n + i]
+                dydt[i] = v - v * v * v / 3 - w + inputs[i]
+                dydt[n + i] = a * (b * v + 0.7 - c * w)
+                if (decay != null) {
+                    decay[i] = v * v - 1
+                    decay[n + i] = a * c
+                }
+            }
+        }, state, t, dt)
     }
 
     override fun createScalarData(): FitzHughData {
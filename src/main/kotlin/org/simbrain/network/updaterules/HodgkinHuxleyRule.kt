@@ -2,6 +2,7 @@ package org.simbrain.network.updaterules
 
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
+import org.simbrain.network.updaterules.interfaces.IntegratedUpdateRule
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule
 import org.simbrain.network.util.EmptyMatrixData
 import org.simbrain.network.util.EmptyScalarData
@@ -17,7 +18,7 @@ import kotlin.math.exp
  * Adapted from software written by Anthony Fodor, with help from Jonathan
  * Vickrey.
  */
-class HodgkinHuxleyRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(), NoisyUpdateRule {
+class HodgkinHuxleyRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(), NoisyUpdateRule, IntegratedUpdateRule {
     /**
      * Sodium Channels
      */
@@ -35,9 +36,6 @@ class HodgkinHuxleyRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(),
      */
     private val resting_v = 65.0
 
-    /**  */
-    private var dv = 0.0
-
     // remember that H&H voltages are -1 * present convention
     // TODO: should eventually calculate this instead of setting it
     // convert between internal use of V and the user's expectations
@@ -65,23 +63,6 @@ class HodgkinHuxleyRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(),
     var h: Double = 0.0
         private set
 
-    /**
-     * corresponding deltas
-     */
-    private var dn: Double
-    private var dm: Double
-    private var dh: Double
-
-    /**
-     * // rate constants
-     */
-    private var an: Double
-    private var bn: Double
-    private var am: Double
-    private var bm: Double
-    private var ah: Double
-    private var bh: Double
-
     /**
      * Ek-Er, Ena - Er, Eleak - Er
      */
@@ -124,44 +105,61 @@ class HodgkinHuxleyRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(),
      */
     override var addNoise: Boolean = false
 
+    /**
+     * Integrator for membrane voltage and the gating variables.
+     */
+    override var integrator: OdeIntegrator = OdeIntegrator.ExponentialEuler()
+
     context(Network)
     override fun apply(neuron: Neuron, data: EmptyScalarData) {
-        // Advances the model by dt and returns the new voltage
-
-        val v = neuron.input
-        bh = 1 / (exp((v + 30) / 10) + 1)
-        ah = 0.07 * exp(v / 20)
-        dh = (ah * (1 - h) - bh * h) * timeStep
-        bm = 4 * exp(v / 18)
-        am = 0.1 * (v + 25) / (exp((v + 25) / 10) - 1)
-        bn = 0.125 * exp(v / 80)
-        an = 0.01 * (v + 10) / (exp((v + 10) / 10) - 1)
-        dm = (am * (1 - m) - bm * m) * timeStep
-        dn = (an * (1 - n) - bn * n) * timeStep
-
+        // Input is injected current, which depolarizes the cell
+        val injected = neuron.input + if (addNoise) noiseGenerator.sampleDouble() else 0.0
+        // Voltage in the model's convention (see convertV)
+        val state = doubleArrayOf(-1 * neuron.activation - resting_v, n, m, h)
+        integrator.integrate({ _, y, dydt, decay ->
+            val v = y[0]
+            val n = y[1]
+            val m = y[2]
+            val h = y[3]
+            val an = 0.01 * (v + 10) / (exp((v + 10) / 10) - 1)
+            val bn = 0.125 * exp(v / 80)
+            val am = 0.1 * (v + 25) / (exp((v + 25) / 10) - 1)
+            val bm = 4 * exp(v / 18)
+            val ah = 0.07 * exp(v / 20)
+            val bh = 1 / (exp((v + 30) / 10) + 1)
+            val kConductance = gk * n * n * n * n
+            val naConductance = gna * m * m * m * h
+            dydt[0] = -(kConductance * (v - vk) + naConductance * (v - vna) + gl * (v - vl) + injected) / cm
+            dydt[1] = an * (1 - n) - bn * n
+            dydt[2] = am * (1 - m) - bm * m
+            dydt[3] = ah * (1 - h) - bh * h
+            if (decay != null) {
+                decay[0] = (kConductance + naConductance + gl) / cm
+                decay[1] = an + bn
+                decay[2] = am + bm
+                decay[3] = ah + bh
+            }
+        }, state, time, timeStep)
+
+        val v = state[0]
+        n = state[1]
+        m = state[2]
+        h = state[3]
         n4 = n * n * n * n
         m3h = m * m * m * h
-
         na_current = gna * m3h * (v - vna)
         k_current = gk * n4 * (v - vk)
 
-        dv = -1 * timeStep * (k_current + na_current + gl * (v - vl)) / cm
-
-        neuron.activation = -1 * (v + dv + resting_v)
-        h += dh
-        m += dm
-        n += dn
-
         // if (vClampOn)
         // v = vClampValue;
 
-        // getV() converts the model's v to present day convention
+        // Convert the model's v to present day convention
+        neuron.activation = -1 * (v + resting_v)
     }
 
     // Initializer quickly hacked from old init. Zoë this is in your hands to fix! :)
     init {
         val v = -70.0 // Arbitrary starting voltage
-        val dv = .001 // Arbitrary starting dv.  Not sure how to set.
         vna = -115.0
         vk = 12.0
         vl = -10.613
@@ -169,15 +167,12 @@ class HodgkinHuxleyRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(),
         gk = (perKChannels * 36 / 100).toDouble()
         gl = 0.3
 
-        bh = 1 / (exp((v + 30) / 10) + 1)
-        ah = 0.07 * exp(v / 20)
-        bm = 4 * exp(v / 18)
-        am = 0.1 * (v + 25) / (exp((v + 25) / 10) - 1)
-        bn = 0.125 * exp(v / 80)
-        an = 0.01 * (v + 10) / (exp((v + 10) / 10) - 1)
-        dh = (ah * (1 - h) - bh * h) * dv
-        dm = (am * (1 - m) - bm * m) * dv
-        dn = (an * (1 - n) - bn * n) * dv
+        val bh = 1 / (exp((v + 30) / 10) + 1)
+        val ah = 0.07 * exp(v / 20)
+        val bm = 4 * exp(v / 18)
+        val am = 0.1 * (v + 25) / (exp((v + 25) / 10) - 1)
+        val bn = 0.125 * exp(v / 80)
+        val an = 0.01 * (v + 10) / (exp((v + 10) / 10) - 1)
 
         // start these parameters in steady state
         n = an / (an + bn)
@@ -278,6 +273,7 @@ class HodgkinHuxleyRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(),
         hhr.ek = ek
         hhr.ena = ena
         hhr.noiseGenerator = this.noiseGenerator
+        hhr.integrator = integrator.copy()
         hhr.setPerKChannels(this.getPerKChannels())
         hhr.setPerNaChannels(this.getPerNaChannels())
         hhr.temp = temp
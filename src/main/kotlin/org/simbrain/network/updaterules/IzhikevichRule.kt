@@ -23,7 +23,6 @@ import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule
 import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.network.util.SpikingScalarData
 import org.simbrain.util.UserParameter
-import org.simbrain.util.addi
 import org.simbrain.util.copyFrom
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
@@ -131,29 +130,18 @@ class IzhikevichRule : SpikingNeuronUpdateRule<IzhikevichScalarData, IzhikevichM
     context(Network)
     override fun apply(layer: Layer, dataHolder: IzhikevichMatrixData) {
         if (layer is NeuronArray) {
+            val noise = if (addNoise) layer.sampleNoise(noiseGenerator) else null
+            val activations = layer.activations
             val inputs = layer.inputs
-
-            if (addNoise) {
-                inputs.addi(noiseGenerator.sampleDouble(layer.size))
-            }
-
-            inputs.add(iBg)
-
-            val result = buildList {
-                for (i in 0 until layer.size) {
-                    val activation = layer.activations.get(i, 0)
-                    val input = layer.inputs.get(i, 0)
-                    add(izhikevichRule(timeStep, input, activation, dataHolder.recoveryMatrix[i, 0]))
-                }
+            val recovery = dataHolder.recoveryMatrix
+            for (i in 0 until layer.size) {
+                val input = inputs[i, 0] + (noise?.get(i) ?: 0.0) + iBg
+                val (activation, spiked, newRecovery) = izhikevichRule(timeStep, input, activations[i, 0], recovery[i, 0])
+                activations[i, 0] = activation
+                dataHolder.spikes[i] = spiked
+                recovery[i, 0] = newRecovery
             }
-
-            val activations = Matrix.column(result.map { it.activation }.toDoubleArray())
-            val spikes = result.map { it.isSpiked }.toBooleanArray()
-            val recovery = Matrix.column(result.map { it.recovery }.toDoubleArray())
-
             layer.activations = activations
-            spikes.copyInto(dataHolder.spikes)
-            dataHolder.recoveryMatrix.copyFrom(recovery)
         }
     }
 
@@ -0,0 +1,82 @@
+package org.simbrain.network.updaterules
+
+import org.simbrain.network.core.Layer
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.util.EmptyMatrixData
+import org.simbrain.network.util.EmptyScalarData
+import org.simbrain.util.UserParameter
+import org.simbrain.util.selectKthLargest
+import org.simbrain.util.setCol
+
+/**
+ * k winners take all for neuron arrays. The k nodes with the largest inputs take the win value and the rest take the
+ * lose value.
+ *
+ * The k-th largest input is found with a selection algorithm, so an update takes linear time in the size of the
+ * layer rather than requiring a sort. When several nodes tie at the k-th largest input, the ones with the lowest
+ * indices win, so that exactly k nodes are active.
+ *
+ * Unlike [org.simbrain.network.neurongroups.KWTA] this does not model the point neuron inhibition of O'Reilly and
+ * Munakata. It only selects the winners.
+ */
+class KWTARule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>() {
+
+    @UserParameter(label = "K", description = "Number of nodes that should win a competition", minimumValue = 0.0,
+        order = 10)
+    var k = 1
+
+    @UserParameter(label = "Wining value", order = 20)
+    var winValue = 1.0
+
+    @UserParameter(label = "Losing value", order = 30)
+    var loseValue = 0.0
+
+    context(Network)
+    override fun apply(layer: Layer, dataHolder: EmptyMatrixData) {
+        val inputs = layer.inputs
+        val activations = layer.activations
+        val size = activations.nrow()
+        val numWinners = k.coerceIn(0, size)
+        if (numWinners == 0) {
+            activations.setCol(0, loseValue)
+            return
+        }
+        if (numWinners == size) {
+            activations.setCol(0, winValue)
+            return
+        }
+        val threshold = DoubleArray(size) { inputs[it, 0] }.selectKthLargest(numWinners, random)
+        var above = 0
+        for (i in 0 until size) {
+            if (inputs[i, 0] > threshold) {
+                above++
+            }
+        }
+        var tiesToActivate = numWinners - above
+        for (i in 0 until size) {
+            val input = inputs[i, 0]
+            val wins = input > threshold || (input == threshold && tiesToActivate-- > 0)
+            activations[i, 0] = if (wins) winValue else loseValue
+        }
+    }
+
+    context(Network)
+    override fun apply(neuron: Neuron, data: EmptyScalarData) {
+        neuron.activation = if (k > 0) winValue else loseValue
+    }
+
+    override val timeType: Network.TimeType
+        get() = Network.TimeType.DISCRETE
+
+    override fun copy(): KWTARule {
+        return KWTARule().also {
+            it.k = k
+            it.winValue = winValue
+            it.loseValue = loseValue
+        }
+    }
+
+    override val name: String
+        get() = "K Winners Take All"
+}
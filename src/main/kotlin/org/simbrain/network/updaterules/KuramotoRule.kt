@@ -11,6 +11,7 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
 import kotlin.math.sin
+import kotlin.random.Random
 
 /**
  * TODO
@@ -110,6 +111,23 @@ class KuramotoRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>(), Diffe
         }
     }
 
+    /**
+     * Activation is a phase that depends on the phases of individual source neurons.
+     */
+    override val supportsBatchActivation: Boolean
+        get() = false
+
+    /**
+     * The clipped linear function whose derivative is [getDerivative].
+     */
+    override fun getActivation(input: Double, bias: Double, random: Random): Double {
+        var `val` = slope * (input + bias)
+        if (addNoise) {
+            `val` += noiseGenerator.sampleDouble(random)
+        }
+        return if (isClipped) `val`.coerceIn(lowerBound, upperBound) else `val`
+    }
+
     override val name: String
         get() = "Kuramoto"
 
@@ -14,6 +14,7 @@ import org.simbrain.util.propertyeditor.GuiEditable
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
 import kotlin.math.max
+import kotlin.random.Random
 
 /**
  * **LinearNeuron** is a standard linear neuron.
@@ -88,20 +89,30 @@ open class LinearRule : NeuronUpdateRule<BiasedScalarData, BiasedMatrixData>(),
 
     context(Network)
     override fun apply(layer: Layer, dataHolder: BiasedMatrixData) {
+        val noise = if (addNoise) layer.sampleNoise(noiseGenerator) else null
         for (i in 0 until layer.activations.nrow()) {
-            layer.activations[i, 0] = linearRule(layer.inputs[i, 0], dataHolder.biases[i, 0])
+            layer.activations[i, 0] = applyClipping(layer.inputs[i, 0] * slope + dataHolder.biases[i, 0] + (noise?.get(i) ?: 0.0))
         }
     }
 
+    override fun getActivation(input: Double, bias: Double, random: Random): Double {
+        val noise = if (addNoise) noiseGenerator.sampleDouble(random) else 0.0
+        return applyClipping(input * slope + bias + noise)
+    }
+
     fun linearRule(input: Double, bias: Double): Double {
         var ret = input * slope + bias
         if (addNoise) {
             ret += noiseGenerator.sampleDouble()
         }
+        return applyClipping(ret)
+    }
+
+    private fun applyClipping(value: Double): Double {
         return when (clippingType) {
-            ClippingType.NoClipping -> ret
-            ClippingType.Relu -> max(0.0, ret)
-            ClippingType.PiecewiseLinear -> SimbrainMath.clip(ret, lowerBound, upperBound)
+            ClippingType.NoClipping -> value
+            ClippingType.Relu -> max(0.0, value)
+            ClippingType.PiecewiseLinear -> SimbrainMath.clip(value, lowerBound, upperBound)
         }
     }
 
@@ -3,6 +3,7 @@ package org.simbrain.network.updaterules
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.SpikingNeuronUpdateRule
+import org.simbrain.network.updaterules.interfaces.IntegratedUpdateRule
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule
 import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.network.util.SpikingScalarData
@@ -13,7 +14,8 @@ import org.simbrain.util.stats.distributions.NormalDistribution
 /**
  * @author Zoë Tosi
  */
-class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixData>(), NoisyUpdateRule {
+class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixData>(), NoisyUpdateRule,
+    IntegratedUpdateRule {
     /**
      * Calcium channel conductance (micro Siemens/cm^2).
      */
@@ -194,19 +196,29 @@ class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixDa
      */
     override var noiseGenerator: ProbabilityDistribution = NormalDistribution(0.0, 1.0)
 
+    /**
+     * Integrator for membrane voltage and the fraction of open potassium channels.
+     */
+    override var integrator: OdeIntegrator = OdeIntegrator.RungeKutta4()
+
     context(Network)
     override fun apply(neuron: Neuron, dat: MorrisLecarData) {
         val data = dat as MorrisLecarData
-        val dt = timeStep
-        val i_syn = neuron.input
-        // Under normal circumstances this will cause no change.
-        var vMembrane = neuron.activation
-        val dVdt = dVdt(vMembrane, i_syn, data.w_K)
-        val dWdt = dWdt(vMembrane, data.w_K)
-        val vmFut = vMembrane + dt * dVdt
-        val wKFut = data.w_K + dt * dWdt
-        vMembrane = vMembrane + dt / 2 * (dVdt + dVdt(vmFut, i_syn, data.w_K))
-        data.w_K = data.w_K + dt / 2 * (dWdt + dWdt(vMembrane, wKFut))
+        // Noise is drawn once per time step and held through it
+        val i_syn = neuron.input + if (addNoise) noiseGenerator.sampleDouble() else 0.0
+        val state = doubleArrayOf(neuron.activation, data.w_K)
+        integrator.integrate({ _, y, dydt, decay ->
+            val vMembrane = y[0]
+            val w_K = y[1]
+            dydt[0] = dVdt(vMembrane, i_syn, w_K)
+            dydt[1] = dWdt(vMembrane, w_K)
+            if (decay != null) {
+                decay[0] = (g_Ca * membraneFunction(vMembrane) + g_K * w_K + g_L) / cMembrane
+                decay[1] = phi * lambdaFunction(vMembrane)
+            }
+        }, state, time, timeStep)
+        val vMembrane = state[0]
+        data.w_K = state[1]
         neuron.isSpike = vMembrane > threshold
         neuron.activation = vMembrane
     }
@@ -216,11 +228,7 @@ class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixDa
         val i_K = g_K * w_K * (vMembrane - vRest_k)
         val i_L = g_L * (vMembrane - vRest_L)
         val i_ion = i_Ca + i_K + i_L
-        var i_noise = 0.0
-        if (addNoise) {
-            i_noise = noiseGenerator.sampleDouble()
-        }
-        return (i_bg - i_ion + i_syn + i_noise) / cMembrane
+        return (i_bg - i_ion + i_syn) / cMembrane
     }
 
     private fun dWdt(vMembrane: Double, w_K: Double): Double {
@@ -261,6 +269,7 @@ class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixDa
         cpy.vRest_k = vRest_k
         cpy.vRest_L = vRest_L
         cpy.noiseGenerator = noiseGenerator.copy()
+        cpy.integrator = integrator.copy()
         return cpy
     }
 
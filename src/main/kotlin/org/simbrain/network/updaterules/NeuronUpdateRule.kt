@@ -279,7 +279,10 @@ val neuronArrayUpdateRules = listOf(
     FitzhughNagumo::class.java,
     IntegrateAndFireRule::class.java,
     IzhikevichRule::class.java,
+    KWTARule::class.java,
     LinearRule::class.java,
     NakaRushtonRule::class.java,
     SigmoidalRule::class.java,
+    SoftmaxRule::class.java,
+    WinnerTakeAllRule::class.java,
 )
\ No newline at end of file
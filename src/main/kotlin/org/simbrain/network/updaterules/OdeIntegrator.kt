@@ -0,0 +1,306 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.updaterules
+
+import org.simbrain.util.UserParameter
+import org.simbrain.util.propertyeditor.CopyableObject
+import kotlin.math.abs
+import kotlin.math.expm1
+import kotlin.math.max
+import kotlin.math.pow
+
+/**
+ * A system of ordinary differential equations dy/dt = f(t, y), whose state y is held in an array. Continuous update
+ * rules describe their dynamics this way so that an [OdeIntegrator] can advance them.
+ */
+fun interface OdeSystem {
+
+    /**
+     * Write the derivatives of the state [y] at time [t] into [dydt].
+     *
+     * If [decay] is not null, also write the rate at which each variable decays, the negated derivative of its dy/dt
+     * with respect to itself. For a gating variable with dx/dt = α(1 - x) - βx this is α + β, and for a membrane
+     * voltage it is the total conductance over the capacitance. [OdeIntegrator.ExponentialEuler] uses it. Entries that
+     * are left at 0 are advanced by a plain Euler step.
+     */
+    fun derivatives(t: Double, y: DoubleArray, dydt: DoubleArray, decay: DoubleArray?)
+}
+
+/**
+ * Numerical method used to advance an [OdeSystem] over one network time step.
+ *
+ * Integrators keep scratch arrays between calls, so one integrator should not be used by several threads at once.
+ * Each update rule has its own.
+ */
+sealed class OdeIntegrator : CopyableObject {
+
+    /**
+     * Advance [y] in place from time [t] to [t] + [dt].
+     */
+    abstract fun integrate(system: OdeSystem, y: DoubleArray, t: Double, dt: Double)
+
+    @Transient
+    private var scratch: Array<DoubleArray>? = null
+
+    /**
+     * [count] arrays the size of the state, reused from call to call.
+     */
+    protected fun scratch(count: Int, size: Int): Array<DoubleArray> {
+        return scratch?.takeIf { it.size == count && it[0].size == size }
+            ?: Array(count) { DoubleArray(size) }.also { scratch = it }
+    }
+
+    /**
+     * Forward Euler. One evaluation per step; accurate and stable only for small time steps.
+     */
+    class Euler : OdeIntegrator() {
+
+        override fun integrate(system: OdeSystem, y: DoubleArray, t: Double, dt: Double) {
+            val (dydt) = scratch(1, y.size)
+            system.derivatives(t, y, dydt, null)
+            for (i in y.indices) {
+                y[i] += dt * dydt[i]
+            }
+        }
+
+        override fun copy() = Euler()
+
+        override val name = "Euler"
+    }
+
+    /**
+     * Semi-implicit (symplectic) Euler for systems whose state is two halves, such as a voltage and a recovery
+     * variable for each neuron. The second half is advanced first, and the first half is then advanced using its new
+     * values. Two evaluations per step; more stable than forward Euler for oscillators.
+     */
+    class SemiImplicitEuler : OdeIntegrator() {
+
+        override fun integrate(system: OdeSystem, y: DoubleArray, t: Double, dt: Double) {
+            val half = y.size / 2
+            val (dydt) = scratch(1, y.size)
+            system.derivatives(t, y, dydt, null)
+            for (i in half until y.size) {
+                y[i] += dt * dydt[i]
+            }
+            system.derivatives(t, y, dydt, null)
+            for (i in 0 until half) {
+                y[i] += dt * dydt[i]
+            }
+        }
+
+        override fun copy() = SemiImplicitEuler()
+
+        override val name = "Semi-implicit Euler"
+    }
+
+    /**
+     * Classical fourth order Runge-Kutta. Four evaluations per step.
+     */
+    class RungeKutta4 : OdeIntegrator() {
+
+        override fun integrate(system: OdeSystem, y: DoubleArray, t: Double, dt: Double) {
+            val (k1, k2, k3, k4, stage) = scratch(5, y.size)
+            system.derivatives(t, y, k1, null)
+            for (i in y.indices) stage[i] = y[i] + dt / 2 * k1[i]
+            system.derivatives(t + dt / 2, stage, k2, null)
+            for (i in y.indices) stage[i] = y[i] + dt / 2 * k2[i]
+            system.derivatives(t + dt / 2, stage, k3, null)
+            for (i in y.indices) stage[i] = y[i] + dt * k3[i]
+            system.derivatives(t + dt, stage, k4, null)
+            for (i in y.indices) {
+                y[i] += dt / 6 * (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i])
+            }
+        }
+
+        override fun copy() = RungeKutta4()
+
+        override val name = "Runge-Kutta 4"
+    }
+
+    /**
+     * Exponential Euler. Each variable relaxes exponentially at its decay rate (see [OdeSystem.derivatives]) over the
+     * step, which is exact for gating variables whose rates depend only on voltage, and stable however fast they are.
+     * One evaluation per step.
+     */
+    class ExponentialEuler : OdeIntegrator() {
+
+        override fun integrate(system: OdeSystem, y: DoubleArray, t: Double, dt: Double) {
+            val (dydt, decay) = scratch(2, y.size)
+            decay.fill(0.0)
+            system.derivatives(t, y, dydt, decay)
+            for (i in y.indices) {
+                val b = decay[i]
+                // (1 - exp(-b dt)) / b, which tends to dt as b tends to 0
+                val h = if (abs(b * dt) < 1e-9) dt else -expm1(-b * dt) / b
+                y[i] += h * dydt[i]
+            }
+        }
+
+        override fun copy() = ExponentialEuler()
+
+        override val name = "Exponential Euler"
+    }
+
+    /**
+     * Dormand-Prince Runge-Kutta 4(5) with adaptive step size. The network time step is divided into as many sub-steps
+     * as are needed to keep the estimated error of each within [tolerance], so a stiff system can take many small steps
+     * while the network step stays coarse. The last step size is carried over to the next network step.
+     */
+    class AdaptiveRungeKutta45(
+        @UserParameter(
+            label = "Tolerance",
+            description = "Largest error allowed in a sub-step, relative to the size of each variable plus 1",
+            minimumValue = 0.0,
+            increment = .0001,
+            order = 1
+        )
+        var tolerance: Double = 1e-4,
+        @UserParameter(
+            label = "Max sub-steps",
+            description = "Fewest sub-steps are then one network time step divided by this",
+            minimumValue = 1.0,
+            order = 2
+        )
+        var maxSubsteps: Int = 1000
+    ) : OdeIntegrator() {
+
+        /**
+         * Sub-step size to start the next network step with, or 0 to start with the whole network step.
+         */
+        @Transient
+        private var nextStep = 0.0
+
+        override fun integrate(system: OdeSystem, y: DoubleArray, t: Double, dt: Double) {
+            val s = scratch(9, y.size)
+            var k1 = s[0]
+            val k2 = s[1]
+            val k3 = s[2]
+            val k4 = s[3]
+            val k5 = s[4]
+            val k6 = s[5]
+            var k7 = s[6]
+            val stage = s[7]
+            val next = s[8]
+
+            val end = t + dt
+            val minStep = dt / maxSubsteps
+            var time = t
+            var h = if (nextStep > 0) nextStep else dt
+            // Size of the last step before it was shortened to end exactly at the end of the network step, or 0
+            var unclippedStep = 0.0
+            system.derivatives(time, y, k1, null)
+            while (time < end) {
+                val reachesEnd = h >= end - time
+                unclippedStep = 0.0
+                if (reachesEnd) {
+                    if (h > end - time) {
+                        unclippedStep = h
+                    }
+                    h = end - time
+                }
+                for (i in y.indices) stage[i] = y[i] + h * A21 * k1[i]
+                system.derivatives(time + C2 * h, stage, k2, null)
+                for (i in y.indices) stage[i] = y[i] + h * (A31 * k1[i] + A32 * k2[i])
+                system.derivatives(time + C3 * h, stage, k3, null)
+                for (i in y.indices) stage[i] = y[i] + h * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i])
+                system.derivatives(time + C4 * h, stage, k4, null)
+                for (i in y.indices) {
+                    stage[i] = y[i] + h * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i])
+                }
+                system.derivatives(time + C5 * h, stage, k5, null)
+                for (i in y.indices) {
+                    stage[i] = y[i] + h * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i])
+                }
+                system.derivatives(time + h, stage, k6, null)
+                for (i in y.indices) {
+                    next[i] = y[i] + h * (B1 * k1[i] + B3 * k3[i] + B4 * k4[i] + B5 * k5[i] + B6 * k6[i])
+                }
+                system.derivatives(time + h, next, k7, null)
+
+                // Difference between the fifth and embedded fourth order solutions, scaled by the tolerance
+                var error = 0.0
+                for (i in y.indices) {
+                    val difference = h * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i])
+                    val scale = tolerance * (1 + max(abs(y[i]), abs(next[i])))
+                    error = max(error, abs(difference) / scale)
+                }
+                if (error <= 1 || h <= minStep) {
+                    time = if (reachesEnd) end else time + h
+                    next.copyInto(y)
+                    // The last evaluation of an accepted step is the first of the next
+                    k1 = k7.also { k7 = k1 }
+                }
+                val factor = if (error.isNaN()) 0.2 else (0.9 * error.pow(-0.2)).coerceIn(0.2, 5.0)
+                h = max(h * factor, minStep)
+            }
+            // Keep the arrays in place for the next call, whichever way round k1 and k7 ended
+            s[0] = k1
+            s[6] = k7
+            // A step cut short only to land on the end says nothing about the step size the system needs
+            nextStep = if (unclippedStep > 0) unclippedStep else h
+        }
+
+        override fun copy() = AdaptiveRungeKutta45(tolerance, maxSubsteps)
+
+        override val name = "Adaptive Runge-Kutta 4(5)"
+
+        private companion object {
+            const val C2 = 1.0 / 5
+            const val C3 = 3.0 / 10
+            const val C4 = 4.0 / 5
+            const val C5 = 8.0 / 9
+            const val A21 = 1.0 / 5
+            const val A31 = 3.0 / 40
+            const val A32 = 9.0 / 40
+            const val A41 = 44.0 / 45
+            const val A42 = -56.0 / 15
+            const val A43 = 32.0 / 9
+            const val A51 = 19372.0 / 6561
+            const val A52 = -25360.0 / 2187
+            const val A53 = 64448.0 / 6561
+            const val A54 = -212.0 / 729
+            const val A61 = 9017.0 / 3168
+            const val A62 = -355.0 / 33
+            const val A63 = 46732.0 / 5247
+            const val A64 = 49.0 / 176
+            const val A65 = -5103.0 / 18656
+            const val B1 = 35.0 / 384
+            const val B3 = 500.0 / 1113
+            const val B4 = 125.0 / 192
+            const val B5 = -2187.0 / 6784
+            const val B6 = 11.0 / 84
+            const val E1 = 71.0 / 57600
+            const val E3 = -71.0 / 16695
+            const val E4 = 71.0 / 1920
+            const val E5 = -17253.0 / 339200
+            const val E6 = 22.0 / 525
+            const val E7 = -1.0 / 40
+        }
+    }
+
+    override fun getTypeList(): List<Class<out CopyableObject>>? {
+        return listOf(
+            Euler::class.java,
+            SemiImplicitEuler::class.java,
+            RungeKutta4::class.java,
+            ExponentialEuler::class.java,
+            AdaptiveRungeKutta45::class.java
+        )
+    }
+}
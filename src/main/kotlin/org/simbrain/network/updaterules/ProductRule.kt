@@ -54,6 +54,13 @@ class ProductRule : LinearRule() {
         neuron.activation = `val`
     }
 
+    /**
+     * Activation is a product of individual incoming activations, not a function of the weighted input, so the
+     * inherited linear [getActivation] does not apply.
+     */
+    override val supportsBatchActivation: Boolean
+        get() = false
+
     override val name: String
         get() = "Product"
 
@@ -25,6 +25,7 @@ import org.simbrain.network.core.NeuronArray
 import org.simbrain.network.util.BiasedMatrixData
 import org.simbrain.network.util.BiasedScalarData
 import org.simbrain.util.addi
+import kotlin.random.Random
 
 /**
  * Discrete sigmoidal provides various implementations of a standard sigmoidal neuron.
@@ -50,11 +51,19 @@ class SigmoidalRule : AbstractSigmoidalRule() {
         val array = layer as NeuronArray
         val weightedInputs = array.inputs.add(dataHolder.biases)
         if (addNoise) {
-            weightedInputs.addi(noiseGenerator.sampleDouble(array.size))
+            weightedInputs.addi(array.sampleNoise(noiseGenerator))
         }
         array.activations = type.valueOf(weightedInputs, lowerBound, upperBound, slope)
     }
 
+    override fun getActivation(input: Double, bias: Double, random: Random): Double {
+        var weightedInput = input + bias
+        if (addNoise) {
+            weightedInput += noiseGenerator.sampleDouble(random)
+        }
+        return type.valueOf(weightedInput, upperBound, lowerBound, slope)
+    }
+
     override fun copy(): SigmoidalRule {
         var sr = SigmoidalRule()
         sr = super.copy(sr) as SigmoidalRule
@@ -0,0 +1,79 @@
+package org.simbrain.network.updaterules
+
+import org.simbrain.network.core.Layer
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.util.EmptyMatrixData
+import org.simbrain.network.util.EmptyScalarData
+import org.simbrain.util.UserParameter
+import kotlin.math.exp
+import kotlin.math.max
+
+/**
+ * Array version of [org.simbrain.network.neurongroups.SoftmaxGroup]. The inputs to the layer are divided by the
+ * temperature and passed through a softmax, so that activations are in (0,1) and sum to 1.
+ *
+ * The largest input is subtracted before exponentiating so that large inputs do not overflow, and the result is
+ * written directly into the activation matrix.
+ */
+class SoftmaxRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>() {
+
+    @UserParameter(
+        label = "Temperature",
+        description = "1 is default. Above 1 is a flatter distribution. Between 0 and 1 is a sharper distribution.",
+        minimumValue = MIN_TEMPERATURE,
+        increment = .1,
+        order = 10
+    )
+    var temperature = 1.0
+
+    context(Network)
+    override fun apply(layer: Layer, dataHolder: EmptyMatrixData) {
+        val inputs = layer.inputs
+        val activations = layer.activations
+        val size = activations.nrow()
+        if (size == 0) {
+            return
+        }
+        // A temperature of 0 would divide by zero, so it is treated as the smallest allowed one
+        val temperature = temperature.coerceAtLeast(MIN_TEMPERATURE)
+        var maxInput = Double.NEGATIVE_INFINITY
+        for (i in 0 until size) {
+            maxInput = max(maxInput, inputs[i, 0] / temperature)
+        }
+        var total = 0.0
+        for (i in 0 until size) {
+            val exponential = exp(inputs[i, 0] / temperature - maxInput)
+            activations[i, 0] = exponential
+            total += exponential
+        }
+        for (i in 0 until size) {
+            activations[i, 0] /= total
+        }
+    }
+
+    /**
+     * A softmax over a single neuron is always 1.
+     */
+    context(Network)
+    override fun apply(neuron: Neuron, data: EmptyScalarData) {
+        neuron.activation = 1.0
+    }
+
+    override val timeType: Network.TimeType
+        get() = Network.TimeType.DISCRETE
+
+    override fun copy(): SoftmaxRule {
+        return SoftmaxRule().also {
+            it.temperature = temperature
+        }
+    }
+
+    override val name: String
+        get() = "Softmax"
+}
+
+/**
+ * Smallest temperature used by [SoftmaxRule].
+ */
+private const val MIN_TEMPERATURE = 0.0001
@@ -0,0 +1,108 @@
+package org.simbrain.network.updaterules
+
+import org.simbrain.network.core.Layer
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.util.EmptyMatrixData
+import org.simbrain.network.util.EmptyScalarData
+import org.simbrain.util.UserParameter
+import org.simbrain.util.propertyeditor.GuiEditable
+import org.simbrain.util.setCol
+import kotlin.random.Random
+
+/**
+ * Array version of [org.simbrain.network.neurongroups.WinnerTakeAll]. The node with the largest input takes the win
+ * value and all other nodes take the lose value. Ties are broken randomly.
+ */
+class WinnerTakeAllRule : NeuronUpdateRule<EmptyScalarData, EmptyMatrixData>() {
+
+    @UserParameter(label = "Wining value", order = 10)
+    var winValue = 1.0
+
+    @UserParameter(label = "Losing value", order = 20)
+    var loseValue = 0.0
+
+    var isUseRandom by GuiEditable(
+        initValue = false,
+        label = "Random winner",
+        description = "If true, sometimes set the winner randomly",
+        order = 30,
+    )
+
+    var randomProb by GuiEditable(
+        label = "Random prob",
+        description = "Probability of setting the winner randomly, when useRandom is true",
+        initValue = .1,
+        order = 40,
+        conditionallyEnabledBy = WinnerTakeAllRule::isUseRandom,
+    )
+
+    /**
+     * Index of the winner on the last update, or -1 if there has not been one.
+     */
+    var winner = -1
+        private set
+
+    context(Network)
+    override fun apply(layer: Layer, dataHolder: EmptyMatrixData) {
+        val activations = layer.activations
+        val size = activations.nrow()
+        if (size == 0) {
+            return
+        }
+        winner = if (isUseRandom && random.nextDouble() < randomProb) {
+            random.nextInt(size)
+        } else {
+            argMax(layer, random)
+        }
+        activations.setCol(0, loseValue)
+        activations[winner, 0] = winValue
+    }
+
+    /**
+     * Index of the largest input in one pass. Each tied input replaces the current winner with probability 1 / (number
+     * of ties so far), so every tied input is equally likely to win. Ties are broken with [random], the network's
+     * generator, so that runs with the same seed pick the same winners.
+     */
+    private fun argMax(layer: Layer, random: Random): Int {
+        val inputs = layer.inputs
+        var best = 0
+        var ties = 1
+        for (i in 1 until inputs.nrow()) {
+            val value = inputs[i, 0]
+            if (value > inputs[best, 0]) {
+                best = i
+                ties = 1
+            } else if (value == inputs[best, 0]) {
+                ties++
+                if (random.nextInt(ties) == 0) {
+                    best = i
+                }
+            }
+        }
+        return best
+    }
+
+    /**
+     * A single neuron always wins.
+     */
+    context(Network)
+    override fun apply(neuron: Neuron, data: EmptyScalarData) {
+        neuron.activation = winValue
+    }
+
+    override val timeType: Network.TimeType
+        get() = Network.TimeType.DISCRETE
+
+    override fun copy(): WinnerTakeAllRule {
+        return WinnerTakeAllRule().also {
+            it.winValue = winValue
+            it.loseValue = loseValue
+            it.isUseRandom = isUseRandom
+            it.randomProb = randomProb
+        }
+    }
+
+    override val name: String
+        get() = "Winner Take All"
+}
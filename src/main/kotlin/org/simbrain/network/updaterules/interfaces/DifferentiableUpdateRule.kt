@@ -14,6 +14,7 @@
 package org.simbrain.network.updaterules.interfaces
 
 import smile.math.matrix.Matrix
+import kotlin.random.Random
 
 /**
  * Indicates that an update rule is differentiable, and has a getDerivative
@@ -32,13 +33,45 @@ interface DifferentiableUpdateRule {
     fun getDerivative(`val`: Double): Double
 
     /**
-     * Array based derivative. By default forwards to scalar derivative.
+     * Array based derivative. By default forwards to scalar derivative. Each column of the input is handled
+     * separately, so a batch of inputs stacked as columns can be passed in.
      */
     fun getDerivative(input: Matrix): Matrix {
-        val derivatives = Matrix(input.nrow(), 1)
-        for (i in 0 until derivatives.nrow()) {
-            derivatives[i, 0] = getDerivative(input[i, 0])
+        val derivatives = Matrix(input.nrow(), input.ncol())
+        for (j in 0 until derivatives.ncol()) {
+            for (i in 0 until derivatives.nrow()) {
+                derivatives[i, j] = getDerivative(input[i, j])
+            }
         }
         return derivatives
     }
+
+    /**
+     * Whether [getActivation] gives the activation a layer using this rule would have. False for rules whose
+     * activation also depends on state kept between updates or on individual connections, which batched training
+     * cannot reproduce. Trainers then fall back to training one row at a time.
+     */
+    val supportsBatchActivation: Boolean
+        get() = true
+
+    /**
+     * The activation function applied to a weighted input and a bias. Used by batched training, where many inputs are
+     * propagated at once without going through a layer. Any noise is drawn from [random], so that batches computed
+     * in parallel do not share a generator.
+     */
+    fun getActivation(input: Double, bias: Double, random: Random): Double
+
+    /**
+     * Array based activation. Each column of [inputs] is a separate weighted input vector, and [biases] is a column
+     * vector applied to every column. By default forwards to scalar activation.
+     */
+    fun getActivation(inputs: Matrix, biases: Matrix, random: Random): Matrix {
+        val activations = Matrix(inputs.nrow(), inputs.ncol())
+        for (j in 0 until activations.ncol()) {
+            for (i in 0 until activations.nrow()) {
+                activations[i, j] = getActivation(inputs[i, j], biases[i, 0], random)
+            }
+        }
+        return activations
+    }
 }
@@ -0,0 +1,22 @@
+package org.simbrain.network.updaterules.interfaces
+
+import org.simbrain.network.updaterules.OdeIntegrator
+import org.simbrain.util.UserParameter
+
+/**
+ * An interface which should be implemented by any neuron update rule whose dynamics are a system of differential
+ * equations advanced by a choice of numerical method.
+ */
+interface IntegratedUpdateRule {
+    /**
+     * The method used to advance the rule's equations over each network time step.
+     */
+    @UserParameter(
+        label = "Integrator",
+        description = "Numerical method used to advance the neuron's equations over each time step. Adaptive "
+                + "methods take as many smaller steps as they need within a time step.",
+        order = 900,
+        tab = "Integration"
+    )
+    var integrator: OdeIntegrator
+}
@@ -14,6 +14,8 @@ package org.simbrain.plot.histogram
 
 import org.jfree.data.xy.IntervalXYDataset
 import org.simbrain.plot.histogram.OverwritableHistogramDataset.ColoredDataSeries
+import org.simbrain.util.UserParameter
+import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.workspace.AttributeContainer
 import org.simbrain.workspace.Consumable
 import java.awt.Color
@@ -49,13 +51,79 @@ class HistogramModel(
     xAxisName: String = "",
     yAxisName: String = "Count",
     colorPallet: Array<Color>? = null
-) : AttributeContainer {
+) : AttributeContainer, EditableObject {
 
     /**
      * The data set used to generate the histogram.
      */
     private val dataSet = OverwritableHistogramDataset()
 
+    /**
+     * If true, each update is added to a running [StreamingHistogram] for its
+     * series instead of replacing the series. Counts then accumulate until the
+     * data are reset, stored values are never re-binned, and refreshing the
+     * plot only costs as much as the number of bins. Turning streaming on
+     * starts the running histograms from the current data, after which the
+     * raw values are no longer kept.
+     */
+    @UserParameter(
+        label = "Streaming",
+        description = "Accumulate counts over all updates instead of showing only the latest values",
+        order = 10
+    )
+    var streaming = false
+        set(value) {
+            if (field == value) return
+            field = value
+            streamingHistograms.clear()
+            if (value) {
+                data.forEachIndexed { i, values -> getStreamingHistogram(i).addAll(values) }
+                data = MutableList(data.size) { DoubleArray(0) }
+            }
+            applyCurrentData()
+        }
+
+    /**
+     * In streaming mode, whether the bins widen to fit values outside their
+     * range. Otherwise the range is fixed by the first update.
+     */
+    @UserParameter(
+        label = "Adaptive bins",
+        description = "In streaming mode, widen the bins to fit values outside their range",
+        order = 20
+    )
+    var adaptiveBins = true
+        set(value) {
+            field = value
+            streamingHistograms.forEach { it.adaptive = value }
+        }
+
+    /**
+     * In streaming mode, whether to keep a [org.simbrain.util.stats.QuantileSketch]
+     * for each series so that [quantile] is accurate rather than interpolated
+     * from the bins. A sketch turned on for an existing series only reflects
+     * values added after that.
+     */
+    @UserParameter(
+        label = "Track quantiles",
+        description = "In streaming mode, keep a sketch of each series so quantiles are accurate",
+        order = 30
+    )
+    var trackQuantiles = false
+        set(value) {
+            field = value
+            streamingHistograms.forEach { it.trackQuantiles = value }
+        }
+
+    /**
+     * Running histograms used in streaming mode, one per series.
+     */
+    @Transient
+    private var _streamingHistograms: MutableList<StreamingHistogram>? = null
+
+    private val streamingHistograms: MutableList<StreamingHistogram>
+        get() = _streamingHistograms ?: ArrayList<StreamingHistogram>().also { _streamingHistograms = it }
+
     init {
         addDataSources(1)
     }
@@ -72,10 +140,40 @@ class HistogramModel(
         if (index < data.size) {
             data.removeAt(index)
         }
-        data.add(index, histData)
+        if (streaming) {
+            // Only the counts are kept, so the array can be reused by the caller
+            data.add(index, DoubleArray(0))
+            getStreamingHistogram(index).addAll(histData)
+        } else {
+            data.add(index, histData)
+        }
         applyCurrentData()
     }
 
+    /**
+     * Returns the running histogram for a series, creating it if needed.
+     */
+    fun getStreamingHistogram(index: Int): StreamingHistogram {
+        while (streamingHistograms.size <= index) {
+            streamingHistograms.add(StreamingHistogram(bins, adaptiveBins, trackQuantiles))
+        }
+        return streamingHistograms[index]
+    }
+
+    /**
+     * Estimate the value below which the fraction q of the values in a series
+     * fall. In streaming mode this covers all values added since the last
+     * reset, otherwise the current values of the series.
+     */
+    fun quantile(index: Int, q: Double): Double {
+        if (streaming) {
+            return getStreamingHistogram(index).quantile(q)
+        }
+        val sorted = data[index].sortedArray()
+        if (sorted.isEmpty()) return Double.NaN
+        return sorted[((sorted.size - 1) * q).toInt()]
+    }
+
     /**
      * Called by coupling producers via reflection. For now only only coupling
      * to a single histogram. Later possibly allow coupling to multiple
@@ -89,16 +187,28 @@ class HistogramModel(
     }
 
     fun applyCurrentData() {
-        dataSet.resetData(dataNames, data, bins)
+        if (streaming) {
+            val seriesBins = dataNames.indices.map { i ->
+                getStreamingHistogram(i).apply { rebin(bins) }.toHistogramBins()
+            }
+            dataSet.resetBins(dataNames, seriesBins)
+        } else {
+            dataSet.resetData(dataNames, data, bins)
+        }
     }
 
     /**
      * Reset the data in the model with provided data and names.
      */
     fun resetData(data: MutableList<DoubleArray>, names: MutableList<String>) {
-        this.data = data
         dataNames = names
-        dataSet.resetData(dataNames, data, bins)
+        streamingHistograms.clear()
+        if (streaming) {
+            data.forEachIndexed { i, values -> getStreamingHistogram(i).addAll(values) }
+            this.data = MutableList(data.size) { DoubleArray(0) }
+        } else {
+            this.data = data
+        }
         applyCurrentData()
     }
 
@@ -109,6 +219,7 @@ class HistogramModel(
     fun resetData() {
         data.clear()
         dataNames.clear()
+        streamingHistograms.clear()
         applyCurrentData()
         // TODO: Call an event that initiates GUI refresh
     }
@@ -152,4 +263,7 @@ class HistogramModel(
     }
 
     override val id: String = "Histogram"
+
+    override val name: String
+        get() = "Histogram"
 }
\ No newline at end of file
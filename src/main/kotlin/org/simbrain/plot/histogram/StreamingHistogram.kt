@@ -0,0 +1,276 @@
+package org.simbrain.plot.histogram
+
+import org.jfree.data.statistics.HistogramBin
+import org.simbrain.util.stats.QuantileSketch
+import kotlin.math.abs
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * A histogram whose counts are updated as values arrive, without storing the values themselves. Adding a value is
+ * O(1) and reading the bins is O(bins), however many values have been added.
+ *
+ * The range of the bins is set from the first values added, or explicitly with [setRange]. With adaptive bins, a
+ * value outside the range doubles the bin width (merging neighboring bins) until it fits, so the number of bins stays
+ * fixed. Otherwise values outside the range are counted in the first or last bin, as in
+ * [OverwritableHistogramDataset].
+ *
+ * If [trackQuantiles] is true a [QuantileSketch] is also kept, so that quantiles can be estimated accurately.
+ * Otherwise they are interpolated from the bins.
+ */
+class StreamingHistogram @JvmOverloads constructor(
+    numBins: Int = 25,
+    var adaptive: Boolean = true,
+    trackQuantiles: Boolean = false
+) {
+
+    private var counts = LongArray(numBins)
+
+    var lowerBound = 0.0
+        private set
+
+    var binWidth = 0.0
+        private set
+
+    val numBins get() = counts.size
+
+    val upperBound get() = lowerBound + binWidth * numBins
+
+    var count = 0L
+        private set
+
+    var min = Double.POSITIVE_INFINITY
+        private set
+
+    var max = Double.NEGATIVE_INFINITY
+        private set
+
+    var sketch: QuantileSketch? = if (trackQuantiles) QuantileSketch() else null
+        private set
+
+    var trackQuantiles: Boolean
+        get() = sketch != null
+        set(value) {
+            // A new sketch only reflects values added from now on
+            sketch = if (value) sketch ?: QuantileSketch() else null
+        }
+
+    /**
+     * True once the range of the bins has been set.
+     */
+    val hasRange get() = binWidth > 0
+
+    init {
+        if (numBins < 1) {
+            throw IllegalArgumentException("The number of bins must be at least 1.")
+        }
+    }
+
+    /**
+     * Set the range covered by the bins. Only allowed while the histogram is empty.
+     */
+    fun setRange(lower: Double, upper: Double) {
+        if (count > 0) {
+            throw IllegalStateException("Cannot set the range of a histogram that already has values")
+        }
+        if (upper <= lower) {
+            throw IllegalArgumentException("Upper bound ($upper) must be greater than lower bound ($lower)")
+        }
+        lowerBound = lower
+        binWidth = (upper - lower) / numBins
+    }
+
+    fun add(value: Double) {
+        if (value.isNaN()) return
+        if (!hasRange) {
+            initRange(value, value)
+        }
+        if (adaptive) {
+            while (value < lowerBound) growDown()
+            while (value >= upperBound) growUp()
+        }
+        counts[binIndex(value)]++
+        count++
+        min = min(min, value)
+        max = max(max, value)
+        sketch?.add(value)
+    }
+
+    /**
+     * Add a batch of values. If no range has been set yet, the range of the batch is used.
+     */
+    fun addAll(values: DoubleArray) {
+        if (!hasRange) {
+            var batchMin = Double.POSITIVE_INFINITY
+            var batchMax = Double.NEGATIVE_INFINITY
+            for (v in values) {
+                if (v < batchMin) batchMin = v
+                if (v > batchMax) batchMax = v
+            }
+            if (batchMin > batchMax) return // Empty or all NaN
+            initRange(batchMin, batchMax)
+        }
+        values.forEach { add(it) }
+    }
+
+    /**
+     * Add the counts of another histogram. The other histogram's values are assumed to be spread evenly within each
+     * of its bins.
+     */
+    fun merge(other: StreamingHistogram) {
+        for (i in 0 until other.numBins) {
+            if (other.counts[i] > 0) {
+                addCount(other.lowerBound + (i + 0.5) * other.binWidth, other.counts[i])
+            }
+        }
+        if (other.count > 0) {
+            min = min(min, other.min)
+            max = max(max, other.max)
+        }
+        other.sketch?.let { sketch?.merge(it) }
+    }
+
+    private fun addCount(value: Double, n: Long) {
+        if (!hasRange) {
+            initRange(value, value)
+        }
+        if (adaptive) {
+            while (value < lowerBound) growDown()
+            while (value >= upperBound) growUp()
+        }
+        counts[binIndex(value)] += n
+        count += n
+    }
+
+    /**
+     * Change the number of bins, keeping the range. Counts are redistributed assuming values are spread evenly within
+     * each old bin, so this is approximate.
+     */
+    fun rebin(newNumBins: Int) {
+        if (newNumBins < 1) {
+            throw IllegalArgumentException("The number of bins must be at least 1.")
+        }
+        if (newNumBins == numBins) return
+        val newWidth = binWidth * numBins / newNumBins
+        val newCounts = LongArray(newNumBins)
+        if (hasRange) {
+            val fractions = DoubleArray(newNumBins)
+            for (i in counts.indices) {
+                if (counts[i] == 0L) continue
+                val start = i * binWidth
+                val end = start + binWidth
+                var j = floor(start / newWidth).toInt().coerceIn(0, newNumBins - 1)
+                while (j < newNumBins && j * newWidth < end) {
+                    val overlap = min(end, (j + 1) * newWidth) - max(start, j * newWidth)
+                    fractions[j] += counts[i] * overlap / binWidth
+                    j++
+                }
+            }
+            // Round so that the total count is preserved
+            var carry = 0.0
+            for (j in 0 until newNumBins) {
+                val exact = fractions[j] + carry
+                newCounts[j] = Math.round(exact)
+                carry = exact - newCounts[j]
+            }
+        }
+        counts = newCounts
+        binWidth = newWidth
+    }
+
+    fun clear() {
+        counts = LongArray(numBins)
+        lowerBound = 0.0
+        binWidth = 0.0
+        count = 0
+        min = Double.POSITIVE_INFINITY
+        max = Double.NEGATIVE_INFINITY
+        sketch?.clear()
+    }
+
+    fun getCount(bin: Int) = counts[bin]
+
+    fun getBinStart(bin: Int) = lowerBound + bin * binWidth
+
+    fun getBinEnd(bin: Int) = lowerBound + (bin + 1) * binWidth
+
+    /**
+     * Estimate the value below which the fraction [q] of the values fall, using the quantile sketch if there is one.
+     */
+    fun quantile(q: Double): Double {
+        if (q !in 0.0..1.0) {
+            throw IllegalArgumentException("Quantile must be between 0 and 1")
+        }
+        sketch?.let { if (it.count > 0) return it.quantile(q) }
+        if (count == 0L) return Double.NaN
+        val target = q * count
+        var seen = 0L
+        for (i in counts.indices) {
+            if (seen + counts[i] >= target && counts[i] > 0) {
+                val fraction = (target - seen) / counts[i]
+                return (getBinStart(i) + fraction * binWidth).coerceIn(min, max)
+            }
+            seen += counts[i]
+        }
+        return max
+    }
+
+    /**
+     * The bins in the form used by [OverwritableHistogramDataset], or no bins if the histogram is empty. Does not
+     * depend on the number of values added.
+     */
+    fun toHistogramBins(): Array<HistogramBin> = if (count == 0L) arrayOf() else Array(numBins) {
+        CountedHistogramBin(getBinStart(it), getBinEnd(it), counts[it].toInt())
+    }
+
+    private fun initRange(lower: Double, upper: Double) {
+        var span = upper - lower
+        var start = lower
+        if (span <= 0) {
+            // A single value. Center it in a unit range scaled to its magnitude.
+            span = max(abs(lower), 1.0)
+            start = lower - span / 2
+        } else {
+            // Leave room so that the maximum falls inside the last bin
+            span *= 1 + 1e-9
+        }
+        lowerBound = start
+        binWidth = span / numBins
+    }
+
+    private fun binIndex(value: Double) = floor((value - lowerBound) / binWidth).toInt().coerceIn(0, numBins - 1)
+
+    /**
+     * Double the bin width, keeping the lower bound, by merging pairs of bins.
+     */
+    private fun growUp() {
+        val newCounts = LongArray(numBins)
+        for (i in counts.indices) {
+            newCounts[i / 2] += counts[i]
+        }
+        counts = newCounts
+        binWidth *= 2
+    }
+
+    /**
+     * Double the bin width, keeping the upper bound, by merging pairs of bins.
+     */
+    private fun growDown() {
+        val n = numBins
+        val newCounts = LongArray(n)
+        for (i in counts.indices) {
+            newCounts[(i + n) / 2] += counts[i]
+        }
+        counts = newCounts
+        lowerBound -= n * binWidth
+        binWidth *= 2
+    }
+}
+
+/**
+ * A [HistogramBin] created with its count, so that bins can be built from counts without incrementing one at a time.
+ */
+class CountedHistogramBin(start: Double, end: Double, private val binCount: Int) : HistogramBin(start, end) {
+    override fun getCount() = binCount
+}
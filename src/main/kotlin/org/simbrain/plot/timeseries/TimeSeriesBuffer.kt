@@ -0,0 +1,283 @@
+package org.simbrain.plot.timeseries
+
+import com.thoughtworks.xstream.converters.Converter
+import com.thoughtworks.xstream.converters.MarshallingContext
+import com.thoughtworks.xstream.converters.UnmarshallingContext
+import com.thoughtworks.xstream.io.HierarchicalStreamReader
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter
+import org.jfree.data.xy.AbstractXYDataset
+import org.simbrain.util.DoubleArrayConverter
+import kotlin.math.ceil
+import kotlin.math.max
+
+/**
+ * Stores the points of one time series in a pair of primitive circular buffers, so that appending is O(1) and does
+ * not allocate, and memory is bounded by [capacity]. The buffers start small and double in size as points are added,
+ * up to [capacity], so series that stay short do not pay for the full capacity.
+ *
+ * When the buffer is full, either the oldest point is dropped (sliding window mode, used for fixed width plots) or the
+ * whole buffer is thinned out to half its size (see [compact]), so that a long run is kept at lower resolution.
+ *
+ * Points are indexed from oldest (0) to newest (size - 1). Access is synchronized since points are usually added
+ * from the workspace thread and read from the Swing thread.
+ */
+class TimeSeriesBuffer @JvmOverloads constructor(
+    var description: String,
+    capacity: Int = 1000,
+    slidingWindow: Boolean = true
+) {
+
+    private var xs = DoubleArray(0)
+
+    private var ys = DoubleArray(0)
+
+    /**
+     * Index of the oldest point.
+     */
+    private var head = 0
+
+    var size = 0
+        @Synchronized get
+        private set
+
+    /**
+     * If true the oldest point is dropped when the buffer is full, otherwise the buffer is compacted.
+     */
+    var slidingWindow = slidingWindow
+        @Synchronized get
+        @Synchronized set
+
+    private var maxSize = MIN_CAPACITY
+
+    /**
+     * Maximum number of points stored. Reducing the capacity keeps the newest points.
+     */
+    var capacity: Int
+        @Synchronized get() = maxSize
+        @Synchronized set(value) {
+            maxSize = max(value, MIN_CAPACITY)
+            if (xs.size > maxSize) {
+                resize(maxSize)
+            }
+        }
+
+    init {
+        this.capacity = capacity
+    }
+
+    /**
+     * Move the newest points that fit into new buffers of the given length, with the oldest at index 0.
+     */
+    private fun resize(length: Int) {
+        val keep = minOf(size, length)
+        val newXs = DoubleArray(length)
+        val newYs = DoubleArray(length)
+        for (i in 0 until keep) {
+            newXs[i] = getX(size - keep + i)
+            newYs[i] = getY(size - keep + i)
+        }
+        xs = newXs
+        ys = newYs
+        head = 0
+        size = keep
+    }
+
+    @Synchronized
+    fun add(x: Double, y: Double) {
+        if (size == xs.size) {
+            if (xs.size < maxSize) {
+                resize(minOf(max(2 * xs.size, MIN_CAPACITY), maxSize))
+            } else if (slidingWindow) {
+                head = (head + 1) % xs.size
+                size--
+            } else {
+                compact()
+            }
+        }
+        val index = (head + size) % xs.size
+        xs[index] = x
+        ys[index] = y
+        size++
+    }
+
+    @Synchronized
+    fun getX(index: Int): Double {
+        checkIndex(index)
+        return xs[(head + index) % xs.size]
+    }
+
+    @Synchronized
+    fun getY(index: Int): Double {
+        checkIndex(index)
+        return ys[(head + index) % xs.size]
+    }
+
+    private fun checkIndex(index: Int) {
+        if (index !in 0 until size) {
+            throw IndexOutOfBoundsException("Index $index out of bounds for series of size $size")
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        head = 0
+        size = 0
+    }
+
+    /**
+     * Copy of the x values, oldest first.
+     */
+    @Synchronized
+    fun xValues() = DoubleArray(size) { getX(it) }
+
+    /**
+     * Copy of the y values, oldest first.
+     */
+    @Synchronized
+    fun yValues() = DoubleArray(size) { getY(it) }
+
+    /**
+     * Returns the points to draw when only about [buckets] horizontal positions are available. Points are grouped
+     * into consecutive buckets and each bucket is represented by its minimum and maximum points, in the order they
+     * occurred, so peaks remain visible. If there are few enough points they are all returned.
+     */
+    @Synchronized
+    fun decimate(buckets: Int): Pair<DoubleArray, DoubleArray> {
+        if (size <= 2 * buckets) {
+            return xValues() to yValues()
+        }
+        val bucketSize = ceil(size.toDouble() / buckets).toInt()
+        val outX = DoubleArray(2 * buckets)
+        val outY = DoubleArray(2 * buckets)
+        var count = 0
+        var start = 0
+        while (start < size) {
+            val end = minOf(start + bucketSize, size)
+            var minIndex = start
+            var maxIndex = start
+            for (i in start + 1 until end) {
+                val y = getY(i)
+                if (y < getY(minIndex)) minIndex = i
+                if (y > getY(maxIndex)) maxIndex = i
+            }
+            val first = minOf(minIndex, maxIndex)
+            val second = maxOf(minIndex, maxIndex)
+            outX[count] = getX(first)
+            outY[count++] = getY(first)
+            if (second != first) {
+                outX[count] = getX(second)
+                outY[count++] = getY(second)
+            }
+            start = end
+        }
+        return outX.copyOf(count) to outY.copyOf(count)
+    }
+
+    /**
+     * Halve the number of stored points by keeping the minimum and maximum of each run of four points.
+     */
+    private fun compact() {
+        val (newXs, newYs) = decimate(xs.size / 4)
+        newXs.copyInto(xs)
+        newYs.copyInto(ys)
+        head = 0
+        size = newXs.size
+    }
+
+    companion object {
+        const val MIN_CAPACITY = 8
+    }
+}
+
+/**
+ * Exposes the [TimeSeriesBuffer]s of a [TimeSeriesModel] to a JFreeChart plot. Rather than drawing every point, each
+ * series is decimated to about two points per horizontal pixel (see [TimeSeriesBuffer.decimate]) when [refresh] is
+ * called, so redrawing costs the same however long the series is.
+ *
+ * Should only be accessed from the Swing thread.
+ */
+class TimeSeriesDataset(private val model: TimeSeriesModel) : AbstractXYDataset() {
+
+    private var descriptions: List<String> = listOf()
+
+    private var points: List<Pair<DoubleArray, DoubleArray>> = listOf()
+
+    /**
+     * Approximate width of the plot area in pixels. Set by the plot panel when it is resized.
+     */
+    var pixelWidth = 1000
+        set(value) {
+            field = max(value, 1)
+            refresh()
+        }
+
+    /**
+     * Take a decimated snapshot of each series and notify the chart. The model's list of series may be changed from
+     * another thread meanwhile; it is a copy on write list, so the snapshot is consistent.
+     */
+    fun refresh() {
+        val series = model.timeSeriesList.toList()
+        descriptions = series.map { it.description }
+        points = series.map { it.series.decimate(pixelWidth) }
+        fireDatasetChanged()
+    }
+
+    override fun getSeriesCount() = points.size
+
+    override fun getSeriesKey(series: Int): Comparable<*> = descriptions[series]
+
+    override fun getItemCount(series: Int) = points[series].first.size
+
+    override fun getX(series: Int, item: Int): Number = points[series].first[item]
+
+    override fun getY(series: Int, item: Int): Number = points[series].second[item]
+
+    override fun getXValue(series: Int, item: Int) = points[series].first[item]
+
+    override fun getYValue(series: Int, item: Int) = points[series].second[item]
+}
+
+/**
+ * Saves a [TimeSeriesBuffer] using the same nodes as [org.simbrain.plot.XYSeriesConverter], so that time series saved
+ * as XYSeries can still be opened.
+ */
+class TimeSeriesBufferConverter : Converter {
+
+    override fun canConvert(cls: Class<*>): Boolean {
+        return cls == TimeSeriesBuffer::class.java
+    }
+
+    override fun marshal(source: Any, writer: HierarchicalStreamWriter, context: MarshallingContext) {
+        source as TimeSeriesBuffer
+
+        writer.startNode("description")
+        context.convertAnother(source.description)
+        writer.endNode()
+
+        writer.startNode("indices")
+        context.convertAnother(source.xValues())
+        writer.endNode()
+
+        writer.startNode("values")
+        context.convertAnother(source.yValues())
+        writer.endNode()
+    }
+
+    override fun unmarshal(reader: HierarchicalStreamReader, context: UnmarshallingContext): Any {
+        reader.moveDown()
+        val description = reader.value
+        reader.moveUp()
+
+        reader.moveDown()
+        val indices = DoubleArrayConverter.stringToArray(reader.value)
+        reader.moveUp()
+
+        reader.moveDown()
+        val values = DoubleArrayConverter.stringToArray(reader.value)
+        reader.moveUp()
+
+        val series = TimeSeriesBuffer(description, max(indices.size, TimeSeriesBuffer.MIN_CAPACITY))
+        indices.zip(values).forEach { series.add(it.first, it.second) }
+        return series
+    }
+}
@@ -18,8 +18,6 @@
  */
 package org.simbrain.plot.timeseries
 
-import org.jfree.data.xy.XYSeries
-import org.jfree.data.xy.XYSeriesCollection
 import org.simbrain.plot.TimeSeriesEvents
 import org.simbrain.util.UserParameter
 import org.simbrain.util.WithXStreamPropertyConverter
@@ -29,7 +27,8 @@ import org.simbrain.util.propertyeditor.GuiEditable
 import org.simbrain.workspace.AttributeContainer
 import org.simbrain.workspace.Consumable
 import org.simbrain.workspace.Workspace
-import java.lang.reflect.InvocationTargetException
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicBoolean
 import javax.swing.SwingUtilities
 
 /**
@@ -44,12 +43,18 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
     lateinit var timeSupplier: () -> Int
 
     /**
-     * Time Series Data.
+     * Time Series Data, as exposed to the chart.
      */
     @Transient
-    var dataset = XYSeriesCollection()
+    var dataset = TimeSeriesDataset(this)
         private set
 
+    /**
+     * True when a refresh of [dataset] has been scheduled on the Swing thread but has not yet run.
+     */
+    @Transient
+    private var refreshPending = AtomicBoolean(false)
+
     @UserParameter(
         label = "Auto Range", description = "If true, automatically adjusts the range of the time series data " +
                 "based on the maximum and minimum values present at a given time", order = 10
@@ -79,14 +84,8 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
     var fixedWidth = false
         set(value) {
             field = value
-            if (value) {
-                for (s in dataset.series) {
-                    (s as XYSeries?)!!.maximumItemCount = windowSize
-                }
-            } else {
-                for (s in dataset.series) {
-                    (s as XYSeries?)!!.maximumItemCount = Int.MAX_VALUE
-                }
+            for (ts in timeSeriesList) {
+                configureBuffer(ts.series)
             }
         }
 
@@ -98,27 +97,48 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
         order = 70
     )
 
+    var historySize by GuiEditable(
+        initValue = 20_000,
+        label = "History size",
+        description = "Maximum number of points kept for each series when fixed width is not used. " +
+                "Once reached, older points are thinned out so the whole run stays visible.",
+        onUpdate = { enableWidget(!widgetValue(TimeSeriesModel::fixedWidth)) },
+        order = 80
+    )
+
     /**
      * Names for the time series.  Set via coupling events.
      */
     private val seriesNames = arrayOf<String>()
 
     /**
-     * List of time series objects which can be coupled to.
+     * List of time series objects which can be coupled to. Series are added from the workspace thread while the
+     * chart reads the list on the Swing thread.
      */
-    val timeSeriesList: MutableList<TimeSeries> = ArrayList()
+    val timeSeriesList: MutableList<TimeSeries> = CopyOnWriteArrayList()
 
     @Transient
     var events = TimeSeriesEvents()
         private set
 
     /**
-     * Construct a time series model.
-     *
-     * @param timeSupplier the supplier for the x-axis of the graph
+     * Set the capacity and overflow behavior of a series buffer based on the current width settings.
      */
-    init {
-        fixedWidth = fixedWidth // Force update by triggering custom setter
+    private fun configureBuffer(buffer: TimeSeriesBuffer) {
+        buffer.slidingWindow = fixedWidth
+        buffer.capacity = if (fixedWidth) windowSize else historySize
+    }
+
+    /**
+     * Redraw the chart on the Swing thread. Many calls made before the redraw happens are coalesced into one.
+     */
+    fun scheduleRefresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater {
+                refreshPending.set(false)
+                dataset.refresh()
+            }
+        }
     }
 
     /**
@@ -136,12 +156,8 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
      * Clears the plot.
      */
     fun clearData() {
-        val seriesCount = dataset.seriesCount
-        var i = 0
-        while (seriesCount > i) {
-            dataset.getSeries(i).clear()
-            ++i
-        }
+        timeSeriesList.forEach { it.series.clear() }
+        scheduleRefresh()
     }
 
     /**
@@ -153,9 +169,9 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
      * the specified description.
      */
     fun addData(seriesIndex: Int, time: Double, value: Double) {
-        if (seriesIndex < dataset.seriesCount) {
-            val currentSeries = dataset.getSeries(seriesIndex)
-            currentSeries.add(time, value)
+        if (seriesIndex < timeSeriesList.size) {
+            timeSeriesList[seriesIndex].series.add(time, value)
+            scheduleRefresh()
         }
     }
 
@@ -175,9 +191,10 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
      * @return a reference to the series, or null if the model is in scalar mode
      */
     fun addTimeSeries(description: String): TimeSeries {
-        val sts = TimeSeries(addXYSeries(description))
+        val sts = TimeSeries(TimeSeriesBuffer(description).also { configureBuffer(it) })
         timeSeriesList.add(sts)
         events.timeSeriesAdded.fire(sts)
+        scheduleRefresh()
         return sts
     }
 
@@ -186,22 +203,13 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
         if (timeSeriesList.isEmpty()) {
             addTimeSeries(array.size)
         }
+        val time = timeSupplier().toDouble()
         var i = 0
         while (i < array.size && i < timeSeriesList.size) {
-            timeSeriesList[i].setValue(array[i])
+            timeSeriesList[i].series.add(time, array[i])
             i++
         }
-    }
-
-    /**
-     * Adds an xy series to the chart with the specified description.
-     */
-    private fun addXYSeries(description: String): XYSeries {
-        val xy = XYSeries(description)
-        xy.maximumItemCount = windowSize
-        xy.description = description
-        dataset.addSeries(xy)
-        return xy
+        scheduleRefresh()
     }
 
     /**
@@ -209,10 +217,10 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
      */
     fun removeAllTimeSeries() {
         for (ts in timeSeriesList) {
-            dataset.removeSeries(ts.series)
             events.timeSeriesRemoved.fire(ts)
         }
         timeSeriesList.clear()
+        scheduleRefresh()
     }
 
     /**
@@ -221,9 +229,9 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
      * @param ts the time series to remove.
      */
     private fun removeTimeSeries(ts: TimeSeries) {
-        dataset.removeSeries(ts.series)
         timeSeriesList.remove(ts)
         events.timeSeriesRemoved.fire(ts)
+        scheduleRefresh()
     }
 
     /**
@@ -246,8 +254,9 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
      */
     private fun readResolve(): Any {
         events = TimeSeriesEvents()
-        dataset = XYSeriesCollection()
-        timeSeriesList.forEach { dataset.addSeries(it.series) }
+        dataset = TimeSeriesDataset(this)
+        refreshPending = AtomicBoolean(false)
+        timeSeriesList.forEach { configureBuffer(it.series) }
         return this
     }
 
@@ -270,12 +279,13 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
                 on("timeSeriesList") { reader, context ->
                     while (reader.hasMoreChildren()) {
                         reader.moveDown()
-                        val series = context.convertAnother(reader.value, XYSeries::class.java) as XYSeries
+                        val series = context.convertAnother(reader.value, TimeSeriesBuffer::class.java) as TimeSeriesBuffer
                         withConstructedObject {
                             val sts = TimeSeries(series)
+                            configureBuffer(series)
                             timeSeriesList.add(sts)
-                            dataset.addSeries(sts.series)
                             events.timeSeriesAdded.fire(sts)
+                            scheduleRefresh()
                         }
                         reader.moveUp()
                     }
@@ -292,7 +302,7 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
         /**
          * The represented time series
          */
-        var series: XYSeries
+        var series: TimeSeriesBuffer
     ) : AttributeContainer {
 
         /**
@@ -304,15 +314,8 @@ class TimeSeriesModel : AttributeContainer, EditableObject {
 
         @Consumable
         fun setValue(value: Double) {
-            try {
-                SwingUtilities.invokeAndWait {
-                    series.add(timeSupplier(), value as Number)
-                }
-            } catch (e: InterruptedException) {
-                e.printStackTrace()
-            } catch (e: InvocationTargetException) {
-                e.printStackTrace()
-            }
+            series.add(timeSupplier().toDouble(), value)
+            scheduleRefresh()
         }
 
         override val id: String
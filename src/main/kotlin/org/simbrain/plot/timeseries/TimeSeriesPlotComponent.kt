@@ -109,6 +109,7 @@ class TimeSeriesPlotComponent @JvmOverloads constructor(name: String, val model:
                 val xstream = getSimbrainXStream()
                 xstream.registerConverter(DoubleArrayConverter())
                 xstream.registerConverter(XYSeriesConverter())
+                xstream.registerConverter(TimeSeriesBufferConverter())
                 return xstream
             }
     }
@@ -254,4 +254,44 @@ fun DoubleArray.addi(other: DoubleArray) {
     for (i in 0 until size) {
         this[i] += other[i]
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Returns the k-th largest entry of the array (k = 1 is the maximum) using quickselect, which takes expected linear
+ * time rather than the n log n of a full sort. The array is reordered in place so that the k largest entries come
+ * first, in no particular order.
+ */
+fun DoubleArray.selectKthLargest(k: Int, random: Random = Random): Double {
+    require(k in 1..size) { "k must be between 1 and $size but was $k" }
+    val target = k - 1
+    var lo = 0
+    var hi = size - 1
+    while (lo < hi) {
+        val pivot = this[random.nextInt(lo, hi + 1)]
+        // Three way partition into entries greater than, equal to, and less than the pivot
+        var greater = lo
+        var i = lo
+        var less = hi
+        while (i <= less) {
+            val value = this[i]
+            if (value > pivot) {
+                this[i] = this[greater]
+                this[greater] = value
+                greater++
+                i++
+            } else if (value < pivot) {
+                this[i] = this[less]
+                this[less] = value
+                less--
+            } else {
+                i++
+            }
+        }
+        when {
+            target < greater -> hi = greater - 1
+            target > less -> lo = less + 1
+            else -> return pivot
+        }
+    }
+    return this[target]
+}
@@ -1,13 +1,205 @@
 package org.simbrain.util
 
+import org.apache.commons.math3.special.Gamma
 import org.simbrain.util.stats.ProbabilityDistribution
 import smile.math.matrix.Matrix
+import kotlin.math.abs
+import kotlin.math.exp
+import kotlin.math.floor
+import kotlin.math.ln
+import kotlin.math.pow
+import kotlin.math.sqrt
 import kotlin.random.Random
 
 fun Random.nextBoolean(probability: Double) = nextDouble() < probability
 
+/**
+ * Seed of the random stream identified by [keys] within the family of streams rooted at [seed]. Each key is mixed in
+ * with the SplitMix64 finalizer, so nearby seeds and keys give unrelated streams.
+ */
+fun streamSeed(seed: Long, vararg keys: Long): Long {
+    var h = mix64(seed)
+    for (key in keys) {
+        h = mix64(h + -0x61c8864680b583ebL * (key + 1))
+    }
+    return h
+}
+
+/**
+ * A stream key for [name], e.g. a model id. The key is the same on every run and JVM, unlike [String.hashCode] which
+ * is only 32 bits and clusters for ids that differ in their last character, so it is safe to keep stream keys in
+ * saved networks.
+ */
+fun streamKey(name: String): Long {
+    // FNV-1a over the characters, then mixed so that every bit of the key depends on every character
+    var h = -0x340d631b7bdddcdbL
+    for (c in name) {
+        h = (h xor c.code.toLong()) * 0x100000001b3L
+    }
+    return mix64(h)
+}
+
+private fun mix64(value: Long): Long {
+    var z = value
+    z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+    z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+    return z xor (z ushr 31)
+}
+
+/**
+ * A family of independent random streams derived from one root seed. A stream depends only on the root seed and the
+ * keys used to ask for it, not on which thread asks or in what order, so code that gives each model, chunk of work
+ * or time step its own stream produces the same numbers whether it runs serially or in parallel, and the streams do
+ * not contend for a shared generator.
+ */
+class RandomStreams(val seed: Long) {
+
+    /**
+     * A new generator for the stream identified by [keys].
+     */
+    fun stream(vararg keys: Long): Random = Random(streamSeed(seed, *keys))
+
+    /**
+     * The sub-family of streams identified by [keys], e.g. for one model whose parts each need a stream.
+     */
+    fun split(vararg keys: Long) = RandomStreams(streamSeed(seed, *keys))
+}
+
 fun Random.nextNegate() = if (nextBoolean()) 1 else -1
 
+/**
+ * A standard normal sample, using the ziggurat method of Marsaglia and Tsang in the form given by Doornik (2005).
+ * Nearly all samples take one uniform draw, one random index and a multiply, so it is much cheaper than the polar
+ * method or inverting the normal CDF, which matters when a whole layer is given noise on every update.
+ */
+fun Random.nextGaussian(): Double {
+    while (true) {
+        val u = 2 * nextDouble() - 1
+        val i = nextInt() and (ZIGGURAT_LAYERS - 1)
+        // Inside the rectangle of layer i
+        if (abs(u) < zigguratRatios[i]) {
+            return u * zigguratX[i]
+        }
+        // The base layer, whose overhang is the tail beyond ZIGGURAT_R
+        if (i == 0) {
+            return nextGaussianTail(u < 0)
+        }
+        // The wedge of layer i: accept under the density
+        val x = u * zigguratX[i]
+        val f0 = exp(-0.5 * (zigguratX[i] * zigguratX[i] - x * x))
+        val f1 = exp(-0.5 * (zigguratX[i + 1] * zigguratX[i + 1] - x * x))
+        if (f1 + nextDouble() * (f0 - f1) < 1.0) {
+            return x
+        }
+    }
+}
+
+private fun Random.nextGaussianTail(negative: Boolean): Double {
+    var x: Double
+    var y: Double
+    do {
+        // 1 - nextDouble() is in (0, 1], so the logs are finite
+        x = ln(1 - nextDouble()) / ZIGGURAT_R
+        y = ln(1 - nextDouble())
+    } while (-2 * y < x * x)
+    return if (negative) x - ZIGGURAT_R else ZIGGURAT_R - x
+}
+
+/**
+ * A sample from the gamma distribution with the given [shape] and scale 1, using the method of Marsaglia and Tsang
+ * (2000): one normal and one uniform draw per try, with over 95% of tries accepted. Shapes below 1 are boosted to
+ * shape + 1 and scaled back down by a uniform power.
+ */
+fun Random.nextGamma(shape: Double): Double {
+    if (shape < 1) {
+        return nextGamma(shape + 1) * (1 - nextDouble()).pow(1 / shape)
+    }
+    val d = shape - 1.0 / 3
+    val c = 1 / sqrt(9 * d)
+    while (true) {
+        var x: Double
+        var v: Double
+        do {
+            x = nextGaussian()
+            v = 1 + c * x
+        } while (v <= 0)
+        v *= v * v
+        val u = 1 - nextDouble()
+        val x2 = x * x
+        if (u < 1 - 0.0331 * x2 * x2 || ln(u) < 0.5 * x2 + d * (1 - v + ln(v))) {
+            return d * v
+        }
+    }
+}
+
+/**
+ * A sample from the Poisson distribution with the given [mean]. Small means multiply uniforms until their product
+ * drops below e^-mean (Knuth), which takes about mean + 1 draws. Larger means use the transformed rejection method
+ * PTRS of Hörmann (1993), which takes about two draws whatever the mean.
+ */
+fun Random.nextPoisson(mean: Double): Int {
+    if (mean <= 0) {
+        return 0
+    }
+    if (mean < 10) {
+        val limit = exp(-mean)
+        var k = 0
+        var product = nextDouble()
+        while (product > limit) {
+            k++
+            product *= nextDouble()
+        }
+        return k
+    }
+    val logMean = ln(mean)
+    val b = 0.931 + 2.53 * sqrt(mean)
+    val a = -0.059 + 0.02483 * b
+    val invAlpha = 1.1239 + 1.1328 / (b - 3.4)
+    val vr = 0.9277 - 3.6224 / (b - 2)
+    while (true) {
+        val u = nextDouble() - 0.5
+        val v = nextDouble()
+        val us = 0.5 - abs(u)
+        val k = floor((2 * a / us + b) * u + mean + 0.43)
+        if (us >= 0.07 && v <= vr) {
+            return k.toInt()
+        }
+        if (k < 0 || (us < 0.013 && v > us)) {
+            continue
+        }
+        if (ln(v) + ln(invAlpha) - ln(a / (us * us) + b) <= -mean + k * logMean - Gamma.logGamma(k + 1)) {
+            return k.toInt()
+        }
+    }
+}
+
+private const val ZIGGURAT_LAYERS = 128
+
+/**
+ * Start of the tail of the ziggurat, and area of each of its layers.
+ */
+private const val ZIGGURAT_R = 3.442619855899
+private const val ZIGGURAT_V = 9.91256303526217e-3
+
+/**
+ * Right edge of each layer of the ziggurat, from the base up.
+ */
+private val zigguratX = DoubleArray(ZIGGURAT_LAYERS + 1).also { x ->
+    var f = exp(-0.5 * ZIGGURAT_R * ZIGGURAT_R)
+    x[0] = ZIGGURAT_V / f
+    x[1] = ZIGGURAT_R
+    for (i in 2 until ZIGGURAT_LAYERS) {
+        x[i] = sqrt(-2 * ln(ZIGGURAT_V / x[i - 1] + f))
+        f = exp(-0.5 * x[i] * x[i])
+    }
+    x[ZIGGURAT_LAYERS] = 0.0
+}
+
+/**
+ * Width of each layer's rectangle relative to the layer's right edge.
+ */
+private val zigguratRatios = DoubleArray(ZIGGURAT_LAYERS) { zigguratX[it + 1] / zigguratX[it] }
+
 fun FloatArray.randomize(dist: ProbabilityDistribution) {
     forEachIndexed { i, _ -> this[i] = dist.sampleDouble().toFloat() }
 }
@@ -77,6 +77,39 @@ fun Matrix.rowVectorTransposed(rowIndex: Int): Matrix {
     return ret
 }
 
+/**
+ * Returns a matrix whose columns are the indicated rows of this matrix. Used to stack a batch of row-vector samples
+ * so that they can be propagated through a weight matrix with one matrix product.
+ */
+fun Matrix.rowsAsColumns(rowIndices: IntArray): Matrix {
+    val ret = Matrix(ncol(), rowIndices.size)
+    for ((j, rowIndex) in rowIndices.withIndex()) {
+        if (rowIndex !in 0 until nrow()) {
+            throw IllegalArgumentException("Invalid row index $rowIndex")
+        }
+        for (i in 0 until ncol()) {
+            ret[i, j] = get(rowIndex, i)
+        }
+    }
+    return ret
+}
+
+/**
+ * Returns a copy of the columns of this matrix from [startColumn] (inclusive) to [endColumn] (exclusive).
+ */
+fun Matrix.columnRange(startColumn: Int, endColumn: Int): Matrix {
+    if (startColumn < 0 || endColumn > ncol() || startColumn > endColumn) {
+        throw IllegalArgumentException("Invalid column range $startColumn until $endColumn for matrix $shapeString")
+    }
+    val ret = Matrix(nrow(), endColumn - startColumn)
+    for (j in startColumn until endColumn) {
+        for (i in 0 until nrow()) {
+            ret[i, j - startColumn] = get(i, j)
+        }
+    }
+    return ret
+}
+
 /**
  * Convert a double array to a Smile Matrix / column vector.
  */
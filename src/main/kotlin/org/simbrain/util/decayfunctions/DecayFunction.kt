@@ -34,6 +34,13 @@ abstract class DecayFunction(
      */
     abstract fun getScalingFactor(distance: Double): Double
 
+    /**
+     * Distance beyond which the scaling factor is zero, or small enough to be treated as zero. Used to limit the
+     * neurons that need to be checked when wiring by distance.
+     */
+    open val cutoffDistance: Double
+        get() = peakDistance + dispersion
+
     // TODO: Stub for future implementation of, for example, elliptical decay functions
     // open fun getScalingFactor(relativeLocation: Point2D): Double {
     //     return 0.0
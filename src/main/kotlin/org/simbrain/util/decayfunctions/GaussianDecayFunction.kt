@@ -1,7 +1,10 @@
 package org.simbrain.util.decayfunctions
 
+import kotlin.math.abs
 import kotlin.math.exp
+import kotlin.math.ln
 import kotlin.math.pow
+import kotlin.math.sqrt
 
 /**
  * Gaussian decay.
@@ -22,6 +25,12 @@ class GaussianDecayFunction @JvmOverloads constructor(dispersion: Double = 70.0)
         return exp(-.5 * ((distance - mean) / std).pow(2.0))
     }
 
+    /**
+     * Where the scaling factor drops below [CUTOFF_SCALING_FACTOR].
+     */
+    override val cutoffDistance: Double
+        get() = abs(peakDistance) + dispersion / 2 * sqrt(-2 * ln(CUTOFF_SCALING_FACTOR))
+
     override fun copy(): GaussianDecayFunction {
         return GaussianDecayFunction(dispersion)
             .also {
@@ -31,4 +40,9 @@ class GaussianDecayFunction @JvmOverloads constructor(dispersion: Double = 70.0)
 
     override val name = "Exponential"
 
-}
\ No newline at end of file
+}
+
+/**
+ * Scaling factors below this are treated as zero when finding [GaussianDecayFunction.cutoffDistance].
+ */
+const val CUTOFF_SCALING_FACTOR = 1e-9
@@ -11,6 +11,7 @@ import org.simbrain.util.createConstructorCallingConverter
 import org.simbrain.util.getSimbrainXStream
 import org.simbrain.util.propertyeditor.CopyableObject
 import org.simbrain.util.stats.distributions.*
+import kotlin.random.Random
 import kotlin.reflect.KParameter
 import kotlin.reflect.jvm.javaType
 
@@ -49,6 +50,32 @@ abstract class ProbabilityDistribution() : CopyableObject {
 
     abstract fun sampleDouble(n: Int): DoubleArray
 
+    /**
+     * Sample using [random] rather than this distribution's own generator. A distribution shared by many models can
+     * then be sampled from several threads at once, each with its own stream (see [org.simbrain.util.RandomStreams]),
+     * with reproducible results and no contention.
+     */
+    abstract fun sampleDouble(random: Random): Double
+
+    /**
+     * Fill [target] from index [from] until [to] with samples, reusing the array rather than allocating a new one as
+     * [sampleDouble] with a count does.
+     */
+    open fun sampleDouble(target: DoubleArray, from: Int = 0, to: Int = target.size) {
+        for (i in from until to) {
+            target[i] = sampleDouble()
+        }
+    }
+
+    /**
+     * Fill [target] from index [from] until [to] with samples drawn using [random].
+     */
+    open fun sampleDouble(random: Random, target: DoubleArray, from: Int = 0, to: Int = target.size) {
+        for (i in from until to) {
+            target[i] = sampleDouble(random)
+        }
+    }
+
     abstract fun sampleInt(): Int
 
     abstract fun sampleInt(n: Int): IntArray
@@ -0,0 +1,182 @@
+package org.simbrain.util.stats
+
+import kotlin.math.abs
+import kotlin.math.ceil
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.pow
+
+/**
+ * A mergeable sketch for estimating quantiles of a stream of values in constant memory, following the DDSketch
+ * algorithm (Masson, Rim and Lee, 2019).
+ *
+ * Values are counted in buckets whose bounds grow geometrically, so any quantile is estimated to within
+ * [relativeAccuracy] of the true value (relative to its magnitude). Adding a value is O(1) and two sketches with the same
+ * accuracy can be [merge]d, for example to combine sketches computed in parallel.
+ *
+ * Values whose magnitude is below [minIndexableValue] are counted as zero.
+ */
+class QuantileSketch @JvmOverloads constructor(val relativeAccuracy: Double = 0.01) {
+
+    private val gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy)
+
+    private val logGamma = ln(gamma)
+
+    private val positives = BucketStore()
+
+    private val negatives = BucketStore()
+
+    private var zeroCount = 0L
+
+    var count = 0L
+        private set
+
+    var min = Double.POSITIVE_INFINITY
+        private set
+
+    var max = Double.NEGATIVE_INFINITY
+        private set
+
+    init {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw IllegalArgumentException("Relative accuracy must be between 0 and 1")
+        }
+    }
+
+    fun add(value: Double) {
+        if (value.isNaN()) return
+        when {
+            value > minIndexableValue -> positives.add(index(value))
+            value < -minIndexableValue -> negatives.add(index(-value))
+            else -> zeroCount++
+        }
+        count++
+        min = min(min, value)
+        max = max(max, value)
+    }
+
+    fun addAll(values: DoubleArray) = values.forEach { add(it) }
+
+    /**
+     * Add the counts of another sketch to this one.
+     */
+    fun merge(other: QuantileSketch) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw IllegalArgumentException("Cannot merge sketches with different accuracies")
+        }
+        positives.merge(other.positives)
+        negatives.merge(other.negatives)
+        zeroCount += other.zeroCount
+        count += other.count
+        min = min(min, other.min)
+        max = max(max, other.max)
+    }
+
+    /**
+     * Estimate the value below which the fraction [q] of the values fall. Returns NaN if the sketch is empty.
+     */
+    fun quantile(q: Double): Double {
+        if (q !in 0.0..1.0) {
+            throw IllegalArgumentException("Quantile must be between 0 and 1")
+        }
+        if (count == 0L) return Double.NaN
+        if (q == 0.0) return min
+        if (q == 1.0) return max
+        val rank = (q * (count - 1)).toLong()
+        val estimate = when {
+            rank < negatives.total -> -value(negatives.indexOfRank(negatives.total - 1 - rank))
+            rank < negatives.total + zeroCount -> 0.0
+            else -> value(positives.indexOfRank(rank - negatives.total - zeroCount))
+        }
+        return estimate.coerceIn(min, max)
+    }
+
+    fun clear() {
+        positives.clear()
+        negatives.clear()
+        zeroCount = 0
+        count = 0
+        min = Double.POSITIVE_INFINITY
+        max = Double.NEGATIVE_INFINITY
+    }
+
+    private fun index(value: Double) = ceil(ln(value) / logGamma).toInt()
+
+    /**
+     * The value that represents a bucket, chosen so that the relative error for any value in the bucket is at most
+     * [relativeAccuracy].
+     */
+    private fun value(index: Int) = 2 * gamma.pow(index) / (gamma + 1)
+
+    companion object {
+        const val minIndexableValue = 1e-300
+    }
+}
+
+/**
+ * Dense counts for a contiguous range of bucket indices, grown as needed.
+ */
+private class BucketStore {
+
+    private var counts = LongArray(0)
+
+    /**
+     * Bucket index of counts[0].
+     */
+    private var offset = 0
+
+    var total = 0L
+        private set
+
+    fun add(index: Int, count: Long = 1) {
+        ensureContains(index)
+        counts[index - offset] += count
+        total += count
+    }
+
+    fun merge(other: BucketStore) {
+        for (i in other.counts.indices) {
+            if (other.counts[i] != 0L) {
+                add(other.offset + i, other.counts[i])
+            }
+        }
+    }
+
+    /**
+     * Index of the bucket containing the value of the given rank, counting from the lowest bucket.
+     */
+    fun indexOfRank(rank: Long): Int {
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen > rank) return offset + i
+        }
+        return offset + counts.size - 1
+    }
+
+    fun clear() {
+        counts = LongArray(0)
+        offset = 0
+        total = 0
+    }
+
+    private fun ensureContains(index: Int) {
+        if (counts.isEmpty()) {
+            counts = LongArray(64)
+            offset = index - 32
+            return
+        }
+        val lowest = min(offset, index)
+        val highest = max(offset + counts.size - 1, index)
+        if (lowest == offset && highest == offset + counts.size - 1) return
+        // Grow with some slack so that a slowly drifting range does not copy on every add
+        val slack = max(abs(highest - lowest) / 2, 16)
+        val newOffset = if (lowest < offset) lowest - slack else offset
+        val newSize = highest - newOffset + 1 + if (highest > offset + counts.size - 1) slack else 0
+        val newCounts = LongArray(newSize)
+        counts.copyInto(newCounts, offset - newOffset)
+        counts = newCounts
+        offset = newOffset
+    }
+}
@@ -5,6 +5,8 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.NegatableDistribution
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toIntArray
+import kotlin.math.ln
+import kotlin.random.Random
 
 /**
  * See https://en.wikipedia.org/wiki/Exponential_distribution
@@ -35,6 +37,9 @@ class ExponentialDistribution(lambda: Double = 1.0, negate: Boolean = false)
 
     override fun sampleDouble(): Double = dist.sample().conditionalNegate()
 
+    override fun sampleDouble(random: Random): Double =
+        (-ln(1 - random.nextDouble()) / lambda).conditionalNegate()
+
     override fun sampleDouble(n: Int): DoubleArray = dist.sample(n).conditionalNegate()
 
     override fun sampleInt(): Int = dist.sample().toInt().conditionalNegate()
@@ -2,9 +2,11 @@ package org.simbrain.util.stats.distributions
 
 import org.apache.commons.math3.distribution.AbstractRealDistribution
 import org.simbrain.util.UserParameter
+import org.simbrain.util.nextGamma
 import org.simbrain.util.stats.NegatableDistribution
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toIntArray
+import kotlin.random.Random
 
 /**
  * https://en.wikipedia.org/wiki/Gamma_distribution
@@ -41,6 +43,9 @@ class GammaDistribution(shape: Double = 2.0, scale: Double = 1.0, negate: Boolea
 
     override fun sampleDouble(): Double = dist.sample().conditionalNegate()
 
+    override fun sampleDouble(random: Random): Double =
+        (scale * random.nextGamma(shape)).conditionalNegate()
+
     override fun sampleDouble(n: Int): DoubleArray = dist.sample(n).conditionalNegate()
 
     override fun sampleInt(): Int = dist.sample().toInt().conditionalNegate()
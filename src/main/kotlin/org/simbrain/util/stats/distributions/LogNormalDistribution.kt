@@ -2,10 +2,12 @@ package org.simbrain.util.stats.distributions
 
 import org.apache.commons.math3.distribution.AbstractRealDistribution
 import org.simbrain.util.UserParameter
+import org.simbrain.util.nextGaussian
 import org.simbrain.util.stats.NegatableDistribution
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toIntArray
 import kotlin.math.exp
+import kotlin.random.Random
 
 /**
  * https://en.wikipedia.org/wiki/Log-normal_distribution
@@ -47,6 +49,8 @@ class LogNormalDistribution(location: Double = 1.0, scale: Double = .5, negate:
 
     override fun sampleDouble(): Double = dist.sample().conditionalNegate()
 
+    override fun sampleDouble(random: Random): Double = exp(location + scale * random.nextGaussian()).conditionalNegate()
+
     override fun sampleDouble(n: Int): DoubleArray = dist.sample(n).conditionalNegate()
 
     override fun sampleInt(): Int = dist.sample().toInt().conditionalNegate()
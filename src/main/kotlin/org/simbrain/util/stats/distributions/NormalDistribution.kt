@@ -2,8 +2,10 @@ package org.simbrain.util.stats.distributions
 
 import org.apache.commons.math3.distribution.AbstractRealDistribution
 import org.simbrain.util.UserParameter
+import org.simbrain.util.nextGaussian
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toIntArray
+import kotlin.random.Random
 
 class NormalDistribution(mean: Double = 0.0, standardDeviation: Double = 1.0): ProbabilityDistribution() {
 
@@ -34,6 +36,16 @@ class NormalDistribution(mean: Double = 0.0, standardDeviation: Double = 1.0): P
 
     override fun sampleDouble(): Double = dist.sample()
 
+    override fun sampleDouble(random: Random): Double = mean + standardDeviation * random.nextGaussian()
+
+    override fun sampleDouble(random: Random, target: DoubleArray, from: Int, to: Int) {
+        val mean = mean
+        val standardDeviation = standardDeviation
+        for (i in from until to) {
+            target[i] = mean + standardDeviation * random.nextGaussian()
+        }
+    }
+
     override fun sampleDouble(n: Int): DoubleArray = dist.sample(n)
 
     override fun sampleInt(): Int = dist.sample().toInt()
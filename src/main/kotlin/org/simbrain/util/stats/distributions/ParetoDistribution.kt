@@ -5,6 +5,8 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.NegatableDistribution
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toIntArray
+import kotlin.math.pow
+import kotlin.random.Random
 
 /**
  * https://en.wikipedia.org/wiki/Pareto_distribution
@@ -43,6 +45,9 @@ class ParetoDistribution(shape: Double = 3.0, scale: Double = 1.0, negate: Boole
 
     override fun sampleDouble(): Double = dist.sample().conditionalNegate()
 
+    override fun sampleDouble(random: Random): Double =
+        (scale * (1 - random.nextDouble()).pow(-1 / shape)).conditionalNegate()
+
     override fun sampleDouble(n: Int): DoubleArray = dist.sample(n).conditionalNegate()
 
     override fun sampleInt(): Int = dist.sample().toInt().conditionalNegate()
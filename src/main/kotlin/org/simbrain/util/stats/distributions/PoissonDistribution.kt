@@ -2,9 +2,11 @@ package org.simbrain.util.stats.distributions
 
 import org.apache.commons.math3.distribution.AbstractIntegerDistribution
 import org.simbrain.util.UserParameter
+import org.simbrain.util.nextPoisson
 import org.simbrain.util.stats.NegatableDistribution
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toDoubleArray
+import kotlin.random.Random
 
 /**
  * https://en.wikipedia.org/wiki/Poisson_distribution
@@ -32,6 +34,9 @@ class PoissonDistribution(p: Double = 1.0, negate: Boolean = false)
 
     override fun sampleDouble(): Double = dist.sample().toDouble().conditionalNegate()
 
+    override fun sampleDouble(random: Random): Double =
+        random.nextPoisson(p).toDouble().conditionalNegate()
+
     override fun sampleDouble(n: Int): DoubleArray = dist.sample(n).toDoubleArray().conditionalNegate()
 
     override fun sampleInt(): Int = dist.sample().conditionalNegate()
@@ -2,6 +2,7 @@ package org.simbrain.util.stats.distributions;
 
 import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.ProbabilityDistribution
+import kotlin.random.Random
 
 /**
  * Returns one of two values based on a probability. A Bernoulli distribution where the sample space can be any two
@@ -25,6 +26,10 @@ class TwoValued(
         return if (randomGenerator.nextDouble() > p) lowerValue else upperValue
     }
 
+    override fun sampleDouble(random: Random): Double {
+        return if (random.nextDouble() > p) lowerValue else upperValue
+    }
+
     override fun sampleInt(): Int {
         return sampleDouble().toInt()
     }
@@ -5,6 +5,7 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toDoubleArray
 import java.lang.Math.sqrt
+import kotlin.random.Random
 
 class UniformIntegerDistribution(floor:Int = 0, ceil: Int = 1) : ProbabilityDistribution() {
 
@@ -32,6 +33,8 @@ class UniformIntegerDistribution(floor:Int = 0, ceil: Int = 1) : ProbabilityDist
 
     override fun sampleDouble(): Double = dist.sample().toDouble()
 
+    override fun sampleDouble(random: Random): Double = random.nextInt(floor, ceil + 1).toDouble()
+
     override fun sampleDouble(n: Int): DoubleArray = dist.sample(n).toDoubleArray()
 
     override fun sampleInt(): Int = dist.sample()
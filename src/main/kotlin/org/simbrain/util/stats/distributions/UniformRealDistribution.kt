@@ -5,6 +5,7 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.toIntArray
 import java.lang.Math.sqrt
+import kotlin.random.Random
 
 class UniformRealDistribution(floor:Double = 0.0, ceil: Double = 1.0) : ProbabilityDistribution() {
 
@@ -33,6 +34,16 @@ class UniformRealDistribution(floor:Double = 0.0, ceil: Double = 1.0) : Probabil
 
     override fun sampleDouble(): Double = dist.sample()
 
+    override fun sampleDouble(random: Random): Double = floor + (ceil - floor) * random.nextDouble()
+
+    override fun sampleDouble(random: Random, target: DoubleArray, from: Int, to: Int) {
+        val floor = floor
+        val range = ceil - floor
+        for (i in from until to) {
+            target[i] = floor + range * random.nextDouble()
+        }
+    }
+
     override fun sampleDouble(n: Int): DoubleArray = dist.sample(n)
 
     override fun sampleInt(): Int = dist.sample().toInt()
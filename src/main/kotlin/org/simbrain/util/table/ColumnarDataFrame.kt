@@ -0,0 +1,500 @@
+package org.simbrain.util.table
+
+import org.simbrain.util.sampleWithoutReplacement
+import org.simbrain.util.swingInvokeLater
+import org.simbrain.util.tryParsingDouble
+import org.simbrain.util.tryParsingInt
+import kotlin.math.max
+
+/**
+ * Mutable table that stores each column in a primitive array: doubles in a DoubleArray, ints in an IntArray, and
+ * strings as codes into a dictionary of the distinct strings in the column. Unlike [BasicDataFrame] numeric cells are
+ * not boxed, so a table of a million rows and a hundred double columns takes about 800 MB, and numeric rows and columns
+ * can be read in bulk (see [getDoubleRow], [getDoubleColumn], [rowView], [columnView]) without boxing or allocating.
+ *
+ * Rows are stored with spare capacity so that appending rows one at a time is cheap.
+ */
+class ColumnarDataFrame @JvmOverloads constructor(
+    columns: List<Column>,
+    rowCount: Int = 0
+) : SimbrainDataFrame() {
+
+    /**
+     * Create a table of [rowCount] rows and [columnCount] double columns filled with 0.
+     */
+    constructor(rowCount: Int, columnCount: Int) : this(
+        List(columnCount) { Column("Column ${it + 1}", Column.DataType.DoubleType) },
+        rowCount
+    )
+
+    override val isMutable = true
+
+    private var numRows = rowCount
+
+    private var capacity = max(rowCount, MIN_CAPACITY)
+
+    private var columnData: MutableList<ColumnData> = columns.map { ColumnData.create(it.type, capacity) }.toMutableList()
+
+    /**
+     * Changing a column's type converts its values to the new type when the column is next accessed. Adding or
+     * removing columns here adds or removes the corresponding data.
+     */
+    override var columns: MutableList<Column> = columns.toMutableList()
+        set(value) {
+            field = value
+            columnData = value.indices.map { columnData.getOrNull(it) ?: ColumnData.create(value[it].type, capacity) }
+                .toMutableList()
+        }
+
+    /**
+     * Returns the data for a column, first converting it if the column's type has been changed.
+     */
+    private fun data(col: Int): ColumnData {
+        val data = columnData[col]
+        val type = columns[col].type
+        if (data.type == type) {
+            return data
+        }
+        return ColumnData.create(type, capacity).also { converted ->
+            for (row in 0 until numRows) {
+                converted.set(row, parseOrNull(data.get(row), type))
+            }
+            columnData[col] = converted
+        }
+    }
+
+    override fun getRowCount() = numRows
+
+    override fun getColumnCount() = columns.size
+
+    override fun getValueAt(rowIndex: Int, columnIndex: Int): Any? {
+        if (validateRowIndex(rowIndex) && validateColumnIndex(columnIndex)) {
+            return data(columnIndex).get(rowIndex)
+        }
+        return null
+    }
+
+    override fun setValueAt(value: Any?, rowIndex: Int, colIndex: Int) {
+        if (canEditAt(rowIndex, colIndex) && validateRowIndex(rowIndex) && validateColumnIndex(colIndex)) {
+            try {
+                data(colIndex).set(rowIndex, parse(value, columns[colIndex].type))
+                fireTableDataChanged()
+            } catch (e: NumberFormatException) {
+                println("There was a problem parsing ${value} in a column of type ${columns[colIndex].type}")
+            }
+        }
+    }
+
+    /**
+     * Set a cell without checking whether it can be edited or firing an event. Values that can't be parsed are stored
+     * as null.
+     */
+    internal fun initValue(value: Any?, rowIndex: Int, colIndex: Int) {
+        data(colIndex).set(rowIndex, parseOrNull(value, columns[colIndex].type))
+    }
+
+    /**
+     * Replace the contents of the table with double columns that use the provided arrays as storage, without copying
+     * them. The arrays must all be the same size.
+     */
+    internal fun setDoubleColumns(names: List<String>, values: Array<DoubleArray>) {
+        require(names.size == values.size && values.all { it.size == values[0].size })
+        columns = names.map { Column(it, Column.DataType.DoubleType) }.toMutableList()
+        numRows = values.firstOrNull()?.size ?: 0
+        capacity = numRows
+        columnData = values.map<DoubleArray, ColumnData> { DoubleData(it) }.toMutableList()
+        fireTableStructureChanged()
+    }
+
+    /**
+     * Replace the contents of the table with those of [other], taking over its storage. Used when a file is imported
+     * into a table that is already shown.
+     */
+    internal fun setContents(other: ColumnarDataFrame) {
+        columns = other.columns
+        columnData = other.columnData
+        numRows = other.numRows
+        capacity = other.capacity
+        rowNames = other.rowNames
+        currentRowIndex = 0
+        fireTableStructureChanged()
+    }
+
+    /**
+     * Returns the value at the provided cell as a double. The column must be numeric.
+     */
+    fun getDouble(rowIndex: Int, columnIndex: Int) = data(columnIndex).getDouble(rowIndex)
+
+    /**
+     * Set a cell in a numeric column without boxing. Does not fire an event.
+     */
+    fun setDouble(rowIndex: Int, columnIndex: Int, value: Double) {
+        data(columnIndex).setDouble(rowIndex, value)
+    }
+
+    override fun getDoubleRow(row: Int, into: DoubleArray?): DoubleArray {
+        val result = if (into != null && into.size == columnCount) into else DoubleArray(columnCount)
+        for (col in 0 until columnCount) {
+            result[col] = data(col).getDouble(row)
+        }
+        return result
+    }
+
+    /**
+     * Set a row from an array of doubles without boxing. All columns must be numeric.
+     */
+    fun setDoubleRow(row: Int, values: DoubleArray) {
+        if (validateRowIndex(row) && values.size == columnCount) {
+            for (col in 0 until columnCount) {
+                data(col).setDouble(row, values[col])
+            }
+            fireTableDataChanged()
+        }
+    }
+
+    override fun getDoubleColumn(col: Int): DoubleArray {
+        return when (val data = data(col)) {
+            is DoubleData -> data.values.copyOf(numRows)
+            is IntData -> DoubleArray(numRows) { data.values[it].toDouble() }
+            is StringData -> throw IllegalArgumentException("getDoubleColumn called on a non-numeric column")
+        }
+    }
+
+    override fun get2DDoubleArray(colIndices: List<Int>): Array<DoubleArray> {
+        val data = colIndices.map { data(it) }
+        if (data.any { it is StringData }) {
+            throw IllegalArgumentException("get2DDoubleArray called on a non-numeric column")
+        }
+        return Array(numRows) { row -> DoubleArray(data.size) { data[it].getDouble(row) } }
+    }
+
+    override fun get2DDoubleArray(): Array<DoubleArray> = get2DDoubleArray((0 until columnCount).toList())
+
+    /**
+     * A view of a row that reads straight from the columns. The view reflects later changes to the table.
+     */
+    fun rowView(row: Int): DoubleView = object : DoubleView {
+        override val size get() = columnCount
+        override fun get(index: Int) = data(index).getDouble(row)
+    }
+
+    /**
+     * A view of a numeric column that reads straight from its array. The view reflects later changes to the table.
+     */
+    fun columnView(col: Int): DoubleView = object : DoubleView {
+        override val size get() = numRows
+        override fun get(index: Int) = data(col).getDouble(index)
+    }
+
+    /**
+     * Make room for at least [minCapacity] rows, growing by half again each time so that appending is amortized
+     * constant time.
+     */
+    private fun ensureCapacity(minCapacity: Int) {
+        if (minCapacity > capacity) {
+            capacity = max(minCapacity, capacity + capacity / 2)
+            columnData.forEach { it.resize(capacity) }
+        }
+    }
+
+    /**
+     * Insert row above, unless the index is -1 (no selection) in which case it is added as the bottom.
+     */
+    override fun insertRow(selectedRow: Int) {
+        val newRowIndex = if (selectedRow == -1) rowCount else selectedRow
+        if (selectedRow in -1..rowCount) {
+            ensureCapacity(numRows + 1)
+            columns.indices.forEach { col ->
+                val data = data(col)
+                data.move(newRowIndex, newRowIndex + 1, numRows - newRowIndex)
+                data.set(newRowIndex, columns[col].type.defaultValue)
+            }
+            numRows++
+            swingInvokeLater {
+                fireTableStructureChanged()
+            }
+        }
+    }
+
+    /**
+     * Add a row of doubles to the bottom of the table. All columns must be numeric.
+     */
+    fun appendDoubleRow(values: DoubleArray) {
+        require(values.size == columnCount) { "Row has ${values.size} values but the table has $columnCount columns" }
+        ensureCapacity(numRows + 1)
+        numRows++
+        for (col in 0 until columnCount) {
+            data(col).setDouble(numRows - 1, values[col])
+        }
+        fireTableRowsInserted(numRows - 1, numRows - 1)
+    }
+
+    override fun setRow(selectedRow: Int, row: Array<out Any?>) {
+        if (validateRowIndex(selectedRow) && row.size == columnCount) {
+            row.forEachIndexed { col, value -> setValueAt(value, selectedRow, col) }
+            fireTableDataChanged()
+        }
+    }
+
+    override fun deleteRow(selectedRow: Int, fireEvent: Boolean) {
+        // Consistent with BasicDataFrame, the last row can't be removed
+        if (rowCount == 1) {
+            return
+        }
+        if (validateRowIndex(selectedRow)) {
+            columns.indices.forEach { col -> data(col).move(selectedRow + 1, selectedRow, numRows - selectedRow - 1) }
+            numRows--
+            if (fireEvent) {
+                fireTableStructureChanged()
+            }
+        }
+    }
+
+    /**
+     * Insert column to left, unless the index is -1 (no selection) in which case it is added as the right-most column.
+     */
+    fun insertColumn(
+        colIndex: Int,
+        name: String = "New Column",
+        type: Column.DataType = Column.DataType.DoubleType
+    ) {
+        val newColIndex = if (colIndex == -1) columnCount else colIndex
+        if (colIndex in -1 until columnCount) {
+            val data = ColumnData.create(type, capacity)
+            for (row in 0 until numRows) {
+                data.set(row, type.defaultValue)
+            }
+            columnData.add(newColIndex, data)
+            columns.add(newColIndex, Column(name, type))
+            fireTableStructureChanged()
+        }
+    }
+
+    override fun insertColumn(selectedColumn: Int) {
+        insertColumn(selectedColumn, "New Column")
+    }
+
+    override fun deleteColumn(selectedColumn: Int, fireEvent: Boolean) {
+        if (validateColumnIndex(selectedColumn)) {
+            columnData.removeAt(selectedColumn)
+            columns.removeAt(selectedColumn)
+            if (fireEvent) {
+                fireTableStructureChanged()
+            }
+        }
+    }
+
+    override fun randomizeColumn(col: Int) {
+        if (validateColumnIndex(col)) {
+            val data = data(col)
+            if (data is StringData) {
+                val options = data.distinctValues()
+                if (options.isNotEmpty()) {
+                    (0 until rowCount).forEach { data.set(it, options.sampleWithoutReplacement().first()) }
+                }
+            } else {
+                (0 until rowCount).forEach { data.set(it, columns[col].getRandom()) }
+            }
+            fireTableDataChanged()
+        }
+    }
+
+    /**
+     * Number of rows that can be held before the column arrays need to grow.
+     */
+    val rowCapacity get() = capacity
+
+    /**
+     * Release spare row capacity.
+     */
+    fun trimToSize() {
+        capacity = max(numRows, MIN_CAPACITY)
+        columnData.forEach { it.resize(capacity) }
+    }
+
+    companion object {
+        private const val MIN_CAPACITY = 10
+    }
+}
+
+/**
+ * Read only access to a sequence of doubles without boxing.
+ */
+interface DoubleView {
+    val size: Int
+    operator fun get(index: Int): Double
+    fun toDoubleArray() = DoubleArray(size) { get(it) }
+}
+
+/**
+ * Parse a value into the type stored by a column, throwing a NumberFormatException if that is not possible.
+ */
+private fun parse(value: Any?, type: Column.DataType): Any? = when {
+    value == null -> null
+    type == Column.DataType.DoubleType -> if (value is Number) value.toDouble() else tryParsingDouble(value)
+    type == Column.DataType.IntType -> if (value is Number) value.toInt() else tryParsingInt(value)
+    else -> value.toString()
+}
+
+private fun parseOrNull(value: Any?, type: Column.DataType) = try {
+    parse(value, type)
+} catch (e: NumberFormatException) {
+    null
+}
+
+/**
+ * Primitive storage for one column. Values passed to [set] must already have the column's type or be null.
+ */
+private sealed class ColumnData {
+
+    abstract val type: Column.DataType
+
+    abstract fun get(row: Int): Any?
+
+    abstract fun set(row: Int, value: Any?)
+
+    abstract fun getDouble(row: Int): Double
+
+    abstract fun setDouble(row: Int, value: Double)
+
+    abstract fun resize(capacity: Int)
+
+    /**
+     * Copy [length] rows starting at [from] to start at [to].
+     */
+    abstract fun move(from: Int, to: Int, length: Int)
+
+    companion object {
+        fun create(type: Column.DataType, capacity: Int) = when (type) {
+            Column.DataType.DoubleType -> DoubleData(DoubleArray(capacity))
+            Column.DataType.IntType -> IntData(IntArray(capacity))
+            Column.DataType.StringType -> StringData(IntArray(capacity) { NULL_CODE })
+        }
+    }
+}
+
+/**
+ * Nulls are stored as NaN.
+ */
+private class DoubleData(var values: DoubleArray) : ColumnData() {
+
+    override val type get() = Column.DataType.DoubleType
+
+    override fun get(row: Int) = values[row]
+
+    override fun set(row: Int, value: Any?) {
+        values[row] = (value as Number?)?.toDouble() ?: Double.NaN
+    }
+
+    override fun getDouble(row: Int) = values[row]
+
+    override fun setDouble(row: Int, value: Double) {
+        values[row] = value
+    }
+
+    override fun resize(capacity: Int) {
+        values = values.copyOf(capacity)
+    }
+
+    override fun move(from: Int, to: Int, length: Int) {
+        System.arraycopy(values, from, values, to, length)
+    }
+}
+
+/**
+ * Ints have no spare value for null, so nulls are stored as 0.
+ */
+private class IntData(var values: IntArray) : ColumnData() {
+
+    override val type get() = Column.DataType.IntType
+
+    override fun get(row: Int) = values[row]
+
+    override fun set(row: Int, value: Any?) {
+        values[row] = (value as Number?)?.toInt() ?: 0
+    }
+
+    override fun getDouble(row: Int) = values[row].toDouble()
+
+    override fun setDouble(row: Int, value: Double) {
+        values[row] = value.toInt()
+    }
+
+    override fun resize(capacity: Int) {
+        values = values.copyOf(capacity)
+    }
+
+    override fun move(from: Int, to: Int, length: Int) {
+        System.arraycopy(values, from, values, to, length)
+    }
+}
+
+private const val NULL_CODE = -1
+
+/**
+ * Each distinct string is stored once in a dictionary and rows store its index there.
+ */
+private class StringData(var codes: IntArray) : ColumnData() {
+
+    private val dictionary = ArrayList<String>()
+
+    private val codeOf = HashMap<String, Int>()
+
+    override val type get() = Column.DataType.StringType
+
+    override fun get(row: Int) = codes[row].let { if (it == NULL_CODE) null else dictionary[it] }
+
+    override fun set(row: Int, value: Any?) {
+        codes[row] = if (value == null) NULL_CODE else {
+            val string = value.toString()
+            codeOf.getOrPut(string) { dictionary.add(string); dictionary.size - 1 }
+        }
+    }
+
+    override fun getDouble(row: Int): Double {
+        throw IllegalArgumentException("Tried to read a double from a String column")
+    }
+
+    override fun setDouble(row: Int, value: Double) {
+        throw IllegalArgumentException("Tried to write a double to a String column")
+    }
+
+    override fun resize(capacity: Int) {
+        val oldSize = codes.size
+        codes = codes.copyOf(capacity)
+        codes.fill(NULL_CODE, oldSize.coerceAtMost(capacity), capacity)
+    }
+
+    override fun move(from: Int, to: Int, length: Int) {
+        System.arraycopy(codes, from, codes, to, length)
+    }
+
+    fun distinctValues(): List<String> = dictionary.toList()
+}
+
+/**
+ * Copy any table into a [ColumnarDataFrame] with the same columns, row names, and values.
+ */
+fun SimbrainDataFrame.toColumnarDataFrame(): ColumnarDataFrame {
+    val source = this
+    return ColumnarDataFrame(columns.map { Column(it.name, it.type) }, rowCount).also { frame ->
+        for (col in 0 until columnCount) {
+            for (row in 0 until rowCount) {
+                frame.initValue(source.getValueAt(row, col), row, col)
+            }
+        }
+        frame.rowNames = source.rowNames
+    }
+}
+
+/**
+ * Create a table of double columns from an array of rows.
+ */
+fun createColumnarFromDoubleArray(data: Array<DoubleArray>): ColumnarDataFrame {
+    val numColumns = data.firstOrNull()?.size ?: 0
+    return ColumnarDataFrame(List(numColumns) { Column("Column ${it + 1}") }, data.size).also { frame ->
+        data.forEachIndexed { row, values ->
+            values.forEachIndexed { col, value -> frame.setDouble(row, col, value) }
+        }
+    }
+}
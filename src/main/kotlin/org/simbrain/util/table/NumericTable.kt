@@ -0,0 +1,488 @@
+package org.simbrain.util.table
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.simbrain.network.trainers.BINARY_MAGIC
+import smile.data.DataFrame
+import smile.data.vector.DoubleVector
+import smile.math.matrix.Matrix
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * A purely numeric table stored column by column in primitive arrays, as produced by [readNumericCsv] and
+ * [readNumericBinary]. Convert it with [toMatrix], [toColumnarDataFrame], [toBasicDataFrame] or [toSmileDataFrame].
+ */
+class NumericTable @JvmOverloads constructor(
+    val columns: Array<DoubleArray>,
+    val columnNames: List<String>? = null
+) {
+
+    init {
+        require(columns.all { it.size == columns[0].size }) { "All columns must have the same number of rows" }
+        require(columnNames == null || columnNames.size == columns.size) {
+            "There are ${columnNames?.size} column names for ${columns.size} columns"
+        }
+    }
+
+    val numRows get() = columns.firstOrNull()?.size ?: 0
+
+    val numColumns get() = columns.size
+
+    operator fun get(row: Int, col: Int) = columns[col][row]
+
+    fun getColumnName(col: Int) = columnNames?.get(col) ?: "Column ${col + 1}"
+
+    /**
+     * Returns a row, written into [into] if it is the right size.
+     */
+    @JvmOverloads
+    fun getRow(row: Int, into: DoubleArray? = null): DoubleArray {
+        val result = if (into != null && into.size == numColumns) into else DoubleArray(numColumns)
+        for (col in 0 until numColumns) {
+            result[col] = columns[col][row]
+        }
+        return result
+    }
+
+    fun toRowArray(): Array<DoubleArray> = Array(numRows) { getRow(it) }
+
+    /**
+     * Copy the provided columns into a matrix, e.g. the inputs or targets of a
+     * [org.simbrain.network.trainers.MatrixDataset].
+     */
+    @JvmOverloads
+    fun toMatrix(colIndices: IntRange = columns.indices): Matrix {
+        val matrix = Matrix(numRows, colIndices.count())
+        colIndices.forEachIndexed { j, col ->
+            val column = columns[col]
+            for (i in 0 until numRows) {
+                matrix[i, j] = column[i]
+            }
+        }
+        return matrix
+    }
+
+    /**
+     * Wrap the columns in a [ColumnarDataFrame] without copying them. The two share storage until rows are added to
+     * the data frame.
+     */
+    fun toColumnarDataFrame() = ColumnarDataFrame(emptyList()).apply {
+        setDoubleColumns(List(numColumns) { getColumnName(it) }, columns)
+    }
+
+    fun toBasicDataFrame() = BasicDataFrame(
+        MutableList(numRows) { row -> MutableList<Any?>(numColumns) { columns[it][row] } }
+    ).apply {
+        this@NumericTable.columnNames?.let { columnNames = it.toMutableList() }
+    }
+
+    /**
+     * Wrap the columns in a Smile data frame without copying them.
+     */
+    fun toSmileDataFrame(): DataFrame = DataFrame.of(*Array(numColumns) { DoubleVector.of(getColumnName(it), columns[it]) })
+
+    /**
+     * Write the table in the [org.simbrain.network.trainers.DatasetFile.Binary] format, followed by the column names
+     * if there are any. Reading the file back with [readNumericBinary] is far faster than parsing csv.
+     */
+    @Throws(IOException::class)
+    fun writeBinary(file: File) {
+        FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        ).use { channel ->
+            val buffer = ByteBuffer.allocate(1 shl 20)
+            fun flush() {
+                buffer.flip()
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer)
+                }
+                buffer.clear()
+            }
+            buffer.putInt(BINARY_MAGIC).putInt(numColumns).putLong(numRows.toLong())
+            for (row in 0 until numRows) {
+                for (col in 0 until numColumns) {
+                    if (buffer.remaining() < 8) {
+                        flush()
+                    }
+                    buffer.putDouble(columns[col][row])
+                }
+            }
+            flush()
+            columnNames?.let { names ->
+                val bytes = ByteArrayOutputStream()
+                DataOutputStream(bytes).use { output ->
+                    output.writeInt(names.size)
+                    names.forEach { output.writeUTF(it) }
+                }
+                channel.write(ByteBuffer.wrap(bytes.toByteArray()))
+            }
+        }
+    }
+}
+
+/**
+ * Largest region of a file that is mapped and parsed as one piece.
+ */
+private const val MAX_CHUNK_SIZE = 1L shl 30
+
+/**
+ * Smallest piece a csv file is split into, so that small files are not split for nothing.
+ */
+private const val MIN_CHUNK_SIZE = 1L shl 20
+
+private const val BINARY_HEADER_SIZE = 16
+
+/**
+ * Read a csv file of numbers into a [NumericTable]. Much faster and far lighter on the heap than
+ * [org.simbrain.util.Utils.getDoubleMatrix]: the file is memory mapped, split into chunks on line boundaries, and the
+ * chunks are parsed in parallel straight into doubles.
+ *
+ * As with [org.simbrain.network.trainers.DatasetFile.Csv], blank lines and lines starting with # are skipped. Values
+ * may be surrounded by spaces or quotes, but quoted values can't contain the delimiter. Empty values are read as NaN.
+ *
+ * @param delimiter must be an ASCII character
+ * @param hasHeader whether the first line holds column names
+ * @throws IOException if the file can't be read or rows have different numbers of values
+ * @throws NumberFormatException if a value is not a number
+ */
+@JvmOverloads
+@Throws(IOException::class)
+fun readNumericCsv(
+    file: File,
+    delimiter: Char = ',',
+    hasHeader: Boolean = false,
+    parallelism: Int = Runtime.getRuntime().availableProcessors()
+): NumericTable {
+    val approximateChunkSize = file.length() / (max(1, parallelism) * 4L) + 1
+    return readNumericCsvInChunks(file, delimiter, hasHeader, approximateChunkSize.coerceIn(MIN_CHUNK_SIZE, MAX_CHUNK_SIZE))
+}
+
+internal fun readNumericCsvInChunks(file: File, delimiter: Char, hasHeader: Boolean, chunkSize: Long): NumericTable {
+    require(delimiter.code < 128) { "Delimiter must be an ASCII character" }
+    FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+        val size = channel.size()
+
+        var start = 0L
+        var names: List<String>? = null
+        while (hasHeader && names == null && start < size) {
+            val lineEnd = channel.findLineEnd(start)
+            val line = channel.readString(start, lineEnd).trim()
+            if (line.isNotEmpty() && !line.startsWith("#")) {
+                names = line.split(delimiter).map { it.trim().removeSurrounding("\"") }
+            }
+            start = lineEnd
+        }
+
+        val bounds = mutableListOf(start)
+        while (bounds.last() < size) {
+            val next = bounds.last() + chunkSize
+            bounds += if (next >= size) size else channel.findLineEnd(next - 1)
+        }
+
+        val chunks = runBlocking(Dispatchers.Default) {
+            bounds.zipWithNext().map { (from, to) ->
+                async { parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), delimiter.code) }
+            }.awaitAll()
+        }
+
+        val numColumns = chunks.firstOrNull { it.numRows > 0 }?.numColumns ?: names?.size ?: 0
+        chunks.firstOrNull { it.numRows > 0 && it.numColumns != numColumns }?.let {
+            throw IOException("$file has rows with ${it.numColumns} values and rows with $numColumns values")
+        }
+        if (names != null && chunks.any { it.numRows > 0 } && names.size != numColumns) {
+            throw IOException("$file has ${names.size} column names but $numColumns values in each row")
+        }
+        val totalRows = chunks.sumOf { it.numRows.toLong() }
+        if (totalRows > Int.MAX_VALUE) {
+            throw IOException("$file has more than ${Int.MAX_VALUE} rows")
+        }
+
+        val columns = Array(numColumns) { DoubleArray(totalRows.toInt()) }
+        val firstRows = chunks.runningFold(0) { row, chunk -> row + chunk.numRows }
+        runBlocking(Dispatchers.Default) {
+            chunks.forEachIndexed { i, chunk -> launch { chunk.copyInto(columns, firstRows[i]) } }
+        }
+        return NumericTable(columns, names)
+    }
+}
+
+/**
+ * Read a table written by [NumericTable.writeBinary] or [org.simbrain.network.trainers.writeBinaryRows]. The file is
+ * memory mapped and read in parallel.
+ *
+ * @throws IOException if the file is not in the binary format
+ */
+@Throws(IOException::class)
+fun readNumericBinary(file: File): NumericTable {
+    FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+        val header = ByteBuffer.allocate(BINARY_HEADER_SIZE)
+        while (header.hasRemaining() && channel.read(header, header.position().toLong()) > 0) {
+            // Keep reading until the header is full or the file ends
+        }
+        header.flip()
+        if (header.remaining() < BINARY_HEADER_SIZE || header.getInt() != BINARY_MAGIC) {
+            throw IOException("$file is not a binary dataset file")
+        }
+        val numColumns = header.getInt()
+        val numRows = header.getLong()
+        if (numRows > Int.MAX_VALUE) {
+            throw IOException("$file has more than ${Int.MAX_VALUE} rows")
+        }
+        val rows = numRows.toInt()
+        val rowBytes = 8L * numColumns
+        if (channel.size() < BINARY_HEADER_SIZE + rows * rowBytes) {
+            throw IOException("$file is shorter than its header says")
+        }
+        val columns = Array(numColumns) { DoubleArray(rows) }
+        if (numColumns > 0 && rows > 0) {
+            val parallelism = Runtime.getRuntime().availableProcessors()
+            val rowsPerChunk = min(MAX_CHUNK_SIZE / rowBytes, rows / (parallelism * 4L) + 1).toInt().coerceAtLeast(1)
+            runBlocking(Dispatchers.Default) {
+                for (firstRow in 0 until rows step rowsPerChunk) {
+                    launch {
+                        val count = min(rowsPerChunk, rows - firstRow)
+                        val values = channel.map(
+                            FileChannel.MapMode.READ_ONLY,
+                            BINARY_HEADER_SIZE + firstRow * rowBytes,
+                            count * rowBytes
+                        ).asDoubleBuffer()
+                        for (row in 0 until count) {
+                            for (col in 0 until numColumns) {
+                                columns[col][firstRow + row] = values[row * numColumns + col]
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        val namesStart = BINARY_HEADER_SIZE + rows * rowBytes
+        val names = if (channel.size() > namesStart) {
+            channel.position(namesStart)
+            val input = DataInputStream(BufferedInputStream(Channels.newInputStream(channel)))
+            List(input.readInt()) { input.readUTF() }
+        } else {
+            null
+        }
+        return NumericTable(columns, names)
+    }
+}
+
+/**
+ * Read a csv file with [readNumericCsv], keeping a binary copy in [cacheFile] so that later reads of the same file use
+ * the much faster [readNumericBinary]. The cache is rebuilt when the csv file is newer than it. It is not rebuilt when
+ * only the delimiter or header option changes, so use a different cache file for those.
+ */
+@JvmOverloads
+@Throws(IOException::class)
+fun readCachedNumericCsv(
+    file: File,
+    delimiter: Char = ',',
+    hasHeader: Boolean = false,
+    cacheFile: File = File(file.path + ".bin")
+): NumericTable {
+    if (cacheFile.exists() && cacheFile.lastModified() >= file.lastModified()) {
+        try {
+            return readNumericBinary(cacheFile)
+        } catch (e: IOException) {
+            // Fall through and rebuild the cache
+        }
+    }
+    return readNumericCsv(file, delimiter, hasHeader).also { table ->
+        try {
+            table.writeBinary(cacheFile)
+        } catch (e: IOException) {
+            cacheFile.delete()
+        }
+    }
+}
+
+/**
+ * Returns the position just after the first newline at or after [from], or the end of the file.
+ */
+private fun FileChannel.findLineEnd(from: Long): Long {
+    val buffer = ByteBuffer.allocate(1 shl 16)
+    var position = from
+    while (true) {
+        buffer.clear()
+        val read = read(buffer, position)
+        if (read <= 0) {
+            return size()
+        }
+        for (i in 0 until read) {
+            if (buffer[i].toInt() == '\n'.code) {
+                return position + i + 1
+            }
+        }
+        position += read
+    }
+}
+
+private fun FileChannel.readString(from: Long, to: Long): String {
+    val buffer = ByteBuffer.allocate((to - from).toInt())
+    while (buffer.hasRemaining() && read(buffer, from + buffer.position()) > 0) {
+        // Keep reading until the line is complete
+    }
+    return String(buffer.array(), 0, buffer.position(), Charsets.UTF_8)
+}
+
+/**
+ * Values parsed from one chunk of a csv file, row by row.
+ */
+private class ParsedChunk(val values: DoubleArray, val numRows: Int, val numColumns: Int) {
+    fun copyInto(columns: Array<DoubleArray>, firstRow: Int) {
+        for (row in 0 until numRows) {
+            for (col in 0 until numColumns) {
+                columns[col][firstRow + row] = values[row * numColumns + col]
+            }
+        }
+    }
+}
+
+private fun parseChunk(buffer: ByteBuffer, delimiter: Int): ParsedChunk {
+    val end = buffer.limit()
+    var values = DoubleArray(max(16, end / 4))
+    var count = 0
+    var numRows = 0
+    var numColumns = -1
+    var position = 0
+    while (position < end) {
+        var lineEnd = position
+        while (lineEnd < end && buffer[lineEnd].toInt() != '\n'.code) {
+            lineEnd++
+        }
+        var firstChar = position
+        while (firstChar < lineEnd && buffer[firstChar].isSpace(delimiter)) {
+            firstChar++
+        }
+        if (firstChar == lineEnd || buffer[firstChar].toInt() == '#'.code) {
+            position = lineEnd + 1
+            continue
+        }
+        var fieldStart = position
+        var numFields = 0
+        while (true) {
+            var fieldEnd = fieldStart
+            while (fieldEnd < lineEnd && buffer[fieldEnd].toInt() != delimiter) {
+                fieldEnd++
+            }
+            if (count == values.size) {
+                values = values.copyOf(values.size + values.size / 2)
+            }
+            values[count++] = parseDouble(buffer, fieldStart, fieldEnd, delimiter)
+            numFields++
+            if (fieldEnd >= lineEnd) {
+                break
+            }
+            fieldStart = fieldEnd + 1
+        }
+        if (numColumns == -1) {
+            numColumns = numFields
+        } else if (numFields != numColumns) {
+            throw IOException("Found a row with $numFields values where $numColumns were expected")
+        }
+        numRows++
+        position = lineEnd + 1
+    }
+    return ParsedChunk(values, numRows, max(numColumns, 0))
+}
+
+private fun Byte.isSpace(delimiter: Int) = toInt() != delimiter && (this == SPACE || this == TAB || this == RETURN)
+
+private const val SPACE = ' '.code.toByte()
+private const val TAB = '\t'.code.toByte()
+private const val RETURN = '\r'.code.toByte()
+
+/**
+ * Powers of ten that are exactly representable as doubles.
+ */
+private val POWERS_OF_TEN = DoubleArray(23) { 1.0 }.also {
+    for (i in 1 until it.size) {
+        it[i] = it[i - 1] * 10
+    }
+}
+
+/**
+ * Parse the number between [from] and [to]. Numbers with at most 15 significant digits and a small exponent, which
+ * covers nearly everything in practice, are parsed directly from the bytes: the digits are exact as a double and so is
+ * the power of ten, so one multiplication or division gives the correctly rounded result. Anything else is passed to
+ * [String.toDouble].
+ */
+private fun parseDouble(buffer: ByteBuffer, from: Int, to: Int, delimiter: Int): Double {
+    var start = from
+    var end = to
+    while (start < end && buffer[start].isSpace(delimiter)) {
+        start++
+    }
+    while (end > start && buffer[end - 1].isSpace(delimiter)) {
+        end--
+    }
+    if (end - start >= 2 && buffer[start].toInt() == '"'.code && buffer[end - 1].toInt() == '"'.code) {
+        start++
+        end--
+    }
+    if (start == end) {
+        return Double.NaN
+    }
+
+    var i = start
+    val negative = buffer[i].toInt() == '-'.code
+    if (negative || buffer[i].toInt() == '+'.code) {
+        i++
+    }
+    var mantissa = 0L
+    var significantDigits = 0
+    var exponent = 0
+    var hasDigits = false
+    while (i < end && buffer[i].toInt() - '0'.code in 0..9) {
+        mantissa = mantissa * 10 + (buffer[i].toInt() - '0'.code)
+        if (mantissa != 0L) significantDigits++
+        hasDigits = true
+        i++
+    }
+    if (i < end && buffer[i].toInt() == '.'.code) {
+        i++
+        while (i < end && buffer[i].toInt() - '0'.code in 0..9) {
+            mantissa = mantissa * 10 + (buffer[i].toInt() - '0'.code)
+            if (mantissa != 0L) significantDigits++
+            exponent--
+            hasDigits = true
+            i++
+        }
+    }
+    if (hasDigits && i < end && (buffer[i].toInt() == 'e'.code || buffer[i].toInt() == 'E'.code)) {
+        i++
+        val negativeExponent = i < end && buffer[i].toInt() == '-'.code
+        if (i < end && (negativeExponent || buffer[i].toInt() == '+'.code)) {
+            i++
+        }
+        var explicitExponent = 0
+        val exponentStart = i
+        while (i < end && buffer[i].toInt() - '0'.code in 0..9 && explicitExponent < 10000) {
+            explicitExponent = explicitExponent * 10 + (buffer[i].toInt() - '0'.code)
+            i++
+        }
+        if (i == exponentStart) {
+            hasDigits = false
+        }
+        exponent += if (negativeExponent) -explicitExponent else explicitExponent
+    }
+    if (!hasDigits || i != end || significantDigits > 15 || exponent < -22 || exponent > 22) {
+        val bytes = ByteArray(end - start)
+        buffer.get(start, bytes)
+        return String(bytes, Charsets.US_ASCII).toDouble()
+    }
+    val value = if (exponent >= 0) mantissa * POWERS_OF_TEN[exponent] else mantissa / POWERS_OF_TEN[-exponent]
+    return if (negative) -value else value
+}
@@ -15,6 +15,7 @@ import javax.swing.table.AbstractTableModel
  * TODO: Methods similar to those found in Pandas should be added as the need arises
  * BasicDataFrame is the main implementation of this class.
  * MatrixDataFrame is for purely numeric data.
+ * ColumnarDataFrame stores columns in primitive arrays, for large tables.
  */
 abstract class SimbrainDataFrame : AbstractTableModel() {
 
@@ -70,7 +71,7 @@ abstract class SimbrainDataFrame : AbstractTableModel() {
     /**
      * Returns a column (assumed to be numeric) as a double array.
      */
-    fun getDoubleColumn(col: Int): DoubleArray {
+    open fun getDoubleColumn(col: Int): DoubleArray {
         if (columns[col].isNumeric()) {
             return (0 until rowCount)
                 .map { (getValueAt(it, col) as Number).toDouble() }
@@ -160,7 +161,7 @@ abstract class SimbrainDataFrame : AbstractTableModel() {
      *
      * Note that numeric types are cast to doubles.
      */
-    fun get2DDoubleArray(colIndices: List<Int>): Array<DoubleArray> {
+    open fun get2DDoubleArray(colIndices: List<Int>): Array<DoubleArray> {
         if (!columnsOfType(colIndices, Double::class.java, Int::class.java, Float::class.java)) {
             throw Error("getDoubleArray called on a non-double column")
         }
@@ -185,7 +186,7 @@ abstract class SimbrainDataFrame : AbstractTableModel() {
      *
      * Numeric types are cast to doubles.
      */
-    fun get2DDoubleArray(): Array<DoubleArray> {
+    open fun get2DDoubleArray(): Array<DoubleArray> {
         if (!columnsOfType(Double::class.java)) {
             throw Error("getDoubleArray called on a non-numeric column")
         }
@@ -230,6 +231,18 @@ abstract class SimbrainDataFrame : AbstractTableModel() {
         } as T
     }
 
+    /**
+     * Returns a row as doubles, with null entries as NaN. The row is written into [into] if it is the right size, so
+     * that a row can be read repeatedly without allocating.
+     */
+    open fun getDoubleRow(row: Int, into: DoubleArray? = null): DoubleArray {
+        val result = if (into != null && into.size == columnCount) into else DoubleArray(columnCount)
+        for (col in 0 until columnCount) {
+            result[col] = ((getValueAt(row, col) ?: Double.NaN) as Number).toDouble()
+        }
+        return result
+    }
+
     fun getCurrentStringRow() = getRow<String>(currentRowIndex)
 
     fun getCurrentDoubleRow() = getRow<Double>(currentRowIndex)
@@ -17,6 +17,8 @@ import smile.plot.swing.Histogram
 import smile.plot.swing.PlotGrid
 import java.awt.BorderLayout
 import java.awt.Dimension
+import java.io.File
+import java.nio.file.NoSuchFileException
 import javax.swing.*
 import kotlin.reflect.KClass
 
@@ -241,17 +243,40 @@ fun SimbrainJTable.importCSVAction(fixedColumns: Boolean = true, skipImportOptio
             }
             return true
         }
+        // Warn rather than throw on a missing or malformed file, as Utils.getDoubleMatrix does
+        fun readNumeric(file: File): NumericTable? = try {
+            readNumericCsv(file, hasHeader = options.includeColumnNames)
+        } catch (e: NoSuchFileException) {
+            JOptionPane.showMessageDialog(null, "Could not find the file \n$file", "Warning", JOptionPane.ERROR_MESSAGE)
+            null
+        } catch (e: Exception) {
+            JOptionPane.showMessageDialog(null, "There was a problem opening the file \n$file", "Warning", JOptionPane.ERROR_MESSAGE)
+            e.printStackTrace()
+            null
+        }
         if (csvFile != null) {
             model.let {
                 if (it is BasicDataFrame) {
-                    val rawData = Utils.getStringMatrix(csvFile)
-                    val importedData = createFrom2DArray(rawData, options, dataType)
+                    val importedData = if (dataType == Double::class && !options.includeRowNames) {
+                        (readNumeric(csvFile) ?: return).toBasicDataFrame()
+                    } else {
+                        createFrom2DArray(Utils.getStringMatrix(csvFile) ?: return, options, dataType)
+                    }
                     if (!fixedColumns || checkColumns(importedData.columnCount)) {
                         it.data = importedData.data
                         it.columnNames = importedData.columnNames
                         it.rowNames = importedData.rowNames
                         it.fireTableStructureChanged()
                     }
+                } else if (it is ColumnarDataFrame) {
+                    val importedData = if (dataType == Double::class && !options.includeRowNames) {
+                        (readNumeric(csvFile) ?: return).toColumnarDataFrame()
+                    } else {
+                        createFrom2DArray(Utils.getStringMatrix(csvFile) ?: return, options, dataType).toColumnarDataFrame()
+                    }
+                    if (!fixedColumns || checkColumns(importedData.columnCount)) {
+                        it.setContents(importedData)
+                    }
                 } else if (it is SmileDataFrame) {
                     val data = Read.csv(csvFile.absolutePath)
                     if (!fixedColumns || checkColumns(data.ncol())) {
@@ -305,7 +330,7 @@ val SimbrainJTable.editColumnAction
         description = "Edit column properties",
         iconPath = "menu_icons/Prefs.png"
     ) {
-        if (model is BasicDataFrame) {
+        if (model is BasicDataFrame || model is ColumnarDataFrame) {
             if (selectedColumn >= 0) {
                 // TODO: Add access to histogram etc. from here?
                 AnnotatedPropertyEditor(model.columns[selectedColumn]).displayInDialog()
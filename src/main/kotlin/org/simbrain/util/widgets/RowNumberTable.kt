@@ -1,6 +1,7 @@
 package org.simbrain.util.widgets
 
 import org.simbrain.util.table.BasicDataFrame
+import org.simbrain.util.table.ColumnarDataFrame
 import org.simbrain.util.table.SimbrainDataFrame
 import java.awt.Color
 import java.awt.Component
@@ -119,7 +120,9 @@ class RowNumberTable(private val main: JTable) : JTable(), ChangeListener, Prope
     //
     override fun tableChanged(e: TableModelEvent) {
         if (main != null) { // do not simplify this. the super constructor calls this before main is set up.
-            rowNames = main.model.let { if (it is BasicDataFrame) it.getAllRowNames() else listOf() }
+            rowNames = main.model.let {
+                if (it is BasicDataFrame || it is ColumnarDataFrame) (it as SimbrainDataFrame).getAllRowNames() else listOf()
+            }
         }
         revalidate()
     }
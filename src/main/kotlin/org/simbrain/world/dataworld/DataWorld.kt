@@ -2,14 +2,19 @@ package org.simbrain.world.dataworld
 
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.propertyeditor.GuiEditable
-import org.simbrain.util.table.BasicDataFrame
+import org.simbrain.util.table.ColumnarDataFrame
+import org.simbrain.util.table.SimbrainDataFrame
 import org.simbrain.workspace.AttributeContainer
 import org.simbrain.workspace.Consumable
 import org.simbrain.workspace.Producible
 
 class DataWorld(val rows: Int = 30, val cols: Int = 5): AttributeContainer, EditableObject {
 
-    var dataModel = BasicDataFrame(rows, cols)
+    /**
+     * Stored column by column in primitive arrays. Workspaces saved with a [org.simbrain.util.table.BasicDataFrame]
+     * still load, and keep using it.
+     */
+    var dataModel: SimbrainDataFrame = ColumnarDataFrame(rows, cols)
 
     var appendMode: DataEntryMode by GuiEditable(
         initValue = DataEntryMode.LOOP
@@ -18,8 +23,17 @@ class DataWorld(val rows: Int = 30, val cols: Int = 5): AttributeContainer, Edit
     @Producible
     fun getCurrentStringRow() = dataModel.getCurrentStringRow().toTypedArray()
 
+    /**
+     * Returns a new array, which consumers of the coupling may keep.
+     */
     @Producible
-    fun getCurrentNumericRow() = dataModel.getCurrentDoubleRow().toDoubleArray()
+    fun getCurrentNumericRow() = dataModel.getDoubleRow(dataModel.currentRowIndex)
+
+    /**
+     * Read the current row into [into] when it has one entry per column, otherwise into a new array, which is
+     * returned. For callers that only read the row, so that stepping through the table does not allocate.
+     */
+    fun getCurrentNumericRow(into: DoubleArray) = dataModel.getDoubleRow(dataModel.currentRowIndex, into)
 
     @Consumable
     fun setCurrentStringRow(row: Array<String>) {
@@ -31,7 +45,12 @@ class DataWorld(val rows: Int = 30, val cols: Int = 5): AttributeContainer, Edit
 
     @Consumable
     fun setCurrentNumericRow(row: DoubleArray) {
-        dataModel.setRow(dataModel.currentRowIndex, row.toTypedArray())
+        val model = dataModel
+        if (model is ColumnarDataFrame && model.columnsOfType(Double::class.java, Int::class.java)) {
+            model.setDoubleRow(model.currentRowIndex, row)
+        } else {
+            model.setRow(model.currentRowIndex, row.toTypedArray())
+        }
         if (appendMode == DataEntryMode.APPEND && dataModel.currentRowIndex == dataModel.rowCount - 1) {
             dataModel.insertRow(dataModel.currentRowIndex + 1)
         }
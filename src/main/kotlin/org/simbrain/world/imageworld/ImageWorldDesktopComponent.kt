@@ -120,7 +120,8 @@ class ImageWorldDesktopComponent(frame: GenericFrame, component: ImageWorldCompo
          * Draw a pixel at the current point in the image panel.
          */
         private fun drawPixel(evt: MouseEvent) {
-            if (!paintMode || evt.isControlDown || (evt.button == MouseEvent.BUTTON3)) {
+            // Frames of an image sequence are shared with its cache, so they are not drawn on
+            if (!paintMode || evt.isControlDown || (evt.button == MouseEvent.BUTTON3) || imageWorld.imageSequence != null) {
                 return
             }
             val image = imageWorld.imageAlbum.currentImage
@@ -150,6 +151,17 @@ class ImageWorldDesktopComponent(frame: GenericFrame, component: ImageWorldCompo
         loadImages.addActionListener { loadImages() }
         fileMenu.add(loadImages)
 
+        val openSequence = JMenuItem("Open Image Sequence...")
+        openSequence.addActionListener { openImageSequence() }
+        fileMenu.add(openSequence)
+
+        val showAlbum = JMenuItem("Show Image Album")
+        showAlbum.addActionListener {
+            imageWorld.showImageAlbum()
+            watchImageSource()
+        }
+        fileMenu.add(showAlbum)
+
         fileMenu.add(saveImageAction)
 
         val saveAllImages = JMenuItem(saveImageAllAction)
@@ -193,6 +205,7 @@ class ImageWorldDesktopComponent(frame: GenericFrame, component: ImageWorldCompo
             )
             if (result == JOptionPane.OK_OPTION) {
                 imageWorld.resetImageAlbum(wInp.text.toInt(), hInp.text.toInt())
+                watchImageSource()
             }
         }
         menuBar.add(editMenu)
@@ -361,10 +374,7 @@ class ImageWorldDesktopComponent(frame: GenericFrame, component: ImageWorldCompo
 
         // Main image
         add(ImagePanel(), BorderLayout.CENTER)
-        imageWorld.imageAlbum.events.imageUpdate.on(swingDispatcher) {
-            updateToolbar()
-            repaint()
-        }
+        watchImageSource()
         imageWorld.filterCollection.events.filterChanged.on(swingDispatcher) { _, _ -> this.repaint() }
 
         // Toolbars
@@ -411,6 +421,38 @@ class ImageWorldDesktopComponent(frame: GenericFrame, component: ImageWorldCompo
     }
 
 
+    /**
+     * Unregisters the repaint handler from the image source it was registered on.
+     */
+    private var unwatchImageSource: (() -> Boolean?)? = null
+
+    /**
+     * Repaint when the image source currently shown by the world changes.
+     */
+    private fun watchImageSource() {
+        unwatchImageSource?.invoke()
+        unwatchImageSource = imageWorld.imageSource.events.imageUpdate.on(swingDispatcher) {
+            updateToolbar()
+            repaint()
+        }
+        updateToolbar()
+        repaint()
+    }
+
+    /**
+     * Stream the images in a directory as an [ImageSequence], in order of file name.
+     */
+    private fun openImageSequence() {
+        val directory = showDirectorySelectionDialog()?.let { File(it) } ?: return
+        val frames = DirectoryFrames(directory)
+        if (frames.numFrames == 0) {
+            showWarningDialog("No images found in ${directory.name}")
+            return
+        }
+        imageWorld.showImageSequence(ImageSequence(frames))
+        watchImageSource()
+    }
+
     /**
      * Load a set of images to be used as the "Album" in an image album.
      */
@@ -421,9 +463,7 @@ class ImageWorldDesktopComponent(frame: GenericFrame, component: ImageWorldCompo
             // Load the images
 
             imageWorld.loadImages(files)
-
-            // Update status of buttons
-            updateToolbar()
+            watchImageSource()
 
             // Save preferences
             imageDirectory = fileChooser.currentLocation
@@ -439,8 +479,8 @@ class ImageWorldDesktopComponent(frame: GenericFrame, component: ImageWorldCompo
             nextImageAction.isEnabled = true
             previousImageAction.isEnabled = true
         }
-        val index = imageWorld.imageAlbum.frameIndex
-        val numFrames = imageWorld.imageAlbum.numFrames
+        val index = imageWorld.frameIndex
+        val numFrames = imageWorld.numImages
         val humanReadableFrameIndex = min((index + 1).toDouble(), numFrames.toDouble()).toInt()
         frameLabel.text = "$humanReadableFrameIndex/$numFrames"
     }
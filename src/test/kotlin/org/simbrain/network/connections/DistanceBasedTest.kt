@@ -0,0 +1,45 @@
+package org.simbrain.network.connections
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.util.SimnetUtils.getEuclideanDist
+import org.simbrain.util.decayfunctions.LinearDecayFunction
+import org.simbrain.util.decayfunctions.StepDecayFunction
+
+class DistanceBasedTest {
+
+    /**
+     * A 20 x 20 sheet of neurons 10 pixels apart.
+     */
+    private fun sheet() = List(400) { i ->
+        Neuron().apply { setLocation((i % 20) * 10.0, (i / 20) * 10.0, false) }
+    }
+
+    @Test
+    fun `step decay connects exactly the neurons within the dispersion`() {
+        val neurons = sheet()
+        val syns = createRadialSynapses(neurons, neurons, StepDecayFunction(15.0).apply { dispersion = 15.0 })
+        val expected = neurons.sumOf { src -> neurons.count { it != src && getEuclideanDist(src, it) <= 15.0 } }
+        assertEquals(expected, syns.size)
+    }
+
+    @Test
+    fun `no connections beyond the cutoff`() {
+        val neurons = sheet()
+        val decay = LinearDecayFunction(25.0)
+        val syns = createRadialSynapses(neurons, neurons, decay)
+        assertTrue(syns.isNotEmpty())
+        assertTrue(syns.all { getEuclideanDist(it.source, it.target) <= decay.cutoffDistance })
+    }
+
+    @Test
+    fun `same seed gives the same connections`() {
+        fun connect(neurons: List<Neuron>) = createRadialNoPolaritySynapses(neurons, neurons, 0.5, 20.0, seed = 7)
+            .map { neurons.indexOf(it.source) to neurons.indexOf(it.target) }
+        val first = connect(sheet())
+        assertTrue(first.isNotEmpty())
+        assertEquals(first, connect(sheet()))
+    }
+}
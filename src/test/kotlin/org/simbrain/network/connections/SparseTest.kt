@@ -77,4 +77,18 @@ class SparseTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `check no self connections or duplicates when densifying`() {
+        sparse.allowSelfConnection = false
+        val neurons = net.freeNeurons.toList()
+        sparse.connectionDensity = .5
+        sparse.connectNeurons(neurons, neurons).also { net.addNetworkModels(it) }
+        sparse.connectionDensity = 1.0
+        val syns = sparse.connectNeurons(neurons, neurons).also { net.addNetworkModels(it) }
+        assertEquals(45, syns.size)
+        assertEquals(90, net.freeSynapses.size)
+        assertTrue(net.freeSynapses.none { it.source == it.target })
+        assertEquals(90, net.freeSynapses.map { it.source to it.target }.toSet().size)
+    }
+
+}
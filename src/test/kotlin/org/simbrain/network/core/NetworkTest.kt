@@ -9,8 +9,10 @@ import org.simbrain.network.spikeresponders.UDF
 import org.simbrain.network.subnetworks.BackpropNetwork
 import org.simbrain.network.subnetworks.SRNNetwork
 import org.simbrain.network.subnetworks.Subnetwork
+import org.simbrain.network.update_actions.UpdateNetworkModel
 import org.simbrain.network.updaterules.IzhikevichRule
 import org.simbrain.network.util.BiasedScalarData
+import org.simbrain.util.SimbrainConstants
 import org.simbrain.util.point
 import java.util.List
 
@@ -130,6 +132,32 @@ class NetworkTest {
         Assertions.assertEquals(0, net.getModels(Subnetwork::class.java).size)
     }
 
+    @Test
+    fun `flat lists are rebuilt only when the structure changes`() {
+        val neurons = net.flatNeuronList
+        Assertions.assertSame(neurons, net.flatNeuronList)
+
+        val n3 = Neuron()
+        net.addNetworkModel(n3)
+        Assertions.assertTrue(n3 in net.flatNeuronList)
+        Assertions.assertFalse(n3 in neurons)
+
+        val removed = sg1.synapses.first()
+        Assertions.assertTrue(removed in net.flatSynapseList)
+        sg1.removeSynapse(removed)
+        Assertions.assertFalse(removed in net.flatSynapseList)
+    }
+
+    @Test
+    fun `models are found by id`() {
+        Assertions.assertSame(n1, net.getModelById<Neuron>(n1.id!!))
+        Assertions.assertSame(ng2, net.getModelById(NeuronGroup::class.java, ng2.id!!.uppercase()))
+        Assertions.assertThrows(NoSuchElementException::class.java) { net.getModelById<NeuronGroup>(n1.id!!) }
+        val id = n2.id!!
+        n2.delete()
+        Assertions.assertNull(net.findModelById(id))
+    }
+
     @Test
     fun getByLabel() {
         Assertions.assertEquals(n1, net.getModelByLabel(Neuron::class.java, "neuron1"))
@@ -158,6 +186,76 @@ class NetworkTest {
         Assertions.assertNotNull(fromXml.getModelByLabel(SRNNetwork::class.java, "srn"))
     }
 
+    @Test
+    fun testCopy() {
+        s1.forceSetStrength(0.5)
+        wm1.weightMatrix[2, 3] = 7.0
+        net.addUpdateAction(UpdateNetworkModel(ng1, net))
+        n1.polarity = SimbrainConstants.Polarity.EXCITATORY
+        n1.z = 3.0
+        n1.auxValue = 4.0
+        ng1.neuronList[0].polarity = SimbrainConstants.Polarity.INHIBITORY
+        ng1.neuronList[0].z = 5.0
+        ng1.neuronList[0].auxValue = 6.0
+        n1.addInputValue(2.0)
+        na1.addInputs(DoubleArray(10) { 1.0 })
+
+        val copy = net.copy()
+
+        Assertions.assertEquals(net.allModels.size, copy.allModels.size)
+        Assertions.assertEquals(22, copy.flatNeuronList.size)
+        Assertions.assertEquals(101, copy.flatSynapseList.size)
+        Assertions.assertTrue(copy.flatNeuronList.none { it in net.flatNeuronList })
+
+        // Connectivity refers to the copied models
+        val copiedSynapse = copy.freeSynapses.first()
+        Assertions.assertEquals(0.5, copiedSynapse.strength)
+        Assertions.assertEquals(s1.id, copiedSynapse.id)
+        Assertions.assertSame(copy.getModelByLabel(Neuron::class.java, "neuron1"), copiedSynapse.source)
+        Assertions.assertTrue(copiedSynapse in copiedSynapse.target.fanIn)
+        val copiedNc = copy.getModels(NeuronCollection::class.java).first()
+        Assertions.assertTrue(copiedNc.neuronList.all { it in copy.freeNeurons })
+        val copiedSg = copy.getModels(SynapseGroup::class.java).first()
+        Assertions.assertSame(copy.getModelByLabel(NeuronGroup::class.java, "neuron_group_1"), copiedSg.source)
+        Assertions.assertTrue(copiedSg.synapses.all { it.source in copiedSg.source.neuronList })
+        val copiedWm = copy.getModels(WeightMatrix::class.java).first()
+        Assertions.assertEquals(7.0, copiedWm.weightMatrix[2, 3])
+        Assertions.assertNotSame(wm1.weightMatrix, copiedWm.weightMatrix)
+        Assertions.assertTrue(copiedWm.source in copy.getModels(NeuronArray::class.java))
+
+        // Neuron state that is not a user parameter of the update rule
+        val copiedNeuron = copy.getModelByLabel(Neuron::class.java, "neuron1")
+        Assertions.assertEquals(SimbrainConstants.Polarity.EXCITATORY, copiedNeuron.polarity)
+        Assertions.assertEquals(3.0, copiedNeuron.z)
+        Assertions.assertEquals(4.0, copiedNeuron.auxValue)
+        Assertions.assertEquals(2.0, copiedNeuron.input)
+        Assertions.assertNotSame(n1.updateRule, copiedNeuron.updateRule)
+        val copiedGroupNeuron = copy.getModelByLabel(NeuronGroup::class.java, "neuron_group_1").neuronList[0]
+        Assertions.assertEquals(SimbrainConstants.Polarity.INHIBITORY, copiedGroupNeuron.polarity)
+        Assertions.assertEquals(5.0, copiedGroupNeuron.z)
+        Assertions.assertEquals(6.0, copiedGroupNeuron.auxValue)
+
+        // Neuron arrays get their own update rule and keep their inputs
+        val copiedArray = copy.getModels(NeuronArray::class.java).first { it.id == na1.id }
+        Assertions.assertNotSame(na1.updateRule, copiedArray.updateRule)
+        Assertions.assertEquals(na1.updateRule::class, copiedArray.updateRule::class)
+        Assertions.assertEquals(1.0, copiedArray.inputs[0, 0])
+
+        // Custom groups and subnetworks
+        Assertions.assertNotNull(copy.getModelByLabel(SoftmaxGroup::class.java, "softmax"))
+        Assertions.assertNotNull(copy.getModelByLabel(WinnerTakeAll::class.java, "wta"))
+        Assertions.assertNotNull(copy.getModelByLabel(BackpropNetwork::class.java, "backprop"))
+        Assertions.assertNotNull(copy.getModelByLabel(SRNNetwork::class.java, "srn"))
+
+        // Update actions refer to the copy
+        val action = copy.updateManager.actionList.last() as UpdateNetworkModel
+        Assertions.assertSame(copy.getModelByLabel(NeuronGroup::class.java, "neuron_group_1"), action.networkModel)
+
+        // Changing the copy leaves the original alone
+        copiedSynapse.forceSetStrength(-1.0)
+        Assertions.assertEquals(0.5, s1.strength)
+    }
+
     @Test
     fun testSynapseCounts() {
         // 1 free synapse
@@ -15,4 +15,30 @@ class SynapseTestKt {
         assertEquals(1, n2.fanIn.size)
     }
 
+    @Test
+    fun `delayed synapse passes activation after its delay`() {
+        val source = Neuron().also { it.activation = 1.0; it.clamped = true }
+        val target = Neuron()
+        val synapse = connect(source, target, 0.5).also { it.delay = 2 }
+        network.addNetworkModels(source, target, synapse)
+        val received = List(4) { network.update(); target.activation }
+        assertEquals(listOf(0.0, 0.0, 0.5, 0.5), received)
+    }
+
+    @Test
+    fun `synapses with different delays read the same source`() {
+        val source = Neuron().also { it.clamped = true }
+        val (early, late) = List(2) { Neuron() }
+        val s1 = connect(source, early, 1.0).also { it.delay = 1 }
+        val s2 = connect(source, late, 1.0).also { it.delay = 3 }
+        network.addNetworkModels(source, early, late, s1, s2)
+        val pulse = listOf(1.0, 0.0, 0.0, 0.0, 0.0)
+        val received = pulse.map {
+            source.activation = it
+            network.update()
+            early.activation to late.activation
+        }
+        assertEquals(listOf(0.0 to 0.0, 1.0 to 0.0, 0.0 to 0.0, 0.0 to 1.0, 0.0 to 0.0), received)
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package org.simbrain.network.groups
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.connect
+import org.simbrain.network.neurongroups.EventDrivenLIFGroup
+import org.simbrain.network.updaterules.IntegrateAndFireRule
+import kotlin.math.exp
+import kotlin.math.ln
+
+class EventDrivenLIFGroupTest {
+
+    val net = Network()
+    val group = EventDrivenLIFGroup(2)
+    val driven = group.getNeuron(0)
+    val follower = group.getNeuron(1)
+    val drivenRule = driven.updateRule as IntegrateAndFireRule
+
+    init {
+        net.addNetworkModel(group)
+        drivenRule.backgroundCurrent = 25.0
+        group.neuronList.forEach { it.activation = (it.updateRule as IntegrateAndFireRule).restingPotential }
+    }
+
+    /**
+     * Time for a neuron starting at [v] to reach threshold with the driven neuron's parameters.
+     */
+    private fun timeToThreshold(v: Double) = with(drivenRule) {
+        val vInf = restingPotential + resistance * backgroundCurrent
+        timeConstant * ln((vInf - v) / (vInf - threshold))
+    }
+
+    @Test
+    fun `spike times are exact`() {
+        net.timeStep = 1.0
+        repeat(50) { net.update() }
+        assertEquals(timeToThreshold(drivenRule.restingPotential), driven.lastSpikeTime, 1e-9)
+
+        // After the spike the neuron decays toward rest with no input during the refractory period
+        val firstSpike = driven.lastSpikeTime
+        val afterRefractory = with(drivenRule) {
+            restingPotential + (resetPotential - restingPotential) * exp(-refractoryPeriod / timeConstant)
+        }
+        repeat(30) { net.update() }
+        val expected = firstSpike + drivenRule.refractoryPeriod + timeToThreshold(afterRefractory)
+        assertEquals(expected, driven.lastSpikeTime, 1e-9)
+    }
+
+    @Test
+    fun `spike times do not depend on the time step`() {
+        net.timeStep = 0.1
+        repeat(500) { net.update() }
+        val smallStep = driven.lastSpikeTime
+
+        val other = Network()
+        val otherGroup = EventDrivenLIFGroup(1)
+        other.addNetworkModel(otherGroup)
+        (otherGroup.getNeuron(0).updateRule as IntegrateAndFireRule).backgroundCurrent = 25.0
+        otherGroup.getNeuron(0).activation = drivenRule.restingPotential
+        other.timeStep = 5.0
+        repeat(10) { other.update() }
+        assertEquals(smallStep, otherGroup.getNeuron(0).lastSpikeTime, 1e-9)
+    }
+
+    @Test
+    fun `spikes are delivered after the synaptic delay`() {
+        net.timeStep = 1.0
+        with(net) {
+            connect(driven, follower, 30.0, upperBound = 100.0).delay = 2
+        }
+        var followerSpiked = false
+        repeat(55) {
+            net.update()
+            followerSpiked = followerSpiked || follower.isSpike
+        }
+        assertTrue(followerSpiked)
+        assertEquals(timeToThreshold(drivenRule.restingPotential) + 2.0, follower.lastSpikeTime, 1e-9)
+    }
+
+    @Test
+    fun `quiet neurons need no events`() {
+        drivenRule.backgroundCurrent = 0.0
+        net.timeStep = 1.0
+        repeat(100) { net.update() }
+        assertFalse(driven.isSpike)
+        assertEquals(0L, group.processedEvents)
+        assertEquals(drivenRule.restingPotential, driven.activation, 1e-9)
+    }
+}
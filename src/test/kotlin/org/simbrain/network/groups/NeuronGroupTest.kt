@@ -0,0 +1,45 @@
+package org.simbrain.network.groups
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.NeuronArray
+import org.simbrain.network.core.WeightMatrix
+import org.simbrain.network.neurongroups.NeuronGroup
+import org.simbrain.util.toDoubleArray
+
+class NeuronGroupTest {
+
+    val net = Network()
+    val group = NeuronGroup(3)
+
+    init {
+        net.addNetworkModel(group)
+    }
+
+    @Test
+    fun `activations follow the neurons and are fresh on each read`() {
+        val first = group.activations
+        group.getNeuron(1).activation = 0.5
+        val second = group.activations
+        assertNotSame(first, second)
+        assertEquals(0.0, first[1, 0])
+        assertArrayEquals(doubleArrayOf(0.0, 0.5, 0.0), second.toDoubleArray())
+        assertArrayEquals(doubleArrayOf(0.0, 0.5, 0.0), group.activationArray)
+        assertEquals(3, group.size)
+    }
+
+    @Test
+    fun `weight matrix inputs are summed into the neurons`() {
+        val array = NeuronArray(2)
+        val wm = WeightMatrix(array, group)
+        net.addNetworkModels(array, wm)
+        array.setActivations(doubleArrayOf(1.0, 2.0))
+        wm.weightMatrix.fill(1.0)
+        with(net) { group.accumulateInputs() }
+        assertArrayEquals(doubleArrayOf(3.0, 3.0, 3.0), group.inputArray)
+        assertArrayEquals(doubleArrayOf(3.0, 3.0, 3.0), group.inputs.toDoubleArray())
+    }
+}
@@ -0,0 +1,65 @@
+package org.simbrain.network.learningrules
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.*
+import org.simbrain.network.updaterules.WinnerTakeAllRule
+import org.simbrain.util.toMatrix
+
+class CompetitiveRuleTest {
+
+    val net = Network()
+    val input = NeuronArray(2)
+    val output = NeuronArray(3)
+    val wm = WeightMatrix(input, output)
+
+    init {
+        net.addNetworkModels(input, output, wm)
+        input.isClamped = true
+        output.updateRule = WinnerTakeAllRule()
+        wm.setWeights(arrayOf(doubleArrayOf(1.0, 0.0), doubleArrayOf(0.0, 1.0), doubleArrayOf(0.5, 0.5)))
+        wm.learningRule = CompetitiveRule().apply { learningRate = 0.5 }
+    }
+
+    @Test
+    fun `only the winner moves towards the normalized input`() {
+        input.activations = doubleArrayOf(3.0, 1.0).toMatrix()
+        net.update()
+        assertEquals(0, (output.updateRule as WinnerTakeAllRule).winner)
+        // Normalized input is (.75, .25), so the first row moves half way there
+        assertArrayEquals(doubleArrayOf(0.875, 0.125), wm.weightMatrix.row(0), 1e-12)
+        assertArrayEquals(doubleArrayOf(0.0, 1.0), wm.weightMatrix.row(1))
+        assertArrayEquals(doubleArrayOf(0.5, 0.5), wm.weightMatrix.row(2))
+    }
+
+    @Test
+    fun `leaky learning moves the losers more slowly`() {
+        (wm.learningRule as CompetitiveRule).apply {
+            useLeakyLearning = true
+            leakyLearningRate = 0.1
+            normalizeInputs = false
+        }
+        input.activations = doubleArrayOf(1.0, 0.0).toMatrix()
+        net.update()
+        assertArrayEquals(doubleArrayOf(1.0, 0.0), wm.weightMatrix.row(0), 1e-12)
+        assertArrayEquals(doubleArrayOf(0.1, 0.9), wm.weightMatrix.row(1), 1e-12)
+        assertArrayEquals(doubleArrayOf(0.55, 0.45), wm.weightMatrix.row(2), 1e-12)
+    }
+
+    @Test
+    fun `synapse version matches the matrix version`() {
+        val inputs = List(2) { Neuron().apply { clamped = true } }
+        val winner = Neuron().apply { clamped = true; activation = 1.0 }
+        val synapses = inputs.map { Synapse(it, winner).apply { learningRule = CompetitiveRule().apply { learningRate = 0.5 } } }
+        net.addNetworkModels(inputs + winner + synapses)
+        synapses[0].strength = 1.0
+        synapses[1].strength = 0.0
+        inputs[0].activation = 3.0
+        inputs[1].activation = 1.0
+        input.activations = doubleArrayOf(3.0, 1.0).toMatrix()
+        net.update()
+        assertEquals(wm.weightMatrix[0, 0], synapses[0].strength, 1e-12)
+        assertEquals(wm.weightMatrix[0, 1], synapses[1].strength, 1e-12)
+    }
+}
@@ -25,4 +25,19 @@ class LayerTest {
         net.update()
         assertArrayEquals(doubleArrayOf(1.0,-1.0), wm.getSummedPSRs(), 0.0)
     }
+
+    @Test
+    fun `weight matrix entries read the source after their own delays`() {
+        na1.activations = Matrix.column(doubleArrayOf(1.0, 2.0))
+        na1.isClamped = true
+        wm.setWeights(arrayOf(doubleArrayOf(1.0, 1.0), doubleArrayOf(1.0, 1.0)))
+        wm.setDelays(arrayOf(intArrayOf(0, 2), intArrayOf(1, 0)))
+        val summed = List(3) {
+            net.update()
+            wm.getSummedPSRs().copyOf()
+        }
+        assertArrayEquals(doubleArrayOf(1.0, 2.0), summed[0], 0.0)
+        assertArrayEquals(doubleArrayOf(1.0, 3.0), summed[1], 0.0)
+        assertArrayEquals(doubleArrayOf(3.0, 3.0), summed[2], 0.0)
+    }
 }
\ No newline at end of file
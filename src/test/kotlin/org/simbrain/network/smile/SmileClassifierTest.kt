@@ -1,11 +1,17 @@
 package org.simbrain.network.smile
 
+import kotlinx.coroutines.job
+import kotlinx.coroutines.runBlocking
 import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.NeuronArray
 import org.simbrain.network.core.WeightMatrix
+import org.simbrain.network.smile.classifiers.KNNClassifier
 import org.simbrain.network.smile.classifiers.LogisticRegClassifier
 import org.simbrain.network.smile.classifiers.SVMClassifier
 import org.simbrain.util.Utils
@@ -75,6 +81,42 @@ class SmileClassifierTest {
         assertArrayEquals(doubleArrayOf(1.0, 0.0), xorSVM.outputNeuronGroup.activationArray)
     }
 
+    @Test
+    fun `batch predictions match single predictions`() {
+        val inputs = Matrix.of(svm.trainingData.featureVectors)
+        val expected = svm.trainingData.featureVectors.map { svm.predict(it) }.toIntArray()
+        assertArrayEquals(expected, xorSVM.predict(inputs))
+        assertArrayEquals(intArrayOf(-1, 1, 1, -1), svm.predict(svm.trainingData.featureVectors))
+    }
+
+    @Test
+    fun `background training swaps in the trained model`() {
+        val classifier = SmileClassifier(KNNClassifier(3, 2).apply {
+            k = 1
+            trainingData.featureVectors = svm.trainingData.featureVectors
+            trainingData.setIntegerTargets(intArrayOf(0, 1, 1, 0))
+        })
+        assertNull(classifier.classifier.model)
+        runBlocking { with(net) { classifier.trainInBackground() }.await() }
+        assertFalse(classifier.isTraining)
+        assertArrayEquals(intArrayOf(0, 1, 1, 0), classifier.predict(Matrix.of(svm.trainingData.featureVectors)))
+    }
+
+    @Test
+    fun `background training runs in the network's scope and stops when deleted`() {
+        val classifier = SmileClassifier(KNNClassifier(3, 2).apply {
+            trainingData.featureVectors = svm.trainingData.featureVectors
+            trainingData.setIntegerTargets(intArrayOf(0, 1, 1, 0))
+        })
+        val job = with(net) { classifier.trainInBackground() }
+        assertTrue(job.isCompleted || job in net.coroutineContext.job.children)
+        classifier.delete()
+        runBlocking { job.join() }
+        assertFalse(classifier.isTraining)
+        // Either training finished before the delete or its model was discarded
+        assertTrue(!job.isCancelled || classifier.classifier.model == null)
+    }
+
     @Test
     fun `test connections to neuron array`() {
 
@@ -1,10 +1,14 @@
 package org.simbrain.network.subnetworks
 
+import kotlinx.coroutines.runBlocking
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.getModelByLabel
 import org.simbrain.network.core.getNetworkXStream
+import org.simbrain.network.trainers.SupervisedTrainer
+import org.simbrain.network.updaterules.ContinuousSigmoidalRule
+import org.simbrain.network.updaterules.ProductRule
 
 class BackpropTest {
 
@@ -24,4 +28,17 @@ class BackpropTest {
         Assertions.assertNotNull(fromXml.getModelByLabel(BackpropNetwork::class.java, "backprop"))
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `batch training falls back to rows for rules that cannot be batched`() {
+        bp.layerList[1].updateRule = ProductRule()
+        bp.layerList[2].updateRule = ContinuousSigmoidalRule()
+        bp.trainer.updateType = SupervisedTrainer.UpdateMethod.Batch(2)
+        with(net) {
+            runBlocking {
+                bp.trainer.run { bp.train(3) }
+            }
+        }
+        Assertions.assertFalse(bp.trainer.lastError.isNaN())
+    }
+
+}
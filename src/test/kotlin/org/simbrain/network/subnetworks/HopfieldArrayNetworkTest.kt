@@ -0,0 +1,93 @@
+package org.simbrain.network.subnetworks
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import smile.math.matrix.Matrix
+import kotlin.random.Random
+
+class HopfieldArrayNetworkTest {
+
+    val net = Network()
+    val hopfield = HopfieldArrayNetwork(64)
+
+    init {
+        net.addNetworkModel(hopfield)
+    }
+
+    /**
+     * Four random bipolar patterns, well under the capacity of all the learning rules.
+     */
+    private val patterns = Random(1).let { random ->
+        Matrix.of(Array(4) { DoubleArray(64) { if (random.nextBoolean()) 1.0 else -1.0 } })
+    }
+
+    private fun expectedEnergy(): Double {
+        val w = hopfield.weights.weightMatrix
+        val s = hopfield.neurons.activations.col(0)
+        val h = w.mv(s)
+        return -0.5 * s.indices.sumOf { s[it] * h[it] }
+    }
+
+    @Test
+    fun `stored patterns are fixed points`() {
+        HopfieldArrayNetwork.LearningRule.values().forEach { rule ->
+            hopfield.learningRule = rule
+            hopfield.storePatterns(patterns)
+            for (p in 0 until patterns.nrow()) {
+                val pattern = patterns.row(p)
+                assertArrayEquals(pattern, with(net) { hopfield.recall(pattern, 1) }, rule.toString())
+            }
+        }
+    }
+
+    @Test
+    fun `noisy patterns are recalled`() {
+        val random = Random(2)
+        HopfieldArrayNetwork.UpdateFunction.values().forEach { updateFunction ->
+            hopfield.updateFunction = updateFunction
+            hopfield.storePatterns(patterns)
+            val pattern = patterns.row(0)
+            val noisy = pattern.copyOf()
+            repeat(6) { noisy[random.nextInt(noisy.size)] *= -1 }
+            assertArrayEquals(pattern, with(net) { hopfield.recall(noisy) }, updateFunction.toString())
+        }
+    }
+
+    @Test
+    fun `patterns added one at a time are fixed points`() {
+        HopfieldArrayNetwork.LearningRule.values().forEach { rule ->
+            hopfield.learningRule = rule
+            hopfield.weights.weightMatrix.fill(0.0)
+            for (p in 0 until patterns.nrow()) {
+                hopfield.neurons.setActivations(patterns.row(p))
+                with(net) { hopfield.trainOnCurrentPattern() }
+            }
+            for (p in 0 until patterns.nrow()) {
+                val pattern = patterns.row(p)
+                assertArrayEquals(pattern, with(net) { hopfield.recall(pattern, 1) }, rule.toString())
+            }
+        }
+    }
+
+    @Test
+    fun `tracked energy matches energy of the state`() {
+        hopfield.randomize()
+        hopfield.neurons.setActivations(DoubleArray(64) { if (it % 3 == 0) 1.0 else -1.0 })
+        HopfieldArrayNetwork.UpdateFunction.values().forEach { updateFunction ->
+            hopfield.updateFunction = updateFunction
+            var previous = hopfield.energy
+            repeat(5) {
+                with(net) { hopfield.update() }
+                assertEquals(expectedEnergy(), hopfield.energy, 1e-9)
+                // Asynchronous updates never increase the energy
+                if (updateFunction != HopfieldArrayNetwork.UpdateFunction.SYNC) {
+                    assertTrue(hopfield.energy <= previous + 1e-9)
+                }
+                previous = hopfield.energy
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.getModelByLabel
 import org.simbrain.network.core.getNetworkXStream
+import smile.math.matrix.Matrix
 
 class RBMTest {
 
@@ -24,4 +25,49 @@ class RBMTest {
         Assertions.assertNotNull(fromXml.getModelByLabel(RestrictedBoltzmannMachine::class.java, "RBM"))
     }
 
-}
\ No newline at end of file
+    private fun trainedError(machine: RestrictedBoltzmannMachine): Pair<Double, Double> {
+        val patterns = arrayOf(
+            doubleArrayOf(1.0, 1.0, 1.0, 0.0, 0.0, 0.0),
+            doubleArrayOf(0.0, 0.0, 0.0, 1.0, 1.0, 1.0)
+        )
+        machine.inputData = Matrix.of(Array(20) { patterns[it % 2] })
+        machine.trainer.learningRate = 0.1
+        with(net) { machine.trainOnInputData() }
+        val first = machine.reconstructionError!!
+        repeat(300) { with(net) { machine.trainOnInputData() } }
+        return first to machine.reconstructionError!!
+    }
+
+    @Test
+    fun `batched contrastive divergence reduces reconstruction error`() {
+        val rbm = RestrictedBoltzmannMachine(6, 4).apply { batchSize = 5; gibbsSteps = 2 }
+        net.addNetworkModels(rbm)
+        val (first, last) = trainedError(rbm)
+        Assertions.assertTrue(last < first)
+    }
+
+    @Test
+    fun `persistent contrastive divergence reduces reconstruction error`() {
+        val rbm = RestrictedBoltzmannMachine(6, 4).apply { batchSize = 5; persistent = true }
+        net.addNetworkModels(rbm)
+        val (first, last) = trainedError(rbm)
+        Assertions.assertTrue(last < first)
+    }
+
+    @Test
+    fun `persistent chains keep the full batch size across short batches`() {
+        val rbm = RestrictedBoltzmannMachine(6, 4).apply { batchSize = 6; persistent = true }
+        net.addNetworkModels(rbm)
+        rbm.inputData = Matrix.of(Array(20) { DoubleArray(6) { j -> if (j < 3 == (it % 2 == 0)) 1.0 else 0.0 } })
+        with(net) { rbm.trainOnInputData() }
+        val chains = rbm.persistentChains!!
+        Assertions.assertEquals(6, chains.ncol())
+        with(net) { rbm.trainOnInputData() }
+        Assertions.assertSame(chains, rbm.persistentChains)
+
+        rbm.batchSize = 30
+        with(net) { rbm.trainOnInputData() }
+        Assertions.assertEquals(30, rbm.persistentChains!!.ncol())
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.simbrain.network.subnetworks
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import smile.math.matrix.Matrix
+import kotlin.random.Random
+
+class SOMArrayNetworkTest {
+
+    val net = Network()
+    val som = SOMArrayNetwork(3, 25)
+
+    init {
+        net.addNetworkModel(som)
+    }
+
+    /**
+     * Two clusters of points, around (0,0,0) and (1,1,1).
+     */
+    private val clusters = Random(1).let { random ->
+        Matrix.of(Array(200) { i ->
+            val center = if (i % 2 == 0) 0.0 else 1.0
+            DoubleArray(3) { center + random.nextDouble(-0.05, 0.05) }
+        })
+    }
+
+    private fun quantizationError(data: Matrix): Double {
+        val winners = som.findWinners(data)
+        val w = som.weights.weightMatrix
+        return (0 until data.nrow()).sumOf { i ->
+            (0 until data.ncol()).sumOf { k -> (data[i, k] - w[winners[i], k]).let { it * it } }
+        } / data.nrow()
+    }
+
+    @Test
+    fun `winners match brute force search`() {
+        val w = som.weights.weightMatrix
+        val winners = som.findWinners(clusters)
+        for (i in 0 until clusters.nrow()) {
+            val expected = (0 until w.nrow()).minBy { unit ->
+                (0 until w.ncol()).sumOf { k -> (clusters[i, k] - w[unit, k]).let { it * it } }
+            }
+            assertEquals(expected, winners[i])
+        }
+    }
+
+    @Test
+    fun `update activates only the winner`() {
+        som.inputLayer.setActivations(doubleArrayOf(1.0, 1.0, 1.0))
+        with(net) { som.update() }
+        val activations = som.mapLayer.activations.col(0)
+        assertEquals(1.0, activations.sum())
+        assertEquals(1.0, activations[som.winner])
+    }
+
+    @Test
+    fun `batch training separates clusters`() {
+        som.inputData = clusters
+        som.batchMode = true
+        som.initialNeighborhoodSize = 1.0
+        som.neighborhoodDecayAmount = 0.1
+        som.reset()
+        val before = quantizationError(clusters)
+        repeat(20) { with(net) { som.trainOnInputData() } }
+        assertTrue(quantizationError(clusters) < before)
+        assertTrue(quantizationError(clusters) < 0.01)
+        val winners = som.findWinners(clusters)
+        assertNotEquals(winners[0], winners[1])
+    }
+
+    @Test
+    fun `online training reduces quantization error`() {
+        som.inputData = clusters
+        som.trainer.learningRate = 0.5
+        som.reset()
+        val before = quantizationError(clusters)
+        repeat(5) { with(net) { som.trainOnInputData() } }
+        assertTrue(quantizationError(clusters) < before)
+    }
+}
@@ -5,7 +5,14 @@ import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.getModelByLabel
+import org.simbrain.network.core.biases
 import org.simbrain.network.core.getNetworkXStream
+import org.simbrain.network.trainers.MatrixDataset
+import org.simbrain.network.trainers.SupervisedTrainer
+import org.simbrain.network.trainers.trainTruncatedBPTT
+import org.simbrain.network.updaterules.ContinuousSigmoidalRule
+import org.simbrain.util.copyFrom
+import smile.math.matrix.Matrix
 
 class SRNTest {
 
@@ -43,4 +50,69 @@ class SRNTest {
         Assertions.assertNotNull(fromXml.getModelByLabel(SRNNetwork::class.java, "SRN"))
     }
 
-}
\ No newline at end of file
+    /**
+     * A repeating sequence of one-hot patterns, 0, 1, 0, 2, ..., with each row's target the next pattern.
+     */
+    private fun sequenceDataset(length: Int): MatrixDataset {
+        val order = intArrayOf(0, 1, 0, 2)
+        val inputs = Matrix(length, 3)
+        val targets = Matrix(length, 3)
+        for (t in 0 until length) {
+            inputs[t, order[t % 4]] = 1.0
+            targets[t, order[(t + 1) % 4]] = 1.0
+        }
+        return MatrixDataset(inputs, targets)
+    }
+
+    @Test
+    fun `truncated BPTT reduces error on a sequence`() {
+        val data = sequenceDataset(200)
+        srn.randomize()
+        val initialError = runBlocking { srn.trainTruncatedBPTT(data, 4, 4, 0.1) }.sum()
+        var error = initialError
+        repeat(300) {
+            error = runBlocking { srn.trainTruncatedBPTT(data, 4, 4, 0.1) }.sum()
+        }
+        Assertions.assertTrue(error < initialError / 2, "Error went from $initialError to $error")
+    }
+
+    @Test
+    fun `streams trained in parallel chunks match one chunk`() {
+        val data = sequenceDataset(64)
+        srn.randomize()
+        val matrices = listOf(srn.wmList[0], srn.wmList[1], srn.contextToHidden)
+        val initialWeights = matrices.map { it.weightMatrix.clone() }
+        val initialBiases = listOf(srn.hiddenLayer.biases.clone(), srn.outputLayer.biases.clone())
+
+        val oneChunk = runBlocking { srn.trainTruncatedBPTT(data, 5, 8, 0.1, minStreamsPerChunk = 8) }
+        val oneChunkWeights = matrices.map { it.weightMatrix.clone() }
+
+        matrices.zip(initialWeights).forEach { (wm, w) -> wm.weightMatrix.copyFrom(w) }
+        srn.hiddenLayer.biases.copyFrom(initialBiases[0])
+        srn.outputLayer.biases.copyFrom(initialBiases[1])
+        val chunked = runBlocking { srn.trainTruncatedBPTT(data, 5, 8, 0.1, minStreamsPerChunk = 1) }
+
+        Assertions.assertArrayEquals(oneChunk, chunked, 1e-9)
+        matrices.zip(oneChunkWeights).forEach { (wm, w) ->
+            for (i in 0 until w.nrow()) {
+                Assertions.assertArrayEquals(w.row(i), wm.weightMatrix.row(i), 1e-9)
+            }
+        }
+    }
+
+    @Test
+    fun `sequence training falls back to rows for rules that cannot be batched`() {
+        srn.hiddenLayer.updateRule = ContinuousSigmoidalRule()
+        srn.trainer.updateType = SupervisedTrainer.UpdateMethod.Sequence(4, 2)
+        with(net) {
+            runBlocking {
+                srn.trainer.run { srn.train(3) }
+            }
+        }
+        Assertions.assertFalse(srn.trainer.lastError.isNaN())
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            runBlocking { srn.trainTruncatedBPTT(sequenceDataset(8), 4) }
+        }
+    }
+
+}
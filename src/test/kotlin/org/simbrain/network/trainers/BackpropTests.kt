@@ -1,17 +1,29 @@
 package org.simbrain.network.trainers
 
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.NeuronArray
 import org.simbrain.network.core.WeightMatrix
+import org.simbrain.network.core.biases
 import org.simbrain.network.core.randomizeBiases
 import org.simbrain.network.updaterules.LinearRule
+import org.simbrain.network.updaterules.ProductRule
 import org.simbrain.network.updaterules.SigmoidalRule
 import org.simbrain.network.updaterules.interfaces.BoundedUpdateRule
+import org.simbrain.network.util.BiasedMatrixData
+import org.simbrain.util.copyFrom
+import org.simbrain.util.flatten
 import org.simbrain.util.math.SigmoidFunctionEnum
+import org.simbrain.util.rowsAsColumns
 import org.simbrain.util.sse
 import org.simbrain.util.toMatrix
+import smile.math.matrix.Matrix
+import kotlin.random.Random
 
 class BackpropTests {
 
@@ -131,6 +143,94 @@ class BackpropTests {
         }
     }
 
+    @Test
+    fun `test batch backprop`() {
+        val dataset = MatrixDataset(
+            arrayOf(doubleArrayOf(0.0, 1.0), doubleArrayOf(1.0, 0.0)).toMatrix(),
+            arrayOf(doubleArrayOf(-1.0, 0.5), doubleArrayOf(0.5, -0.5)).toMatrix()
+        )
+        wm1.randomize()
+        wm2.randomize()
+        na2.randomizeBiases()
+        na3.randomizeBiases()
+        var rowErrors = DoubleArray(2)
+        runBlocking {
+            repeat(500) {
+                rowErrors = listOf(wm1, wm2).trainBatch(dataset, intArrayOf(0, 1), .05)
+            }
+        }
+        assertEquals(0.0, rowErrors.sum(), .01)
+    }
+
+    @Test
+    fun `test batch gradients match when split`() {
+        val inputs = arrayOf(doubleArrayOf(0.0, 1.0), doubleArrayOf(1.0, 0.0), doubleArrayOf(1.0, 1.0)).toMatrix()
+        val targets = arrayOf(doubleArrayOf(-1.0, 0.5), doubleArrayOf(0.5, -0.5), doubleArrayOf(0.0, 0.0)).toMatrix()
+        wm1.randomize()
+        wm2.randomize()
+        val whole = listOf(wm1, wm2).batchGradients(inputs.rowsAsColumns(intArrayOf(0, 1, 2)),
+            targets.rowsAsColumns(intArrayOf(0, 1, 2)))
+        val split = listOf(wm1, wm2).batchGradients(inputs.rowsAsColumns(intArrayOf(0, 1)),
+            targets.rowsAsColumns(intArrayOf(0, 1)))
+            .accumulate(listOf(wm1, wm2).batchGradients(inputs.rowsAsColumns(intArrayOf(2)),
+                targets.rowsAsColumns(intArrayOf(2))))
+        (whole.weightDeltas zip split.weightDeltas).forEach { (a, b) ->
+            assertArrayEquals(a.flatten(), b.flatten(), 1e-9)
+        }
+        assertArrayEquals(whole.sampleErrors, split.sampleErrors, 1e-9)
+    }
+
+    @Test
+    fun `test batch gradients equal the summed row by row backprop changes`() {
+        listOf(na2, na3).forEach { (it.updateRule as LinearRule).clippingType = LinearRule.ClippingType.NoClipping }
+        val inputs = arrayOf(doubleArrayOf(0.0, 1.0), doubleArrayOf(1.0, 0.0), doubleArrayOf(0.5, -1.0)).toMatrix()
+        val targets = arrayOf(doubleArrayOf(-1.0, 0.5), doubleArrayOf(0.5, -0.5), doubleArrayOf(0.2, 0.3)).toMatrix()
+        wm1.randomize()
+        wm2.randomize()
+        na2.randomizeBiases()
+        na3.randomizeBiases()
+        val chain = listOf(wm1, wm2)
+        val layers = listOf(na2, na3)
+        val weights = chain.map { it.weightMatrix.clone() }
+        val biases = layers.map { it.biases.clone() }
+        val weightChanges = weights.map { Matrix(it.nrow(), it.ncol()) }
+        val biasChanges = biases.map { Matrix(it.nrow(), 1) }
+
+        // Backprop one row at a time with a learning rate of 1, restoring the weights after each row
+        with(net) {
+            for (row in 0 until inputs.nrow()) {
+                chain.forwardPass(inputs.row(row).toMatrix())
+                chain.backpropError(targets.row(row).toMatrix(), 1.0)
+                chain.forEachIndexed { l, wm ->
+                    weightChanges[l].add(wm.weightMatrix.clone().sub(weights[l]))
+                    wm.weightMatrix.copyFrom(weights[l])
+                    biasChanges[l].add(layers[l].biases.clone().sub(biases[l]))
+                    (layers[l].dataHolder as BiasedMatrixData).biases = biases[l].clone()
+                }
+            }
+        }
+
+        val rows = intArrayOf(0, 1, 2)
+        val batch = chain.batchGradients(inputs.rowsAsColumns(rows), targets.rowsAsColumns(rows))
+        (batch.weightDeltas zip weightChanges).forEach { (a, b) -> assertArrayEquals(b.flatten(), a.flatten(), 1e-9) }
+        (batch.biasDeltas zip biasChanges).forEach { (a, b) -> assertArrayEquals(b.flatten(), a.flatten(), 1e-9) }
+    }
+
+    @Test
+    fun `test batch gradients with noise depend only on the generator`() {
+        na2.updateRule = SigmoidalRule().apply {
+            addNoise = true
+        }
+        val inputs = arrayOf(doubleArrayOf(0.0, 1.0), doubleArrayOf(1.0, 0.0)).toMatrix().rowsAsColumns(intArrayOf(0, 1))
+        val targets = arrayOf(doubleArrayOf(-1.0, 0.5), doubleArrayOf(0.5, -0.5)).toMatrix().rowsAsColumns(intArrayOf(0, 1))
+        val first = listOf(wm1, wm2).batchGradients(inputs, targets, Random(42))
+        val second = listOf(wm1, wm2).batchGradients(inputs, targets, Random(42))
+        assertArrayEquals(first.sampleErrors, second.sampleErrors, 0.0)
+        assertTrue(listOf(wm1, wm2).supportsBatchTraining)
+        na3.updateRule = ProductRule()
+        assertFalse(listOf(wm1, wm2).supportsBatchTraining)
+    }
+
     @Test
     fun `test backprop on weight matrix tree`() {
         with(net) {
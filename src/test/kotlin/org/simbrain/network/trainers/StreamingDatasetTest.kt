@@ -0,0 +1,81 @@
+package org.simbrain.network.trainers
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Test
+import java.io.File
+
+class StreamingDatasetTest {
+
+    private val rows = (0 until 100).map { doubleArrayOf(it.toDouble(), it * 2.0, -it.toDouble()) }
+
+    private fun csvFile() = File.createTempFile("streaming", ".csv").apply {
+        deleteOnExit()
+        writeText("# comment\n" + rows.joinToString("\n") { it.joinToString(",") })
+    }
+
+    private fun binaryFile() = File.createTempFile("streaming", ".bin").apply {
+        deleteOnExit()
+        writeBinaryRows(this, 3, rows.asSequence())
+    }
+
+    /**
+     * Returns the first input of each sample in the order they were read.
+     */
+    private fun readEpoch(dataset: StreamingDataset): List<Double> {
+        val firstInputs = mutableListOf<Double>()
+        runBlocking {
+            dataset.forEachBatch { batch ->
+                assertEquals(2, batch.inputs.nrow())
+                assertEquals(1, batch.targets.nrow())
+                for (j in 0 until batch.size) {
+                    assertEquals(batch.inputs[0, j] * 2, batch.inputs[1, j])
+                    assertEquals(-batch.inputs[0, j], batch.targets[0, j])
+                    firstInputs.add(batch.inputs[0, j])
+                }
+            }
+        }
+        return firstInputs
+    }
+
+    @Test
+    fun `csv epoch contains every row once`() {
+        val dataset = StreamingDataset(DatasetFile.Csv(csvFile()), numInputs = 2, batchSize = 16, shuffleBufferSize = 10)
+        val firstInputs = readEpoch(dataset)
+        assertEquals(rows.map { it[0] }, firstInputs.sorted())
+    }
+
+    @Test
+    fun `no shuffle buffer reads rows in file order`() {
+        val dataset = StreamingDataset(DatasetFile.Csv(csvFile()), numInputs = 2, batchSize = 16, shuffleBufferSize = 0)
+        assertEquals(rows.map { it[0] }, readEpoch(dataset))
+    }
+
+    @Test
+    fun `binary epoch contains every row once`() {
+        val file = DatasetFile.Binary(binaryFile())
+        assertEquals(3, file.numColumns)
+        assertEquals(100L, file.numRows)
+        val dataset = StreamingDataset(file, numInputs = 2, batchSize = 7)
+        assertEquals(rows.map { it[0] }, readEpoch(dataset).sorted())
+    }
+
+    @Test
+    fun `epochs are shuffled differently`() {
+        val dataset = StreamingDataset(DatasetFile.Binary(binaryFile()), numInputs = 2, seed = 42)
+        val first = readEpoch(dataset)
+        val second = readEpoch(dataset)
+        assertNotEquals(first, second)
+        assertEquals(first.sorted(), second.sorted())
+    }
+
+    @Test
+    fun `binary rows round trip`() {
+        DatasetFile.Binary(binaryFile()).openRows().use { reader ->
+            rows.forEach { assertArrayEquals(it, reader.next()) }
+            assertEquals(false, reader.hasNext())
+        }
+    }
+}
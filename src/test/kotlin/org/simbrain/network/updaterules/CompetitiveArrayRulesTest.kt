@@ -0,0 +1,107 @@
+package org.simbrain.network.updaterules
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.NeuronArray
+import org.simbrain.network.core.WeightMatrix
+import org.simbrain.util.selectKthLargest
+import org.simbrain.util.toMatrix
+import kotlin.random.Random
+
+class CompetitiveArrayRulesTest {
+
+    val net = Network()
+    val input = NeuronArray(5)
+    val output = NeuronArray(5)
+    val wm = WeightMatrix(input, output)
+
+    init {
+        net.addNetworkModels(input, output, wm)
+        input.isClamped = true
+    }
+
+    private fun setInputs(vararg values: Double) {
+        input.activations = values.toMatrix()
+    }
+
+    @Test
+    fun `winner take all activates the node with the most input`() {
+        output.updateRule = WinnerTakeAllRule()
+        setInputs(0.1, 0.7, -2.0, 0.3, 0.5)
+        net.update()
+        assertArrayEquals(doubleArrayOf(0.0, 1.0, 0.0, 0.0, 0.0), output.activationArray)
+        assertEquals(1, (output.updateRule as WinnerTakeAllRule).winner)
+    }
+
+    @Test
+    fun `winner take all breaks ties randomly`() {
+        output.updateRule = WinnerTakeAllRule()
+        setInputs(1.0, 1.0, 0.0, 1.0, 0.0)
+        val winners = (0..100).map {
+            net.update()
+            (output.updateRule as WinnerTakeAllRule).winner
+        }.toSet()
+        assertEquals(setOf(0, 1, 3), winners)
+    }
+
+    @Test
+    fun `kwta activates the k nodes with the most input`() {
+        output.updateRule = KWTARule().apply { k = 2 }
+        setInputs(0.1, 0.7, -2.0, 0.3, 0.5)
+        net.update()
+        assertArrayEquals(doubleArrayOf(0.0, 1.0, 0.0, 0.0, 1.0), output.activationArray)
+    }
+
+    @Test
+    fun `kwta activates exactly k nodes when inputs tie`() {
+        output.updateRule = KWTARule().apply { k = 3 }
+        setInputs(1.0, 0.5, 0.5, 0.5, 0.0)
+        net.update()
+        assertArrayEquals(doubleArrayOf(1.0, 1.0, 1.0, 0.0, 0.0), output.activationArray)
+    }
+
+    @Test
+    fun `selection matches sorting`() {
+        val random = Random(1)
+        val values = DoubleArray(1000) { random.nextInt(100).toDouble() }
+        val sorted = values.sortedArrayDescending()
+        for (k in listOf(1, 2, 10, 500, 1000)) {
+            assertEquals(sorted[k - 1], values.copyOf().selectKthLargest(k, random))
+        }
+    }
+
+    @Test
+    fun `softmax sums to 1 and does not overflow`() {
+        output.updateRule = SoftmaxRule()
+        setInputs(1000.0, 999.0, 0.0, -1000.0, 998.0)
+        net.update()
+        val activations = output.activationArray
+        assertEquals(1.0, activations.sum(), 1e-12)
+        assertTrue(activations.none { it.isNaN() })
+        assertTrue(activations[0] > activations[1] && activations[1] > activations[4])
+    }
+
+    @Test
+    fun `softmax temperature flattens the distribution`() {
+        output.updateRule = SoftmaxRule()
+        setInputs(1.0, 0.0, 0.0, 0.0, 0.0)
+        net.update()
+        val sharp = output.activationArray[0]
+        output.updateRule = SoftmaxRule().apply { temperature = 10.0 }
+        net.update()
+        assertTrue(output.activationArray[0] < sharp)
+    }
+
+    @Test
+    fun `softmax with zero temperature picks the largest input`() {
+        output.updateRule = SoftmaxRule().apply { temperature = 0.0 }
+        setInputs(1.0, 3.0, 2.0, 0.0, -1.0)
+        net.update()
+        val activations = output.activationArray
+        assertTrue(activations.none { it.isNaN() })
+        assertEquals(1.0, activations[1], 1e-9)
+    }
+}
@@ -1,12 +1,16 @@
 package org.simbrain.network.updaterules
 
 import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.NeuronArray
 import org.simbrain.network.core.WeightMatrix
 import org.simbrain.network.util.BiasedMatrixData
 import org.simbrain.util.linspace
+import org.simbrain.util.stats.distributions.UniformRealDistribution
 import org.simbrain.util.toDoubleArray
 import org.simbrain.util.toMatrix
 
@@ -134,4 +138,20 @@ class LinearRuleArrayTest {
         lr.clippingType = LinearRule.ClippingType.PiecewiseLinear
         assertArrayEquals(doubleArrayOf(0.0,1.0,1.0,0.0), lr.getDerivative(array).toDoubleArray())
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `test noise is sampled in bulk into a reused buffer`() {
+        (output.updateRule as LinearRule).apply {
+            addNoise = true
+            noiseGenerator = UniformRealDistribution(1.0, 2.0)
+        }
+        net.update()
+        // Net input is 0, so activations are the noise
+        assertTrue(output.activationArray.all { it >= 1.0 && it < 2.0 })
+        assertNotEquals(output.activationArray[0], output.activationArray[1])
+        with(net) {
+            val buffer = output.sampleNoise(UniformRealDistribution())
+            assertSame(buffer, output.sampleNoise(UniformRealDistribution()))
+        }
+    }
+}
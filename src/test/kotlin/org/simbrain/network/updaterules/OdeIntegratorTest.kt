@@ -0,0 +1,111 @@
+package org.simbrain.network.updaterules
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.exp
+
+class OdeIntegratorTest {
+
+    /**
+     * dy/dt = -y
+     */
+    private val decay = OdeSystem { _, y, dydt, decay ->
+        dydt[0] = -y[0]
+        decay?.set(0, 1.0)
+    }
+
+    private fun OdeIntegrator.solve(system: OdeSystem, y0: Double, dt: Double, steps: Int): Double {
+        val y = doubleArrayOf(y0)
+        repeat(steps) { integrate(system, y, it * dt, dt) }
+        return y[0]
+    }
+
+    @Test
+    fun `integrators follow exponential decay`() {
+        val expected = exp(-1.0)
+        assertEquals(expected, OdeIntegrator.Euler().solve(decay, 1.0, .01, 100), 1e-2)
+        assertEquals(expected, OdeIntegrator.RungeKutta4().solve(decay, 1.0, .01, 100), 1e-9)
+        assertEquals(expected, OdeIntegrator.ExponentialEuler().solve(decay, 1.0, .01, 100), 1e-12)
+        assertEquals(expected, OdeIntegrator.AdaptiveRungeKutta45().solve(decay, 1.0, .01, 100), 1e-5)
+    }
+
+    @Test
+    fun `exponential euler relaxes a fast gating variable exactly`() {
+        // dx/dt = α(1 - x) - βx with α = β = 50 relaxes to 0.5, far faster than the time step
+        val gate = OdeSystem { _, y, dydt, decay ->
+            dydt[0] = 50 * (1 - y[0]) - 50 * y[0]
+            decay?.set(0, 100.0)
+        }
+        assertEquals(.5, OdeIntegrator.ExponentialEuler().solve(gate, 0.0, 1.0, 3), 1e-12)
+        assertTrue(abs(OdeIntegrator.Euler().solve(gate, 0.0, 1.0, 3)) > 1e5)
+    }
+
+    @Test
+    fun `adaptive steps keep a stiff system accurate with a coarse time step`() {
+        // y is pulled hard towards cos(t), so it follows cos(t) closely. Euler is unstable at this time step.
+        val stiff = OdeSystem { t, y, dydt, _ -> dydt[0] = -1000 * (y[0] - cos(t)) }
+        assertEquals(cos(1.0), OdeIntegrator.AdaptiveRungeKutta45().solve(stiff, 1.0, .1, 10), 2e-3)
+        assertTrue(abs(OdeIntegrator.Euler().solve(stiff, 1.0, .1, 10)) > 1e5)
+    }
+
+    @Test
+    fun `copies keep their settings`() {
+        val rk45 = OdeIntegrator.AdaptiveRungeKutta45(tolerance = 1e-6, maxSubsteps = 50)
+        val copy = rk45.copy()
+        assertEquals(1e-6, copy.tolerance)
+        assertEquals(50, copy.maxSubsteps)
+        assertTrue(OdeIntegrator.ExponentialEuler().copy() is OdeIntegrator.ExponentialEuler)
+    }
+
+    @Test
+    fun `hodgkin huxley with exponential euler stays finite at a coarse time step`() {
+        val net = Network()
+        val rule = HodgkinHuxleyRule()
+        val neuron = Neuron(rule)
+        net.addNetworkModel(neuron)
+        net.timeStep = .1
+        repeat(500) {
+            net.update()
+            assertTrue(neuron.activation.isFinite())
+        }
+        assertTrue(rule.n in 0.0..1.0 && rule.m in 0.0..1.0 && rule.h in 0.0..1.0)
+    }
+
+    @Test
+    fun `fitzhugh nagumo follows its semi-implicit euler trajectory by default`() {
+        val net = Network()
+        val rule = FitzhughNagumo()
+        val neuron = Neuron(rule)
+        net.addNetworkModel(neuron)
+        neuron.activation = 0.5
+        var v = 0.5
+        var w = 0.0
+        repeat(200) {
+            net.update()
+            w += net.timeStep * (rule.a * (rule.b * v + 0.7 - rule.c * w))
+            v += net.timeStep * (v - v * v * v / 3 - w)
+            assertEquals(v, neuron.activation, 1e-12)
+            assertEquals(w, (neuron.dataHolder as FitzHughData).w, 1e-12)
+        }
+    }
+
+    @Test
+    fun `adaptive steps cut short at the end of a network step do not shrink the next one`() {
+        // With a loose tolerance the first sub-step covers the whole interval, then is cut to fit the next one
+        val rk45 = OdeIntegrator.AdaptiveRungeKutta45(tolerance = 1.0)
+        var evaluations = 0
+        val counted = OdeSystem { t, y, dydt, d -> evaluations++; decay.derivatives(t, y, dydt, d) }
+        val y = doubleArrayOf(1.0)
+        rk45.integrate(counted, y, 0.0, 1.0)
+        rk45.integrate(counted, y, 1.0, 0.01)
+        evaluations = 0
+        rk45.integrate(counted, y, 1.01, 1.0)
+        // One step of seven evaluations, as the step size was not reduced to 0.01
+        assertEquals(7, evaluations)
+    }
+}
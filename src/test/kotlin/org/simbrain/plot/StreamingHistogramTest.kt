@@ -0,0 +1,108 @@
+package org.simbrain.plot
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.plot.histogram.HistogramModel
+import org.simbrain.plot.histogram.StreamingHistogram
+import org.simbrain.util.stats.QuantileSketch
+import kotlin.math.abs
+import kotlin.random.Random
+
+class StreamingHistogramTest {
+
+    @Test
+    fun `counts accumulate across batches`() {
+        val hist = StreamingHistogram(10)
+        hist.addAll(doubleArrayOf(0.0, 1.0, 2.0, 3.0))
+        hist.addAll(doubleArrayOf(0.5, 2.5))
+        assertEquals(6, hist.count)
+        assertEquals(6L, (0 until hist.numBins).sumOf { hist.getCount(it) })
+    }
+
+    @Test
+    fun `adaptive bins widen to fit new values`() {
+        val hist = StreamingHistogram(4)
+        hist.setRange(0.0, 4.0)
+        hist.addAll(doubleArrayOf(0.5, 1.5, 2.5, 3.5))
+        hist.add(7.0)
+        hist.add(-3.0)
+        assertEquals(4, hist.numBins)
+        assertEquals(6, hist.count)
+        assertEquals(true, hist.lowerBound <= -3.0 && hist.upperBound > 7.0)
+        assertEquals(6L, (0 until hist.numBins).sumOf { hist.getCount(it) })
+    }
+
+    @Test
+    fun `fixed bins clamp values outside the range`() {
+        val hist = StreamingHistogram(4, adaptive = false)
+        hist.setRange(0.0, 4.0)
+        hist.addAll(doubleArrayOf(-10.0, 10.0, 1.5))
+        assertEquals(1L, hist.getCount(0))
+        assertEquals(1L, hist.getCount(1))
+        assertEquals(1L, hist.getCount(3))
+        assertEquals(4.0, hist.upperBound)
+    }
+
+    @Test
+    fun `rebinning preserves the total count`() {
+        val hist = StreamingHistogram(10)
+        hist.addAll(DoubleArray(1000) { it.toDouble() })
+        hist.rebin(7)
+        assertEquals(7, hist.numBins)
+        assertEquals(1000L, (0 until hist.numBins).sumOf { hist.getCount(it) })
+    }
+
+    @Test
+    fun `sketch quantiles are within relative accuracy`() {
+        val random = Random(1)
+        val values = DoubleArray(100_000) { random.nextDouble(-5.0, 100.0) }
+        val sketch = QuantileSketch(0.01)
+        sketch.addAll(values)
+        val sorted = values.sortedArray()
+        for (q in listOf(0.1, 0.25, 0.5, 0.9, 0.99)) {
+            val exact = sorted[((sorted.size - 1) * q).toInt()]
+            assertEquals(exact, sketch.quantile(q), abs(exact) * 0.01 + 1e-9)
+        }
+    }
+
+    @Test
+    fun `merged sketches match a single sketch`() {
+        val values = DoubleArray(10_000) { it - 5000.0 }
+        val whole = QuantileSketch().apply { addAll(values) }
+        val first = QuantileSketch().apply { addAll(values.copyOfRange(0, 3000)) }
+        val second = QuantileSketch().apply { addAll(values.copyOfRange(3000, values.size)) }
+        first.merge(second)
+        assertEquals(whole.count, first.count)
+        for (q in listOf(0.05, 0.5, 0.95)) {
+            assertEquals(whole.quantile(q), first.quantile(q))
+        }
+    }
+
+    @Test
+    fun `streaming model accumulates counts`() {
+        val model = HistogramModel(bins = 5)
+        model.resetData(mutableListOf(doubleArrayOf(1.0, 2.0, 3.0)), mutableListOf("Hist 1"))
+        // Turning streaming on starts from the current data
+        model.streaming = true
+        model.addDataToDataSeries(doubleArrayOf(1.0, 2.0, 3.0), 0)
+        assertEquals(0, model.data[0].size)
+        val bins = model.seriesData.first().data
+        assertEquals(5, bins.size)
+        assertEquals(6, bins.sumOf { it.count })
+        assertEquals(2.0, model.quantile(0, 0.5), 0.5)
+        model.resetData()
+        assertEquals(0, model.seriesData.size)
+    }
+
+    @Test
+    fun `streaming settings apply to existing histograms`() {
+        val model = HistogramModel(bins = 5)
+        model.streaming = true
+        model.addDataToDataSeries(doubleArrayOf(1.0, 2.0, 3.0), 0)
+        val hist = model.getStreamingHistogram(0)
+        model.adaptiveBins = false
+        model.trackQuantiles = true
+        assertEquals(false, hist.adaptive)
+        assertEquals(true, hist.trackQuantiles)
+    }
+}
@@ -0,0 +1,61 @@
+package org.simbrain.plot
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.plot.timeseries.TimeSeriesBuffer
+
+class TimeSeriesBufferTest {
+
+    @Test
+    fun `sliding window drops oldest points`() {
+        val buffer = TimeSeriesBuffer("test", capacity = 10, slidingWindow = true)
+        repeat(25) { buffer.add(it.toDouble(), it * 2.0) }
+        assertEquals(10, buffer.size)
+        assertEquals(15.0, buffer.getX(0))
+        assertEquals(48.0, buffer.getY(9))
+    }
+
+    @Test
+    fun `history mode stays bounded and keeps the whole run`() {
+        val buffer = TimeSeriesBuffer("test", capacity = 100, slidingWindow = false)
+        repeat(10_000) { buffer.add(it.toDouble(), if (it == 5000) 100.0 else 0.0) }
+        assertTrue(buffer.size <= 100)
+        assertEquals(0.0, buffer.getX(0))
+        assertEquals(9999.0, buffer.getX(buffer.size - 1))
+        // The spike survives compaction
+        assertTrue(buffer.yValues().contains(100.0))
+    }
+
+    @Test
+    fun `decimation keeps minimum and maximum of each bucket`() {
+        val buffer = TimeSeriesBuffer("test", capacity = 1000)
+        repeat(1000) { buffer.add(it.toDouble(), if (it % 100 == 50) 1.0 else if (it % 100 == 70) -1.0 else 0.0) }
+        val (xs, ys) = buffer.decimate(10)
+        assertTrue(xs.size <= 20)
+        assertEquals(10, ys.count { it == 1.0 })
+        assertEquals(10, ys.count { it == -1.0 })
+        // Points stay in time order
+        assertArrayEquals(xs.sortedArray(), xs)
+    }
+
+    @Test
+    fun `reducing capacity keeps newest points`() {
+        val buffer = TimeSeriesBuffer("test", capacity = 20)
+        repeat(20) { buffer.add(it.toDouble(), it.toDouble()) }
+        buffer.capacity = 10
+        assertEquals(10, buffer.size)
+        assertEquals(10.0, buffer.getX(0))
+        assertEquals(19.0, buffer.getX(9))
+    }
+
+    @Test
+    fun `points are kept in order while the buffer grows`() {
+        val buffer = TimeSeriesBuffer("test", capacity = 20_000, slidingWindow = false)
+        repeat(50) { buffer.add(it.toDouble(), -it.toDouble()) }
+        assertEquals(50, buffer.size)
+        assertArrayEquals(DoubleArray(50) { it.toDouble() }, buffer.xValues())
+        assertArrayEquals(DoubleArray(50) { -it.toDouble() }, buffer.yValues())
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Assertions.*
 import org.junit.jupiter.api.Test
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.*
+import kotlin.math.abs
 
 /**
  * Tests of probability distributions.
@@ -294,4 +295,88 @@ class ProbabilityDistributionTest {
             assertNotEquals(deserialized1.sampleDouble(), deserialized2.sampleDouble())
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `test sampling with a stream`() {
+        val dist = NormalDistribution(2.0, 3.0)
+        val sample = DoubleArray(N)
+        dist.sampleDouble(RandomStreams(1).stream(), sample)
+        assertTrue(dist.mean in confidenceIntervalMean(sample.mean, sample.stdev, alpha, N))
+        assertTrue(dist.variance in confidenceIntervalVariance(sample.variance, alpha, N))
+
+        val uniform = UniformRealDistribution(-2.0, -1.0)
+        uniform.sampleDouble(RandomStreams(1).stream(), sample)
+        assertTrue(uniform.mean in confidenceIntervalMean(sample.mean, sample.stdev, alpha, N))
+        assertTrue(sample.all { it >= -2.0 && it < -1.0 })
+    }
+
+    @Test
+    fun `test random streams are reproducible and independent`() {
+        val streams = RandomStreams(42)
+        assertEquals(streams.stream(1, 2).nextLong(), RandomStreams(42).stream(1, 2).nextLong())
+        assertEquals(streams.split(1).stream(2).nextLong(), streams.stream(1, 2).nextLong())
+        assertNotEquals(streams.stream(1, 2).nextLong(), streams.stream(2, 1).nextLong())
+        assertNotEquals(streams.stream(1).nextLong(), RandomStreams(43).stream(1).nextLong())
+
+        // Filling chunks in parallel, one stream per chunk, gives the same numbers as filling them in order
+        val dist = NormalDistribution()
+        val serial = DoubleArray(1000)
+        for (chunk in 0 until 10) {
+            dist.sampleDouble(streams.stream(chunk.toLong()), serial, chunk * 100, chunk * 100 + 100)
+        }
+        val parallel = DoubleArray(1000)
+        (0 until 10).toList().parallelStream().forEach { chunk ->
+            dist.sampleDouble(streams.stream(chunk.toLong()), parallel, chunk * 100, chunk * 100 + 100)
+        }
+        assertArrayEquals(serial, parallel)
+    }
+
+    @Test
+    fun `test ziggurat gaussian matches the normal distribution`() {
+        val random = RandomStreams(7).stream()
+        val n = 200_000
+        val sample = DoubleArray(n) { random.nextGaussian() }
+        assertTrue(0.0 in confidenceIntervalMean(sample.mean, sample.stdev, alpha, n))
+        assertTrue(1.0 in confidenceIntervalVariance(sample.variance, alpha, n))
+        // About 31.7% of samples lie beyond one standard deviation, 0.27% beyond three, and 0.058% in the tail of
+        // the ziggurat
+        assertEquals(.3173, sample.count { abs(it) > 1 }.toDouble() / n, .005)
+        assertEquals(.0027, sample.count { abs(it) > 3 }.toDouble() / n, .0005)
+        assertEquals(.00058, sample.count { abs(it) > 3.4426 }.toDouble() / n, .0003)
+    }
+
+    @Test
+    fun `test gamma, pareto and poisson sampled from a stream`() {
+        val random = RandomStreams(11).stream()
+        val n = 100_000
+        val sample = DoubleArray(n)
+        for (shape in listOf(.5, 3.0)) {
+            val gamma = GammaDistribution(shape, 2.0)
+            gamma.sampleDouble(random, sample)
+            assertTrue(gamma.mean in confidenceIntervalMean(sample.mean, sample.stdev, alpha, n))
+            assertTrue(gamma.variance in confidenceIntervalVariance(sample.variance, alpha, n))
+        }
+
+        // Half of the samples lie below the median, scale * 2^(1/shape)
+        val pareto = ParetoDistribution(3.0, 2.0)
+        pareto.sampleDouble(random, sample)
+        assertTrue(sample.all { it >= 2.0 })
+        assertEquals(.5, sample.count { it < 2.0 * Math.pow(2.0, 1 / 3.0) }.toDouble() / n, .01)
+
+        // Both the multiplication method and the rejection method used for larger means
+        for (mean in listOf(3.0, 40.0)) {
+            val poisson = PoissonDistribution(mean)
+            poisson.sampleDouble(random, sample)
+            assertTrue(sample.all { it >= 0 && it == Math.rint(it) })
+            assertTrue(poisson.mean in confidenceIntervalMean(sample.mean, sample.stdev, alpha, n))
+            assertTrue(poisson.variance in confidenceIntervalVariance(sample.variance, alpha, n))
+        }
+    }
+
+    @Test
+    fun `test stream keys are stable`() {
+        assertEquals(streamKey("Neuron_1"), streamKey("Neuron_1"))
+        assertNotEquals(streamKey("Neuron_1"), streamKey("Neuron_2"))
+        assertNotEquals(streamKey(""), streamKey("Neuron_1"))
+    }
+}
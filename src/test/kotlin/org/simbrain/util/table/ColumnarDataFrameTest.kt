@@ -0,0 +1,132 @@
+package org.simbrain.util.table
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class ColumnarDataFrameTest {
+
+    private fun mixed() = ColumnarDataFrame(
+        listOf(
+            Column("Double", Column.DataType.DoubleType),
+            Column("Int", Column.DataType.IntType),
+            Column("String", Column.DataType.StringType)
+        ),
+        3
+    ).apply { allowNullEditing = true }
+
+    @Test
+    fun `test creation`() {
+        val df = ColumnarDataFrame(3, 4)
+        assertEquals(3, df.rowCount)
+        assertEquals(4, df.columnCount)
+        assertEquals(0.0, df.getValueAt(2, 3))
+    }
+
+    @Test
+    fun `typed cells are parsed into their column type`() {
+        val df = mixed()
+        df.setValueAt("1.5", 0, 0)
+        df.setValueAt(2.7, 0, 1)
+        df.setValueAt(3, 0, 2)
+        assertEquals(1.5, df.getValueAt(0, 0))
+        assertEquals(2, df.getValueAt(0, 1))
+        assertEquals("3", df.getValueAt(0, 2))
+        assertNull(df.getValueAt(1, 2))
+    }
+
+    @Test
+    fun `strings are stored once`() {
+        val df = mixed()
+        df.setValueAt("a", 0, 2)
+        df.setValueAt("b", 1, 2)
+        df.setValueAt("a", 2, 2)
+        assertEquals(listOf("a", "b", "a"), (0..2).map { df.getValueAt(it, 2) })
+    }
+
+    @Test
+    fun `changing a column type converts its values`() {
+        val df = mixed()
+        df.setValueAt(4.0, 0, 0)
+        df.columns[0].type = Column.DataType.StringType
+        assertEquals("4.0", df.getValueAt(0, 0))
+        df.columns[0].type = Column.DataType.DoubleType
+        assertEquals(4.0, df.getValueAt(0, 0))
+    }
+
+    @Test
+    fun `appending rows grows capacity`() {
+        val df = ColumnarDataFrame(0, 2)
+        repeat(100) { df.appendDoubleRow(doubleArrayOf(it.toDouble(), -it.toDouble())) }
+        assertEquals(100, df.rowCount)
+        assertTrue(df.rowCapacity >= 100)
+        assertEquals(99.0, df.getDouble(99, 0))
+        assertEquals(-50.0, df.getDouble(50, 1))
+        df.trimToSize()
+        assertEquals(100, df.rowCapacity)
+    }
+
+    @Test
+    fun `insert and delete rows`() {
+        val df = createColumnarFromDoubleArray(arrayOf(doubleArrayOf(1.0), doubleArrayOf(2.0), doubleArrayOf(3.0)))
+        df.insertRow(1)
+        assertArrayEquals(doubleArrayOf(1.0, 0.0, 2.0, 3.0), df.getDoubleColumn(0))
+        df.deleteRow(0)
+        assertArrayEquals(doubleArrayOf(0.0, 2.0, 3.0), df.getDoubleColumn(0))
+        df.insertRow(-1)
+        assertEquals(4, df.rowCount)
+    }
+
+    @Test
+    fun `insert and delete columns`() {
+        val df = ColumnarDataFrame(2, 2)
+        df.setDouble(0, 1, 5.0)
+        df.insertColumn(0, "Names", Column.DataType.StringType)
+        assertEquals(3, df.columnCount)
+        assertEquals("", df.getValueAt(0, 0))
+        assertEquals(5.0, df.getValueAt(0, 2))
+        df.deleteColumn(0)
+        assertEquals(2, df.columnCount)
+        assertEquals(5.0, df.getValueAt(0, 1))
+    }
+
+    @Test
+    fun `getDoubleRow reuses the provided array`() {
+        val df = createColumnarFromDoubleArray(arrayOf(doubleArrayOf(1.0, 2.0), doubleArrayOf(3.0, 4.0)))
+        val buffer = DoubleArray(2)
+        assertSame(buffer, df.getDoubleRow(1, buffer))
+        assertArrayEquals(doubleArrayOf(3.0, 4.0), buffer)
+        assertArrayEquals(doubleArrayOf(1.0, 2.0), df.getDoubleRow(0))
+    }
+
+    @Test
+    fun `views reflect changes`() {
+        val df = createColumnarFromDoubleArray(arrayOf(doubleArrayOf(1.0, 2.0), doubleArrayOf(3.0, 4.0)))
+        val row = df.rowView(0)
+        val column = df.columnView(1)
+        df.setDouble(0, 1, 9.0)
+        assertArrayEquals(doubleArrayOf(1.0, 9.0), row.toDoubleArray())
+        assertArrayEquals(doubleArrayOf(9.0, 4.0), column.toDoubleArray())
+    }
+
+    @Test
+    fun `copy from basic data frame`() {
+        val basic = createFromDoubleArray(arrayOf(doubleArrayOf(1.0, 2.0), doubleArrayOf(3.0, 4.0)))
+        val columnar = basic.toColumnarDataFrame()
+        assertArrayEquals(basic.get2DDoubleArray(), columnar.get2DDoubleArray())
+    }
+
+    @Test
+    fun `imported contents replace the table`() {
+        val df = mixed()
+        df.currentRowIndex = 2
+        df.setContents(createColumnarFromDoubleArray(arrayOf(doubleArrayOf(1.0, 2.0))))
+        assertEquals(1, df.rowCount)
+        assertEquals(2, df.columnCount)
+        assertEquals(0, df.currentRowIndex)
+        assertArrayEquals(doubleArrayOf(1.0, 2.0), df.getDoubleRow(0))
+    }
+}
@@ -0,0 +1,102 @@
+package org.simbrain.util.table
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.trainers.DatasetFile
+import java.io.File
+import java.io.IOException
+import java.util.*
+import kotlin.random.Random
+
+class NumericTableTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    private fun csv(text: String) = File(dir, "table.csv").apply { writeText(text) }
+
+    @Test
+    fun `parses header comments and formatting`() {
+        val table = readNumericCsv(
+            csv("# comment\n\n\"a\", b\r\n1, -2.5\r\n\"3e2\",.5\n  # another\n-0,1E-3\n"),
+            hasHeader = true
+        )
+        assertEquals(listOf("a", "b"), table.columnNames)
+        assertEquals(3, table.numRows)
+        assertArrayEquals(doubleArrayOf(1.0, 300.0, -0.0), table.columns[0])
+        assertArrayEquals(doubleArrayOf(-2.5, 0.5, 0.001), table.columns[1])
+    }
+
+    @Test
+    fun `parsed values match String toDouble`() {
+        val random = Random(3)
+        val values = List(2000) {
+            when (it % 4) {
+                0 -> random.nextDouble(-1e6, 1e6).toString()
+                1 -> random.nextDouble().toString()
+                2 -> "%.3e".format(Locale.ROOT, random.nextDouble(-1.0, 1.0) * 1e-30)
+                else -> random.nextInt().toString()
+            }
+        }
+        val table = readNumericCsv(csv(values.chunked(4).joinToString("\n") { it.joinToString(",") }))
+        values.forEachIndexed { i, value -> assertEquals(value.toDouble(), table[i / 4, i % 4]) }
+    }
+
+    @Test
+    fun `chunks are split on line boundaries`() {
+        val rows = List(1000) { row -> DoubleArray(3) { row * 10.0 + it } }
+        val file = csv(rows.joinToString("\n") { it.joinToString(",") })
+        val table = readNumericCsvInChunks(file, ',', false, 100)
+        assertEquals(1000, table.numRows)
+        rows.forEachIndexed { i, row -> assertArrayEquals(row, table.getRow(i)) }
+    }
+
+    @Test
+    fun `empty values are NaN`() {
+        val table = readNumericCsv(csv("1,,3\n4,5,6"))
+        assertTrue(table[0, 1].isNaN())
+    }
+
+    @Test
+    fun `rows of different lengths are rejected`() {
+        assertThrows<IOException> { readNumericCsv(csv("1,2\n3,4,5\n")) }
+    }
+
+    @Test
+    fun `binary round trip`() {
+        val table = NumericTable(arrayOf(doubleArrayOf(1.0, 2.0, 3.0), doubleArrayOf(4.0, 5.0, 6.0)), listOf("x", "y"))
+        val file = File(dir, "table.bin")
+        table.writeBinary(file)
+        val read = readNumericBinary(file)
+        assertEquals(listOf("x", "y"), read.columnNames)
+        assertArrayEquals(table.toRowArray(), read.toRowArray())
+        DatasetFile.Binary(file).openRows().use { rows ->
+            assertArrayEquals(doubleArrayOf(1.0, 4.0), rows.next())
+        }
+    }
+
+    @Test
+    fun `cached read writes and uses a binary copy`() {
+        val file = csv("1,2\n3,4\n")
+        val cache = File(dir, "cache.bin")
+        val first = readCachedNumericCsv(file, cacheFile = cache)
+        assertTrue(cache.exists())
+        val second = readCachedNumericCsv(file, cacheFile = cache)
+        assertNull(second.columnNames)
+        assertArrayEquals(first.toRowArray(), second.toRowArray())
+    }
+
+    @Test
+    fun `conversions keep values and names`() {
+        val table = readNumericCsv(csv("a,b\n1,2\n3,4\n"), hasHeader = true)
+        assertEquals(4.0, table.toMatrix()[1, 1])
+        assertEquals(3.0, table.toColumnarDataFrame().getValueAt(1, 0))
+        assertEquals("b", table.toBasicDataFrame().columnNames[1])
+        assertEquals(2.0, table.toSmileDataFrame().getDouble(0, 1))
+    }
+}
@@ -0,0 +1,31 @@
+package org.simbrain.world.dataworld
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+
+class DataWorldTest {
+
+    @Test
+    fun `current numeric row can be kept by the caller`() {
+        val world = DataWorld(3, 2)
+        world.setCurrentNumericRow(doubleArrayOf(1.0, 2.0))
+        val first = world.getCurrentNumericRow()
+        world.update()
+        world.setCurrentNumericRow(doubleArrayOf(3.0, 4.0))
+        val second = world.getCurrentNumericRow()
+        assertNotSame(first, second)
+        assertArrayEquals(doubleArrayOf(1.0, 2.0), first)
+        assertArrayEquals(doubleArrayOf(3.0, 4.0), second)
+    }
+
+    @Test
+    fun `current numeric row can be read into a buffer`() {
+        val world = DataWorld(3, 2)
+        world.setCurrentNumericRow(doubleArrayOf(1.0, 2.0))
+        val buffer = DoubleArray(2)
+        assertSame(buffer, world.getCurrentNumericRow(buffer))
+        assertArrayEquals(doubleArrayOf(1.0, 2.0), buffer)
+    }
+}
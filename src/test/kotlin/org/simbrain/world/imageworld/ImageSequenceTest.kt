@@ -0,0 +1,81 @@
+package org.simbrain.world.imageworld
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.awt.image.BufferedImage
+import java.io.File
+import javax.imageio.ImageIO
+
+class ImageSequenceTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    /**
+     * A raw rgb24 video of [numFrames] 4x3 frames in which every byte of frame i is i.
+     */
+    private fun rawVideo(numFrames: Int) = File(dir, "video.raw").apply {
+        writeBytes(ByteArray(numFrames * 4 * 3 * 3) { (it / (4 * 3 * 3)).toByte() })
+    }
+
+    private fun BufferedImage.firstRed() = (getRGB(0, 0) shr 16) and 0xFF
+
+    @Test
+    fun `raw video frames are read at the right offsets`() {
+        val frames = RawVideoFrames(rawVideo(10), 4, 3)
+        assertEquals(10, frames.numFrames)
+        assertEquals(7, frames.read(7).firstRed())
+        assertEquals(0xFF070707.toInt(), frames.read(7).getRGB(3, 2))
+    }
+
+    @Test
+    fun `stepping through a sequence wraps around`() {
+        val sequence = ImageSequence(RawVideoFrames(rawVideo(5), 4, 3), prefetchCount = 2, cacheSize = 3)
+        assertEquals(0, sequence.currentImage.firstRed())
+        val seen = (1..7).map {
+            sequence.nextFrame()
+            sequence.currentImage.firstRed()
+        }
+        assertEquals(listOf(1, 2, 3, 4, 0, 1, 2), seen)
+        sequence.previousFrame()
+        assertEquals(1, sequence.frameIndex)
+        sequence.setFrame(4)
+        assertEquals(4, sequence.currentImage.firstRed())
+        sequence.close()
+    }
+
+    @Test
+    fun `directory frames are ordered by file name`() {
+        listOf(2, 0, 1).forEach { i ->
+            val image = BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB).apply { setRGB(0, 0, i shl 16) }
+            ImageIO.write(image, "png", File(dir, "frame$i.png"))
+        }
+        val sequence = ImageSequence(DirectoryFrames(dir))
+        assertEquals(3, sequence.numFrames)
+        assertEquals(listOf(0, 1, 2), (0 until 3).map { sequence.getFrame(it).firstRed() })
+        sequence.close()
+    }
+
+    @Test
+    fun `image world switches between its album and a sequence`() {
+        val world = ImageWorld()
+        val sequence = ImageSequence(RawVideoFrames(rawVideo(5), 4, 3))
+        world.showImageSequence(sequence)
+        assertSame(sequence, world.imageSource)
+        assertEquals(5, world.numImages)
+        val unfiltered = world.filterCollection.filters[0]
+        assertSame(sequence, unfiltered.source)
+        assertEquals(4 * 3, unfiltered.brightness.size)
+        world.nextFrame()
+        assertEquals(1, world.frameIndex)
+        assertEquals(1, world.currentImage.firstRed())
+
+        world.showImageAlbum()
+        assertNull(world.imageSequence)
+        assertSame(world.imageAlbum, world.imageSource)
+        assertSame(world.imageAlbum, unfiltered.source)
+    }
+}
@@ -0,0 +1,60 @@
+package org.simbrain.world.imageworld.filters
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.world.imageworld.ImageAlbum
+import java.awt.image.BufferedImage
+import kotlin.math.abs
+
+class FilterTest {
+
+    private fun image(width: Int, height: Int, type: Int, argb: Int) = BufferedImage(width, height, type).apply {
+        for (x in 0 until width) {
+            for (y in 0 until height) {
+                setRGB(x, y, argb)
+            }
+        }
+    }
+
+    @Test
+    fun `scaling keeps the alpha of the source`() {
+        val album = ImageAlbum().apply { addImage(image(8, 8, BufferedImage.TYPE_INT_ARGB, 0x80FF0000.toInt())) }
+        val filter = Filter("Color 4x4", album, IdentityOp(), 4, 4)
+        filter.updateFilter()
+        filter.rgbColor.forEach { assertTrue(abs((it ushr 24) - 0x80) <= 1) }
+        assertEquals(1.0, filter.red[0], .01)
+    }
+
+    @Test
+    fun `filters keep working when the source changes size and type`() {
+        val album = ImageAlbum().apply { addImage(image(4, 4, BufferedImage.TYPE_INT_RGB, 0xFFFFFFFF.toInt())) }
+        val filter = Filter("Gray 4x4", album, GrayOp(), 4, 4)
+        filter.updateFilter()
+        assertEquals(1.0, filter.brightness[0], .01)
+
+        album.addImage(image(8, 8, BufferedImage.TYPE_BYTE_GRAY, 0xFF000000.toInt()))
+        filter.initScaleOp()
+        filter.updateFilter()
+        assertEquals(16, filter.brightness.size)
+        assertEquals(0.0, filter.brightness[0], .01)
+    }
+
+    @Test
+    fun `only the collection's own unfiltered filter follows the source size`() {
+        val album = ImageAlbum().apply { addImage(image(4, 4, BufferedImage.TYPE_INT_RGB, 0xFFFFFFFF.toInt())) }
+        val collection = FilterCollection(album)
+        val impostor = Filter("Unfiltered", album, IdentityOp(), 2, 2)
+        collection.addFilter(impostor)
+
+        val larger = ImageAlbum().apply { addImage(image(8, 8, BufferedImage.TYPE_INT_RGB, 0xFFFFFFFF.toInt())) }
+        collection.setImageSource(larger)
+        assertEquals(64, collection.unfiltered.brightness.size)
+        assertEquals(4, impostor.brightness.size)
+
+        collection.removeFilter(collection.unfiltered)
+        collection.removeFilter(impostor)
+        assertTrue(collection.unfiltered in collection.filters)
+        assertTrue(impostor !in collection.filters)
+    }
+}